@@ -28,7 +28,9 @@ import org.springframework.data.mongodb.core.mapping.Document;
 @JsonInclude(JsonInclude.Include.NON_NULL)
 @Document(collection = "#{@mongoConfiguration.fullCollectionName('task_runs')}")
 @CompoundIndexes({
-  @CompoundIndex(name = "status_phase_type_idx", def = "{'status': 1, 'phase': 1, 'type': 1}")
+  @CompoundIndex(name = "status_phase_type_idx", def = "{'status': 1, 'phase': 1, 'type': 1}"),
+  // Not unique, so it can be built on databases holding duplicate TaskRuns from earlier versions
+  @CompoundIndex(name = "workflowrunref_name_idx", def = "{'workflowRunRef': 1, 'name': 1}")
 })
 public class TaskRunEntity {
 
@@ -58,6 +60,8 @@ public class TaskRunEntity {
   private String workflowRevisionRef;
   @Indexed private String workflowRunRef; // Indexed when retrieving task runs for a workflow run
   private String agentRef;
+  @JsonIgnore private Date agentClaimExpiry; // Visibility timeout of the agent's claim
+  @JsonIgnore private String agentClaimRef; // Batch claim that claimed the run
 
   @Override
   public String toString() {
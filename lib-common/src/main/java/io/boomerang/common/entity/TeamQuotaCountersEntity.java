@@ -0,0 +1,56 @@
+package io.boomerang.common.entity;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/*
+ * Entity for a Team's quota usage in a (monthly) period
+ *
+ * Kept up to date by the Engine with atomic updates as WorkflowRuns are created, start, and end.
+ * Periodically rebuilt from the Audit by the Flow service to correct any drift. WorkflowRuns are
+ * counted against the period they were created in.
+ */
+@Data
+@JsonIgnoreProperties(ignoreUnknown = true)
+@Document(collection = "#{@mongoConfiguration.fullCollectionName('team_quota_counters')}")
+public class TeamQuotaCountersEntity {
+
+  private static final DateTimeFormatter PERIOD_FORMAT =
+      DateTimeFormatter.ofPattern("yyyy-MM").withZone(ZoneOffset.UTC);
+
+  @Id private String id;
+  private String team;
+  private String period;
+  private long runs = 0;
+  // Refs of the running WorkflowRuns. Start and end are idempotent against this set.
+  private List<String> running = new LinkedList<>();
+  private long duration = 0;
+  // Sketch of the completed durations, refer to InsightRollupUtil
+  private Map<String, Long> sketch = new HashMap<>();
+  private Date lastReconciled;
+
+  public TeamQuotaCountersEntity() {}
+
+  public TeamQuotaCountersEntity(String team, Date date) {
+    this.id = idOf(team, date);
+    this.team = team.toLowerCase();
+    this.period = periodOf(date);
+  }
+
+  public static String idOf(String team, Date date) {
+    return team.toLowerCase() + ":" + periodOf(date);
+  }
+
+  public static String periodOf(Date date) {
+    return PERIOD_FORMAT.format(date.toInstant());
+  }
+}
@@ -1,5 +1,6 @@
 package io.boomerang.common.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonInclude.Include;
@@ -30,7 +31,7 @@ public class WorkflowRunEntity {
   @Id private String id;
   private Map<String, String> labels = new HashMap<>();
   private Map<String, Object> annotations = new HashMap<>();
-  private Date creationDate;
+  @Indexed private Date creationDate;
   private Date startTime;
   private long duration = 0;
   private Long timeout;
@@ -45,6 +46,8 @@ public class WorkflowRunEntity {
   private Integer workflowVersion;
   private String workflowRevisionRef;
   private String agentRef;
+  @JsonIgnore private Date agentClaimExpiry; // Visibility timeout of the agent's claim
+  @JsonIgnore private String agentClaimRef; // Batch claim that claimed the run
   private String trigger;
   private String initiatedByRef;
   private List<RunParam> params = new LinkedList<>();
@@ -11,6 +11,8 @@ public class WorkflowRunInsight {
   private Long concurrentRuns = 0L;
   private Long totalDuration = 0L;
   private Long medianDuration = 0L;
+  private Long p90Duration = 0L;
+  private Long p99Duration = 0L;
   private List<WorkflowRunSummary> runs = new LinkedList<>();
 
   @Override
@@ -23,6 +25,10 @@ public class WorkflowRunInsight {
         + totalDuration
         + ", medianDuration="
         + medianDuration
+        + ", p90Duration="
+        + p90Duration
+        + ", p99Duration="
+        + p99Duration
         + ", runs="
         + runs
         + "]";
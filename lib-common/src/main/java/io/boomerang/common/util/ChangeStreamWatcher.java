@@ -0,0 +1,140 @@
+package io.boomerang.common.util;
+
+import com.mongodb.MongoCommandException;
+import com.mongodb.client.ChangeStreamIterable;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.bson.Document;
+
+/*
+ * Watches a MongoDB change stream on a daemon thread, passing each event to the listener
+ *
+ * - The stream is reopened after a retry interval if it closes. The reconnect callback is run once
+ * it has reopened, to cover any changes missed while it was closed.
+ * - Where change streams are not available, e.g. a standalone MongoDB, or are disabled, the
+ * fallback (if any) is run at its interval instead.
+ */
+public class ChangeStreamWatcher {
+
+  private static final Logger LOGGER = LogManager.getLogger(ChangeStreamWatcher.class);
+
+  private final String name;
+  private final Supplier<ChangeStreamIterable<Document>> changeStream;
+  private final Consumer<ChangeStreamDocument<Document>> listener;
+  private Runnable onReconnect = () -> {};
+  private Runnable fallback;
+  private long fallbackInterval;
+  private long retryInterval = 1000;
+
+  private volatile boolean running = true;
+  private volatile boolean active = false;
+  private Thread thread;
+
+  public ChangeStreamWatcher(
+      String name,
+      Supplier<ChangeStreamIterable<Document>> changeStream,
+      Consumer<ChangeStreamDocument<Document>> listener) {
+    this.name = name;
+    this.changeStream = changeStream;
+    this.listener = listener;
+  }
+
+  public ChangeStreamWatcher onReconnect(Runnable onReconnect) {
+    this.onReconnect = onReconnect;
+    return this;
+  }
+
+  public ChangeStreamWatcher fallback(Runnable fallback, long interval) {
+    this.fallback = fallback;
+    this.fallbackInterval = interval;
+    return this;
+  }
+
+  public ChangeStreamWatcher retryInterval(long retryInterval) {
+    this.retryInterval = retryInterval;
+    return this;
+  }
+
+  /*
+   * Start watching, or start the fallback if change streams are not enabled
+   */
+  public void start(boolean changeStreamEnabled) {
+    if (!changeStreamEnabled && fallback == null) {
+      return;
+    }
+    thread = new Thread(changeStreamEnabled ? this::watch : this::runFallback, name);
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  public void stop() {
+    running = false;
+    if (thread != null) {
+      thread.interrupt();
+    }
+  }
+
+  public boolean isActive() {
+    return active;
+  }
+
+  private void watch() {
+    boolean connected = false;
+    while (running) {
+      try (MongoCursor<ChangeStreamDocument<Document>> cursor = changeStream.get().iterator()) {
+        active = true;
+        if (connected) {
+          // Changes may have been missed while reconnecting
+          onReconnect.run();
+        }
+        connected = true;
+        LOGGER.info("{} is watching for changes.", name);
+        while (running && cursor.hasNext()) {
+          listener.accept(cursor.next());
+        }
+      } catch (MongoCommandException e) {
+        active = false;
+        LOGGER.info("{}: change streams are not available ({}).", name, e.getErrorMessage());
+        runFallback();
+        return;
+      } catch (Exception e) {
+        active = false;
+        if (running) {
+          LOGGER.warn("{}: change stream closed, reconnecting. Error: {}", name, e.getMessage());
+          if (!sleep(retryInterval)) {
+            return;
+          }
+        }
+      }
+    }
+    active = false;
+  }
+
+  private void runFallback() {
+    if (fallback == null) {
+      return;
+    }
+    LOGGER.info("{} will refresh every {}ms.", name, fallbackInterval);
+    while (running && sleep(fallbackInterval)) {
+      try {
+        fallback.run();
+      } catch (Exception e) {
+        LOGGER.warn("{}: unable to refresh. Error: {}", name, e.getMessage());
+      }
+    }
+  }
+
+  private boolean sleep(long millis) {
+    try {
+      Thread.sleep(millis);
+      return true;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+  }
+}
@@ -0,0 +1,169 @@
+package io.boomerang.common.util;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Update;
+
+/*
+ * Hourly and daily WorkflowRun insight rollups, per Team and per Workflow
+ *
+ * Each rollup holds the count of WorkflowRuns created in the bucket, the running count, a status
+ * histogram, the duration sum, and a log bucketed sketch of the completed durations from which
+ * percentiles can be estimated to within ~5%. The rollups are updated from the change in a
+ * WorkflowRun's audit data so they can be summed over any range.
+ */
+public class InsightRollupUtil {
+
+  public static final String COLLECTION = "audit_rollups";
+  public static final String SCOPE_TEAM = "team";
+  public static final String SCOPE_WORKFLOW = "workflow";
+  public static final String HOUR = "hour";
+  public static final String DAY = "day";
+  // Audit field marking the record as included in the rollups
+  public static final String ROLLUP_KEY = "rollup";
+
+  private static final double GAMMA = 1.1;
+  private static final DateTimeFormatter HOUR_FORMAT =
+      DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH").withZone(ZoneOffset.UTC);
+  private static final DateTimeFormatter DAY_FORMAT =
+      DateTimeFormatter.ofPattern("yyyy-MM-dd").withZone(ZoneOffset.UTC);
+
+  private InsightRollupUtil() {}
+
+  /*
+   * Apply the change in a WorkflowRun's audit data to its rollups
+   *
+   * @param before the audit data prior to the change, or null for a newly created WorkflowRun
+   */
+  public static void apply(
+      MongoTemplate mongoTemplate,
+      String collection,
+      String team,
+      String workflowRef,
+      Date created,
+      Map<String, String> before,
+      Map<String, String> after) {
+    Map<String, Long> increments = new LinkedHashMap<>();
+    if (before == null) {
+      increments.put("count", 1L);
+    }
+    String statusBefore = before != null ? before.get("status") : null;
+    String statusAfter = after.get("status");
+    if (statusAfter != null && !statusAfter.equals(statusBefore)) {
+      increments.put("statuses." + statusAfter, 1L);
+      if (statusBefore != null) {
+        increments.put("statuses." + statusBefore, -1L);
+      }
+    }
+    long running = (isRunning(after) ? 1L : 0L) - (isRunning(before) ? 1L : 0L);
+    if (running != 0) {
+      increments.put("running", running);
+    }
+    long duration = duration(after) - duration(before);
+    if (duration != 0) {
+      increments.put("duration", duration);
+    }
+    if (isCompleted(after) && !isCompleted(before)) {
+      increments.put("sketch." + index(duration(after)), 1L);
+    }
+    if (increments.isEmpty()) {
+      return;
+    }
+
+    BulkOperations bulk = mongoTemplate.bulkOps(BulkMode.UNORDERED, collection);
+    for (String[] scope :
+        List.of(new String[] {SCOPE_TEAM, team}, new String[] {SCOPE_WORKFLOW, workflowRef})) {
+      if (scope[1] == null || scope[1].isBlank()) {
+        continue;
+      }
+      for (String granularity : List.of(HOUR, DAY)) {
+        Instant bucket = bucketOf(granularity, created.toInstant());
+        Update update =
+            new Update()
+                .setOnInsert("scope", scope[0])
+                .setOnInsert("ref", scope[1])
+                .setOnInsert("granularity", granularity)
+                .setOnInsert("bucket", Date.from(bucket));
+        increments.forEach(update::inc);
+        bulk.upsert(
+            query(where("_id").is(idOf(scope[0], scope[1], granularity, bucket))), update);
+      }
+    }
+    bulk.execute();
+  }
+
+  public static Instant bucketOf(String granularity, Instant instant) {
+    return instant.truncatedTo(HOUR.equals(granularity) ? ChronoUnit.HOURS : ChronoUnit.DAYS);
+  }
+
+  public static String idOf(String scope, String ref, String granularity, Instant bucket) {
+    return scope
+        + ":"
+        + ref
+        + ":"
+        + granularity
+        + ":"
+        + (HOUR.equals(granularity) ? HOUR_FORMAT : DAY_FORMAT).format(bucket);
+  }
+
+  /*
+   * Estimate the q quantile of the merged duration sketch
+   */
+  public static long quantile(Map<Integer, Long> sketch, double q) {
+    TreeMap<Integer, Long> buckets = new TreeMap<>(sketch);
+    long total = buckets.values().stream().mapToLong(Long::longValue).sum();
+    if (total == 0) {
+      return 0L;
+    }
+    long rank = Math.max(1L, (long) Math.ceil(q * total));
+    long seen = 0;
+    for (Map.Entry<Integer, Long> bucket : buckets.entrySet()) {
+      seen += bucket.getValue();
+      if (seen >= rank) {
+        return valueOf(bucket.getKey());
+      }
+    }
+    return valueOf(buckets.lastKey());
+  }
+
+  public static int index(long duration) {
+    return duration <= 1 ? 0 : (int) Math.ceil(Math.log(duration) / Math.log(GAMMA));
+  }
+
+  private static long valueOf(int index) {
+    return index <= 0 ? 0L : Math.round(2 * Math.pow(GAMMA, index) / (GAMMA + 1));
+  }
+
+  private static boolean isRunning(Map<String, String> data) {
+    return data != null && "running".equals(data.get("phase"));
+  }
+
+  private static boolean isCompleted(Map<String, String> data) {
+    return data != null
+        && ("completed".equals(data.get("phase")) || "finalized".equals(data.get("phase")));
+  }
+
+  private static long duration(Map<String, String> data) {
+    if (data == null || data.get("duration") == null) {
+      return 0L;
+    }
+    try {
+      return Long.parseLong(data.get("duration"));
+    } catch (NumberFormatException e) {
+      return 0L;
+    }
+  }
+}
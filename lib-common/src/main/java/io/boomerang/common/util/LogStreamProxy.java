@@ -0,0 +1,248 @@
+package io.boomerang.common.util;
+
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse.BodyHandler;
+import java.net.http.HttpResponse.BodySubscribers;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Flow;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/*
+ * Non-blocking proxy of a log stream to a servlet response
+ *
+ * The upstream log is read with the JDK HttpClient as a reactive stream and written with servlet
+ * non-blocking I/O, so no thread is held for the life of the stream. More of the log is only
+ * requested from upstream once the client socket has accepted what was already read, so a slow
+ * client slows the upstream read rather than the log being buffered. Secrets are masked on the
+ * bytes as they pass through.
+ */
+public class LogStreamProxy {
+
+  private static final Logger LOGGER = LogManager.getLogger(LogStreamProxy.class);
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private final HttpClient httpClient;
+
+  public LogStreamProxy(HttpClient httpClient) {
+    this.httpClient = httpClient;
+  }
+
+  /*
+   * Start proxying the log to the response. The response is completed asynchronously once the log
+   * has ended, or the client has gone away.
+   */
+  public void proxy(
+      URI uri,
+      Collection<String> secrets,
+      HttpServletRequest request,
+      HttpServletResponse response)
+      throws IOException {
+    AsyncContext context = request.startAsync();
+    // A log is streamed for as long as the task runs
+    context.setTimeout(0);
+    Relay relay = new Relay(context, response, new SecretMasker(secrets));
+    response.getOutputStream().setWriteListener(relay.writeListener());
+
+    HttpRequest httpRequest =
+        HttpRequest.newBuilder(uri)
+            .header("Accept", "application/octet-stream, */*")
+            .GET()
+            .build();
+    BodyHandler<Void> handler =
+        info ->
+            info.statusCode() < 300
+                ? BodySubscribers.fromSubscriber(relay)
+                : BodySubscribers.replacing(null);
+    LOGGER.info("Starting log stream: {}", uri);
+    httpClient
+        .sendAsync(httpRequest, handler)
+        .whenComplete(
+            (upstream, ex) -> {
+              if (ex != null) {
+                relay.abort(ex);
+              } else if (upstream.statusCode() >= 300) {
+                relay.abort(new IOException("Log stream responded " + upstream.statusCode()));
+              }
+            });
+  }
+
+  /*
+   * Relays the masked log from the upstream subscription to the servlet output. Upstream buffers
+   * arrive on the HttpClient threads and writes are resumed on the container threads, so the state
+   * is guarded by this.
+   */
+  private static final class Relay implements Flow.Subscriber<List<ByteBuffer>> {
+    private final AsyncContext context;
+    private final HttpServletResponse response;
+    private final SecretMasker.Stream stream;
+    private final int reserve;
+    private final int bufferSize;
+    // Masked output waiting to be written, and written buffers for reuse
+    private final Deque<ByteBuffer> ready = new ArrayDeque<>();
+    private final Deque<ByteBuffer> free = new ArrayDeque<>();
+    private Flow.Subscription subscription;
+    private boolean requested;
+    private boolean draining;
+    private boolean flush;
+    private boolean completed;
+    private boolean done;
+
+    Relay(AsyncContext context, HttpServletResponse response, SecretMasker masker) {
+      this.context = context;
+      this.response = response;
+      this.stream = masker.stream();
+      this.reserve = masker.getReserve();
+      this.bufferSize = Math.max(BUFFER_SIZE, 2 * reserve);
+    }
+
+    WriteListener writeListener() {
+      return new WriteListener() {
+        @Override
+        public void onWritePossible() {
+          drain();
+        }
+
+        @Override
+        public void onError(Throwable t) {
+          LOGGER.info("Log stream client has gone away: {}", t.toString());
+          abort(null);
+        }
+      };
+    }
+
+    @Override
+    public synchronized void onSubscribe(Flow.Subscription subscription) {
+      this.subscription = subscription;
+      if (done) {
+        subscription.cancel();
+        return;
+      }
+      drain();
+    }
+
+    @Override
+    public synchronized void onNext(List<ByteBuffer> items) {
+      requested = false;
+      ByteBuffer buffer = null;
+      for (ByteBuffer item : items) {
+        while (item.hasRemaining()) {
+          if (buffer == null || buffer.remaining() < reserve) {
+            enqueue(buffer);
+            buffer = take();
+          }
+          stream.mask(item, buffer);
+        }
+      }
+      enqueue(buffer);
+      drain();
+    }
+
+    @Override
+    public synchronized void onComplete() {
+      ByteBuffer buffer = take();
+      stream.finish(buffer);
+      enqueue(buffer);
+      completed = true;
+      LOGGER.info("Finished log stream.");
+      drain();
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+      abort(throwable);
+    }
+
+    /*
+     * Stop relaying. The cause is null when the client has gone away.
+     */
+    synchronized void abort(Throwable cause) {
+      if (done) {
+        return;
+      }
+      done = true;
+      if (cause != null) {
+        LOGGER.error("Unable to stream log: {}", cause.toString());
+        if (!response.isCommitted()) {
+          response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+        }
+      }
+      if (subscription != null) {
+        subscription.cancel();
+      }
+      context.complete();
+    }
+
+    /*
+     * Write while the client socket is ready, then ask upstream for more. Nothing further is
+     * requested until the container reports the socket writable again.
+     */
+    private synchronized void drain() {
+      if (draining) {
+        return;
+      }
+      draining = true;
+      try {
+        ServletOutputStream out = response.getOutputStream();
+        while (!done && out.isReady()) {
+          ByteBuffer buffer = ready.poll();
+          if (buffer != null) {
+            out.write(
+                buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+            buffer.clear();
+            free.push(buffer);
+            flush = true;
+          } else if (flush) {
+            // Deliver a live log as it arrives rather than when the container buffer is full
+            out.flush();
+            flush = false;
+          } else if (completed) {
+            done = true;
+            context.complete();
+          } else if (requested || subscription == null) {
+            return;
+          } else {
+            requested = true;
+            subscription.request(1);
+          }
+        }
+      } catch (IOException ex) {
+        LOGGER.info("Log stream client has gone away: {}", ex.toString());
+        abort(null);
+      } finally {
+        draining = false;
+      }
+    }
+
+    private ByteBuffer take() {
+      ByteBuffer buffer = free.poll();
+      return buffer != null ? buffer : ByteBuffer.allocate(bufferSize);
+    }
+
+    private void enqueue(ByteBuffer buffer) {
+      if (buffer == null) {
+        return;
+      }
+      buffer.flip();
+      if (buffer.hasRemaining()) {
+        ready.add(buffer);
+      } else {
+        buffer.clear();
+        free.push(buffer);
+      }
+    }
+  }
+}
@@ -0,0 +1,201 @@
+package io.boomerang.common.util;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+
+/*
+ * Streaming byte level masking of secrets
+ *
+ * The secrets are compiled into an Aho-Corasick automaton over their UTF-8 bytes, so the input is
+ * scanned once whatever the number of secrets and a secret split across buffers is still found.
+ * Bytes are only held back while they could still be part of a secret, which is at most the length
+ * of the longest secret. Each run of masked bytes is replaced with a single mask.
+ */
+public class SecretMasker {
+
+  public static final byte[] MASK = "******".getBytes(StandardCharsets.UTF_8);
+
+  private static final int ALPHABET = 256;
+
+  // Transition table of the automaton, indexed by state * 256 + byte
+  private final int[] delta;
+  // Length of the input a state has matched
+  private final int[] depth;
+  // Length of the longest secret ending in a state, or 0
+  private final int[] match;
+  private final int maxLength;
+
+  public SecretMasker(Collection<String> secrets) {
+    List<int[]> next = new ArrayList<>();
+    List<Integer> depths = new ArrayList<>();
+    List<Integer> matches = new ArrayList<>();
+    next.add(newRow());
+    depths.add(0);
+    matches.add(0);
+    int longest = 0;
+    for (String secret : secrets) {
+      if (secret == null || secret.isBlank()) {
+        continue;
+      }
+      byte[] bytes = secret.getBytes(StandardCharsets.UTF_8);
+      int state = 0;
+      for (byte b : bytes) {
+        int c = b & 0xff;
+        if (next.get(state)[c] < 0) {
+          next.get(state)[c] = next.size();
+          next.add(newRow());
+          depths.add(depths.get(state) + 1);
+          matches.add(0);
+        }
+        state = next.get(state)[c];
+      }
+      matches.set(state, bytes.length);
+      longest = Math.max(longest, bytes.length);
+    }
+    maxLength = longest;
+
+    // Resolve the failure links into a complete transition table, breadth first so that the
+    // failure state of a state is always resolved before it
+    int states = next.size();
+    int[] fail = new int[states];
+    delta = new int[states * ALPHABET];
+    depth = new int[states];
+    match = new int[states];
+    Deque<Integer> queue = new ArrayDeque<>();
+    for (int c = 0; c < ALPHABET; c++) {
+      int child = next.get(0)[c];
+      if (child < 0) {
+        delta[c] = 0;
+      } else {
+        delta[c] = child;
+        queue.add(child);
+      }
+    }
+    while (!queue.isEmpty()) {
+      int state = queue.poll();
+      depth[state] = depths.get(state);
+      match[state] = Math.max(matches.get(state), match[fail[state]]);
+      for (int c = 0; c < ALPHABET; c++) {
+        int child = next.get(state)[c];
+        int fallback = delta[fail[state] * ALPHABET + c];
+        if (child < 0) {
+          delta[state * ALPHABET + c] = fallback;
+        } else {
+          fail[child] = fallback;
+          delta[state * ALPHABET + c] = child;
+          queue.add(child);
+        }
+      }
+    }
+  }
+
+  public boolean isEmpty() {
+    return maxLength == 0;
+  }
+
+  /*
+   * The output space required to mask another byte of input, or to finish a stream
+   */
+  public int getReserve() {
+    return (maxLength + 1) * MASK.length;
+  }
+
+  public Stream stream() {
+    return new Stream();
+  }
+
+  private static int[] newRow() {
+    int[] row = new int[ALPHABET];
+    Arrays.fill(row, -1);
+    return row;
+  }
+
+  /*
+   * The masking state of a single stream of bytes. Not thread safe.
+   */
+  public final class Stream {
+    // Ring of the bytes held back and whether each is part of a secret
+    private final byte[] held = new byte[Integer.highestOneBit(maxLength + 1) << 1];
+    private final boolean[] masked = new boolean[held.length];
+    private final int ring = held.length - 1;
+    private int head;
+    private int count;
+    private int state;
+    private boolean inMask;
+
+    /*
+     * Mask the input into the output until the input is consumed or the output has less than the
+     * reserve remaining
+     */
+    public void mask(ByteBuffer in, ByteBuffer out) {
+      if (maxLength == 0) {
+        int length = Math.min(in.remaining(), out.remaining());
+        out.put(out.position(), in, in.position(), length);
+        out.position(out.position() + length);
+        in.position(in.position() + length);
+        return;
+      }
+      int reserve = getReserve();
+      int ip = in.position();
+      int op = out.position();
+      int inLimit = in.limit();
+      int outLimit = out.limit();
+      int s = state;
+      while (ip < inLimit && outLimit - op >= reserve) {
+        byte b = in.get(ip++);
+        s = delta[(s << 8) | (b & 0xff)];
+        if (count == 0 && s == 0) {
+          // Nothing is held back and this byte cannot start a secret
+          out.put(op++, b);
+          inMask = false;
+          continue;
+        }
+        int tail = (head + count) & ring;
+        held[tail] = b;
+        masked[tail] = false;
+        count++;
+        for (int i = 0; i < match[s]; i++) {
+          masked[(tail - i) & ring] = true;
+        }
+        // Bytes before the input matched by the current state can no longer be part of a secret
+        op = release(count - depth[s], out, op);
+      }
+      state = s;
+      in.position(ip);
+      out.position(op);
+    }
+
+    /*
+     * Release the bytes still held back at the end of the stream. Requires the reserve.
+     */
+    public void finish(ByteBuffer out) {
+      out.position(release(count, out, out.position()));
+      state = 0;
+      inMask = false;
+    }
+
+    private int release(int bytes, ByteBuffer out, int op) {
+      for (int i = 0; i < bytes; i++) {
+        if (masked[head]) {
+          if (!inMask) {
+            out.put(op, MASK);
+            op += MASK.length;
+            inMask = true;
+          }
+        } else {
+          out.put(op++, held[head]);
+          inMask = false;
+        }
+        head = (head + 1) & ring;
+        count--;
+      }
+      return op;
+    }
+  }
+}
@@ -9,10 +9,11 @@ import io.boomerang.common.model.TaskRunEndRequest;
 import io.boomerang.common.model.WorkflowRun;
 import io.boomerang.error.BoomerangException;
 import io.boomerang.agent.model.TaskResponse;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.springframework.context.annotation.Lazy;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 
 @Service
@@ -27,34 +28,47 @@ public class QueueService {
 
   private final EngineClient engineClient;
 
+  private final WorkQueue workQueue;
+
   public QueueService(
       WorkflowService workflowService,
       WorkspaceService workspaceService,
       TaskService taskService,
-      @Lazy EngineClient engineClient) {
+      @Lazy EngineClient engineClient,
+      WorkQueue workQueue) {
     this.workflowService = workflowService;
     this.workspaceService = workspaceService;
     this.taskService = taskService;
     this.engineClient = engineClient;
+    this.workQueue = workQueue;
   }
 
-  @Async
+  /*
+   * New WorkflowRuns wait for a workflow slot in the WorkQueue. Finalizing does not take a slot.
+   */
   public void processWorkflowRun(WorkflowRun request) {
+    LOGGER.debug(request.toString());
+    if (RunPhase.pending.equals(request.getPhase())
+        && RunStatus.ready.equals(request.getStatus())) {
+      workQueue.submit(
+          WorkQueue.WORKFLOW,
+          () -> {
+            executeWorkflowRun(request);
+            return CompletableFuture.completedFuture(null);
+          });
+    } else if (RunPhase.completed.equals(request.getPhase())) {
+      workQueue.execute(() -> finalizeWorkflowRun(request));
+    }
+  }
+
+  private void executeWorkflowRun(WorkflowRun request) {
     try {
-      LOGGER.debug(request.toString());
-      if (RunPhase.pending.equals(request.getPhase())
-          && RunStatus.ready.equals(request.getStatus())) {
-        LOGGER.info("Executing WorkflowRun...");
-        // The execute is before communicating with the Engine
-        // as starting the workflow will kick off the first task(s) and
-        // dependencies at the workflow level (Workspaces) need to be there prior
-        workflowService.execute(request);
-        engineClient.startWorkflow(request.getId());
-      } else if (RunPhase.completed.equals(request.getPhase())) {
-        LOGGER.info("Finalizing WorkflowRun...");
-        workflowService.terminate(request);
-        engineClient.finalizeWorkflow(request.getId());
-      }
+      LOGGER.info("Executing WorkflowRun...");
+      // The execute is before communicating with the Engine
+      // as starting the workflow will kick off the first task(s) and
+      // dependencies at the workflow level (Workspaces) need to be there prior
+      workflowService.execute(request);
+      engineClient.startWorkflow(request.getId());
     } catch (BoomerangException e) {
       LOGGER.fatal("A fatal error has occurred while processing the message!", e);
       // TODO catch failure and end workflow with error status
@@ -63,39 +77,53 @@ public class QueueService {
     }
   }
 
-  @Async
+  private void finalizeWorkflowRun(WorkflowRun request) {
+    try {
+      LOGGER.info("Finalizing WorkflowRun...");
+      workflowService.terminate(request);
+      engineClient.finalizeWorkflow(request.getId());
+    } catch (Exception e) {
+      LOGGER.fatal("A fatal error has occurred while processing the message!", e);
+    }
+  }
+
+  /*
+   * New TaskRuns wait for a slot of their task type in the WorkQueue. The start is only
+   * communicated to the Engine once the slot begins work, and the slot is held until the TaskRun
+   * completes. Cancelling does not take a slot.
+   */
   public void processTaskRun(TaskRun request) {
+    LOGGER.debug(request.toString());
+    if ((TaskType.template.equals(request.getType())
+            || TaskType.custom.equals(request.getType())
+            || TaskType.script.equals(request.getType()))
+        && RunPhase.pending.equals(request.getPhase())
+        && RunStatus.ready.equals(request.getStatus())) {
+      workQueue.submit(request.getType().name(), () -> executeTaskRun(request));
+    } else if ((TaskType.template.equals(request.getType())
+            || TaskType.custom.equals(request.getType())
+            || TaskType.script.equals(request.getType()))
+        && RunPhase.completed.equals(request.getPhase())
+        && (RunStatus.cancelled.equals(request.getStatus())
+            || RunStatus.timedout.equals(request.getStatus()))) {
+      workQueue.execute(() -> terminateTaskRun(request));
+    } else {
+      // TODO turn this into the types of tasks that this Agent supports
+      LOGGER.info(
+          "Skipping TaskRun as criteria not met; (Type: template, custom, or script), (Status: ready, cancelled, timedout), and (Phase: pending, completed).");
+    }
+  }
+
+  private CompletableFuture<?> executeTaskRun(TaskRun request) {
     try {
-      LOGGER.debug(request.toString());
-      if ((TaskType.template.equals(request.getType())
-              || TaskType.custom.equals(request.getType())
-              || TaskType.script.equals(request.getType()))
-          && RunPhase.pending.equals(request.getPhase())
-          && RunStatus.ready.equals(request.getStatus())) {
-        LOGGER.info("Executing TaskRun...");
-        // Communicate the start with the Engine
-        // prior to Tekton starting as it is a blocking Watch call.
-        engineClient.startTask(request.getId());
-        TaskResponse response = new TaskResponse();
-        response = taskService.execute(request);
-        TaskRunEndRequest endRequest = new TaskRunEndRequest();
-        endRequest.setStatus(RunStatus.succeeded);
-        endRequest.setStatusMessage(response.getMessage());
-        endRequest.setResults(response.getResults());
-        engineClient.endTask(request.getId(), endRequest);
-      } else if ((TaskType.template.equals(request.getType())
-              || TaskType.custom.equals(request.getType())
-              || TaskType.script.equals(request.getType()))
-          && RunPhase.completed.equals(request.getPhase())
-          && (RunStatus.cancelled.equals(request.getStatus())
-              || RunStatus.timedout.equals(request.getStatus()))) {
-        LOGGER.info("Cancelling TaskRun...");
-        taskService.terminate(request);
-      } else {
-        // TODO turn this into the types of tasks that this Agent supports
-        LOGGER.info(
-            "Skipping TaskRun as criteria not met; (Type: template, custom, or script), (Status: ready, cancelled, timedout), and (Phase: pending, completed).");
-      }
+      LOGGER.info("Executing TaskRun...");
+      // Communicate the start with the Engine prior to Tekton starting.
+      // The thread is released once the TaskRun is created and the end is
+      // communicated when the TaskRun completes.
+      engineClient.startTask(request.getId());
+      return taskService
+          .execute(request)
+          .whenComplete((response, ex) -> endTaskRun(request, response, ex));
     } catch (BoomerangException e) {
       LOGGER.fatal("Failed to execute TaskRun.", e);
       TaskRunEndRequest endRequest = new TaskRunEndRequest();
@@ -105,5 +133,39 @@ public class QueueService {
     } catch (Exception e) {
       LOGGER.fatal("A fatal error has occurred while processing the message!", e);
     }
+    return CompletableFuture.completedFuture(null);
+  }
+
+  private void terminateTaskRun(TaskRun request) {
+    try {
+      LOGGER.info("Cancelling TaskRun...");
+      taskService.terminate(request);
+    } catch (Exception e) {
+      LOGGER.fatal("A fatal error has occurred while processing the message!", e);
+    }
+  }
+
+  private void endTaskRun(TaskRun request, TaskResponse response, Throwable ex) {
+    try {
+      TaskRunEndRequest endRequest = new TaskRunEndRequest();
+      if (ex == null) {
+        endRequest.setStatus(RunStatus.succeeded);
+        endRequest.setStatusMessage(response.getMessage());
+        endRequest.setResults(response.getResults());
+      } else {
+        Throwable cause =
+            ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+        if (!(cause instanceof BoomerangException)) {
+          LOGGER.fatal("A fatal error has occurred while processing the message!", cause);
+          return;
+        }
+        LOGGER.fatal("Failed to execute TaskRun.", cause);
+        endRequest.setStatus(RunStatus.failed);
+        endRequest.setStatusMessage(cause.getMessage());
+      }
+      engineClient.endTask(request.getId(), endRequest);
+    } catch (Exception e) {
+      LOGGER.fatal("A fatal error has occurred while processing the message!", e);
+    }
   }
 }
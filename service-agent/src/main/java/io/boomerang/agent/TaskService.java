@@ -2,7 +2,6 @@ package io.boomerang.agent;
 
 import io.boomerang.agent.model.TaskResponse;
 import io.boomerang.common.enums.TaskDeletion;
-import io.boomerang.common.model.RunResult;
 import io.boomerang.common.model.TaskRun;
 import io.boomerang.error.BoomerangException;
 import io.boomerang.kube.KubeServiceImpl;
@@ -10,9 +9,9 @@ import io.boomerang.kube.TektonServiceImpl;
 import io.boomerang.kube.exception.KubeRuntimeException;
 import io.fabric8.kubernetes.client.KubernetesClientException;
 import java.text.ParseException;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.springframework.beans.factory.annotation.Value;
@@ -61,83 +60,119 @@ public class TaskService {
     return response;
   }
 
-  public TaskResponse execute(TaskRun task) {
+  /*
+   * Create the TaskRun and return without waiting for it
+   *
+   * The returned future completes once the TaskRun has completed, been cancelled, or timed out.
+   */
+  public CompletableFuture<TaskResponse> execute(TaskRun task) {
     TaskResponse response =
         new TaskResponse("0", "Task (" + task.getId() + ") has been executed successfully.", null);
-    List<RunResult> results = new ArrayList<>();
     if (task.getSpec().getImage() == null) {
       throw new BoomerangException(
           1, "NO_TASK_IMAGE", HttpStatus.BAD_REQUEST, task.getClass().toString());
-    } else {
-      try {
-        kubeService.createTaskConfigMap(
-            task.getWorkflowRef(),
-            task.getWorkflowRunRef(),
-            task.getName(),
-            task.getId(),
-            task.getLabels(),
-            task.getParams());
-        tektonService.createTaskRun(
-            task.getWorkflowRef(),
-            task.getWorkflowRunRef(),
-            task.getId(),
-            task.getName(),
-            task.getLabels(),
-            task.getSpec().getImage(),
-            task.getSpec().getCommand(),
-            task.getSpec().getScript(),
-            task.getSpec().getArguments(),
-            task.getParams(),
-            task.getSpec().getEnvs(),
-            task.getResults(),
-            task.getSpec().getWorkingDir(),
-            task.getWorkspaces(),
-            waitUntilTimeout,
-            getTaskTimeout(task.getTimeout()),
-            task.getSpec().getDebug());
-        results =
-            tektonService.watchTaskRun(
-                task.getWorkflowRef(),
-                task.getWorkflowRunRef(),
-                task.getId(),
-                task.getLabels(),
-                getTaskTimeout(task.getTimeout()));
-        if (getTaskDeletion(task.getSpec().getDeletion()).equals(TaskDeletion.OnSuccess)) {
-          // This will only delete on success as failure throws an Exception.
-          this.deleteTaskRun(
-              task.getWorkflowRef(), task.getWorkflowRunRef(), task.getId(), task.getLabels());
-        }
-      } catch (KubernetesClientException e) {
-        // KubernetesClientException handles the case where an internal admission
-        // controller rejects the creation
-        if (e.getMessage().contains("admission webhook")) {
-          LOGGER.info(e.toString());
-          throw new BoomerangException(
-              1, "ADMISSION_WEBHOOK_DENIED", HttpStatus.BAD_REQUEST, e.getMessage());
-        } else {
-          throw new BoomerangException(e, 1, e.toString(), HttpStatus.INTERNAL_SERVER_ERROR);
-        }
-      } catch (KubeRuntimeException e) {
-        LOGGER.info("DEBUG::Task Is Being Set as Failed");
-        throw new BoomerangException(e, 1, e.toString(), HttpStatus.INTERNAL_SERVER_ERROR);
-      } catch (InterruptedException e) {
-        throw new BoomerangException(
-            1, "TASK_CREATION_ERROR", HttpStatus.INTERNAL_SERVER_ERROR, e.getMessage());
-      } catch (ParseException e) {
+    }
+    boolean created = false;
+    try {
+      kubeService.createTaskConfigMap(
+          task.getWorkflowRef(),
+          task.getWorkflowRunRef(),
+          task.getName(),
+          task.getId(),
+          task.getLabels(),
+          task.getParams());
+      tektonService.createTaskRun(
+          task.getWorkflowRef(),
+          task.getWorkflowRunRef(),
+          task.getId(),
+          task.getName(),
+          task.getLabels(),
+          task.getSpec().getImage(),
+          task.getSpec().getCommand(),
+          task.getSpec().getScript(),
+          task.getSpec().getArguments(),
+          task.getParams(),
+          task.getSpec().getEnvs(),
+          task.getResults(),
+          task.getSpec().getWorkingDir(),
+          task.getWorkspaces(),
+          waitUntilTimeout,
+          getTaskTimeout(task.getTimeout()),
+          task.getSpec().getDebug());
+      CompletableFuture<TaskResponse> result =
+          tektonService
+              .watchTaskRun(
+                  task.getWorkflowRef(),
+                  task.getWorkflowRunRef(),
+                  task.getId(),
+                  task.getLabels(),
+                  getTaskTimeout(task.getTimeout()))
+              .handle(
+                  (results, ex) -> {
+                    try {
+                      if (ex != null) {
+                        throw toBoomerangException(ex);
+                      }
+                      response.setResults(results);
+                      if (getTaskDeletion(task.getSpec().getDeletion())
+                          .equals(TaskDeletion.OnSuccess)) {
+                        // This will only delete on success as failure throws an Exception.
+                        this.deleteTaskRun(
+                            task.getWorkflowRef(),
+                            task.getWorkflowRunRef(),
+                            task.getId(),
+                            task.getLabels());
+                      }
+                      return response;
+                    } finally {
+                      cleanUp(task, response);
+                    }
+                  });
+      created = true;
+      return result;
+    } catch (KubernetesClientException e) {
+      // KubernetesClientException handles the case where an internal admission
+      // controller rejects the creation
+      if (e.getMessage().contains("admission webhook")) {
+        LOGGER.info(e.toString());
         throw new BoomerangException(
-            1, "TASK_CREATION_TIMEOUT_ERROR", HttpStatus.INTERNAL_SERVER_ERROR, e.getMessage());
-      } finally {
-        response.setResults(results);
-        kubeService.deleteTaskConfigMap(
-            task.getWorkflowRef(), task.getWorkflowRunRef(), task.getId(), task.getLabels());
-        if (getTaskDeletion(task.getSpec().getDeletion()).equals(TaskDeletion.Always)) {
-          this.deleteTaskRun(
-              task.getWorkflowRef(), task.getWorkflowRunRef(), task.getId(), task.getLabels());
-        }
-        LOGGER.info("Task (" + task.getId() + ") has completed with code " + response.getCode());
+            1, "ADMISSION_WEBHOOK_DENIED", HttpStatus.BAD_REQUEST, e.getMessage());
+      } else {
+        throw new BoomerangException(e, 1, e.toString(), HttpStatus.INTERNAL_SERVER_ERROR);
+      }
+    } catch (KubeRuntimeException e) {
+      LOGGER.info("DEBUG::Task Is Being Set as Failed");
+      throw new BoomerangException(e, 1, e.toString(), HttpStatus.INTERNAL_SERVER_ERROR);
+    } catch (InterruptedException e) {
+      throw new BoomerangException(
+          1, "TASK_CREATION_ERROR", HttpStatus.INTERNAL_SERVER_ERROR, e.getMessage());
+    } catch (ParseException e) {
+      throw new BoomerangException(
+          1, "TASK_CREATION_TIMEOUT_ERROR", HttpStatus.INTERNAL_SERVER_ERROR, e.getMessage());
+    } finally {
+      if (!created) {
+        cleanUp(task, response);
       }
     }
-    return response;
+  }
+
+  private void cleanUp(TaskRun task, TaskResponse response) {
+    kubeService.deleteTaskConfigMap(
+        task.getWorkflowRef(), task.getWorkflowRunRef(), task.getId(), task.getLabels());
+    if (getTaskDeletion(task.getSpec().getDeletion()).equals(TaskDeletion.Always)) {
+      this.deleteTaskRun(
+          task.getWorkflowRef(), task.getWorkflowRunRef(), task.getId(), task.getLabels());
+    }
+    LOGGER.info("Task (" + task.getId() + ") has completed with code " + response.getCode());
+  }
+
+  private BoomerangException toBoomerangException(Throwable ex) {
+    Throwable cause =
+        ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+    if (cause instanceof BoomerangException boomerangException) {
+      return boomerangException;
+    }
+    return new BoomerangException(cause, 1, cause.toString(), HttpStatus.INTERNAL_SERVER_ERROR);
   }
 
   @Async
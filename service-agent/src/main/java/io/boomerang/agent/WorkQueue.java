@@ -0,0 +1,155 @@
+package io.boomerang.agent;
+
+import jakarta.annotation.PostConstruct;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/*
+ * Bounded local work queue that governs how much work the agent takes on
+ *
+ * WorkflowRuns and each task type run in their own lane with a configurable concurrency. A slot is
+ * held from the moment the work begins until it completes, which for a TaskRun is when the TaskRun
+ * finishes rather than when the executor thread returns. Work beyond a lane's concurrency waits in
+ * the lane. Each lane's free slots, less its waiting work, determine how much of that lane's work
+ * the agent claims from the Engine, so the agent never claims more of a task type than the lane for
+ * that type can start.
+ */
+@Service
+public class WorkQueue {
+
+  private static final Logger LOGGER = LogManager.getLogger(WorkQueue.class);
+
+  public static final String WORKFLOW = "workflow";
+
+  @Value("${flow.agent.concurrency.workflow:10}")
+  private int workflowConcurrency;
+
+  @Value("${flow.agent.concurrency.task:20}")
+  private int taskConcurrency;
+
+  @Value("#{${flow.agent.concurrency.task-types:{:}}}")
+  private Map<String, Integer> taskTypeConcurrency;
+
+  @Value("${flow.agent.task-types}")
+  private List<String> taskTypes;
+
+  private final Executor executor;
+  private final Map<String, Lane> lanes = new ConcurrentHashMap<>();
+
+  public WorkQueue(@Qualifier("taskExecutor") Executor executor) {
+    this.executor = executor;
+  }
+
+  @PostConstruct
+  public void init() {
+    lanes.put(WORKFLOW, new Lane(workflowConcurrency));
+    taskTypes.forEach(
+        type -> lanes.put(type, new Lane(taskTypeConcurrency.getOrDefault(type, taskConcurrency))));
+    LOGGER.info("Work queue lanes: {}", lanes);
+  }
+
+  /*
+   * Queue work in a lane. The slot is held until the future returned by the work completes.
+   */
+  public void submit(String lane, Supplier<CompletableFuture<?>> work) {
+    lanes.computeIfAbsent(lane, type -> new Lane(taskConcurrency)).submit(work);
+  }
+
+  /*
+   * Run work that does not take a slot, such as terminating or finalizing a run
+   */
+  public void execute(Runnable work) {
+    executor.execute(work);
+  }
+
+  public int getFreeWorkflowSlots() {
+    return lanes.get(WORKFLOW).free();
+  }
+
+  /*
+   * The free slots of each task type's lane
+   */
+  public Map<String, Integer> getFreeTaskSlots() {
+    Map<String, Integer> free = new LinkedHashMap<>();
+    taskTypes.forEach(type -> free.put(type, lanes.get(type).free()));
+    return free;
+  }
+
+  /*
+   * Admits at most max units of work at a time, queueing the rest in order
+   */
+  private final class Lane {
+    private final int max;
+    private final AtomicInteger active = new AtomicInteger();
+    // Work that has been claimed and is waiting for a slot
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final Queue<Supplier<CompletableFuture<?>>> pending = new ConcurrentLinkedQueue<>();
+
+    Lane(int max) {
+      this.max = max;
+    }
+
+    int free() {
+      return Math.max(max - active.get() - waiting.get(), 0);
+    }
+
+    void submit(Supplier<CompletableFuture<?>> work) {
+      waiting.incrementAndGet();
+      pending.add(work);
+      drain();
+    }
+
+    void release() {
+      active.decrementAndGet();
+      drain();
+    }
+
+    private void drain() {
+      while (!pending.isEmpty()) {
+        int current = active.get();
+        if (current >= max) {
+          return;
+        }
+        if (!active.compareAndSet(current, current + 1)) {
+          continue;
+        }
+        Supplier<CompletableFuture<?>> work = pending.poll();
+        if (work == null) {
+          active.decrementAndGet();
+          continue;
+        }
+        waiting.decrementAndGet();
+        executor.execute(() -> run(work));
+      }
+    }
+
+    private void run(Supplier<CompletableFuture<?>> work) {
+      CompletableFuture<?> done;
+      try {
+        done = work.get();
+      } catch (RuntimeException e) {
+        LOGGER.fatal("A fatal error has occurred while processing the message!", e);
+        done = CompletableFuture.completedFuture(null);
+      }
+      done.whenComplete((result, ex) -> release());
+    }
+
+    @Override
+    public String toString() {
+      return active.get() + "/" + max;
+    }
+  }
+}
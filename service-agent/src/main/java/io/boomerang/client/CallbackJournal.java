@@ -0,0 +1,348 @@
+package io.boomerang.client;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+/*
+ * Append-only journal of the status callbacks to the Engine
+ *
+ * A callback is written to the journal before it is sent and an acknowledgement is appended once
+ * the Engine has accepted it, so callbacks are delivered at least once, including across a
+ * restart as long as the journal directory is on a persistent volume. Delivery happens on the
+ * journal's own threads with exponential backoff so the executing
+ * thread is never blocked by an unavailable Engine. Callbacks for a run are delivered in order, and
+ * a callback still waiting behind another for the same run is replaced by a newer one of the same
+ * type. Each callback carries an Idempotency-Key so the Engine can recognise a redelivery.
+ */
+@Service
+public class CallbackJournal {
+
+  private static final Logger LOGGER = LogManager.getLogger(CallbackJournal.class);
+
+  public static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+
+  private static final String FILE_NAME = "callbacks.log";
+
+  // Acknowledgements after which the journal is rewritten with only the undelivered callbacks
+  private static final int COMPACT_THRESHOLD = 1000;
+
+  @Value("${flow.agent.journal.dir:/opt/boomerang/journal}")
+  private String journalDir;
+
+  @Value("${flow.agent.journal.sync:true}")
+  private boolean sync;
+
+  @Value("${flow.agent.journal.threads:4}")
+  private int threads;
+
+  @Value("${flow.agent.journal.backoff.initial:1000}")
+  private long initialBackoff;
+
+  @Value("${flow.agent.journal.backoff.max:60000}")
+  private long maxBackoff;
+
+  @Value("${flow.agent.journal.shutdown.timeout:10000}")
+  private long shutdownTimeout;
+
+  private final RestTemplate restTemplate;
+  private final ObjectMapper objectMapper;
+  // Undelivered callbacks in order per run. Guarded by this.
+  private final Map<String, Deque<Pending>> runs = new LinkedHashMap<>();
+  private Path journal;
+  private FileChannel channel;
+  private ScheduledExecutorService executor;
+  private int acknowledged;
+  private boolean closed;
+
+  /*
+   * A line of the journal. Either a callback, or the acknowledgement of the callback with that id.
+   */
+  @JsonInclude(JsonInclude.Include.NON_NULL)
+  record Entry(String id, String runRef, String type, String url, JsonNode body, String ack) {}
+
+  private static final class Pending {
+    private Entry entry;
+    private int attempts;
+    private boolean inFlight;
+
+    Pending(Entry entry) {
+      this.entry = entry;
+    }
+  }
+
+  public CallbackJournal(
+      @Qualifier("internalRestTemplate") RestTemplate restTemplate, ObjectMapper objectMapper) {
+    this.restTemplate = restTemplate;
+    this.objectMapper = objectMapper;
+  }
+
+  @PostConstruct
+  public void init() throws IOException {
+    executor =
+        new ScheduledThreadPoolExecutor(
+            threads,
+            runnable -> {
+              Thread thread = new Thread(runnable, "callback-journal");
+              thread.setDaemon(true);
+              return thread;
+            });
+    Path dir = Paths.get(journalDir);
+    Files.createDirectories(dir);
+    journal = dir.resolve(FILE_NAME);
+    synchronized (this) {
+      for (Entry entry : replay()) {
+        runs.computeIfAbsent(entry.runRef(), runRef -> new ArrayDeque<>())
+            .add(new Pending(entry));
+      }
+      compact();
+      if (!runs.isEmpty()) {
+        LOGGER.info("Replaying {} undelivered Engine callbacks.", getPending());
+      }
+      runs.keySet().forEach(runRef -> executor.execute(() -> deliver(runRef)));
+    }
+  }
+
+  /*
+   * Waits for the in flight deliveries before closing the journal. A callback still undelivered is
+   * replayed on the next start.
+   */
+  @PreDestroy
+  public void destroy() throws IOException, InterruptedException {
+    executor.shutdownNow();
+    if (!executor.awaitTermination(shutdownTimeout, TimeUnit.MILLISECONDS)) {
+      LOGGER.warn("Closing the callback journal with deliveries still in flight.");
+    }
+    synchronized (this) {
+      closed = true;
+      channel.close();
+    }
+  }
+
+  /*
+   * Journal a callback and deliver it in the background
+   */
+  public void submit(String runRef, String type, String url, Object body) {
+    Entry entry =
+        new Entry(
+            UUID.randomUUID().toString(),
+            runRef,
+            type,
+            url,
+            body != null ? objectMapper.valueToTree(body) : objectMapper.createObjectNode(),
+            null);
+    synchronized (this) {
+      append(entry);
+      Deque<Pending> queue = runs.computeIfAbsent(runRef, key -> new ArrayDeque<>());
+      for (Pending pending : queue) {
+        if (!pending.inFlight
+            && pending != queue.peekFirst()
+            && type.equals(pending.entry.type())) {
+          LOGGER.debug("Coalescing {} callback for {}", type, runRef);
+          append(new Entry(null, null, null, null, null, pending.entry.id()));
+          pending.entry = entry;
+          pending.attempts = 0;
+          return;
+        }
+      }
+      queue.add(new Pending(entry));
+      if (queue.size() == 1) {
+        executor.execute(() -> deliver(runRef));
+      }
+    }
+  }
+
+  public synchronized int getPending() {
+    return runs.values().stream().mapToInt(Deque::size).sum();
+  }
+
+  private void deliver(String runRef) {
+    Pending pending;
+    synchronized (this) {
+      Deque<Pending> queue = runs.get(runRef);
+      pending = queue != null ? queue.peekFirst() : null;
+      if (pending == null || pending.inFlight) {
+        return;
+      }
+      pending.inFlight = true;
+    }
+    Entry entry = pending.entry;
+    boolean delivered = send(entry);
+    synchronized (this) {
+      if (closed) {
+        return;
+      }
+      pending.inFlight = false;
+      if (delivered) {
+        Deque<Pending> queue = runs.get(runRef);
+        queue.pollFirst();
+        append(new Entry(null, null, null, null, null, entry.id()));
+        if (queue.isEmpty()) {
+          runs.remove(runRef);
+        } else {
+          executor.execute(() -> deliver(runRef));
+        }
+        acknowledged++;
+        if (runs.isEmpty()) {
+          truncate();
+        } else if (acknowledged >= COMPACT_THRESHOLD) {
+          compact();
+        }
+      } else {
+        pending.attempts++;
+        executor.schedule(() -> deliver(runRef), backoff(pending.attempts), TimeUnit.MILLISECONDS);
+      }
+    }
+  }
+
+  private boolean send(Entry entry) {
+    try {
+      final HttpHeaders headers = new HttpHeaders();
+      headers.setContentType(MediaType.APPLICATION_JSON);
+      headers.set(IDEMPOTENCY_KEY, entry.id());
+      restTemplate.exchange(
+          entry.url(), HttpMethod.PUT, new HttpEntity<>(entry.body(), headers), Void.class);
+      LOGGER.info("Delivered {} callback for {}", entry.type(), entry.runRef());
+      return true;
+    } catch (HttpClientErrorException ex) {
+      if (ex.getStatusCode().isSameCodeAs(HttpStatus.REQUEST_TIMEOUT)
+          || ex.getStatusCode().isSameCodeAs(HttpStatus.TOO_MANY_REQUESTS)) {
+        return false;
+      }
+      // Retrying a callback the Engine has rejected will not help
+      LOGGER.error(
+          "Engine rejected {} callback for {}: {}", entry.type(), entry.runRef(), ex.toString());
+      return true;
+    } catch (RestClientException ex) {
+      LOGGER.warn(
+          "Unable to deliver {} callback for {}: {}", entry.type(), entry.runRef(), ex.toString());
+      return false;
+    }
+  }
+
+  private long backoff(int attempts) {
+    long delay = initialBackoff << Math.min(attempts - 1, 20);
+    delay = Math.min(delay, maxBackoff);
+    // Jitter so that callbacks held back by an outage do not all retry at once
+    return delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+  }
+
+  private void append(Entry entry) {
+    try {
+      byte[] line =
+          (objectMapper.writeValueAsString(entry) + "\n").getBytes(StandardCharsets.UTF_8);
+      ByteBuffer buffer = ByteBuffer.wrap(line);
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+      if (sync) {
+        channel.force(false);
+      }
+    } catch (IOException ex) {
+      throw new UncheckedIOException("Unable to write to the callback journal", ex);
+    }
+  }
+
+  /*
+   * Read the undelivered callbacks from the journal
+   */
+  private Iterable<Entry> replay() throws IOException {
+    Map<String, Entry> entries = new LinkedHashMap<>();
+    if (Files.exists(journal)) {
+      for (String line : Files.readAllLines(journal, StandardCharsets.UTF_8)) {
+        if (line.isBlank()) {
+          continue;
+        }
+        try {
+          Entry entry = objectMapper.readValue(line, Entry.class);
+          if (entry.ack() != null) {
+            entries.remove(entry.ack());
+          } else {
+            entries.put(entry.id(), entry);
+          }
+        } catch (IOException ex) {
+          // A torn write from a crash can only be the last line
+          LOGGER.warn("Skipping unreadable callback journal entry: {}", line);
+        }
+      }
+    }
+    return entries.values();
+  }
+
+  /*
+   * Nothing is left to deliver so the journal can simply be emptied
+   */
+  private void truncate() {
+    try {
+      channel.truncate(0);
+      if (sync) {
+        channel.force(false);
+      }
+      acknowledged = 0;
+    } catch (IOException ex) {
+      throw new UncheckedIOException("Unable to truncate the callback journal", ex);
+    }
+  }
+
+  /*
+   * Rewrite the journal with only the undelivered callbacks
+   */
+  private void compact() {
+    try {
+      if (channel != null) {
+        channel.close();
+      }
+      Path compacted = journal.resolveSibling(FILE_NAME + ".tmp");
+      try (FileChannel out =
+          FileChannel.open(
+              compacted,
+              StandardOpenOption.CREATE,
+              StandardOpenOption.WRITE,
+              StandardOpenOption.TRUNCATE_EXISTING)) {
+        channel = out;
+        runs.values().forEach(queue -> queue.forEach(pending -> append(pending.entry)));
+        out.force(true);
+      }
+      Files.move(
+          compacted, journal, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      channel = FileChannel.open(journal, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+      acknowledged = 0;
+    } catch (IOException ex) {
+      throw new UncheckedIOException("Unable to compact the callback journal", ex);
+    }
+  }
+}
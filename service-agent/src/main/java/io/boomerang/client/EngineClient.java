@@ -1,10 +1,13 @@
 package io.boomerang.client;
 
 import io.boomerang.agent.QueueService;
+import io.boomerang.agent.WorkQueue;
 import io.boomerang.common.model.*;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -14,7 +17,6 @@ import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.*;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
 
 @Service
@@ -49,6 +51,9 @@ public class EngineClient {
   @Value("${flow.engine.agent.taskqueue.url}")
   private String agentQueueTaskURL;
 
+  @Value("${flow.engine.agent.heartbeat.url}")
+  private String agentHeartbeatURL;
+
   @Value("${flow.agent.task-types}")
   private List<String> taskTypes;
 
@@ -61,64 +66,38 @@ public class EngineClient {
 
   @Autowired public QueueService queueService;
 
+  @Autowired private EngineStreamClient engineStreamClient;
+
+  @Autowired private WorkQueue workQueue;
+
+  @Autowired private CallbackJournal callbackJournal;
+
+  public String getAgentId() {
+    return agentId;
+  }
+
+  /*
+   * The status callbacks below are journaled and delivered in the background by the
+   * CallbackJournal, so that they survive an Engine outage or an agent restart.
+   */
   public void startWorkflow(String wfRunId) {
-    try {
-      String url = startWorkflowRunURL.replace("{workflowRunId}", wfRunId);
-      final HttpHeaders headers = new HttpHeaders();
-      headers.setContentType(MediaType.APPLICATION_JSON);
-      HttpEntity<String> entity = new HttpEntity<String>("{}", headers);
-      ResponseEntity<Void> response =
-          restTemplate.exchange(url, HttpMethod.PUT, entity, Void.class);
-
-      LOGGER.info(response.getStatusCode());
-    } catch (RestClientException ex) {
-      LOGGER.error(ex.toString());
-    }
+    String url = startWorkflowRunURL.replace("{workflowRunId}", wfRunId);
+    callbackJournal.submit(wfRunId, "startWorkflow", url, null);
   }
 
   public void finalizeWorkflow(String wfRunId) {
-    try {
-      String url = finalizeWorkflowRunURL.replace("{workflowRunId}", wfRunId);
-      final HttpHeaders headers = new HttpHeaders();
-      headers.setContentType(MediaType.APPLICATION_JSON);
-      HttpEntity<String> entity = new HttpEntity<String>("{}", headers);
-      ResponseEntity<Void> response =
-          restTemplate.exchange(url, HttpMethod.PUT, entity, Void.class);
-
-      LOGGER.info(response.getStatusCode());
-    } catch (RestClientException ex) {
-      LOGGER.error(ex.toString());
-    }
+    String url = finalizeWorkflowRunURL.replace("{workflowRunId}", wfRunId);
+    callbackJournal.submit(wfRunId, "finalizeWorkflow", url, null);
   }
 
   public void startTask(String taskRunId) {
-    try {
-      String url = startTaskRunURL.replace("{taskRunId}", taskRunId);
-      final HttpHeaders headers = new HttpHeaders();
-      headers.setContentType(MediaType.APPLICATION_JSON);
-      HttpEntity<String> entity = new HttpEntity<String>("{}", headers);
-      ResponseEntity<Void> response =
-          restTemplate.exchange(url, HttpMethod.PUT, entity, Void.class);
-
-      LOGGER.info(response.getStatusCode());
-    } catch (RestClientException ex) {
-      LOGGER.error(ex.toString());
-    }
+    String url = startTaskRunURL.replace("{taskRunId}", taskRunId);
+    callbackJournal.submit(taskRunId, "startTask", url, null);
   }
 
   public void endTask(String taskRunId, TaskRunEndRequest endRequest) {
-    try {
-      String url = endTaskRunURL.replace("{taskRunId}", taskRunId);
-      final HttpHeaders headers = new HttpHeaders();
-      headers.setContentType(MediaType.APPLICATION_JSON);
-      HttpEntity<TaskRunEndRequest> entity = new HttpEntity<TaskRunEndRequest>(endRequest, headers);
-      ResponseEntity<Void> response =
-          restTemplate.exchange(url, HttpMethod.PUT, entity, Void.class);
-
-      LOGGER.info(response.getStatusCode());
-    } catch (RestClientException ex) {
-      LOGGER.error(ex.toString());
-    }
+    String url = endTaskRunURL.replace("{taskRunId}", taskRunId);
+    callbackJournal.submit(taskRunId, "endTask", url, endRequest);
   }
 
   /**
@@ -153,15 +132,49 @@ public class EngineClient {
     }
   }
 
+  /**
+   * Extends the agents claim on WorkflowRuns and TaskRuns it has received but not yet started.
+   * Claims that are not extended are released by the engine for another agent to pick up.
+   */
+  @Scheduled(fixedDelayString = "${flow.agent.heartbeat.interval:30000}")
+  public void heartbeat() {
+    try {
+      String url = agentHeartbeatURL.replace("{agentId}", agentId);
+      restTemplate.exchange(url, HttpMethod.PUT, null, Void.class);
+    } catch (Exception e) {
+      LOGGER.warn("Error sending heartbeat for Agent ({}): {}", agentId, e.getMessage());
+    }
+  }
+
+  /*
+   * The queues are only polled while the dispatch stream is disconnected, as the Engine pushes all
+   * of the agent's work over the stream. Only claim what the WorkQueue has room for, with a limit
+   * per task type from the free slots of that type's lane.
+   */
   @Scheduled(fixedDelay = HEARTBEAT_INTERVAL)
   public void retrieveAgentWorkflowQueue() {
-    String url = agentQueueWorkflowURL.replace("{agentId}", agentId);
+    if (engineStreamClient.isConnected()) {
+      return;
+    }
+    String url =
+        agentQueueWorkflowURL.replace("{agentId}", agentId)
+            + "?limit="
+            + workQueue.getFreeWorkflowSlots();
     retrieveAgentQueue(url, true);
   }
 
   @Scheduled(fixedDelay = HEARTBEAT_INTERVAL)
   public void retrieveAgentTaskQueue() {
-    String url = agentQueueTaskURL.replace("{agentId}", agentId);
+    if (engineStreamClient.isConnected()) {
+      return;
+    }
+    // Sent even when there are no free slots, as the TaskRuns to terminate are also returned
+    Map<String, Integer> free = workQueue.getFreeTaskSlots();
+    String url =
+        agentQueueTaskURL.replace("{agentId}", agentId)
+            + free.entrySet().stream()
+                .map(e -> "limits=" + e.getKey() + ":" + e.getValue())
+                .collect(Collectors.joining("&", "?", ""));
     retrieveAgentQueue(url, false);
   }
 
@@ -171,9 +184,6 @@ public class EngineClient {
    * <p>200 means there are workflow runs available
    *
    * <p>204 means there are no workflow runs available
-   *
-   * <p>TODO in the future optimise the Async to have a LinkedBlockingQueue with maximum size of
-   * what it can achieve
    */
   private void retrieveAgentQueue(String url, boolean isWorkflow) {
     LOGGER.info(
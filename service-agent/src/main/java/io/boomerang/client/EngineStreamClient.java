@@ -0,0 +1,242 @@
+package io.boomerang.client;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.boomerang.agent.QueueService;
+import io.boomerang.agent.WorkQueue;
+import io.boomerang.common.model.TaskRun;
+import io.boomerang.common.model.WorkflowRun;
+import jakarta.annotation.PreDestroy;
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpMethod;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestTemplate;
+
+/*
+ * Receives claimed WorkflowRuns and TaskRuns pushed by the Engine over Server-Sent Events.
+ *
+ * Flow control is credit based. Once connected the agent grants the free slots of each WorkQueue
+ * lane as credits, for WorkflowRuns and for each task type, and grants further credits as slots
+ * free up. The Engine never pushes more runs of a kind than its credits. The WorkflowRuns to
+ * finalize and TaskRuns to terminate are also pushed, without using credits, so the queue polling
+ * in the EngineClient is paused while connected. If the stream is disconnected the polling resumes.
+ */
+@Service
+public class EngineStreamClient {
+
+  private static final Logger LOGGER = LogManager.getLogger(EngineStreamClient.class);
+
+  private static final long MAX_RECONNECT_DELAY = 30000L;
+
+  @Value("${flow.engine.agent.stream.url}")
+  private String agentStreamURL;
+
+  @Value("${flow.engine.agent.credits.url}")
+  private String agentCreditsURL;
+
+  @Value("${flow.agent.dispatch.stream.enabled:true}")
+  private boolean streamEnabled;
+
+  private final QueueService queueService;
+
+  private final WorkQueue workQueue;
+
+  private final RestTemplate restTemplate;
+
+  private final ObjectMapper objectMapper;
+
+  private final HttpClient httpClient =
+      HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
+
+  // Credits granted to the Engine that have not yet been used by a pushed run, keyed by lane
+  private final Map<String, AtomicInteger> outstandingCredits = new ConcurrentHashMap<>();
+
+  private volatile boolean connected = false;
+  private volatile boolean running = true;
+  private volatile String agentId;
+  private Thread streamThread;
+
+  public EngineStreamClient(
+      QueueService queueService,
+      WorkQueue workQueue,
+      @Qualifier("internalRestTemplate") RestTemplate restTemplate,
+      ObjectMapper objectMapper) {
+    this.queueService = queueService;
+    this.workQueue = workQueue;
+    this.restTemplate = restTemplate;
+    this.objectMapper = objectMapper;
+  }
+
+  public boolean isConnected() {
+    return connected;
+  }
+
+  /** Starts the stream for the registered agent, reconnecting with a backoff until shutdown. */
+  public void start(String agentId) {
+    if (!streamEnabled) {
+      LOGGER.info("Dispatch stream disabled. Agent will poll the Engine queues.");
+      return;
+    }
+    this.agentId = agentId;
+    streamThread = new Thread(this::run, "engine-stream");
+    streamThread.setDaemon(true);
+    streamThread.start();
+  }
+
+  @PreDestroy
+  public void stop() {
+    running = false;
+    if (streamThread != null) {
+      streamThread.interrupt();
+    }
+  }
+
+  /*
+   * Grant the Engine the slots of each lane that have freed up since the last grant
+   */
+  @Scheduled(fixedDelayString = "${flow.agent.dispatch.credit.interval:1000}")
+  public synchronized void grantCredits() {
+    if (!connected) {
+      return;
+    }
+    Map<String, Integer> grants = new HashMap<>();
+    freeSlots()
+        .forEach(
+            (lane, free) -> {
+              int grant = free - outstanding(lane).get();
+              if (grant > 0) {
+                grants.put(lane, grant);
+              }
+            });
+    if (grants.isEmpty()) {
+      return;
+    }
+    try {
+      String url = agentCreditsURL.replace("{agentId}", agentId);
+      restTemplate.exchange(url, HttpMethod.PUT, new HttpEntity<>(grants), Void.class);
+      grants.forEach((lane, grant) -> outstanding(lane).addAndGet(grant));
+    } catch (Exception e) {
+      LOGGER.warn("Error granting credits to Engine: {}", e.getMessage());
+    }
+  }
+
+  private void run() {
+    long delay = 1000L;
+    while (running) {
+      try {
+        // Credits granted to a previous stream are not carried over by the Engine
+        outstandingCredits.clear();
+        String url = agentStreamURL.replace("{agentId}", agentId);
+        HttpRequest request =
+            HttpRequest.newBuilder(URI.create(url)).header("Accept", "text/event-stream").build();
+        HttpResponse<InputStream> response =
+            httpClient.send(request, HttpResponse.BodyHandlers.ofInputStream());
+        if (response.statusCode() != 200) {
+          LOGGER.warn(
+              "Dispatch stream returned {}. Falling back to polling.", response.statusCode());
+          response.body().close();
+        } else {
+          LOGGER.info("Connected to Engine dispatch stream.");
+          connected = true;
+          delay = 1000L;
+          grantCredits();
+          read(response);
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      } catch (Exception e) {
+        LOGGER.warn("Dispatch stream error: {}. Falling back to polling.", e.getMessage());
+      } finally {
+        connected = false;
+      }
+      try {
+        Thread.sleep(delay);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+      delay = Math.min(delay * 2, MAX_RECONNECT_DELAY);
+    }
+  }
+
+  /*
+   * Minimal Server-Sent Events parser. Events are separated by a blank line and comments
+   * (keepalives) start with a colon.
+   */
+  private void read(HttpResponse<InputStream> response) throws Exception {
+    try (BufferedReader reader =
+        new BufferedReader(new InputStreamReader(response.body(), StandardCharsets.UTF_8))) {
+      String event = null;
+      StringBuilder data = new StringBuilder();
+      String line;
+      while (running && (line = reader.readLine()) != null) {
+        if (line.isEmpty()) {
+          if (event != null && data.length() > 0) {
+            dispatch(event, data.toString());
+          }
+          event = null;
+          data.setLength(0);
+        } else if (line.startsWith("event:")) {
+          event = line.substring(6).trim();
+        } else if (line.startsWith("data:")) {
+          if (data.length() > 0) {
+            data.append('\n');
+          }
+          data.append(line.substring(5).trim());
+        }
+      }
+    }
+    LOGGER.info("Engine dispatch stream closed.");
+  }
+
+  private void dispatch(String event, String data) throws Exception {
+    switch (event) {
+      case "workflowrun" -> {
+        outstanding(WorkQueue.WORKFLOW).decrementAndGet();
+        queueService.processWorkflowRun(objectMapper.readValue(data, WorkflowRun.class));
+      }
+      case "taskrun" -> {
+        TaskRun taskRun = objectMapper.readValue(data, TaskRun.class);
+        outstanding(taskRun.getType().getLabel()).decrementAndGet();
+        queueService.processTaskRun(taskRun);
+      }
+      // Finalizations and terminations do not use credits
+      case "finalize" ->
+          queueService.processWorkflowRun(objectMapper.readValue(data, WorkflowRun.class));
+      case "terminate" ->
+          queueService.processTaskRun(objectMapper.readValue(data, TaskRun.class));
+      default -> LOGGER.debug("Ignoring unknown dispatch event: {}", event);
+    }
+  }
+
+  /*
+   * The free slots of the WorkflowRun lane and each task type's lane
+   */
+  private Map<String, Integer> freeSlots() {
+    Map<String, Integer> free = new HashMap<>(workQueue.getFreeTaskSlots());
+    free.put(WorkQueue.WORKFLOW, workQueue.getFreeWorkflowSlots());
+    return free;
+  }
+
+  private AtomicInteger outstanding(String lane) {
+    return outstandingCredits.computeIfAbsent(lane, l -> new AtomicInteger());
+  }
+}
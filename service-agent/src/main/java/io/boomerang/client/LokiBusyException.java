@@ -0,0 +1,14 @@
+package io.boomerang.client;
+
+import java.io.IOException;
+
+/*
+ * Raised when a log stream is refused because every connection to Loki is in use
+ */
+public class LokiBusyException extends IOException {
+  private static final long serialVersionUID = 1L;
+
+  public LokiBusyException(String message) {
+    super(message);
+  }
+}
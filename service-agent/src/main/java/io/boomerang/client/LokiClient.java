@@ -0,0 +1,297 @@
+package io.boomerang.client;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import org.apache.hc.client5.http.classic.methods.HttpGet;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.util.Timeout;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/*
+ * Streams log lines from Loki's query_range API
+ *
+ * A single pooled HTTP client is shared by all log requests. Each page of results is parsed as it
+ * is read and every line is handed to the writer as soon as it is parsed, through a bounded buffer,
+ * so a page is never held in memory. The next page is requested as soon as the current one has been
+ * parsed, while the writer is still working through the buffered lines.
+ *
+ * Each log stream holds a fetch thread and a pooled connection until its writer has finished, so at
+ * most pool size logs are streamed at once. A further stream is refused straight away with a
+ * LokiBusyException rather than queued behind slow viewers.
+ */
+@Service
+public class LokiClient {
+
+  private static final Logger LOGGER = LogManager.getLogger(LokiClient.class);
+
+  // Marks the end of the lines in the buffer
+  private static final byte[] END = new byte[0];
+
+  @Value("${agent.logging.host}")
+  private String lokiHost;
+
+  @Value("${agent.logging.port}")
+  private String lokiPort;
+
+  // Max lines per page supported by Loki
+  @Value("${agent.logging.loki.limit:5000}")
+  private int limit;
+
+  @Value("${agent.logging.loki.buffer:1000}")
+  private int bufferLines;
+
+  @Value("${agent.logging.loki.pool.size:20}")
+  private int poolSize;
+
+  @Value("${agent.logging.loki.timeout:60000}")
+  private long timeout;
+
+  private final JsonFactory jsonFactory = new JsonFactory();
+  private CloseableHttpClient httpClient;
+  private ExecutorService executor;
+
+  /*
+   * The position reached in the results. Loki pages by timestamp, so the next page starts at the
+   * last timestamp and skips the lines at that timestamp that have already been read.
+   */
+  private static final class Cursor {
+    private String start = "0";
+    private int skip;
+    private int lines;
+  }
+
+  @PostConstruct
+  public void init() {
+    PoolingHttpClientConnectionManager connectionManager =
+        PoolingHttpClientConnectionManagerBuilder.create()
+            .setMaxConnTotal(poolSize)
+            .setMaxConnPerRoute(poolSize)
+            .setDefaultConnectionConfig(
+                ConnectionConfig.custom()
+                    .setConnectTimeout(Timeout.ofMilliseconds(timeout))
+                    .setSocketTimeout(Timeout.ofMilliseconds(timeout))
+                    .build())
+            .build();
+    httpClient = HttpClients.custom().setConnectionManager(connectionManager).build();
+    ThreadPoolExecutor pool =
+        new ThreadPoolExecutor(
+            poolSize,
+            poolSize,
+            60,
+            TimeUnit.SECONDS,
+            new SynchronousQueue<>(),
+            runnable -> {
+              Thread thread = new Thread(runnable, "loki-fetch");
+              thread.setDaemon(true);
+              return thread;
+            });
+    pool.allowCoreThreadTimeOut(true);
+    executor = pool;
+  }
+
+  @PreDestroy
+  public void destroy() throws IOException {
+    executor.shutdownNow();
+    httpClient.close();
+  }
+
+  /*
+   * Write the lines matching the LogQL query to the output in order. Returns the number of lines.
+   */
+  public long streamQuery(String query, OutputStream outputStream) throws IOException {
+    final String uri =
+        "http://"
+            + lokiHost
+            + ":"
+            + lokiPort
+            + "/loki/api/v1/query_range?limit="
+            + limit
+            + "&direction=forward&query="
+            + URLEncoder.encode(query, StandardCharsets.UTF_8);
+    // If no `end` argument is defined, it will be automatically set to `now()` by server
+    LOGGER.info("Loki endpoint: " + uri);
+
+    BlockingQueue<Object> buffer = new ArrayBlockingQueue<>(bufferLines + 1);
+    Future<?> fetch;
+    try {
+      fetch = executor.submit(() -> fetch(uri, buffer));
+    } catch (RejectedExecutionException ex) {
+      throw new LokiBusyException("All " + poolSize + " Loki log streams are in use");
+    }
+    long lines = 0;
+    try {
+      while (true) {
+        Object item = buffer.poll(2 * timeout, TimeUnit.MILLISECONDS);
+        if (item == null) {
+          throw new IOException("Timed out waiting for logs from Loki");
+        } else if (item == END) {
+          return lines;
+        } else if (item instanceof IOException ex) {
+          throw ex;
+        } else if (item instanceof Exception ex) {
+          throw new IOException(ex);
+        }
+        outputStream.write((byte[]) item);
+        lines++;
+        if (buffer.isEmpty()) {
+          // Caught up with Loki, so deliver what has been written so far
+          outputStream.flush();
+        }
+      }
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while streaming logs from Loki");
+    } finally {
+      fetch.cancel(true);
+    }
+  }
+
+  /*
+   * Request and parse pages until Loki returns a partial page, buffering the lines for the writer
+   */
+  private void fetch(String uri, BlockingQueue<Object> buffer) {
+    Object end = END;
+    try {
+      Cursor cursor = new Cursor();
+      while (true) {
+        String start = cursor.start;
+        int skip = cursor.skip;
+        HttpGet request = new HttpGet(uri + "&start=" + start);
+        httpClient.execute(
+            request,
+            response -> {
+              if (response.getCode() >= 300 || response.getEntity() == null) {
+                throw new IOException("Loki responded " + response.getCode());
+              }
+              try (InputStream body = response.getEntity().getContent()) {
+                parse(body, cursor, buffer);
+              }
+              return null;
+            });
+        if (cursor.lines < limit || (cursor.start.equals(start) && cursor.skip == skip)) {
+          // A partial page is the last, and a page that does not move on would repeat forever
+          break;
+        }
+      }
+    } catch (IOException | RuntimeException ex) {
+      if (Thread.currentThread().isInterrupted()) {
+        // The writer has gone away
+        return;
+      }
+      end = ex;
+    }
+    try {
+      buffer.put(end);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /*
+   * Walk the query_range response, {"data":{"result":[{"values":[["<ns>","<line>"]]}]}}, passing
+   * each line to the buffer as it is read
+   */
+  private void parse(InputStream body, Cursor cursor, BlockingQueue<Object> buffer)
+      throws IOException {
+    String start = cursor.start;
+    int skip = cursor.skip;
+    String last = start;
+    int atLast = 0;
+    int lines = 0;
+    try (JsonParser parser = jsonFactory.createParser(body)) {
+      expect(parser.nextToken(), JsonToken.START_OBJECT);
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String field = parser.currentName();
+        parser.nextToken();
+        if (!"data".equals(field)) {
+          parser.skipChildren();
+          continue;
+        }
+        expect(parser.currentToken(), JsonToken.START_OBJECT);
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+          field = parser.currentName();
+          parser.nextToken();
+          if (!"result".equals(field)) {
+            parser.skipChildren();
+            continue;
+          }
+          expect(parser.currentToken(), JsonToken.START_ARRAY);
+          while (parser.nextToken() == JsonToken.START_OBJECT) {
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+              field = parser.currentName();
+              parser.nextToken();
+              if (!"values".equals(field)) {
+                parser.skipChildren();
+                continue;
+              }
+              expect(parser.currentToken(), JsonToken.START_ARRAY);
+              while (parser.nextToken() == JsonToken.START_ARRAY) {
+                String timestamp = parser.nextTextValue();
+                String line = parser.nextTextValue();
+                expect(parser.nextToken(), JsonToken.END_ARRAY);
+                if (timestamp == null || line == null) {
+                  throw new IOException("Unexpected Loki response, missing timestamp or line");
+                }
+                lines++;
+                if (timestamp.equals(last)) {
+                  atLast++;
+                } else {
+                  last = timestamp;
+                  atLast = 1;
+                }
+                if (timestamp.equals(start) && skip > 0) {
+                  // Already read as part of the previous page
+                  skip--;
+                  continue;
+                }
+                put(buffer, line.getBytes(StandardCharsets.UTF_8));
+              }
+            }
+          }
+        }
+      }
+    }
+    cursor.start = last;
+    cursor.skip = atLast;
+    cursor.lines = lines;
+  }
+
+  private void put(BlockingQueue<Object> buffer, byte[] line) throws InterruptedIOException {
+    try {
+      buffer.put(line);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException();
+    }
+  }
+
+  private static void expect(JsonToken token, JsonToken expected) throws IOException {
+    if (token != expected) {
+      throw new IOException("Unexpected Loki response, found " + token + " for " + expected);
+    }
+  }
+}
@@ -1,6 +1,7 @@
 package io.boomerang.config;
 
 import io.boomerang.client.EngineClient;
+import io.boomerang.client.EngineStreamClient;
 import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
@@ -10,9 +11,13 @@ public class StartupConfig {
 
   @Autowired private EngineClient engineClient;
 
+  @Autowired private EngineStreamClient engineStreamClient;
+
   @PostConstruct
   public void init() {
     // Register Agent into the Engine
     engineClient.registerAgent();
+    // Receive work pushed by the Engine. Polling remains as the fallback
+    engineStreamClient.start(engineClient.getAgentId());
   }
 }
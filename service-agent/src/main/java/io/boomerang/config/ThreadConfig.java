@@ -1,18 +1,37 @@
 package io.boomerang.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 
 @Configuration
 public class ThreadConfig {
 
+  @Value("${flow.agent.executor.size:20}")
+  private int executorSize;
+
   @Bean
   public ThreadPoolTaskScheduler taskScheduler() {
     ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
-    scheduler.setPoolSize(2);
+    scheduler.setPoolSize(4);
     scheduler.setThreadNamePrefix("scheduler-pool-");
     scheduler.initialize();
     return scheduler;
   }
+
+  /*
+   * Executor for the WorkQueue, and for the work that follows a TaskRun's completion. How much
+   * work the agent takes on is governed by the WorkQueue rather than the executor size.
+   */
+  @Bean(name = "taskExecutor")
+  public ThreadPoolTaskExecutor taskExecutor() {
+    ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+    executor.setCorePoolSize(executorSize);
+    executor.setMaxPoolSize(executorSize);
+    executor.setThreadNamePrefix("async-pool-");
+    executor.initialize();
+    return executor;
+  }
 }
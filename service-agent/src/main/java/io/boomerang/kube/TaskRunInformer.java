@@ -0,0 +1,157 @@
+package io.boomerang.kube;
+
+import io.fabric8.knative.internal.pkg.apis.Condition;
+import io.fabric8.kubernetes.client.informers.ResourceEventHandler;
+import io.fabric8.kubernetes.client.informers.SharedIndexInformer;
+import io.fabric8.tekton.client.TektonClient;
+import io.fabric8.tekton.pipeline.v1beta1.TaskRun;
+import io.fabric8.tekton.pipeline.v1beta1.TaskRunResult;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/*
+ * Tracks TaskRun completion with a single shared informer for all of the agent's TaskRuns
+ *
+ * A task registers its taskrun-ref and receives a future that is completed with the terminal
+ * Condition, instead of opening its own watch and parking a thread. The informer relists and
+ * rewatches on failure, and the periodic resync redelivers every cached TaskRun so that a missed
+ * event is picked up on the next resync.
+ *
+ * Reference(s):
+ * - https://tekton.dev/docs/pipelines/pipelineruns/#monitoring-execution-status
+ */
+public class TaskRunInformer implements ResourceEventHandler<TaskRun> {
+
+  private static final Logger LOGGER = LogManager.getLogger(TaskRunInformer.class);
+
+  static final String TASKRUN_REF_LABEL = "boomerang.io/taskrun-ref";
+
+  private final Map<String, CompletableFuture<Completion>> pending = new ConcurrentHashMap<>();
+  private final Executor executor;
+  private SharedIndexInformer<TaskRun> informer;
+
+  public record Completion(Condition condition, List<TaskRunResult> results) {}
+
+  /*
+   * Completed futures continue on the executor so that the informer's event thread is never
+   * blocked by the work that follows a task.
+   */
+  public TaskRunInformer(Executor executor) {
+    this.executor = executor;
+  }
+
+  public void start(TektonClient client, Map<String, String> labels, long resyncPeriod) {
+    LOGGER.info("Starting TaskRun informer with labels: {}", labels);
+    this.informer = client.v1beta1().taskRuns().withLabels(labels).inform(this, resyncPeriod);
+  }
+
+  public void stop() {
+    if (informer != null) {
+      informer.stop();
+    }
+  }
+
+  public int getPending() {
+    return pending.size();
+  }
+
+  /*
+   * Register interest in the completion of a TaskRun by its taskrun-ref label
+   *
+   * The future times out if the TaskRun has not completed within the timeout.
+   */
+  public CompletableFuture<Completion> register(String taskRunRef, long timeout, TimeUnit unit) {
+    CompletableFuture<Completion> future = new CompletableFuture<>();
+    pending.put(taskRunRef, future);
+    // The TaskRun may have completed before it was registered
+    informer.getIndexer().list().stream()
+        .filter(taskRun -> taskRunRef.equals(getTaskRunRef(taskRun)))
+        .forEach(taskRun -> evaluate(taskRun, false));
+    return future
+        .orTimeout(timeout, unit)
+        .whenCompleteAsync((completion, ex) -> pending.remove(taskRunRef, future), executor);
+  }
+
+  @Override
+  public void onAdd(TaskRun taskRun) {
+    evaluate(taskRun, false);
+  }
+
+  @Override
+  public void onUpdate(TaskRun oldTaskRun, TaskRun taskRun) {
+    evaluate(taskRun, false);
+  }
+
+  @Override
+  public void onDelete(TaskRun taskRun, boolean deletedFinalStateUnknown) {
+    evaluate(taskRun, true);
+  }
+
+  private void evaluate(TaskRun taskRun, boolean deleted) {
+    String taskRunRef = getTaskRunRef(taskRun);
+    CompletableFuture<Completion> future = taskRunRef != null ? pending.get(taskRunRef) : null;
+    if (future == null || future.isDone()) {
+      return;
+    }
+    Condition condition = getCompletion(taskRun, deleted);
+    if (condition != null) {
+      LOGGER.info(
+          "TaskRun Name: {}, Status: {}, Reason: {}",
+          taskRun.getMetadata().getName(),
+          condition.getStatus(),
+          condition.getReason());
+      List<TaskRunResult> results = taskRun.getStatus().getTaskResults();
+      future.complete(new Completion(condition, results != null ? results : List.of()));
+    }
+  }
+
+  /*
+   * Determine the terminal Condition of a TaskRun, or null if it is still running
+   * - Processes a delete event occurred by external source such as CLI
+   *
+   * The Condition is copied as the TaskRun belongs to the informer's cache.
+   */
+  static Condition getCompletion(TaskRun taskRun, boolean deleted) {
+    if (taskRun.getStatus() == null
+        || taskRun.getStatus().getConditions() == null
+        || taskRun.getStatus().getConditions().isEmpty()) {
+      return null;
+    }
+    Condition current = taskRun.getStatus().getConditions().get(0);
+    String message = current.getMessage() != null ? current.getMessage() : "";
+    Condition condition = new Condition();
+    condition.setType(current.getType());
+    condition.setStatus(current.getStatus());
+    condition.setReason(current.getReason());
+    condition.setMessage(message);
+    if (deleted && "Unknown".equals(current.getStatus())) {
+      LOGGER.info(" Task Cancelled Externally. Adjusting status");
+      condition.setStatus("False");
+      condition.setReason("TaskRunCancelled");
+      condition.setMessage("The TaskRun was cancelled successfully.");
+    } else if (message.contains("rpc error")) {
+      LOGGER.info(" Task Failed due to RPC error");
+      condition.setStatus("False");
+      condition.setReason("TaskRunFailed");
+    } else if ("False".equals(current.getStatus())) {
+      if (message.contains("exited with code 1")) {
+        LOGGER.info(" Task Failed. " + message);
+        condition.setMessage("Task exited with error. View logs to learn more.");
+      }
+    } else if (!"True".equals(current.getStatus())) {
+      return null;
+    }
+    return condition;
+  }
+
+  private static String getTaskRunRef(TaskRun taskRun) {
+    Map<String, String> labels = taskRun.getMetadata().getLabels();
+    return labels != null ? labels.get(TASKRUN_REF_LABEL) : null;
+  }
+}
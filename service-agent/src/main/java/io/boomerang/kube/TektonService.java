@@ -8,6 +8,7 @@ import io.fabric8.tekton.pipeline.v1beta1.TaskRun;
 import java.text.ParseException;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 public interface TektonService {
 
@@ -37,13 +38,12 @@ public interface TektonService {
       Boolean debug)
       throws InterruptedException, ParseException;
 
-  List<RunResult> watchTaskRun(
+  CompletableFuture<List<RunResult>> watchTaskRun(
       String workflowId,
       String workflowActivityId,
       String taskActivityId,
       Map<String, String> customLabels,
-      Long timeout)
-      throws InterruptedException;
+      Long timeout);
 
   void deleteTaskRun(
       String workflowId,
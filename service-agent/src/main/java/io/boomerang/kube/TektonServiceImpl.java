@@ -23,7 +23,6 @@ import io.fabric8.kubernetes.api.model.Toleration;
 import io.fabric8.kubernetes.api.model.Volume;
 import io.fabric8.kubernetes.api.model.VolumeMount;
 import io.fabric8.kubernetes.api.model.VolumeProjection;
-import io.fabric8.kubernetes.client.Watch;
 import io.fabric8.tekton.client.DefaultTektonClient;
 import io.fabric8.tekton.client.TektonClient;
 import io.fabric8.tekton.pipeline.v1beta1.ArrayOrString;
@@ -32,9 +31,9 @@ import io.fabric8.tekton.pipeline.v1beta1.ParamSpec;
 import io.fabric8.tekton.pipeline.v1beta1.Step;
 import io.fabric8.tekton.pipeline.v1beta1.TaskRun;
 import io.fabric8.tekton.pipeline.v1beta1.TaskRunBuilder;
-import io.fabric8.tekton.pipeline.v1beta1.TaskRunResult;
 import io.fabric8.tekton.pipeline.v1beta1.WorkspaceBinding;
 import io.fabric8.tekton.pipeline.v1beta1.WorkspaceDeclaration;
+import jakarta.annotation.PreDestroy;
 import java.lang.reflect.Type;
 import java.text.ParseException;
 import java.util.ArrayList;
@@ -42,11 +41,15 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
@@ -105,8 +108,17 @@ public class TektonServiceImpl implements TektonService {
   @Value("${agent.tasks.tolerations}")
   private String kubeWorkerTolerations;
 
+  @Value("${kube.task.informer.resync:300000}")
+  private long informerResync;
+
+  @Autowired
+  @Qualifier("taskExecutor")
+  private Executor taskExecutor;
+
   TektonClient client = null;
 
+  private TaskRunInformer taskRunInformer;
+
   public TektonServiceImpl() {
     this.client = new DefaultTektonClient();
   }
@@ -481,75 +493,88 @@ public class TektonServiceImpl implements TektonService {
   }
 
   @Override
-  public List<RunResult> watchTaskRun(
+  public CompletableFuture<List<RunResult>> watchTaskRun(
       String workflowId,
       String workflowActivityId,
       String taskActivityId,
       Map<String, String> customLabels,
-      Long timeout)
-      throws InterruptedException {
-    final CountDownLatch latch = new CountDownLatch(1);
-    Condition condition = null;
-    List<TaskRunResult> tknResults = new ArrayList<TaskRunResult>();
-
-    TaskWatcher taskWatcher = new TaskWatcher(latch);
-
-    try (Watch ignore =
-        client
-            .v1beta1()
-            .taskRuns()
-            .withLabels(
-                helperKubeService.getTaskLabels(
-                    workflowId, workflowActivityId, taskActivityId, customLabels))
-            .watch(taskWatcher)) {
-
-      // TODO is there a way to wait 3 minutes and check if the task
-      // has moved from initial state. If its still in initial state then check PVC
-      // PVC might have Event / Condition "ProvisioningFailed" with a reason.
-
-      // Timeout is 10 minutes more than the TaskRun to account for delays in provisioning etc.
-      // Note:
-      // - The TaskRun Timeout will trigger an interrupt which enters this block as well
-      boolean taskComplete = latch.await(timeout + 10, TimeUnit.MINUTES);
-      if (!taskComplete) {
-        throw new BoomerangException(
-            BoomerangError.TASK_EXECUTION_ERROR,
-            "TaskRunTimeout - Task timed out while waiting for completion.");
-      }
-
-      condition = taskWatcher.getCondition();
-      tknResults = taskWatcher.getResults();
-
-      if (condition != null && "True".equals(condition.getStatus())) {
-        LOGGER.info("Task completed successfully");
-      } else {
-        LOGGER.info(
-            "Task execution error. " + condition.getReason() + " - " + condition.getMessage());
-        if (kubeService.isTaskRunResultTooLarge(
-            helperKubeService.getTaskLabels(
-                workflowId, workflowActivityId, taskActivityId, customLabels))) {
-          throw new BoomerangException(
-              BoomerangError.TASK_EXECUTION_ERROR,
-              "TaskRunResultTooLarge - Task has exceeded the maximum allowed 4096 byte size for Result Parameters.");
-        } else {
-          throw new BoomerangException(
-              BoomerangError.TASK_EXECUTION_ERROR,
-              condition.getReason() + " - " + condition.getMessage());
-        }
-      }
-
-    } catch (Exception e) {
-      LOGGER.error(e.toString());
-      throw e;
-    }
+      Long timeout) {
+
+    // TODO is there a way to wait 3 minutes and check if the task
+    // has moved from initial state. If its still in initial state then check PVC
+    // PVC might have Event / Condition "ProvisioningFailed" with a reason.
+
+    // Timeout is 10 minutes more than the TaskRun to account for delays in provisioning etc.
+    return getTaskRunInformer()
+        .register(taskActivityId, timeout + 10, TimeUnit.MINUTES)
+        .handle(
+            (completion, ex) -> {
+              if (ex != null) {
+                Throwable cause =
+                    ex instanceof CompletionException && ex.getCause() != null
+                        ? ex.getCause()
+                        : ex;
+                LOGGER.error(cause.toString());
+                if (cause instanceof TimeoutException) {
+                  throw new BoomerangException(
+                      BoomerangError.TASK_EXECUTION_ERROR,
+                      "TaskRunTimeout - Task timed out while waiting for completion.");
+                }
+                throw new BoomerangException(
+                    BoomerangError.TASK_EXECUTION_ERROR, cause.getMessage());
+              }
+
+              Condition condition = completion.condition();
+              if ("True".equals(condition.getStatus())) {
+                LOGGER.info("Task completed successfully");
+              } else {
+                LOGGER.info(
+                    "Task execution error. "
+                        + condition.getReason()
+                        + " - "
+                        + condition.getMessage());
+                if (kubeService.isTaskRunResultTooLarge(
+                    helperKubeService.getTaskLabels(
+                        workflowId, workflowActivityId, taskActivityId, customLabels))) {
+                  throw new BoomerangException(
+                      BoomerangError.TASK_EXECUTION_ERROR,
+                      "TaskRunResultTooLarge - Task has exceeded the maximum allowed 4096 byte size for Result Parameters.");
+                } else {
+                  throw new BoomerangException(
+                      BoomerangError.TASK_EXECUTION_ERROR,
+                      condition.getReason() + " - " + condition.getMessage());
+                }
+              }
+
+              List<RunResult> results = new ArrayList<>();
+              completion
+                  .results()
+                  .forEach(
+                      tr -> {
+                        results.add(new RunResult(tr.getName(), tr.getValue()));
+                      });
+              return results;
+            });
+  }
 
-    List<RunResult> results = new ArrayList<>();
-    tknResults.forEach(
-        tr -> {
-          results.add(new RunResult(tr.getName(), tr.getValue()));
-        });
+  /*
+   * The informer is started on first use so that the agent starts without a cluster connection
+   */
+  private synchronized TaskRunInformer getTaskRunInformer() {
+    if (taskRunInformer == null) {
+      TaskRunInformer informer = new TaskRunInformer(taskExecutor);
+      informer.start(
+          client, helperKubeService.getTaskLabels(null, null, null, null), informerResync);
+      taskRunInformer = informer;
+    }
+    return taskRunInformer;
+  }
 
-    return results;
+  @PreDestroy
+  public synchronized void destroy() {
+    if (taskRunInformer != null) {
+      taskRunInformer.stop();
+    }
   }
 
   @Override
@@ -0,0 +1,176 @@
+package io.boomerang.tests.client;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.RestTemplate;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import io.boomerang.client.CallbackJournal;
+import io.boomerang.common.enums.RunStatus;
+import io.boomerang.common.model.TaskRunEndRequest;
+
+public class CallbackJournalTest {
+
+  @TempDir Path journalDir;
+
+  private HttpServer server;
+  private String baseURL;
+  // Number of requests the Engine fails with a 503 before it becomes available
+  private final AtomicInteger unavailable = new AtomicInteger();
+  // Time (ms) the Engine takes to respond
+  private final AtomicInteger latency = new AtomicInteger();
+  private final List<String> received = new CopyOnWriteArrayList<>();
+  private final List<String> keys = new CopyOnWriteArrayList<>();
+  private final List<CallbackJournal> journals = new CopyOnWriteArrayList<>();
+
+  @BeforeEach
+  public void setUp() throws IOException {
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext(
+        "/",
+        exchange -> {
+          String body =
+              new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+          keys.add(exchange.getRequestHeaders().getFirst(CallbackJournal.IDEMPOTENCY_KEY));
+          try {
+            Thread.sleep(latency.get());
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+          int status = unavailable.getAndDecrement() > 0 ? 503 : 200;
+          if (status == 200) {
+            received.add(
+                exchange.getRequestURI().getPath()
+                    + " "
+                    + exchange.getRequestHeaders().getFirst(CallbackJournal.IDEMPOTENCY_KEY)
+                    + " "
+                    + body);
+          }
+          exchange.sendResponseHeaders(status, -1);
+          exchange.close();
+        });
+    server.start();
+    baseURL = "http://localhost:" + server.getAddress().getPort();
+  }
+
+  @AfterEach
+  public void tearDown() throws Exception {
+    for (CallbackJournal journal : journals) {
+      journal.destroy();
+    }
+    server.stop(0);
+  }
+
+  @Test
+  public void testCallbackIsDeliveredAndJournalEmptied() throws Exception {
+    CallbackJournal journal = journal();
+    journal.submit("task-1", "startTask", baseURL + "/task-1/start", null);
+
+    awaitDelivered(journal, 1);
+    assertTrue(received.get(0).startsWith("/task-1/start "));
+    assertTrue(received.get(0).endsWith(" {}"));
+    assertEquals(0, Files.size(journalDir.resolve("callbacks.log")));
+  }
+
+  @Test
+  public void testCallbackIsRetriedWithTheSameKey() throws Exception {
+    unavailable.set(3);
+    CallbackJournal journal = journal();
+    journal.submit("task-1", "startTask", baseURL + "/task-1/start", null);
+    journal.submit("task-1", "endTask", baseURL + "/task-1/end", endRequest("done"));
+
+    awaitDelivered(journal, 2);
+    // Delivered in order once the Engine is available
+    assertTrue(received.get(0).startsWith("/task-1/start "));
+    assertTrue(received.get(1).startsWith("/task-1/end "));
+    assertTrue(received.get(1).contains("done"));
+    // The failed attempts of the start were all sent with the key it was delivered with
+    assertEquals(1, keys.subList(0, 4).stream().distinct().count());
+  }
+
+  @Test
+  public void testWaitingCallbacksAreCoalesced() throws Exception {
+    unavailable.set(2);
+    CallbackJournal journal = journal();
+    journal.submit("task-1", "startTask", baseURL + "/task-1/start", null);
+    journal.submit("task-1", "endTask", baseURL + "/task-1/end", endRequest("first"));
+    journal.submit("task-1", "endTask", baseURL + "/task-1/end", endRequest("second"));
+
+    awaitDelivered(journal, 2);
+    assertEquals(2, received.size());
+    assertTrue(received.get(1).contains("second"));
+  }
+
+  @Test
+  public void testUndeliveredCallbacksAreReplayedAfterRestart() throws Exception {
+    unavailable.set(Integer.MAX_VALUE);
+    CallbackJournal journal = journal();
+    journal.submit("wf-1", "finalizeWorkflow", baseURL + "/wf-1/finalize", null);
+    Thread.sleep(100);
+    journal.destroy();
+    journals.remove(journal);
+    assertEquals(0, received.size());
+
+    unavailable.set(0);
+    CallbackJournal restarted = journal();
+    awaitDelivered(restarted, 1);
+    assertTrue(received.get(0).startsWith("/wf-1/finalize "));
+  }
+
+  @Test
+  public void testShutdownWaitsForTheDeliveryInFlight() throws Exception {
+    latency.set(500);
+    CallbackJournal journal = journal();
+    journal.submit("task-1", "startTask", baseURL + "/task-1/start", null);
+    Thread.sleep(100);
+    journal.destroy();
+    journals.remove(journal);
+
+    // The acknowledgement is written before the journal is closed
+    assertEquals(1, received.size());
+    assertEquals(0, Files.size(journalDir.resolve("callbacks.log")));
+  }
+
+  private CallbackJournal journal() throws IOException {
+    CallbackJournal journal = new CallbackJournal(new RestTemplate(), new ObjectMapper());
+    ReflectionTestUtils.setField(journal, "journalDir", journalDir.toString());
+    ReflectionTestUtils.setField(journal, "sync", true);
+    ReflectionTestUtils.setField(journal, "threads", 2);
+    ReflectionTestUtils.setField(journal, "shutdownTimeout", 10000L);
+    ReflectionTestUtils.setField(journal, "initialBackoff", 10L);
+    ReflectionTestUtils.setField(journal, "maxBackoff", 100L);
+    journal.init();
+    journals.add(journal);
+    return journal;
+  }
+
+  private TaskRunEndRequest endRequest(String message) {
+    TaskRunEndRequest endRequest = new TaskRunEndRequest();
+    endRequest.setStatus(RunStatus.succeeded);
+    endRequest.setStatusMessage(message);
+    return endRequest;
+  }
+
+  private void awaitDelivered(CallbackJournal journal, int count) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 10000;
+    while ((received.size() < count || journal.getPending() > 0)
+        && System.currentTimeMillis() < deadline) {
+      Thread.sleep(20);
+    }
+    assertEquals(count, received.size());
+    assertEquals(0, journal.getPending());
+  }
+}
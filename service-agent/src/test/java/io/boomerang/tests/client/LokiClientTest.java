@@ -0,0 +1,213 @@
+package io.boomerang.tests.client;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.boomerang.client.LokiBusyException;
+import io.boomerang.client.LokiClient;
+
+public class LokiClientTest {
+
+  // Timestamps of the stub's log lines. Several lines share a timestamp across a page boundary.
+  private static final long[] TIMESTAMPS = {1, 2, 3, 3, 3, 3, 4, 5, 6, 7, 8, 9};
+
+  private HttpServer server;
+  private LokiClient lokiClient;
+  private int status = 200;
+  private final List<String> starts = new CopyOnWriteArrayList<>();
+  // Lines written when each page was requested
+  private final List<Integer> writtenAtRequest = new CopyOnWriteArrayList<>();
+  private final AtomicInteger written = new AtomicInteger();
+
+  @BeforeEach
+  public void setUp() throws IOException {
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext("/loki/api/v1/query_range", this::queryRange);
+    server.start();
+    lokiClient = new LokiClient();
+    ReflectionTestUtils.setField(lokiClient, "lokiHost", "localhost");
+    ReflectionTestUtils.setField(
+        lokiClient, "lokiPort", String.valueOf(server.getAddress().getPort()));
+    ReflectionTestUtils.setField(lokiClient, "limit", 5);
+    ReflectionTestUtils.setField(lokiClient, "bufferLines", 10);
+    ReflectionTestUtils.setField(lokiClient, "poolSize", 2);
+    ReflectionTestUtils.setField(lokiClient, "timeout", 5000L);
+    lokiClient.init();
+  }
+
+  @AfterEach
+  public void tearDown() throws IOException {
+    lokiClient.destroy();
+    server.stop(0);
+  }
+
+  @Test
+  public void testPagesAreStreamedInOrderWithoutDuplicates() throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    long lines = lokiClient.streamQuery("{bmrg_task_activity=\"1234\"}", out);
+
+    assertEquals(TIMESTAMPS.length, lines);
+    StringBuilder expected = new StringBuilder();
+    for (int i = 0; i < TIMESTAMPS.length; i++) {
+      expected.append("line-").append(i).append("\n");
+    }
+    assertEquals(expected.toString(), out.toString(StandardCharsets.UTF_8));
+    assertEquals(List.of("0", "3", "4", "8"), starts);
+  }
+
+  @Test
+  public void testNextPageIsRequestedWhileChunkIsWritten() throws IOException {
+    OutputStream slow =
+        new OutputStream() {
+          @Override
+          public void write(int b) {}
+
+          @Override
+          public void write(byte[] b, int off, int len) {
+            try {
+              Thread.sleep(50);
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+            }
+            written.incrementAndGet();
+          }
+        };
+    lokiClient.streamQuery("{bmrg_task_activity=\"1234\"}", slow);
+
+    assertEquals(TIMESTAMPS.length, written.get());
+    // The second page was in flight before the first page's five lines were written
+    assertTrue(writtenAtRequest.get(1) < 5, "Lines written at request: " + writtenAtRequest);
+  }
+
+  @Test
+  public void testNoLogs() throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    assertEquals(0, lokiClient.streamQuery("{bmrg_task_activity=\"unknown\"}", out));
+    assertEquals(0, out.size());
+  }
+
+  /*
+   * Each stream holds a fetch thread while its client is slow, so a stream beyond the pool is
+   * refused rather than left waiting
+   */
+  @Test
+  public void testStreamsBeyondThePoolAreRefused() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    OutputStream blocked =
+        new OutputStream() {
+          @Override
+          public void write(int b) {}
+
+          @Override
+          public void write(byte[] b, int off, int len) throws IOException {
+            try {
+              release.await();
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+              throw new InterruptedIOException();
+            }
+          }
+        };
+    ExecutorService viewers = Executors.newFixedThreadPool(2);
+    try {
+      List<Future<Long>> streams = new ArrayList<>();
+      for (int i = 0; i < 2; i++) {
+        streams.add(
+            viewers.submit(() -> lokiClient.streamQuery("{bmrg_task_activity=\"1234\"}", blocked)));
+      }
+      long deadline = System.currentTimeMillis() + 5000;
+      while (starts.size() < 2 && System.currentTimeMillis() < deadline) {
+        Thread.sleep(10);
+      }
+
+      assertThrows(
+          LokiBusyException.class,
+          () ->
+              lokiClient.streamQuery(
+                  "{bmrg_task_activity=\"1234\"}", new ByteArrayOutputStream()));
+
+      release.countDown();
+      for (Future<Long> stream : streams) {
+        assertEquals(TIMESTAMPS.length, stream.get(10, TimeUnit.SECONDS));
+      }
+    } finally {
+      release.countDown();
+      viewers.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testLokiErrorIsRaised() {
+    status = 500;
+    assertThrows(
+        IOException.class,
+        () -> lokiClient.streamQuery("{bmrg_task_activity=\"1234\"}", new ByteArrayOutputStream()));
+  }
+
+  /*
+   * Answers a query_range forward from the start, at most limit lines, as Loki would
+   */
+  private void queryRange(HttpExchange exchange) throws IOException {
+    Map<String, String> params = new HashMap<>();
+    for (String param : exchange.getRequestURI().getRawQuery().split("&")) {
+      String[] pair = param.split("=", 2);
+      if (pair.length == 2) {
+        params.put(pair[0], URLDecoder.decode(pair[1], StandardCharsets.UTF_8));
+      }
+    }
+    starts.add(params.get("start"));
+    writtenAtRequest.add(written.get());
+    long start = Long.parseLong(params.get("start"));
+    int limit = Integer.parseInt(params.get("limit"));
+    List<String> values = new ArrayList<>();
+    if (params.get("query").contains("1234")) {
+      for (int i = 0; i < TIMESTAMPS.length && values.size() < limit; i++) {
+        if (TIMESTAMPS[i] >= start) {
+          values.add("[\"" + TIMESTAMPS[i] + "\",\"line-" + i + "\\n\"]");
+        }
+      }
+    }
+    String result =
+        values.isEmpty()
+            ? "[]"
+            : "[{\"stream\":{\"bmrg_container\":\"step-task\"},\"values\":["
+                + values.stream().collect(Collectors.joining(","))
+                + "]}]";
+    byte[] body =
+        ("{\"status\":\"success\",\"data\":{\"resultType\":\"streams\",\"result\":"
+                + result
+                + "},\"stats\":{\"summary\":{\"totalLinesProcessed\":"
+                + values.size()
+                + "}}}")
+            .getBytes(StandardCharsets.UTF_8);
+    exchange.sendResponseHeaders(status, body.length);
+    try (OutputStream responseBody = exchange.getResponseBody()) {
+      responseBody.write(body);
+    }
+  }
+}
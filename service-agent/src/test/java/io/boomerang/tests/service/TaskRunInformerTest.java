@@ -0,0 +1,139 @@
+package io.boomerang.tests.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import io.boomerang.kube.TaskRunInformer;
+import io.boomerang.kube.TaskRunInformer.Completion;
+import io.fabric8.knative.internal.pkg.apis.Condition;
+import io.fabric8.kubernetes.api.model.ObjectMetaBuilder;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.kubernetes.client.server.mock.EnableKubernetesMockClient;
+import io.fabric8.tekton.client.TektonClient;
+import io.fabric8.tekton.pipeline.v1beta1.TaskRun;
+import io.fabric8.tekton.pipeline.v1beta1.TaskRunResult;
+import io.fabric8.tekton.pipeline.v1beta1.TaskRunStatus;
+
+@EnableKubernetesMockClient(crud = true)
+public class TaskRunInformerTest {
+
+  KubernetesClient client;
+
+  private TektonClient tektonClient;
+
+  private TaskRunInformer informer;
+
+  @BeforeEach
+  public void setUp() {
+    tektonClient = client.adapt(TektonClient.class);
+    informer = new TaskRunInformer(Runnable::run);
+    informer.start(tektonClient, Map.of("boomerang.io/product", "bmrg-flow"), 1000L);
+  }
+
+  @AfterEach
+  public void tearDown() {
+    informer.stop();
+  }
+
+  @Test
+  public void testCompletionIsDispatchedToRegisteredTask() throws Exception {
+    tektonClient.v1beta1().taskRuns().create(taskRun("task-1", "1234", null));
+    CompletableFuture<Completion> future = informer.register("1234", 10, TimeUnit.SECONDS);
+    assertFalse(future.isDone());
+
+    tektonClient
+        .v1beta1()
+        .taskRuns()
+        .createOrReplace(taskRun("task-1", "1234", condition("True", "Succeeded", "")));
+
+    Completion completion = future.get(10, TimeUnit.SECONDS);
+    assertEquals("True", completion.condition().getStatus());
+    assertEquals(1, completion.results().size());
+    assertEquals("value", completion.results().get(0).getValue());
+    assertEquals(0, informer.getPending());
+  }
+
+  @Test
+  public void testTaskCompletedBeforeRegistration() throws Exception {
+    tektonClient
+        .v1beta1()
+        .taskRuns()
+        .create(
+            taskRun(
+                "task-2",
+                "2345",
+                condition("False", "Failed", "step-task exited with code 1")));
+
+    Completion completion =
+        informer.register("2345", 10, TimeUnit.SECONDS).get(10, TimeUnit.SECONDS);
+    assertEquals("False", completion.condition().getStatus());
+    assertEquals(
+        "Task exited with error. View logs to learn more.", completion.condition().getMessage());
+  }
+
+  @Test
+  public void testExternalDeleteCancelsTask() throws Exception {
+    tektonClient
+        .v1beta1()
+        .taskRuns()
+        .create(taskRun("task-3", "3456", condition("Unknown", "Running", "")));
+    CompletableFuture<Completion> future = informer.register("3456", 10, TimeUnit.SECONDS);
+
+    tektonClient.v1beta1().taskRuns().withName("task-3").delete();
+
+    Completion completion = future.get(10, TimeUnit.SECONDS);
+    assertEquals("False", completion.condition().getStatus());
+    assertEquals("TaskRunCancelled", completion.condition().getReason());
+  }
+
+  @Test
+  public void testIncompleteTaskTimesOut() {
+    tektonClient
+        .v1beta1()
+        .taskRuns()
+        .create(taskRun("task-4", "4567", condition("Unknown", "Running", "")));
+    CompletableFuture<Completion> future = informer.register("4567", 200, TimeUnit.MILLISECONDS);
+
+    ExecutionException e =
+        assertThrows(ExecutionException.class, () -> future.get(10, TimeUnit.SECONDS));
+    assertInstanceOf(TimeoutException.class, e.getCause());
+  }
+
+  private TaskRun taskRun(String name, String taskRunRef, Condition condition) {
+    Map<String, String> labels = new HashMap<>();
+    labels.put("boomerang.io/product", "bmrg-flow");
+    labels.put("boomerang.io/taskrun-ref", taskRunRef);
+    TaskRun taskRun = new TaskRun();
+    taskRun.setMetadata(new ObjectMetaBuilder().withName(name).withLabels(labels).build());
+    if (condition != null) {
+      TaskRunResult result = new TaskRunResult();
+      result.setName("output");
+      result.setValue("value");
+      TaskRunStatus status = new TaskRunStatus();
+      status.setConditions(List.of(condition));
+      status.setTaskResults(List.of(result));
+      taskRun.setStatus(status);
+    }
+    return taskRun;
+  }
+
+  private Condition condition(String status, String reason, String message) {
+    Condition condition = new Condition();
+    condition.setType("Succeeded");
+    condition.setStatus(status);
+    condition.setReason(reason);
+    condition.setMessage(message);
+    return condition;
+  }
+}
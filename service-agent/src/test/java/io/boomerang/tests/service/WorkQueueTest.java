@@ -0,0 +1,87 @@
+package io.boomerang.tests.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import io.boomerang.agent.WorkQueue;
+
+public class WorkQueueTest {
+
+  private WorkQueue workQueue;
+
+  @BeforeEach
+  public void setUp() {
+    workQueue = new WorkQueue(Runnable::run);
+    ReflectionTestUtils.setField(workQueue, "workflowConcurrency", 1);
+    ReflectionTestUtils.setField(workQueue, "taskConcurrency", 2);
+    ReflectionTestUtils.setField(workQueue, "taskTypeConcurrency", Map.of("script", 1));
+    ReflectionTestUtils.setField(workQueue, "taskTypes", List.of("template", "script"));
+    workQueue.init();
+  }
+
+  @Test
+  public void testSlotIsHeldUntilWorkCompletes() {
+    AtomicInteger started = new AtomicInteger();
+    CompletableFuture<Void> first = new CompletableFuture<>();
+    CompletableFuture<Void> second = new CompletableFuture<>();
+    workQueue.submit(
+        "script",
+        () -> {
+          started.incrementAndGet();
+          return first;
+        });
+    workQueue.submit(
+        "script",
+        () -> {
+          started.incrementAndGet();
+          return second;
+        });
+
+    // The second script waits for the only script slot. The template slots are not offered to it.
+    assertEquals(1, started.get());
+    assertEquals(Map.of("template", 2, "script", 0), workQueue.getFreeTaskSlots());
+
+    first.complete(null);
+    assertEquals(2, started.get());
+    assertEquals(Map.of("template", 2, "script", 0), workQueue.getFreeTaskSlots());
+
+    second.complete(null);
+    assertEquals(Map.of("template", 2, "script", 1), workQueue.getFreeTaskSlots());
+  }
+
+  @Test
+  public void testLanesAreIndependent() {
+    AtomicInteger started = new AtomicInteger();
+    workQueue.submit(
+        WorkQueue.WORKFLOW,
+        () -> {
+          started.incrementAndGet();
+          return new CompletableFuture<>();
+        });
+    workQueue.submit(
+        "template",
+        () -> {
+          started.incrementAndGet();
+          return new CompletableFuture<>();
+        });
+
+    assertEquals(2, started.get());
+    assertEquals(0, workQueue.getFreeWorkflowSlots());
+    assertEquals(Map.of("template", 1, "script", 1), workQueue.getFreeTaskSlots());
+  }
+
+  @Test
+  public void testFailedWorkReleasesSlot() {
+    workQueue.submit(
+        "script",
+        () -> {
+          throw new IllegalStateException("Unable to create TaskRun");
+        });
+    assertEquals(Map.of("template", 2, "script", 1), workQueue.getFreeTaskSlots());
+  }
+}
@@ -5,6 +5,7 @@ import io.boomerang.audit.AuditType;
 import io.boomerang.common.entity.WorkflowRunEntity;
 import io.boomerang.common.enums.RunStatus;
 import io.boomerang.engine.EventSinkService;
+import io.boomerang.engine.TeamQuotaCounterService;
 import io.boomerang.engine.repository.WorkflowRunRepository;
 import java.util.HashMap;
 import java.util.Map;
@@ -27,14 +28,17 @@ public class WorkflowRunEntityUpdateInterceptor {
   private final WorkflowRunRepository workflowRunRepository;
   private final EventSinkService eventSinkService;
   private final AuditInterceptor auditInterceptor;
+  private final TeamQuotaCounterService teamQuotaCounterService;
 
   public WorkflowRunEntityUpdateInterceptor(
       WorkflowRunRepository workflowRunRepository,
       EventSinkService eventSinkService,
-      AuditInterceptor auditInterceptor) {
+      AuditInterceptor auditInterceptor,
+      TeamQuotaCounterService teamQuotaCounterService) {
     this.workflowRunRepository = workflowRunRepository;
     this.eventSinkService = eventSinkService;
     this.auditInterceptor = auditInterceptor;
+    this.teamQuotaCounterService = teamQuotaCounterService;
   }
 
   @Before(
@@ -93,6 +97,15 @@ public class WorkflowRunEntityUpdateInterceptor {
     }
   }
 
+  @AfterReturning(
+      pointcut = "execution(* io.boomerang.engine.repository.WorkflowRunRepository.save(..))",
+      returning = "entity")
+  public void updateQuotaCounters(JoinPoint thisJoinPoint, Object entity) {
+    if (entity instanceof WorkflowRunEntity) {
+      teamQuotaCounterService.update((WorkflowRunEntity) entity);
+    }
+  }
+
   private void workflowRunEntityToBeUpdated(WorkflowRunEntity newEntity) {
     // Check if activity and workflow IDs are not empty
     if (StringUtils.isNotBlank(newEntity.getWorkflowRef())
@@ -34,6 +34,7 @@ public class AuditEntity {
   private Date creationDate = new Date();
   private List<AuditEvent> events = new LinkedList<>();
   private Map<String, String> data = new HashMap<>();
+  private Boolean rollup; //Included in the insight rollups
   
   public AuditEntity() {
     // TODO Auto-generated constructor stub
@@ -119,6 +120,14 @@ public class AuditEntity {
     this.data = data;
   }
 
+  public Boolean getRollup() {
+    return rollup;
+  }
+
+  public void setRollup(Boolean rollup) {
+    this.rollup = rollup;
+  }
+
   public Date getCreationDate() {
     return creationDate;
   }
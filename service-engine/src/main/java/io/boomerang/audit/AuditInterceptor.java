@@ -1,11 +1,18 @@
 package io.boomerang.audit;
 
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+import io.boomerang.common.util.InsightRollupUtil;
+import io.boomerang.config.MongoConfiguration;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Component;
 
 /*
@@ -20,6 +27,12 @@ public class AuditInterceptor {
   
   @Autowired
   private AuditRepository auditRepository;
+
+  @Autowired
+  private MongoTemplate mongoTemplate;
+
+  @Autowired
+  private MongoConfiguration mongoConfiguration;
   
   private Map<String, String> wfRunIdToParentAuditId = new HashMap<>();
   
@@ -30,7 +43,11 @@ public class AuditInterceptor {
     try {
       LOGGER.debug("AuditInterceptor - Creating Audit for: {}.", selfRef);
       AuditEvent auditEvent = new AuditEvent(AuditType.notstarted);
-      return auditRepository.insert(new AuditEntity(AuditScope.WORKFLOWRUN, selfRef, Optional.empty(), Optional.of(getParentAuditIdFromWorkflowRunId(selfRef, parent)), auditEvent, data));
+      AuditEntity auditEntity = new AuditEntity(AuditScope.WORKFLOWRUN, selfRef, Optional.empty(), Optional.of(getParentAuditIdFromWorkflowRunId(selfRef, parent)), auditEvent, data);
+      auditEntity.setRollup(true);
+      auditEntity = auditRepository.insert(auditEntity);
+      updateRollups(auditEntity, null);
+      return auditEntity;
     } catch (Exception ex) {
       LOGGER.error("Unable to create Audit record with exception: {}.", ex.toString());
     }
@@ -43,14 +60,26 @@ public class AuditInterceptor {
   public AuditEntity updateWfRunLog(AuditType type, String selfRef, Optional<Map<String, String>> data) {
     try {
       LOGGER.debug("AuditInterceptor - Updating Audit for: {} with event: {}.", selfRef, type);
-      Optional<AuditEntity> auditEntity = auditRepository.findFirstByScopeAndSelfRef(AuditScope.WORKFLOWRUN, selfRef);
-      if (auditEntity.isPresent()) {
-        if (data.isPresent()) {
-          auditEntity.get().getData().putAll(data.get());
+      // A targeted update, so the rollup flag set by the backfill in the Flow service is kept. The
+      // Audit is returned as it was before the update, so the change is applied to the rollups
+      // exactly once by either the Engine or the backfill.
+      AuditEvent auditEvent = new AuditEvent(type);
+      Update update = new Update().push("events", auditEvent);
+      data.ifPresent(d -> d.forEach((k, v) -> update.set("data." + k, v)));
+      AuditEntity auditEntity =
+          mongoTemplate.findAndModify(
+              query(where("scope").is(AuditScope.WORKFLOWRUN).and("selfRef").is(selfRef)),
+              update,
+              AuditEntity.class);
+      if (auditEntity != null) {
+        Map<String, String> before = new HashMap<>(auditEntity.getData());
+        data.ifPresent(auditEntity.getData()::putAll);
+        auditEntity.getEvents().add(auditEvent);
+        // Audits from before the rollups are included by the backfill in the Flow service
+        if (Boolean.TRUE.equals(auditEntity.getRollup())) {
+          updateRollups(auditEntity, before);
         }
-        AuditEvent auditEvent = new AuditEvent(type);
-        auditEntity.get().getEvents().add(auditEvent);
-        return auditRepository.save(auditEntity.get());
+        return auditEntity;
       } 
     } catch (Exception ex) {
       LOGGER.error("Unable to create Audit record with exception: {}.", ex.toString());
@@ -58,6 +87,24 @@ public class AuditInterceptor {
     return null;
   }
 
+  /*
+   * Apply the change in the WorkflowRun to the Team and Workflow insight rollups
+   */
+  private void updateRollups(AuditEntity auditEntity, Map<String, String> before) {
+    try {
+      InsightRollupUtil.apply(
+          mongoTemplate,
+          mongoConfiguration.fullCollectionName(InsightRollupUtil.COLLECTION),
+          auditEntity.getParent(),
+          auditEntity.getData().get("workflowRef"),
+          auditEntity.getCreationDate(),
+          before,
+          auditEntity.getData());
+    } catch (Exception ex) {
+      LOGGER.error("Unable to update insight rollups with exception: {}.", ex.toString());
+    }
+  }
+
   private String getParentAuditIdFromWorkflowRunId(String wfRunId, String parent) {
     if (wfRunIdToParentAuditId.containsKey(wfRunId)) {
       return wfRunIdToParentAuditId.get(wfRunId);
@@ -9,8 +9,11 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import java.util.List;
+import java.util.Map;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 @RestController
 @RequestMapping("/api/v1/agent")
@@ -19,9 +22,11 @@ import org.springframework.web.bind.annotation.*;
     description = "Manage Agent operations. Register agent. Check for WorkflowRuns and TaskRuns")
 public class AgentControllerV1 {
   private final AgentService agentService;
+  private final AgentDispatchService agentDispatchService;
 
-  public AgentControllerV1(AgentService agentService) {
+  public AgentControllerV1(AgentService agentService, AgentDispatchService agentDispatchService) {
     this.agentService = agentService;
+    this.agentDispatchService = agentDispatchService;
   }
 
   @PostMapping(value = "/register")
@@ -37,6 +42,20 @@ public class AgentControllerV1 {
     return agentService.register(request);
   }
 
+  @DeleteMapping(value = "/{id}")
+  @Operation(summary = "Delete an Agent's registration")
+  @ApiResponses(
+      value = {
+        @ApiResponse(responseCode = "200", description = "OK"),
+        @ApiResponse(responseCode = "400", description = "Bad Request")
+      })
+  // TODO when these are exposed externally for public / private agents, require token
+  // authentication
+  public void deleteAgent(
+      @Parameter(name = "id", description = "Agent ID", required = true) @PathVariable String id) {
+    agentService.delete(id);
+  }
+
   @GetMapping(value = "/{id}/workflows")
   @Operation(summary = "Retrieve an agents Workflows queue")
   @ApiResponses(
@@ -48,8 +67,11 @@ public class AgentControllerV1 {
   // TODO when these are exposed externally for public / private agents, require token
   // authentication
   public ResponseEntity<List<WorkflowRun>> agentWorkflowQueue(
-      @Parameter(name = "id", description = "Agent ID", required = true) @PathVariable String id) {
-    return agentService.getWorkflowQueue(id);
+      @Parameter(name = "id", description = "Agent ID", required = true) @PathVariable String id,
+      @Parameter(name = "limit", description = "Maximum number of WorkflowRuns to claim")
+          @RequestParam(required = false, defaultValue = "10")
+          int limit) {
+    return agentService.getWorkflowQueue(id, limit);
   }
 
   @GetMapping(value = "/{id}/tasks")
@@ -63,7 +85,64 @@ public class AgentControllerV1 {
   // TODO when these are exposed externally for public / private agents, require token
   // authentication
   public ResponseEntity<List<TaskRun>> agentTasksQueue(
+      @Parameter(name = "id", description = "Agent ID", required = true) @PathVariable String id,
+      @Parameter(
+              name = "limit",
+              description = "Maximum number of TaskRuns to claim, when there are no type limits")
+          @RequestParam(required = false, defaultValue = "10")
+          int limit,
+      @Parameter(
+              name = "limits",
+              description = "Maximum number of TaskRuns to claim per task type, as type:limit")
+          @RequestParam(required = false)
+          List<String> limits) {
+    return agentService.getTaskQueue(id, limit, limits);
+  }
+
+  @PutMapping(value = "/{id}/heartbeat")
+  @Operation(summary = "Agent heartbeat. Extends the agents claim on queued runs")
+  @ApiResponses(
+      value = {
+        @ApiResponse(responseCode = "200", description = "OK"),
+        @ApiResponse(responseCode = "400", description = "Bad Request")
+      })
+  // TODO when these are exposed externally for public / private agents, require token
+  // authentication
+  public void agentHeartbeat(
       @Parameter(name = "id", description = "Agent ID", required = true) @PathVariable String id) {
-    return agentService.getTaskQueue(id);
+    agentService.heartbeat(id);
+  }
+
+  @GetMapping(value = "/{id}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+  @Operation(summary = "Stream an agents claimed WorkflowRuns and TaskRuns")
+  @ApiResponses(
+      value = {
+        @ApiResponse(responseCode = "200", description = "OK"),
+        @ApiResponse(responseCode = "400", description = "Bad Request")
+      })
+  // TODO when these are exposed externally for public / private agents, require token
+  // authentication
+  public SseEmitter agentDispatchStream(
+      @Parameter(name = "id", description = "Agent ID", required = true) @PathVariable String id) {
+    return agentDispatchService.connect(id);
+  }
+
+  @PutMapping(value = "/{id}/credits")
+  @Operation(
+      summary =
+          "Grant additional credits to an agents dispatch stream, keyed by workflow or task type")
+  @ApiResponses(
+      value = {
+        @ApiResponse(responseCode = "200", description = "OK"),
+        @ApiResponse(responseCode = "404", description = "Agent is not connected")
+      })
+  // TODO when these are exposed externally for public / private agents, require token
+  // authentication
+  public ResponseEntity<Void> agentGrantCredits(
+      @Parameter(name = "id", description = "Agent ID", required = true) @PathVariable String id,
+      @RequestBody Map<String, Integer> credits) {
+    return agentDispatchService.grant(id, credits)
+        ? ResponseEntity.ok().build()
+        : ResponseEntity.notFound().build();
   }
 }
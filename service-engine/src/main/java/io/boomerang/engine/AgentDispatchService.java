@@ -0,0 +1,276 @@
+package io.boomerang.engine;
+
+import io.boomerang.common.entity.TaskRunEntity;
+import io.boomerang.common.entity.WorkflowRunEntity;
+import io.boomerang.common.enums.TaskType;
+import io.boomerang.common.model.TaskRun;
+import io.boomerang.common.model.WorkflowRun;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/*
+ * Pushes claimed WorkflowRuns and TaskRuns to agents connected over Server-Sent Events.
+ *
+ * - Agents grant credits as executor slots free up, separately for WorkflowRuns and for each task
+ * type. A pushed run uses one credit of its kind, and runs are only claimed against the matching
+ * credits, so an agent is never sent work it can not start while it holds the claim.
+ * - Dispatch is signalled when a run is queued on this engine. A periodic sweep covers runs queued
+ * on other engine replicas and claims released by the reaper, and keeps the connection alive.
+ * - The sweep also pushes the WorkflowRuns to finalize and the TaskRuns to terminate, which do not
+ * use credits, so a connected agent does not need to poll. Agents that are not connected continue
+ * to use the long poll queue endpoints.
+ */
+@Service
+public class AgentDispatchService {
+
+  private static final Logger LOGGER = LogManager.getLogger(AgentDispatchService.class);
+
+  private static final String WORKFLOWRUN_EVENT = "workflowrun";
+  private static final String TASKRUN_EVENT = "taskrun";
+  private static final String FINALIZE_EVENT = "finalize";
+  private static final String TERMINATE_EVENT = "terminate";
+  // The credits for WorkflowRuns. TaskRun credits are keyed by the task type.
+  private static final String WORKFLOW_CREDITS = "workflow";
+
+  @Value("${flow.agent.dispatch.timeout:1800000}")
+  private long connectionTimeout;
+
+  @Value("${flow.agent.dispatch.sweep.interval:5000}")
+  private long sweepInterval;
+
+  private final AgentService agentService;
+
+  private final Map<String, AgentConnection> connections = new ConcurrentHashMap<>();
+
+  // Coalesces dispatch signals so that a burst of queued runs results in a single dispatch pass
+  private final AtomicBoolean dispatchPending = new AtomicBoolean(false);
+
+  private ScheduledExecutorService dispatcher;
+
+  public AgentDispatchService(AgentService agentService) {
+    this.agentService = agentService;
+  }
+
+  private static class AgentConnection {
+    private final String agentId;
+    private final List<TaskType> taskTypes;
+    private final SseEmitter emitter;
+    private final Map<String, AtomicInteger> credits = new ConcurrentHashMap<>();
+
+    private AgentConnection(String agentId, List<TaskType> taskTypes, SseEmitter emitter) {
+      this.agentId = agentId;
+      this.taskTypes = taskTypes;
+      this.emitter = emitter;
+    }
+
+    private AtomicInteger credits(String kind) {
+      return credits.computeIfAbsent(kind, k -> new AtomicInteger());
+    }
+  }
+
+  @PostConstruct
+  public void init() {
+    dispatcher =
+        Executors.newSingleThreadScheduledExecutor(
+            r -> {
+              Thread thread = new Thread(r, "agent-dispatcher");
+              thread.setDaemon(true);
+              return thread;
+            });
+    dispatcher.scheduleWithFixedDelay(
+        this::sweep, sweepInterval, sweepInterval, TimeUnit.MILLISECONDS);
+  }
+
+  @PreDestroy
+  public void destroy() {
+    dispatcher.shutdownNow();
+    connections.values().forEach(c -> c.emitter.complete());
+  }
+
+  /**
+   * Opens the dispatch stream for the agent. Replaces any existing stream for the agent. Nothing is
+   * dispatched until the agent grants credits.
+   *
+   * @param agentId
+   * @return the emitter for the event stream
+   */
+  public SseEmitter connect(String agentId) {
+    List<TaskType> taskTypes = agentService.validateAgent(agentId);
+    SseEmitter emitter = new SseEmitter(connectionTimeout);
+    AgentConnection connection = new AgentConnection(agentId, taskTypes, emitter);
+    emitter.onCompletion(() -> disconnect(connection));
+    emitter.onTimeout(() -> disconnect(connection));
+    emitter.onError(e -> disconnect(connection));
+
+    AgentConnection previous = connections.put(agentId, connection);
+    if (previous != null) {
+      previous.emitter.complete();
+    }
+    LOGGER.info("Agent {} connected to dispatch stream.", agentId);
+    return emitter;
+  }
+
+  /**
+   * Grants the agent additional credits as executor slots are freed.
+   *
+   * @param agentId
+   * @param credits the additional runs the agent can accept, keyed by workflow or task type
+   * @return false if the agent is not connected
+   */
+  public boolean grant(String agentId, Map<String, Integer> credits) {
+    AgentConnection connection = connections.get(agentId);
+    if (connection == null) {
+      return false;
+    }
+    credits.forEach((kind, count) -> connection.credits(kind).addAndGet(Math.max(count, 0)));
+    signal();
+    return true;
+  }
+
+  /** Signals that WorkflowRuns or TaskRuns have been queued and can be dispatched. */
+  public void signal() {
+    if (!connections.isEmpty() && dispatchPending.compareAndSet(false, true)) {
+      dispatcher.execute(
+          () -> {
+            dispatchPending.set(false);
+            connections.values().forEach(this::dispatch);
+          });
+    }
+  }
+
+  private void sweep() {
+    connections
+        .values()
+        .forEach(
+            c -> {
+              try {
+                synchronized (c) {
+                  c.emitter.send(SseEmitter.event().comment("keepalive"));
+                }
+                pushCompletions(c);
+                dispatch(c);
+              } catch (IOException | IllegalStateException e) {
+                c.emitter.completeWithError(e);
+              } catch (Exception e) {
+                LOGGER.error("Error sweeping agent {}: {}", c.agentId, e.getMessage());
+              }
+            });
+  }
+
+  /*
+   * Push the WorkflowRuns to finalize and the TaskRuns to terminate. They do not use credits and,
+   * as with the long poll, are sent on each sweep until the agent has acted on them.
+   */
+  private void pushCompletions(AgentConnection connection) throws IOException {
+    List<WorkflowRun> wfRuns = agentService.findWorkflowRunsToFinalize(connection.agentId);
+    List<TaskRun> taskRuns = agentService.findTaskRunsToTerminate(connection.agentId);
+    synchronized (connection) {
+      for (WorkflowRun wfRun : wfRuns) {
+        connection.emitter.send(
+            SseEmitter.event().name(FINALIZE_EVENT).id(wfRun.getId()).data(wfRun));
+      }
+      for (TaskRun taskRun : taskRuns) {
+        connection.emitter.send(
+            SseEmitter.event().name(TERMINATE_EVENT).id(taskRun.getId()).data(taskRun));
+      }
+    }
+  }
+
+  /*
+   * Claim and push runs to the agent up to its remaining credits of each kind. WorkflowRuns are
+   * dispatched before TaskRuns as they are required to exist prior to their tasks executing.
+   */
+  private void dispatch(AgentConnection connection) {
+    synchronized (connection) {
+      try {
+        if (connections.get(connection.agentId) != connection) {
+          return;
+        }
+        int wfCredits = connection.credits(WORKFLOW_CREDITS).get();
+        if (wfCredits > 0) {
+          List<WorkflowRun> wfRuns = agentService.claimWorkflowRuns(connection.agentId, wfCredits);
+          if (!pushAll(
+              connection,
+              WORKFLOWRUN_EVENT,
+              wfRuns,
+              WorkflowRun::getId,
+              wfRun -> WORKFLOW_CREDITS,
+              WorkflowRunEntity.class)) {
+            return;
+          }
+        }
+        Map<TaskType, Integer> limits = new LinkedHashMap<>();
+        for (TaskType type : connection.taskTypes) {
+          int credits = connection.credits(type.getLabel()).get();
+          if (credits > 0) {
+            limits.put(type, credits);
+          }
+        }
+        if (limits.isEmpty()) {
+          return;
+        }
+        List<TaskRun> taskRuns = agentService.claimTaskRuns(connection.agentId, limits);
+        pushAll(
+            connection,
+            TASKRUN_EVENT,
+            taskRuns,
+            TaskRun::getId,
+            taskRun -> taskRun.getType().getLabel(),
+            TaskRunEntity.class);
+      } catch (Exception e) {
+        LOGGER.error("Error dispatching to agent {}: {}", connection.agentId, e.getMessage());
+      }
+    }
+  }
+
+  /*
+   * Push the claimed runs. If a run can not be delivered the stream is closed and the undelivered
+   * claims are released for another agent, or the long poll, to pick up.
+   */
+  private <T> boolean pushAll(
+      AgentConnection connection,
+      String event,
+      List<T> runs,
+      Function<T, String> id,
+      Function<T, String> creditKind,
+      Class<?> entityClass) {
+    for (int i = 0; i < runs.size(); i++) {
+      T run = runs.get(i);
+      try {
+        connection.emitter.send(SseEmitter.event().name(event).id(id.apply(run)).data(run));
+        connection.credits(creditKind.apply(run)).decrementAndGet();
+        LOGGER.debug("Dispatched {} {} to agent {}", event, id.apply(run), connection.agentId);
+      } catch (IOException | IllegalStateException e) {
+        LOGGER.warn(
+            "Unable to dispatch {} {} to agent {}.", event, id.apply(run), connection.agentId);
+        runs.subList(i, runs.size())
+            .forEach(r -> agentService.releaseClaim(entityClass, id.apply(r), connection.agentId));
+        connection.emitter.completeWithError(e);
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void disconnect(AgentConnection connection) {
+    if (connections.remove(connection.agentId, connection)) {
+      LOGGER.info("Agent {} disconnected from dispatch stream.", connection.agentId);
+    }
+  }
+}
@@ -2,6 +2,10 @@ package io.boomerang.engine;
 
 import static io.boomerang.util.ConvertUtil.entityToModel;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.boomerang.common.entity.TaskRunEntity;
+import io.boomerang.common.entity.WorkflowRunEntity;
 import io.boomerang.common.enums.RunPhase;
 import io.boomerang.common.enums.RunStatus;
 import io.boomerang.common.enums.TaskType;
@@ -11,13 +15,27 @@ import io.boomerang.common.model.WorkflowRun;
 import io.boomerang.engine.entity.AgentEntity;
 import io.boomerang.engine.repository.AgentRepository;
 import io.boomerang.engine.repository.TaskRunRepository;
-import io.boomerang.engine.repository.WorkflowRunRepository;
+import jakarta.annotation.PostConstruct;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.Date;
+import java.util.LinkedList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.jobrunr.jobs.annotations.Job;
+import org.jobrunr.scheduling.JobScheduler;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 
@@ -27,18 +45,51 @@ public class AgentService {
 
   private static final Integer MAX_POLL_INTERVAL = 30000;
   private static final Integer MAX_SLEEP_INTERVAL = 1000; // 1 sec
+  private static final String CLAIM_REAPER_JOB_ID = "agent-claim-reaper";
+  private static final Sort OLDEST = Sort.by(Sort.Direction.ASC, "creationDate");
+
+  @Value("${flow.agent.claim.timeout:120000}")
+  private long claimTimeout;
+
+  @Value("${flow.agent.cache.expire:60}")
+  private long cacheExpireAfter;
 
   private final AgentRepository agentRepository;
-  private final WorkflowRunRepository wfRunRepository;
   private final TaskRunRepository taskRunRepository;
+  private final MongoTemplate mongoTemplate;
+  private final JobScheduler jobScheduler;
+
+  // Registered agents task types. Avoids validating the agent and reading its task types on every
+  // poll. Evicted on register and delete on this replica. Other replicas see the change once their
+  // entry expires (flow.agent.cache.expire), and until then serve the previous task types.
+  private Cache<String, List<TaskType>> agentTaskTypes;
 
   public AgentService(
       AgentRepository agentRepository,
-      WorkflowRunRepository wfRunRepository,
-      TaskRunRepository taskRunRepository) {
+      TaskRunRepository taskRunRepository,
+      MongoTemplate mongoTemplate,
+      JobScheduler jobScheduler) {
     this.agentRepository = agentRepository;
-    this.wfRunRepository = wfRunRepository;
     this.taskRunRepository = taskRunRepository;
+    this.mongoTemplate = mongoTemplate;
+    this.jobScheduler = jobScheduler;
+  }
+
+  @PostConstruct
+  public void init() {
+    agentTaskTypes =
+        Caffeine.newBuilder()
+            .maximumSize(1000)
+            .expireAfterWrite(Duration.ofSeconds(cacheExpireAfter))
+            .build();
+    scheduleClaimReaper();
+  }
+
+  private void scheduleClaimReaper() {
+    jobScheduler.scheduleRecurrently(
+        CLAIM_REAPER_JOB_ID,
+        Duration.ofMillis(Math.max(claimTimeout / 2, 15000)),
+        () -> this.releaseExpiredClaims());
   }
 
   /**
@@ -66,6 +117,8 @@ public class AgentService {
                 TaskType.convertToTaskTypeList(request.getTaskTypes()),
                 request.getVersion()));
 
+    agentTaskTypes.invalidate(entity.getId());
+
     // Log the registration for debugging purposes
     LOGGER.debug(
         "Registered agent: {}({}) with task types: {}",
@@ -77,28 +130,48 @@ public class AgentService {
   }
 
   /**
-   * Retrieves the workflowruns and taskruns for the agent. This is a long poll endpoint.
+   * Deletes the Agent's registration. Its claimed runs are released by the claim reaper once their
+   * visibility timeout expires.
    *
-   * <p>TODO: figure out how to have multiple agents, probably a centralised lock, so no chance of
-   * collision in retrieving and assigning
+   * @param agentId
+   */
+  public void delete(String agentId) {
+    validateAgent(agentId);
+    agentRepository.deleteById(agentId);
+    agentTaskTypes.invalidate(agentId);
+    LOGGER.debug("Deleted agent: {}", agentId);
+  }
+
+  /**
+   * Records the agent heartbeat and extends the visibility timeout of the agent's claimed runs
+   * that have not yet been started.
    *
    * @param agentId
-   * @return
    */
-  public ResponseEntity<List<WorkflowRun>> getWorkflowQueue(String agentId) {
-    // Validate the Agent
-    if (!agentRepository.existsById(agentId)) {
-      LOGGER.error("Agent {} not registered", agentId);
-      throw new IllegalArgumentException("Agent ID does not exist or is not registered.");
-    }
+  public void heartbeat(String agentId) {
+    validateAgent(agentId);
     agentRepository.updateLastConnected(agentId, new Date());
+    Query query =
+        Query.query(Criteria.where("agentRef").is(agentId).and("phase").is(RunPhase.queued));
+    Update update = new Update().set("agentClaimExpiry", claimExpiry());
+    mongoTemplate.updateMulti(query, update, WorkflowRunEntity.class);
+    mongoTemplate.updateMulti(query, update, TaskRunEntity.class);
+  }
+
+  /**
+   * Retrieves the workflowruns for the agent. This is a long poll endpoint.
+   *
+   * <p>Ready WorkflowRuns are atomically claimed, moving them from pending to queued and stamping
+   * the agent, so that multiple agents never receive the same WorkflowRun. Completed WorkflowRuns
+   * owned by the agent are returned to be finalized.
+   *
+   * @param agentId
+   * @param limit maximum number of WorkflowRuns to claim
+   * @return
+   */
+  public ResponseEntity<List<WorkflowRun>> getWorkflowQueue(String agentId, int limit) {
+    validateAgent(agentId);
     // TODO add in future filtering of workflows based on labels or a setting
-    //    AgentEntity entity = agentRepository.findTaskTypesByAgentId(agentId);
-    //    if (entity != null && entity.getTaskTypes() != null && entity.getTaskTypes().isEmpty()) {
-    //      LOGGER.warn("Agent {} has no task types defined. Returning 204.", agentId);
-    //      return ResponseEntity.noContent().build();
-    //    }
-    //    LOGGER.debug("Entity: {}", entity);
 
     // Long poll logic
     Instant endTime = Instant.now().plusMillis(MAX_POLL_INTERVAL); // Keep connection open
@@ -106,21 +179,8 @@ public class AgentService {
     while (Instant.now().isBefore(endTime)) {
       LOGGER.debug("Checking queue for agent: {}", agentId);
       try {
-        // Retrieve workflows and tasks for the agent filtered as per agents capabilities
-        // Stream, convert, and collect WorkflowRunEntity to WorkflowRun
-        List<WorkflowRun> workflowRuns =
-            wfRunRepository
-                .findByPhaseInAndStatusInOrPhaseIn(
-                    List.of(RunPhase.pending),
-                    List.of(RunStatus.ready),
-                    List.of(RunPhase.completed))
-                .stream()
-                .map((e) -> entityToModel(e, WorkflowRun.class))
-                .collect(Collectors.toList());
-
-        // Update the WorkflowRuns so that they are assigned to the agent and set to queued phase
-        wfRunRepository.updatePhaseAndAgentRef(
-            List.of(RunPhase.pending), List.of(RunStatus.ready), agentId, RunPhase.queued);
+        List<WorkflowRun> workflowRuns = claimWorkflowRuns(agentId, limit);
+        workflowRuns.addAll(findWorkflowRunsToFinalize(agentId));
 
         LOGGER.debug("Found {} WorkflowRuns for Agent: {}", workflowRuns.size(), agentId);
         if (workflowRuns.size() > 0) {
@@ -128,6 +188,9 @@ public class AgentService {
         }
         // Sleep for a short interval before checking again
         Thread.sleep(MAX_SLEEP_INTERVAL);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        break;
       } catch (Exception e) {
         LOGGER.error("Error retrieving workflows for agent {}: {}", agentId, e.getMessage());
       }
@@ -137,64 +200,54 @@ public class AgentService {
   }
 
   /**
-   * Retrieves the workflowruns and taskruns for the agent. This is a long poll endpoint.
+   * Retrieves the taskruns for the agent. This is a long poll endpoint.
+   *
+   * <p>Ready TaskRuns of the agents task types are atomically claimed, moving them from pending to
+   * queued and stamping the agent, so that multiple agents never execute the same TaskRun.
+   * Cancelled or timed out TaskRuns owned by the agent are returned to be terminated.
    *
-   * <p>TODO: figure out how to have multiple agents, probably a centralised lock, so no chance of
-   * collision in retrieving and assigning
+   * <p>Agents with a concurrency per task type pass a limit per task type, so that they never
+   * claim more of a type than they can start. Otherwise the limit is shared by the task types.
    *
    * @param agentId
+   * @param limit maximum number of TaskRuns to claim, when there are no task type limits
+   * @param limits maximum number of TaskRuns to claim per task type, as type:limit
    * @return
    */
-  public ResponseEntity<List<TaskRun>> getTaskQueue(String agentId) {
-    // Validate the Agent
-    if (!agentRepository.existsById(agentId)) {
-      LOGGER.error("Agent {} not registered", agentId);
-      throw new IllegalArgumentException("Agent ID does not exist or is not registered.");
-    }
-    agentRepository.updateLastConnected(agentId, new Date());
-    AgentEntity entity = agentRepository.findTaskTypesByAgentId(agentId);
-    if (entity != null && entity.getTaskTypes() != null && entity.getTaskTypes().isEmpty()) {
+  public ResponseEntity<List<TaskRun>> getTaskQueue(
+      String agentId, int limit, List<String> limits) {
+    List<TaskType> taskTypes = validateAgent(agentId);
+    if (taskTypes == null || taskTypes.isEmpty()) {
       LOGGER.warn("Agent {} has no task types defined. Returning 204.", agentId);
       return ResponseEntity.noContent().build();
     }
-
-    LOGGER.debug("Entity: {}", entity);
+    final Map<TaskType, Integer> typeLimits =
+        limits == null || limits.isEmpty() ? null : taskTypeLimits(taskTypes, limits);
 
     // Long poll logic
     Instant endTime =
         Instant.now().plusMillis(MAX_POLL_INTERVAL); // Keep connection open for 30 seconds
     LOGGER.debug("Starting long poll queue for agent: {}", agentId);
     while (Instant.now().isBefore(endTime)) {
-      LOGGER.debug(
-          "Checking queue for agent: {} with task types: {}", agentId, entity.getTaskTypes());
+      LOGGER.debug("Checking queue for agent: {} with task types: {}", agentId, taskTypes);
       try {
-        // Stream, convert, and collect TaskRuns that are ready
         List<TaskRun> taskRuns =
-            taskRunRepository
-                .findByPhaseInAndStatusInAndTypeIn(
-                    List.of(RunPhase.pending, RunPhase.completed),
-                    List.of(RunStatus.ready, RunStatus.cancelled, RunStatus.timedout),
-                    entity.getTaskTypes())
-                .stream()
-                .map((e) -> new TaskRun(e))
-                .collect(Collectors.toList());
+            typeLimits != null
+                ? claimTaskRuns(agentId, typeLimits)
+                : claimTaskRuns(agentId, taskTypes, limit);
+        taskRuns.addAll(findTaskRunsToTerminate(agentId));
 
         taskRuns.forEach(tr -> LOGGER.debug("TaskRun: {}", tr));
 
-        // Update the TaskRuns so that they are assigned to the agent and set to queued phase
-        taskRunRepository.updatePhaseAndAgentRef(
-            List.of(RunPhase.pending),
-            List.of(RunStatus.ready),
-            entity.getTaskTypes(),
-            agentId,
-            RunPhase.queued);
-
         LOGGER.debug("Found {} TaskRuns for Agent: {}", taskRuns.size(), agentId);
         if (taskRuns.size() > 0) {
           return ResponseEntity.ok(taskRuns);
         }
         // Sleep for a short interval before checking again
         Thread.sleep(MAX_SLEEP_INTERVAL);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        break;
       } catch (Exception e) {
         LOGGER.error("Error retrieving tasks for agent {}: {}", agentId, e.getMessage());
       }
@@ -202,4 +255,263 @@ public class AgentService {
     LOGGER.debug("Ending long poll queue for agent: {}", agentId);
     return ResponseEntity.noContent().build();
   }
+
+  /*
+   * Claim up to limit ready WorkflowRuns for the agent
+   */
+  List<WorkflowRun> claimWorkflowRuns(String agentId, int limit) {
+    final Criteria ready =
+        Criteria.where("phase")
+            .is(RunPhase.pending)
+            .and("status")
+            .is(RunStatus.ready)
+            .orOperator(unclaimed());
+    return claim(
+            select(ready, WorkflowRunEntity.class, WorkflowRunEntity::getId, limit),
+            ready,
+            WorkflowRunEntity.class,
+            agentId)
+        .stream()
+        .map(
+            (e) -> {
+              e.setPhase(RunPhase.pending);
+              return entityToModel(e, WorkflowRun.class);
+            })
+        .collect(Collectors.toList());
+  }
+
+  /*
+   * Claim up to limit ready TaskRuns across the agents task types
+   */
+  List<TaskRun> claimTaskRuns(String agentId, List<TaskType> taskTypes, int limit) {
+    if (taskTypes.isEmpty()) {
+      return new LinkedList<>();
+    }
+    final Criteria ready = readyTaskRuns(taskTypes);
+    return toTaskRuns(
+        claim(
+            select(ready, TaskRunEntity.class, TaskRunEntity::getId, limit),
+            ready,
+            TaskRunEntity.class,
+            agentId));
+  }
+
+  /*
+   * Claim ready TaskRuns up to the limit of each task type. The candidates are selected per task
+   * type and claimed together.
+   */
+  List<TaskRun> claimTaskRuns(String agentId, Map<TaskType, Integer> limits) {
+    List<String> ids = new LinkedList<>();
+    limits.forEach(
+        (type, limit) ->
+            ids.addAll(
+                select(
+                    readyTaskRuns(List.of(type)),
+                    TaskRunEntity.class,
+                    TaskRunEntity::getId,
+                    limit)));
+    return toTaskRuns(
+        claim(
+            ids,
+            readyTaskRuns(List.copyOf(limits.keySet())),
+            TaskRunEntity.class,
+            agentId));
+  }
+
+  /*
+   * The task type limits of type:limit entries, for the agents task types
+   */
+  Map<TaskType, Integer> taskTypeLimits(List<TaskType> taskTypes, List<String> limits) {
+    Map<TaskType, Integer> typeLimits = new LinkedHashMap<>();
+    for (String entry : limits) {
+      String[] pair = entry.split(":", 2);
+      TaskType type = TaskType.getType(pair[0].trim());
+      try {
+        if (pair.length == 2 && taskTypes.contains(type)) {
+          typeLimits.put(type, Integer.parseInt(pair[1].trim()));
+          continue;
+        }
+      } catch (NumberFormatException e) {
+        // Ignored below
+      }
+      LOGGER.debug("Ignoring task type limit: {}", entry);
+    }
+    return typeLimits;
+  }
+
+  private Criteria readyTaskRuns(List<TaskType> taskTypes) {
+    return Criteria.where("phase")
+        .is(RunPhase.pending)
+        .and("status")
+        .is(RunStatus.ready)
+        .and("type")
+        .in(taskTypes)
+        .orOperator(unclaimed());
+  }
+
+  private List<TaskRun> toTaskRuns(List<TaskRunEntity> claimed) {
+    return claimed.stream()
+        .map(
+            (e) -> {
+              e.setPhase(RunPhase.pending);
+              return new TaskRun(e);
+            })
+        .collect(Collectors.toList());
+  }
+
+  /*
+   * Completed WorkflowRuns owned by the agent, or unclaimed, that are to be finalized
+   */
+  List<WorkflowRun> findWorkflowRunsToFinalize(String agentId) {
+    return mongoTemplate
+        .find(
+            Query.query(
+                Criteria.where("phase")
+                    .is(RunPhase.completed)
+                    .orOperator(Criteria.where("agentRef").is(agentId), unclaimed())),
+            WorkflowRunEntity.class)
+        .stream()
+        .map((e) -> entityToModel(e, WorkflowRun.class))
+        .collect(Collectors.toList());
+  }
+
+  /*
+   * Cancelled or timed out TaskRuns owned by the agent that are to be terminated
+   */
+  List<TaskRun> findTaskRunsToTerminate(String agentId) {
+    return taskRunRepository
+        .findByPhaseAndStatusInAndAgentRef(
+            RunPhase.completed, List.of(RunStatus.cancelled, RunStatus.timedout), agentId)
+        .stream()
+        .map((e) -> new TaskRun(e))
+        .collect(Collectors.toList());
+  }
+
+  /*
+   * Return a claimed run that could not be delivered to the agent back to pending
+   */
+  void releaseClaim(Class<?> entityClass, String id, String agentId) {
+    Query query =
+        Query.query(
+            Criteria.where("_id")
+                .is(id)
+                .and("agentRef")
+                .is(agentId)
+                .and("phase")
+                .is(RunPhase.queued));
+    Update update =
+        new Update()
+            .set("phase", RunPhase.pending)
+            .unset("agentRef")
+            .unset("agentClaimExpiry")
+            .unset("agentClaimRef");
+    mongoTemplate.updateFirst(query, update, entityClass);
+  }
+
+  /**
+   * Returns claimed runs that were not started before their visibility timeout expired back to
+   * pending so they can be claimed by another agent.
+   */
+  @Job(name = "Agent Claim Reaper")
+  public void releaseExpiredClaims() {
+    Query query =
+        Query.query(
+            Criteria.where("phase").is(RunPhase.queued).and("agentClaimExpiry").lt(new Date()));
+    Update update =
+        new Update()
+            .set("phase", RunPhase.pending)
+            .unset("agentRef")
+            .unset("agentClaimExpiry")
+            .unset("agentClaimRef");
+    long workflowRuns =
+        mongoTemplate.updateMulti(query, update, WorkflowRunEntity.class).getModifiedCount();
+    long taskRuns =
+        mongoTemplate.updateMulti(query, update, TaskRunEntity.class).getModifiedCount();
+    if (workflowRuns > 0 || taskRuns > 0) {
+      LOGGER.info(
+          "Released {} WorkflowRun and {} TaskRun expired agent claims.", workflowRuns, taskRuns);
+    }
+  }
+
+  /*
+   * Select the ids of the oldest limit runs matching the criteria, as candidates to claim
+   */
+  private <T> List<String> select(
+      Criteria criteria, Class<T> entityClass, Function<T, String> id, int limit) {
+    if (limit <= 0) {
+      return List.of();
+    }
+    Query candidates = Query.query(criteria).with(OLDEST).limit(limit);
+    candidates.fields().include("_id");
+    return mongoTemplate.find(candidates, entityClass).stream().map(id).toList();
+  }
+
+  /*
+   * Claim the selected runs as a batch, in two round trips regardless of their number
+   *
+   * - The runs are claimed with a single updateMulti that only matches those that still match the
+   * criteria, i.e. are unclaimed, and stamps a claim reference. Concurrent agents can never claim
+   * the same run, a run claimed by another agent since it was selected is skipped.
+   * - The claimed runs are read back by their id and the claim reference.
+   *
+   * The callers return the runs in the phase prior to the claim (pending) as this is what the agent
+   * expects to execute.
+   */
+  private <T> List<T> claim(
+      List<String> ids, Criteria criteria, Class<T> entityClass, String agentId) {
+    if (ids.isEmpty()) {
+      return new LinkedList<>();
+    }
+
+    final String claimRef = UUID.randomUUID().toString();
+    Update update =
+        new Update()
+            .set("agentRef", agentId)
+            .set("phase", RunPhase.queued)
+            .set("agentClaimExpiry", claimExpiry())
+            .set("agentClaimRef", claimRef);
+    long claimed =
+        mongoTemplate
+            .updateMulti(
+                Query.query(Criteria.where("_id").in(ids).andOperator(criteria)),
+                update,
+                entityClass)
+            .getModifiedCount();
+    if (claimed == 0) {
+      return new LinkedList<>();
+    }
+    return new LinkedList<>(
+        mongoTemplate.find(
+            Query.query(Criteria.where("_id").in(ids).and("agentClaimRef").is(claimRef))
+                .with(OLDEST),
+            entityClass));
+  }
+
+  private Criteria[] unclaimed() {
+    return new Criteria[] {
+      Criteria.where("agentRef").is(""), Criteria.where("agentRef").exists(false)
+    };
+  }
+
+  private Date claimExpiry() {
+    return new Date(System.currentTimeMillis() + claimTimeout);
+  }
+
+  /*
+   * Validate the Agent is registered, returning its task types
+   */
+  List<TaskType> validateAgent(String agentId) {
+    List<TaskType> taskTypes = agentTaskTypes.getIfPresent(agentId);
+    if (taskTypes != null) {
+      return taskTypes;
+    }
+    AgentEntity entity = agentRepository.findTaskTypesByAgentId(agentId);
+    if (entity == null) {
+      LOGGER.error("Agent {} not registered", agentId);
+      throw new IllegalArgumentException("Agent ID does not exist or is not registered.");
+    }
+    taskTypes = entity.getTaskTypes() != null ? entity.getTaskTypes() : List.of();
+    agentTaskTypes.put(agentId, taskTypes);
+    return taskTypes;
+  }
 }
@@ -0,0 +1,232 @@
+package io.boomerang.engine;
+
+import io.boomerang.common.entity.TaskRunEntity;
+import io.boomerang.common.enums.ExecutionCondition;
+import io.boomerang.common.enums.RunPhase;
+import io.boomerang.common.enums.RunStatus;
+import io.boomerang.common.enums.TaskType;
+import io.boomerang.common.model.WorkflowTaskDependency;
+import io.boomerang.error.BoomerangError;
+import io.boomerang.error.BoomerangException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/*
+ * Run scoped, in memory, view of the WorkflowRun DAG.
+ *
+ * Built once per WorkflowRun and then updated as each TaskRun completes. Each completed TaskRun
+ * resolves its outgoing edges as either retained or removed, based on the execution condition (or
+ * decision condition) of the dependency. This mirrors the edge removal performed by
+ * DAGUtility.canRunTask on a freshly built graph, without having to rebuild the graph or read
+ * every TaskRun from the database.
+ *
+ * Edges from TaskRuns that have not completed are treated as retained, as per the graph version.
+ */
+public class DAGState {
+
+  private final String workflowRunRef;
+  private final String startId;
+  private final Map<String, Vertex> vertices = new LinkedHashMap<>();
+
+  private DAGState(String workflowRunRef, String startId) {
+    this.workflowRunRef = workflowRunRef;
+    this.startId = startId;
+  }
+
+  public static DAGState build(String workflowRunRef, List<TaskRunEntity> tasks) {
+    final TaskRunEntity start =
+        tasks.stream().filter(t -> TaskType.start.equals(t.getType())).findAny().orElse(null);
+    DAGState state = new DAGState(workflowRunRef, start != null ? start.getId() : null);
+    final Map<String, String> idsByName = new HashMap<>();
+    for (final TaskRunEntity task : tasks) {
+      idsByName.put(task.getName(), task.getId());
+      state.vertices.put(task.getId(), new Vertex(task));
+    }
+    for (final TaskRunEntity task : tasks) {
+      Vertex target = state.vertices.get(task.getId());
+      for (final WorkflowTaskDependency dep : target.dependencies) {
+        String sourceId = idsByName.get(dep.getTaskRef());
+        if (sourceId == null) {
+          throw new BoomerangException(
+              BoomerangError.WORKFLOWRUN_INVALID_DEPENDENCY, dep.getTaskRef());
+        }
+        target.incoming.add(sourceId);
+        state.vertices.get(sourceId).outgoing.add(task.getId());
+      }
+    }
+    for (final TaskRunEntity task : tasks) {
+      if (RunPhase.completed.equals(task.getPhase())) {
+        state.complete(task);
+      }
+    }
+    return state;
+  }
+
+  public String getWorkflowRunRef() {
+    return workflowRunRef;
+  }
+
+  public synchronized boolean contains(String taskRunId) {
+    return vertices.containsKey(taskRunId);
+  }
+
+  /*
+   * Resolve the outgoing edges of a completed TaskRun. Start and End tasks keep all of their edges.
+   *
+   * Calling this more than once for the same TaskRun is safe.
+   */
+  public synchronized void complete(TaskRunEntity task) {
+    Vertex source = vertices.get(task.getId());
+    if (source == null
+        || TaskType.start.equals(source.type)
+        || TaskType.end.equals(source.type)) {
+      return;
+    }
+    Set<String> retained =
+        TaskType.decision.equals(source.type)
+            ? matchDecision(source, task.getDecisionValue())
+            : matchCondition(source, task.getStatus());
+    for (String targetId : source.outgoing) {
+      vertices.get(targetId).resolved.put(source.id, retained.contains(targetId));
+    }
+  }
+
+  /*
+   * Determine if the TaskRun can run. Implements the same AND check on dependencies and path from
+   * Start as DAGUtility.canRunTask.
+   *
+   * Returns empty if a dependency has not been resolved in this state, i.e. the state may be stale
+   * and needs to be rebuilt from the database.
+   */
+  public synchronized Optional<Boolean> canRun(String taskRunId) {
+    return evaluate(taskRunId, false);
+  }
+
+  /*
+   * As canRun, for a state that has just been built from the database. A dependency that has not
+   * been resolved has not completed, so its edge is retained as per the graph version.
+   */
+  public synchronized boolean canRunFromBuilt(String taskRunId) {
+    return evaluate(taskRunId, true).orElse(false);
+  }
+
+  private Optional<Boolean> evaluate(String taskRunId, boolean retainPending) {
+    Vertex current = vertices.get(taskRunId);
+    if (current == null || startId == null) {
+      return Optional.empty();
+    }
+    int retained = 0;
+    for (String sourceId : current.incoming) {
+      if (!startId.equals(sourceId)) {
+        Boolean edge = current.resolved.get(sourceId);
+        if (edge == null && !retainPending) {
+          return Optional.empty();
+        } else if (Boolean.FALSE.equals(edge)) {
+          continue;
+        }
+      }
+      retained++;
+    }
+    if (retained != current.dependencies.size()) {
+      return Optional.of(false);
+    }
+    return Optional.of(isReachableFromStart(current));
+  }
+
+  /*
+   * Walk backwards along retained edges to find Start
+   */
+  private boolean isReachableFromStart(Vertex current) {
+    final Deque<Vertex> toVisit = new ArrayDeque<>();
+    final Set<String> visited = new HashSet<>();
+    toVisit.push(current);
+    while (!toVisit.isEmpty()) {
+      Vertex vertex = toVisit.pop();
+      for (String sourceId : vertex.incoming) {
+        if (startId.equals(sourceId)) {
+          return true;
+        }
+        if (!Boolean.FALSE.equals(vertex.resolved.get(sourceId)) && visited.add(sourceId)) {
+          toVisit.push(vertices.get(sourceId));
+        }
+      }
+    }
+    return false;
+  }
+
+  private Set<String> matchCondition(Vertex source, RunStatus status) {
+    Set<String> matched = new HashSet<>();
+    for (String targetId : source.outgoing) {
+      Optional<WorkflowTaskDependency> dependency = vertices.get(targetId).dependency(source.name);
+      if (dependency.isPresent()) {
+        ExecutionCondition condition = dependency.get().getExecutionCondition();
+        if (condition != null
+                && (RunStatus.failed.equals(status)
+                    && ExecutionCondition.failure.equals(condition))
+            || (RunStatus.succeeded.equals(status)
+                && ExecutionCondition.success.equals(condition))
+            || (ExecutionCondition.always.equals(condition))) {
+          matched.add(targetId);
+        }
+      }
+    }
+    return matched;
+  }
+
+  /*
+   * Match the decision value against each dependants decision condition. If no conditions match,
+   * the dependants without a condition are taken as the default path.
+   */
+  private Set<String> matchDecision(Vertex source, String value) {
+    Set<String> matched = new HashSet<>();
+    Set<String> defaults = new HashSet<>();
+    for (String targetId : source.outgoing) {
+      Optional<WorkflowTaskDependency> dependency = vertices.get(targetId).dependency(source.name);
+      if (dependency.isPresent()) {
+        String linkValue = dependency.get().getDecisionCondition();
+        if (linkValue != null && !linkValue.isEmpty()) {
+          for (String line : linkValue.split("\\r?\\n")) {
+            if (value != null && Pattern.compile(line).matcher(value).matches()) {
+              matched.add(targetId);
+            }
+          }
+        } else {
+          defaults.add(targetId);
+        }
+      }
+    }
+    return matched.isEmpty() ? defaults : matched;
+  }
+
+  private static class Vertex {
+    private final String id;
+    private final String name;
+    private final TaskType type;
+    private final List<WorkflowTaskDependency> dependencies;
+    private final List<String> incoming = new LinkedList<>();
+    private final List<String> outgoing = new LinkedList<>();
+    // Source TaskRun id to whether the edge was retained once the source completed
+    private final Map<String, Boolean> resolved = new HashMap<>();
+
+    private Vertex(TaskRunEntity task) {
+      this.id = task.getId();
+      this.name = task.getName();
+      this.type = task.getType();
+      this.dependencies =
+          task.getDependencies() != null ? task.getDependencies() : new LinkedList<>();
+    }
+
+    private Optional<WorkflowTaskDependency> dependency(String sourceName) {
+      return dependencies.stream().filter(d -> d.getTaskRef().equals(sourceName)).findAny();
+    }
+  }
+}
@@ -1,5 +1,7 @@
 package io.boomerang.engine;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import io.boomerang.common.entity.TaskRunEntity;
 import io.boomerang.common.entity.WorkflowRevisionEntity;
 import io.boomerang.common.entity.WorkflowRunEntity;
@@ -13,6 +15,9 @@ import io.boomerang.error.BoomerangException;
 import io.boomerang.util.GraphProcessor;
 import io.boomerang.util.ParameterUtil;
 import io.boomerang.util.ResultUtil;
+import jakarta.annotation.PostConstruct;
+import java.time.Duration;
+import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -34,6 +39,7 @@ import org.jgrapht.alg.interfaces.ShortestPathAlgorithm.SingleSourcePaths;
 import org.jgrapht.alg.shortestpath.DijkstraShortestPath;
 import org.jgrapht.graph.DefaultEdge;
 import org.jgrapht.traverse.TopologicalOrderIterator;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 @Service
@@ -43,11 +49,31 @@ public class DAGUtility {
   private final TaskRunRepository taskRunRepository;
   private final TaskService taskService;
 
+  @Value("${flow.dag.cache.max-size:1000}")
+  private long maxSize;
+
+  @Value("${flow.dag.cache.expire:3600}")
+  private long expireAfter;
+
+  // Run scoped DAG state keyed by WorkflowRun id. Rebuilt from the database on a miss, for example
+  // when the TaskRun end is handled by a different replica or after a restart. Bounded and
+  // expiring, as a replica that never sees the WorkflowRun end never evicts it.
+  private Cache<String, DAGState> dagStates;
+
   public DAGUtility(TaskRunRepository taskRunRepository, TaskService taskService) {
     this.taskRunRepository = taskRunRepository;
     this.taskService = taskService;
   }
 
+  @PostConstruct
+  public void init() {
+    dagStates =
+        Caffeine.newBuilder()
+            .maximumSize(maxSize)
+            .expireAfterAccess(Duration.ofSeconds(expireAfter))
+            .build();
+  }
+
   public boolean validateWorkflow(WorkflowRunEntity wfRunEntity, List<TaskRunEntity> tasks) {
     if (tasks.size() == 2) {
       // Workflow only has Start and End and therefore cant run.
@@ -94,17 +120,30 @@ public class DAGUtility {
     return taskRunRepository.findByWorkflowRunRef(wfRunId);
   }
 
+  /*
+   * Retrieve the named TaskRuns for a WorkflowRun in a single query, keyed by TaskRun name
+   */
+  public Map<String, TaskRunEntity> retrieveTasksByName(String wfRunId, Collection<String> names) {
+    if (names.isEmpty()) {
+      return new HashMap<>();
+    }
+    return taskRunRepository.findByWorkflowRunRefAndNameIn(wfRunId, names).stream()
+        .collect(Collectors.toMap(TaskRunEntity::getName, t -> t, (t1, t2) -> t1));
+  }
+
   // TODO: determine a better way to handle the start and end task without saving them as a
   // TaskRunEntity
   public List<TaskRunEntity> createTaskList(
       WorkflowRevisionEntity wfRevisionEntity, WorkflowRunEntity wfRunEntity) {
     final List<TaskRunEntity> taskList = new LinkedList<>();
+    final Map<String, TaskRunEntity> existingTaskRunEntities =
+        this.retrieveTasksByName(
+            wfRunEntity.getId(),
+            wfRevisionEntity.getTasks().stream().map(WorkflowTask::getName).toList());
     for (final WorkflowTask wfRevisionTask : wfRevisionEntity.getTasks()) {
-      Optional<TaskRunEntity> existingTaskRunEntity =
-          taskRunRepository.findFirstByNameAndWorkflowRunRef(
-              wfRevisionTask.getName(), wfRunEntity.getId());
-      if (existingTaskRunEntity.isPresent() && existingTaskRunEntity.get() != null) {
-        taskList.add(existingTaskRunEntity.get());
+      TaskRunEntity existingTaskRunEntity = existingTaskRunEntities.get(wfRevisionTask.getName());
+      if (existingTaskRunEntity != null) {
+        taskList.add(existingTaskRunEntity);
       } else {
         LOGGER.debug(
             "[{}] Creating TaskRunEntity: {}", wfRunEntity.getId(), wfRevisionTask.getName());
@@ -273,6 +312,43 @@ public class DAGUtility {
     return (pathFromStart.getPath(current.getId()) != null);
   }
 
+  /*
+   * Determine if the TaskRun can run using the cached DAG state for the WorkflowRun.
+   *
+   * If there is no cached state, or the state has not seen the completion of one of the TaskRuns
+   * dependencies, the state is rebuilt from the database with a single query.
+   */
+  public boolean canRunTask(String wfRunId, TaskRunEntity current) {
+    DAGState state = dagStates.getIfPresent(wfRunId);
+    Optional<Boolean> canRun = state != null ? state.canRun(current.getId()) : Optional.empty();
+    if (canRun.isPresent()) {
+      return canRun.get();
+    }
+    LOGGER.debug("[{}] Rebuilding DAG state for TaskRun: {}", wfRunId, current.getName());
+    return this.buildDAGState(wfRunId, this.retrieveTaskList(wfRunId))
+        .canRunFromBuilt(current.getId());
+  }
+
+  public DAGState buildDAGState(String wfRunId, List<TaskRunEntity> tasks) {
+    DAGState state = DAGState.build(wfRunId, tasks);
+    dagStates.put(wfRunId, state);
+    return state;
+  }
+
+  /*
+   * Resolve the completed TaskRun's outgoing edges in the cached DAG state, if there is one.
+   */
+  public void updateDAGState(TaskRunEntity completed) {
+    DAGState state = dagStates.getIfPresent(completed.getWorkflowRunRef());
+    if (state != null) {
+      state.complete(completed);
+    }
+  }
+
+  public void evictDAGState(String wfRunId) {
+    dagStates.invalidate(wfRunId);
+  }
+
   public TaskRunEntity getTaskByType(List<TaskRunEntity> tasks, TaskType type) {
     return tasks.stream().filter(tsk -> type.equals(tsk.getType())).findAny().orElse(null);
   }
@@ -0,0 +1,527 @@
+package io.boomerang.engine;
+
+import io.boomerang.config.MongoConfiguration;
+import io.boomerang.engine.LeaseLockService.Lease;
+import io.boomerang.engine.entity.EventQueueEntity;
+import io.boomerang.engine.enums.EventQueueStatus;
+import io.cloudevents.CloudEvent;
+import io.cloudevents.core.format.EventFormat;
+import io.cloudevents.core.provider.EventFormatProvider;
+import io.cloudevents.jackson.JsonFormat;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestTemplate;
+
+/*
+ * Durable outbox for the CloudEvent sinks
+ *
+ * - Events are appended to the event_queue collection, one entry per sink.
+ * - A dedicated dispatcher claims batches per sink and delivers them using the CloudEvents batch
+ * content mode. Each sink has its own bounded concurrency so a slow sink does not hold up the
+ * others, nor any other async work in the engine.
+ * - Entries are partitioned by the run the event is about. Each of a sink's workers delivers its
+ * partitions one batch at a time, holding a lease so that no other replica delivers them
+ * concurrently, so the events of a run are delivered in order.
+ * - Failed deliveries are retried with exponential backoff, holding back the later events of the
+ * partition only, and marked as deadletter after the maximum attempts. A failed batch is retried
+ * one event at a time, so an event the sink rejects only uses its own attempts. Dead letters are
+ * removed after the retention.
+ * - Claims expire so that batches claimed by an engine replica that stopped are retried.
+ */
+@Service
+public class EventOutboxDispatcher {
+  private static final Logger LOGGER = LogManager.getLogger(EventOutboxDispatcher.class);
+
+  private static final String COLLECTION_NAME = "event_queue";
+  private static final String BATCH_CONTENT_TYPE = "application/cloudevents-batch+json";
+  private static final String LEASE_PREFIX = "event-outbox/";
+  // Partitions are fixed so that entries are not stranded when the concurrency changes
+  private static final int PARTITIONS = 1024;
+  private static final long PRUNE_INTERVAL = TimeUnit.HOURS.toMillis(1);
+
+  private final EventFormat ceFormat =
+      EventFormatProvider.getInstance().resolveFormat(JsonFormat.CONTENT_TYPE);
+
+  @Value("${flow.events.sink.urls}")
+  private String sinkUrls;
+
+  @Value("${flow.events.sink.enabled}")
+  private boolean sinkEnabled;
+
+  @Value("${flow.events.sink.concurrency:4}")
+  private int concurrency;
+
+  @Value("${flow.events.sink.batch.size:50}")
+  private int batchSize;
+
+  @Value("${flow.events.sink.max.attempts:10}")
+  private int maxAttempts;
+
+  @Value("${flow.events.sink.backoff.initial:1000}")
+  private long initialBackoff;
+
+  @Value("${flow.events.sink.backoff.max:300000}")
+  private long maxBackoff;
+
+  @Value("${flow.events.sink.poll.interval:1000}")
+  private long pollInterval;
+
+  @Value("${flow.events.sink.claim.timeout:60000}")
+  private long claimTimeout;
+
+  @Value("${flow.events.sink.deadletter.retention:7}")
+  private long deadLetterRetention;
+
+  private final RestTemplate restTemplate;
+  private final MongoTemplate mongoTemplate;
+  private final MongoConfiguration mongoConfiguration;
+  private final LeaseLockService leaseLockService;
+
+  // A permit per worker of each sink, so a worker delivers one batch at a time
+  private final Map<String, Semaphore[]> workerPermits = new ConcurrentHashMap<>();
+  private final AtomicBoolean dispatchPending = new AtomicBoolean(false);
+
+  private List<String> sinks = List.of();
+  private int workers;
+  private ScheduledExecutorService dispatcher;
+  private ExecutorService senders;
+
+  public EventOutboxDispatcher(
+      @Qualifier("internalRestTemplate") RestTemplate restTemplate,
+      MongoTemplate mongoTemplate,
+      MongoConfiguration mongoConfiguration,
+      LeaseLockService leaseLockService) {
+    this.restTemplate = restTemplate;
+    this.mongoTemplate = mongoTemplate;
+    this.mongoConfiguration = mongoConfiguration;
+    this.leaseLockService = leaseLockService;
+  }
+
+  @PostConstruct
+  public void init() {
+    if (!sinkEnabled || sinkUrls == null || sinkUrls.isBlank()) {
+      return;
+    }
+    sinks = Arrays.stream(sinkUrls.split(",")).map(String::trim).filter(s -> !s.isEmpty()).toList();
+    workers = Math.max(concurrency, 1);
+    for (String sink : sinks) {
+      Semaphore[] permits = new Semaphore[workers];
+      for (int worker = 0; worker < workers; worker++) {
+        permits[worker] = new Semaphore(1);
+      }
+      workerPermits.put(sink, permits);
+    }
+    try {
+      // Entries appended before partitioning are delivered by the first worker
+      mongoTemplate.updateMulti(
+          Query.query(Criteria.where("partition").exists(false)),
+          new Update().set("partition", 0),
+          EventQueueEntity.class,
+          collection());
+    } catch (Exception e) {
+      LOGGER.warn("Unable to partition existing events: {}", e.getMessage());
+    }
+    AtomicInteger senderCount = new AtomicInteger();
+    senders =
+        Executors.newFixedThreadPool(
+            Math.max(sinks.size() * workers, 1),
+            r -> {
+              Thread thread = new Thread(r, "event-sink-" + senderCount.incrementAndGet());
+              thread.setDaemon(true);
+              return thread;
+            });
+    dispatcher =
+        Executors.newSingleThreadScheduledExecutor(
+            r -> {
+              Thread thread = new Thread(r, "event-outbox-dispatcher");
+              thread.setDaemon(true);
+              return thread;
+            });
+    dispatcher.scheduleWithFixedDelay(
+        this::dispatch, pollInterval, pollInterval, TimeUnit.MILLISECONDS);
+    dispatcher.scheduleWithFixedDelay(
+        this::pruneDeadLetters, PRUNE_INTERVAL, PRUNE_INTERVAL, TimeUnit.MILLISECONDS);
+  }
+
+  @PreDestroy
+  public void destroy() {
+    if (dispatcher != null) {
+      dispatcher.shutdownNow();
+      senders.shutdown();
+    }
+  }
+
+  /*
+   * Append the event to the outbox for each sink
+   */
+  public void append(CloudEvent cloudEvent) {
+    if (sinks.isEmpty()) {
+      return;
+    }
+    byte[] serialized = ceFormat.serialize(cloudEvent);
+    int partition = partition(cloudEvent);
+    List<EventQueueEntity> entries =
+        sinks.stream()
+            .map(s -> new EventQueueEntity(s, cloudEvent.getType(), partition, serialized))
+            .toList();
+    mongoTemplate.insert(entries, collection());
+    signal();
+  }
+
+  /*
+   * The status event subjects are /<kind>/<id>/status/<status>, so the partition is a hash of the
+   * subject up to the status.
+   */
+  static int partition(CloudEvent cloudEvent) {
+    String key = cloudEvent.getSubject();
+    if (key == null) {
+      key = cloudEvent.getId();
+    } else if (key.contains("/status/")) {
+      key = key.substring(0, key.indexOf("/status/"));
+    }
+    return Math.floorMod(key.hashCode(), PARTITIONS);
+  }
+
+  /*
+   * Trigger a dispatch pass without waiting for the poll interval
+   */
+  public void signal() {
+    if (dispatcher != null && dispatchPending.compareAndSet(false, true)) {
+      dispatcher.execute(this::dispatch);
+    }
+  }
+
+  private void dispatch() {
+    dispatchPending.set(false);
+    for (String sink : sinks) {
+      Semaphore[] permits = workerPermits.get(sink);
+      for (int worker = 0; worker < workers; worker++) {
+        if (!permits[worker].tryAcquire()) {
+          // Still delivering the worker's previous batch
+          continue;
+        }
+        Semaphore permit = permits[worker];
+        String leaseKey = LEASE_PREFIX + sink + "/" + worker;
+        Optional<Lease> lease = Optional.empty();
+        List<EventQueueEntity> batch = List.of();
+        try {
+          lease = leaseLockService.tryAcquire(leaseKey, claimTimeout);
+          if (lease.isPresent()) {
+            batch = claim(sink, worker);
+          }
+        } catch (Exception e) {
+          LOGGER.error("Unable to claim events for sink {}: {}", sink, e.getMessage());
+        }
+        if (batch.isEmpty()) {
+          release(leaseKey, lease);
+          permit.release();
+          continue;
+        }
+        final List<EventQueueEntity> claimed = batch;
+        final Optional<Lease> held = lease;
+        senders.execute(
+            () -> {
+              try {
+                deliver(sink, claimed);
+              } finally {
+                release(leaseKey, held);
+                permit.release();
+              }
+              if (claimed.size() >= batchSize) {
+                // There may be more waiting
+                signal();
+              }
+            });
+      }
+    }
+  }
+
+  private void release(String leaseKey, Optional<Lease> lease) {
+    if (lease.isPresent()) {
+      try {
+        leaseLockService.release(leaseKey, Optional.of(lease.get().owner()));
+      } catch (Exception e) {
+        LOGGER.warn("Unable to release {}, it will expire: {}", leaseKey, e.getMessage());
+      }
+    }
+  }
+
+  /*
+   * Claim the next batch of due events in the worker's partitions of the sink, oldest first. An
+   * event that is not yet due blocks only its own partition, so that the later events of its run
+   * wait for it while the other partitions are claimed. Expired claims are reclaimed.
+   */
+  private List<EventQueueEntity> claim(String sink, int worker) {
+    Date now = new Date();
+    final int limit = Math.max(batchSize, 1);
+    Query query =
+        Query.query(
+                Criteria.where("sink")
+                    .is(sink)
+                    .and("status")
+                    .in(EventQueueStatus.pending, EventQueueStatus.inflight)
+                    .and("partition")
+                    .mod(workers, worker))
+            .with(Sort.by(Sort.Direction.ASC, "creationDate", "_id"))
+            .cursorBatchSize(limit);
+    query.fields().include("_id", "status", "partition", "nextAttemptDate", "claimExpiryDate");
+    List<String> ids = new ArrayList<>();
+    Set<Integer> blocked = new HashSet<>();
+    try (Stream<EventQueueEntity> entries =
+        mongoTemplate.stream(query, EventQueueEntity.class, collection())) {
+      Iterator<EventQueueEntity> iterator = entries.iterator();
+      while (ids.size() < limit && iterator.hasNext()) {
+        EventQueueEntity entry = iterator.next();
+        if (blocked.contains(entry.getPartition())) {
+          continue;
+        }
+        if (!isDue(entry, now)) {
+          blocked.add(entry.getPartition());
+          continue;
+        }
+        ids.add(entry.getId());
+      }
+    }
+    if (ids.isEmpty()) {
+      return List.of();
+    }
+    Criteria due =
+        new Criteria()
+            .orOperator(
+                Criteria.where("status")
+                    .is(EventQueueStatus.pending)
+                    .and("nextAttemptDate")
+                    .lte(now),
+                Criteria.where("status")
+                    .is(EventQueueStatus.inflight)
+                    .and("claimExpiryDate")
+                    .lt(now));
+    String claimRef = UUID.randomUUID().toString();
+    mongoTemplate.updateMulti(
+        Query.query(Criteria.where("_id").in(ids).andOperator(due)),
+        new Update()
+            .set("status", EventQueueStatus.inflight)
+            .set("claimRef", claimRef)
+            .set("claimExpiryDate", new Date(now.getTime() + claimTimeout)),
+        EventQueueEntity.class,
+        collection());
+    return mongoTemplate.find(
+        Query.query(Criteria.where("claimRef").is(claimRef))
+            .with(Sort.by(Sort.Direction.ASC, "creationDate", "_id")),
+        EventQueueEntity.class,
+        collection());
+  }
+
+  private static boolean isDue(EventQueueEntity entry, Date now) {
+    if (EventQueueStatus.inflight.equals(entry.getStatus())) {
+      return entry.getClaimExpiryDate() != null && entry.getClaimExpiryDate().before(now);
+    }
+    return !entry.getNextAttemptDate().after(now);
+  }
+
+  /*
+   * The outcome of a delivery. Rejected is a client error response, i.e. a problem with the events
+   * rather than with the sink.
+   */
+  private record Delivery(boolean delivered, boolean rejected, String error) {}
+
+  private void deliver(String sink, List<EventQueueEntity> batch) {
+    Delivery delivery = send(sink, batch);
+    if (delivery.delivered()) {
+      mongoTemplate.remove(
+          Query.query(Criteria.where("claimRef").is(batch.get(0).getClaimRef())),
+          EventQueueEntity.class,
+          collection());
+    } else if (batch.size() == 1) {
+      failed(sink, batch.get(0), delivery.error());
+    } else {
+      LOGGER.warn(
+          "Unable to deliver {} events to sink {}, retrying one at a time. Error: {}",
+          batch.size(),
+          sink,
+          delivery.error());
+      deliverEach(sink, batch);
+    }
+  }
+
+  /*
+   * Deliver the events of a failed batch one at a time, so that an event the sink rejects does not
+   * use the attempts of the others. Once an event fails, the later events of its partition wait
+   * for it. If the sink itself is failing, the remaining events are deferred to the same retry
+   * without using an attempt.
+   */
+  private void deliverEach(String sink, List<EventQueueEntity> batch) {
+    Set<Integer> failedPartitions = new HashSet<>();
+    Date deferredUntil = null;
+    for (EventQueueEntity entity : batch) {
+      if (deferredUntil != null || failedPartitions.contains(entity.getPartition())) {
+        defer(entity, deferredUntil != null ? deferredUntil : new Date());
+        continue;
+      }
+      Delivery delivery = send(sink, List.of(entity));
+      if (delivery.delivered()) {
+        mongoTemplate.remove(claimed(entity), EventQueueEntity.class, collection());
+        continue;
+      }
+      Date nextAttempt = failed(sink, entity, delivery.error());
+      failedPartitions.add(entity.getPartition());
+      if (!delivery.rejected()) {
+        deferredUntil = nextAttempt != null ? nextAttempt : new Date();
+      }
+    }
+  }
+
+  private Delivery send(String sink, List<EventQueueEntity> batch) {
+    try {
+      final HttpHeaders headers = new HttpHeaders();
+      final byte[] body;
+      if (batch.size() == 1) {
+        headers.add("Content-Type", JsonFormat.CONTENT_TYPE);
+        body = batch.get(0).getEvent();
+      } else {
+        headers.add("Content-Type", BATCH_CONTENT_TYPE);
+        body = toBatch(batch);
+      }
+      ResponseEntity<String> responseEntity =
+          restTemplate.exchange(
+              sink, HttpMethod.POST, new HttpEntity<>(body, headers), String.class);
+      if (responseEntity.getStatusCode().is2xxSuccessful()) {
+        LOGGER.debug("Delivered {} events to sink {}", batch.size(), sink);
+        return new Delivery(true, false, null);
+      }
+      return new Delivery(
+          false,
+          responseEntity.getStatusCode().is4xxClientError(),
+          "Status Code: " + responseEntity.getStatusCode());
+    } catch (HttpClientErrorException e) {
+      return new Delivery(false, true, e.getMessage());
+    } catch (Exception e) {
+      return new Delivery(false, false, e.getMessage());
+    }
+  }
+
+  private byte[] toBatch(List<EventQueueEntity> batch) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    out.write('[');
+    for (int i = 0; i < batch.size(); i++) {
+      if (i > 0) {
+        out.write(',');
+      }
+      out.writeBytes(batch.get(i).getEvent());
+    }
+    out.write(']');
+    return out.toByteArray();
+  }
+
+  /*
+   * Schedule the retry with exponential backoff and jitter, or mark as deadletter. Returns the next
+   * attempt, or null if the event is now a dead letter.
+   */
+  private Date failed(String sink, EventQueueEntity entity, String error) {
+    LOGGER.warn("Unable to deliver event {} to sink {}. Error: {}", entity.getId(), sink, error);
+    int attempts = entity.getAttempts() + 1;
+    Update update =
+        new Update().set("attempts", attempts).set("lastError", error).unset("claimRef");
+    Date nextAttempt = null;
+    if (attempts >= maxAttempts) {
+      update.set("status", EventQueueStatus.deadletter).set("deadLetterDate", new Date());
+      LOGGER.error(
+          "Event {} for sink {} moved to deadletter after {} attempts.",
+          entity.getId(),
+          sink,
+          attempts);
+    } else {
+      long backoff = Math.min(initialBackoff << Math.min(attempts - 1, 30), maxBackoff);
+      backoff += ThreadLocalRandom.current().nextLong(backoff / 5 + 1);
+      nextAttempt = new Date(System.currentTimeMillis() + backoff);
+      update.set("status", EventQueueStatus.pending).set("nextAttemptDate", nextAttempt);
+    }
+    mongoTemplate.updateFirst(claimed(entity), update, EventQueueEntity.class, collection());
+    return nextAttempt;
+  }
+
+  /*
+   * Return the event to pending until the date, without using an attempt
+   */
+  private void defer(EventQueueEntity entity, Date until) {
+    mongoTemplate.updateFirst(
+        claimed(entity),
+        new Update()
+            .set("status", EventQueueStatus.pending)
+            .set("nextAttemptDate", until)
+            .unset("claimRef"),
+        EventQueueEntity.class,
+        collection());
+  }
+
+  private Query claimed(EventQueueEntity entity) {
+    return Query.query(
+        Criteria.where("_id").is(entity.getId()).and("claimRef").is(entity.getClaimRef()));
+  }
+
+  /*
+   * Remove the dead letters older than the retention
+   */
+  void pruneDeadLetters() {
+    try {
+      Date before =
+          new Date(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(deadLetterRetention));
+      long removed =
+          mongoTemplate
+              .remove(
+                  Query.query(
+                      Criteria.where("status")
+                          .is(EventQueueStatus.deadletter)
+                          .and("deadLetterDate")
+                          .lt(before)),
+                  EventQueueEntity.class,
+                  collection())
+              .getDeletedCount();
+      if (removed > 0) {
+        LOGGER.info("Removed {} dead letters older than {} days.", removed, deadLetterRetention);
+      }
+    } catch (Exception e) {
+      LOGGER.error("Unable to remove dead letters: {}", e.getMessage());
+    }
+  }
+
+  private String collection() {
+    return mongoConfiguration.fullCollectionName(COLLECTION_NAME);
+  }
+}
@@ -0,0 +1,266 @@
+package io.boomerang.engine;
+
+import com.github.alturkovic.lock.exception.LockNotAvailableException;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import io.boomerang.common.util.ChangeStreamWatcher;
+import io.boomerang.config.MongoConfiguration;
+import io.boomerang.engine.entity.LeaseLockEntity;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+/*
+ * Lease based lock on a single reusable MongoTemplate
+ *
+ * - A lease is acquired with a single findAndModify. A live lease causes the upsert to fail on
+ * the duplicate _id.
+ * - Each acquisition increments the fencing token stored on the lock document.
+ * - Leases can be renewed by their owner. Leases that are not released or renewed expire.
+ * - Waiters are woken when a lease is released in this process, or by a change stream on the lock
+ * collection when released by another replica. If change streams are not available (standalone
+ * MongoDB or CosmosDB) waiters fall back to retrying at the wait interval.
+ *
+ * Released lock documents are retained so that the fencing token continues to increase, and are
+ * removed by a TTL index one day after they expire.
+ */
+@Service
+public class LeaseLockService {
+
+  private static final Logger LOGGER = LogManager.getLogger(LeaseLockService.class);
+
+  private static final String LOCKS_COLLECTION_NAME = "lease_locks";
+  private static final Duration RETENTION = Duration.ofDays(1);
+
+  @Value("${flow.mongo.cosmosdbttl}")
+  private boolean mongoCosmosDBTTL;
+
+  @Value("${flow.lock.changestream.enabled:true}")
+  private boolean changeStreamEnabled;
+
+  @Value("${flow.lock.wait.interval:1000}")
+  private long waitInterval;
+
+  private final MongoTemplate mongoTemplate;
+  private final MongoConfiguration mongoConfiguration;
+
+  // Waiters are keyed by the lock key and share a single signal that is completed on release.
+  private final Map<String, Signal> waiters = new ConcurrentHashMap<>();
+
+  private volatile boolean running = true;
+  private ChangeStreamWatcher watcher;
+
+  public LeaseLockService(MongoTemplate mongoTemplate, MongoConfiguration mongoConfiguration) {
+    this.mongoTemplate = mongoTemplate;
+    this.mongoConfiguration = mongoConfiguration;
+  }
+
+  public record Lease(String key, String owner, long fencingToken, Date expiresAt) {}
+
+  /*
+   * Completed on release. Counts its waiters so that it is removed once the last has stopped
+   * waiting, rather than only on release.
+   */
+  private static final class Signal {
+    private final CompletableFuture<Void> released = new CompletableFuture<>();
+    private int waiting;
+  }
+
+  @PostConstruct
+  public void init() {
+    if (!mongoCosmosDBTTL) {
+      try {
+        mongoTemplate
+            .indexOps(storeId())
+            .ensureIndex(new Index().on("expiresAt", Sort.Direction.ASC).expire(RETENTION));
+      } catch (Exception e) {
+        LOGGER.warn("Unable to create TTL index on {}: {}", storeId(), e.getMessage());
+      }
+    }
+    // Wake the waiters on released (owner removed) or deleted locks
+    watcher =
+        new ChangeStreamWatcher(
+                "lease-lock-watcher",
+                () ->
+                    mongoTemplate
+                        .getCollection(storeId())
+                        .watch(
+                            List.of(
+                                Aggregates.match(
+                                    Filters.or(
+                                        Filters.eq("operationType", "delete"),
+                                        Filters.eq("updateDescription.removedFields", "owner"))))),
+                event -> {
+                  if (event.getDocumentKey() != null && event.getDocumentKey().isString("_id")) {
+                    signal(event.getDocumentKey().getString("_id").getValue());
+                  }
+                })
+            .retryInterval(waitInterval);
+    watcher.start(changeStreamEnabled && !mongoCosmosDBTTL);
+  }
+
+  @PreDestroy
+  public void destroy() {
+    running = false;
+    if (watcher != null) {
+      watcher.stop();
+    }
+    waiters.values().forEach(w -> w.released.complete(null));
+  }
+
+  /*
+   * Attempt to acquire the lease once
+   */
+  public Optional<Lease> tryAcquire(String key, long leaseMillis) {
+    final Date now = new Date();
+    final Date expiresAt = new Date(now.getTime() + leaseMillis);
+    final String owner = UUID.randomUUID().toString();
+    final Query query = Query.query(Criteria.where("_id").is(key).and("expiresAt").lte(now));
+    final Update update =
+        new Update().set("owner", owner).set("expiresAt", expiresAt).inc("fence", 1);
+    if (mongoCosmosDBTTL) {
+      update.set("ttl", TimeUnit.MILLISECONDS.toSeconds(leaseMillis) + RETENTION.toSeconds());
+    }
+    try {
+      LeaseLockEntity entity =
+          mongoTemplate.findAndModify(
+              query,
+              update,
+              new FindAndModifyOptions().upsert(true).returnNew(true),
+              LeaseLockEntity.class,
+              storeId());
+      if (entity != null && owner.equals(entity.getOwner())) {
+        return Optional.of(new Lease(key, owner, entity.getFence(), entity.getExpiresAt()));
+      }
+    } catch (DuplicateKeyException e) {
+      // Lease is held by another owner
+    }
+    return Optional.empty();
+  }
+
+  /*
+   * Acquire the lease, waiting up to maxWaitMillis. Long.MAX_VALUE waits indefinitely.
+   */
+  public Lease acquire(String key, long leaseMillis, long maxWaitMillis) {
+    final long deadline =
+        maxWaitMillis == Long.MAX_VALUE
+            ? Long.MAX_VALUE
+            : System.currentTimeMillis() + maxWaitMillis;
+    while (running) {
+      // Register before attempting so that a release between the attempt and the wait is not lost
+      Signal signal = register(key);
+      try {
+        Optional<Lease> lease = tryAcquire(key, leaseMillis);
+        if (lease.isPresent()) {
+          LOGGER.debug(
+              "[{}] Acquired lease with fencing token: {}", key, lease.get().fencingToken());
+          return lease.get();
+        }
+        long remaining = deadline - System.currentTimeMillis();
+        if (remaining <= 0) {
+          break;
+        }
+        signal.released.get(Math.min(waitInterval, remaining), TimeUnit.MILLISECONDS);
+      } catch (TimeoutException | ExecutionException e) {
+        // Retry. Covers expired leases and releases missed by the change stream
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        break;
+      } finally {
+        deregister(key, signal);
+      }
+    }
+    throw new LockNotAvailableException(
+        String.format("Lock not available for key: %s in store %s", key, storeId()));
+  }
+
+  /*
+   * Extend the lease if still held by the owner
+   */
+  public boolean renew(String key, String owner, long leaseMillis) {
+    final Query query =
+        Query.query(
+            Criteria.where("_id").is(key).and("owner").is(owner).and("expiresAt").gt(new Date()));
+    final Update update =
+        new Update().set("expiresAt", new Date(System.currentTimeMillis() + leaseMillis));
+    return mongoTemplate.updateFirst(query, update, LeaseLockEntity.class, storeId())
+            .getModifiedCount()
+        > 0;
+  }
+
+  /*
+   * Release the lease. If owner is empty the lease is released regardless of owner.
+   */
+  public void release(String key, Optional<String> owner) {
+    final Criteria criteria = Criteria.where("_id").is(key);
+    owner.ifPresent(o -> criteria.and("owner").is(o));
+    final Update update = new Update().unset("owner").set("expiresAt", new Date());
+    if (mongoCosmosDBTTL) {
+      update.set("ttl", RETENTION.toSeconds());
+    }
+    long released =
+        mongoTemplate
+            .updateFirst(Query.query(criteria), update, LeaseLockEntity.class, storeId())
+            .getModifiedCount();
+    if (released == 0) {
+      LOGGER.debug("[{}] Lease was not held by owner or had already been released.", key);
+    }
+    signal(key);
+  }
+
+  public boolean isChangeStreamActive() {
+    return watcher != null && watcher.isActive();
+  }
+
+  private Signal register(String key) {
+    return waiters.compute(
+        key,
+        (k, signal) -> {
+          Signal registered = signal != null ? signal : new Signal();
+          registered.waiting++;
+          return registered;
+        });
+  }
+
+  /*
+   * Remove the signal once it has no waiters. A signal that has been released has already been
+   * removed, and may have been replaced by a new one.
+   */
+  private void deregister(String key, Signal signal) {
+    waiters.computeIfPresent(
+        key, (k, current) -> current == signal && --current.waiting == 0 ? null : current);
+  }
+
+  private void signal(String key) {
+    Signal signal = waiters.remove(key);
+    if (signal != null) {
+      signal.released.complete(null);
+    }
+  }
+
+  private String storeId() {
+    return mongoConfiguration.fullCollectionName(LOCKS_COLLECTION_NAME);
+  }
+}
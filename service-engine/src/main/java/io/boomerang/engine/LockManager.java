@@ -1,209 +1,131 @@
 package io.boomerang.engine;
 
-import com.github.alturkovic.lock.exception.LockNotAvailableException;
-import com.github.alturkovic.lock.mongo.impl.SimpleMongoLock;
-import io.boomerang.config.MongoConfiguration;
-import io.boomerang.util.CosmosDBMongoLock;
-import io.boomerang.util.FlowMongoLock;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.function.Supplier;
+import io.boomerang.engine.LeaseLockService.Lease;
+import jakarta.annotation.PreDestroy;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.data.mongodb.core.MongoTemplate;
-import org.springframework.retry.backoff.FixedBackOffPolicy;
-import org.springframework.retry.policy.SimpleRetryPolicy;
-import org.springframework.retry.support.RetryTemplate;
 import org.springframework.stereotype.Service;
 
+/*
+ * Locks used for WorkflowRun and TaskRun execution as well as the AcquireLock and ReleaseLock
+ * tasks.
+ *
+ * Backed by the LeaseLockService. The returned token is the lease owner and is required to release
+ * the lock. Waiters are woken on release rather than polling with a fixed backoff.
+ *
+ * WorkflowRun and TaskRun locks are renewed in the background while held, so a holder that runs
+ * past the lease keeps the lock until it releases it. The renewal stops on release, or after the
+ * maximum hold so that a lock leaked by an unreleased error path still expires. Locks from the
+ * AcquireLock task are not renewed, their lease is the timeout of the task.
+ */
 @Service
 public class LockManager {
 
   private static final Logger LOGGER = LogManager.getLogger(LockManager.class);
 
-  private final String LOCKS_COLLECTION_NAME = "locks";
-
-  @Value("${flow.mongo.cosmosdbttl}")
-  private boolean mongoCosmosDBTTL;
-
-  private final MongoTemplate mongoTemplate;
-  private final MongoConfiguration mongoConfiguration;
+  private static final long RUN_LOCK_LEASE = 120000L;
+  private static final long RUN_LOCK_MAX_WAIT = 200000L;
+  // A third of the lease, so that a renewal can fail twice before the lease expires
+  private static final long RUN_LOCK_RENEW_INTERVAL = RUN_LOCK_LEASE / 3;
+  private static final long RUN_LOCK_MAX_HOLD = 3600000L;
+
+  private final LeaseLockService leaseLockService;
+
+  // Renewals of the held run locks, keyed by the lease owner
+  private final Map<String, ScheduledFuture<?>> renewals = new ConcurrentHashMap<>();
+  private final ScheduledExecutorService renewer =
+      Executors.newSingleThreadScheduledExecutor(
+          runnable -> {
+            Thread thread = new Thread(runnable, "lock-renewer");
+            thread.setDaemon(true);
+            return thread;
+          });
+
+  public LockManager(LeaseLockService leaseLockService) {
+    this.leaseLockService = leaseLockService;
+  }
 
-  public LockManager(MongoTemplate mongoTemplate, MongoConfiguration mongoConfiguration) {
-    this.mongoTemplate = mongoTemplate;
-    this.mongoConfiguration = mongoConfiguration;
+  @PreDestroy
+  public void destroy() {
+    renewer.shutdownNow();
+    renewals.clear();
   }
 
   /*
-   * Locks on a single key in 2 minutes timeout with 2 second backoff.
+   * Locks on a single key with a 2 minute lease, renewed until released. Waits up to 200 seconds.
    */
   public String acquireLock(String key) {
-    List<String> keys = new LinkedList<>();
-    keys.add(key);
-    return acquireLock(keys, 120000, 2000l, 100);
+    Lease lease = leaseLockService.acquire(key, RUN_LOCK_LEASE, RUN_LOCK_MAX_WAIT);
+    LOGGER.debug("[{}] Lock fencing token: {}", key, lease.fencingToken());
+    final String owner = lease.owner();
+    final long holdUntil = System.currentTimeMillis() + RUN_LOCK_MAX_HOLD;
+    renewals.put(
+        owner,
+        renewer.scheduleWithFixedDelay(
+            () -> renew(key, owner, holdUntil),
+            RUN_LOCK_RENEW_INTERVAL,
+            RUN_LOCK_RENEW_INTERVAL,
+            TimeUnit.MILLISECONDS));
+    return owner;
   }
 
   /*
    * Lock used by the AcquireTask lock
    *
-   * Allows a custom key and timeout. Backoff period is 5s
+   * Allows a custom key and lease timeout. Waits until the lock is available.
    */
   public String acquireLock(String key, Long timeout) {
-    final List<String> keys = new LinkedList<>();
-    keys.add(key);
-
-    return this.acquireLock(keys, timeout, 5000l, Integer.MAX_VALUE);
+    return leaseLockService.acquire(key, timeout, Long.MAX_VALUE).owner();
   }
 
   /*
-   * Release Lock
+   * Release Lock held by the token and stop renewing it
    */
   public void releaseLock(String key, String tokenId) {
-    List<String> keys = new LinkedList<>();
-    keys.add(key);
-    this.releaseLock(keys, tokenId);
+    stopRenewal(tokenId);
+    leaseLockService.release(key, Optional.of(tokenId));
   }
 
   /*
-   * Utilize the Distributed Lock library to acquire (and retry endlessly)
-   *
-   * - The RetriableLock requires a TTL index on the expiresAt field in the MongoCollection. This is
-   * created by the Loader, if you do not use the loader, you will need to create manually.
-   *
-   * - Extended the SimpleMongoLock for Azure CosmosDB API for Mongo. This uses the timeout in
-   * seconds.
-   *
-   * - Under the covers, the token is created from the String in the supplier which we set it to the
-   * key.
-   *
+   * Release Lock regardless of the owner. Used by the ReleaseLock task which does not have the
+   * token from the AcquireLock task.
    */
-  // private String acquireLock(List<String> keys, long timeout, long backOffPeriod,
-  // Integer maxAttempts) {
-  // String storeId = mongoConfiguration.fullCollectionName(LOCKS_COLLECTION_NAME);
-  // String token = "";
-  //
-  // if (keys != null) {
-  // // SimpleMongoLock requires a supplier - don't want the value to change at a future assign
-  // // time.
-  // final String finalKey = keys.get(0);
-  // Supplier<String> supplier = () -> finalKey;
-  // RetryTemplate retryTemplate = getRetryTemplate(backOffPeriod, maxAttempts);
-  // RetriableLock retryLock;
-  // if (mongoCosmosDBTTL) {
-  // CosmosDBMongoLock mongoLock = new CosmosDBMongoLock(supplier, this.mongoTemplate);
-  // retryLock = new RetriableLock(mongoLock, retryTemplate);
-  // token = retryLock.acquire(keys, storeId, timeout / 1000);
-  // } else {
-  // SimpleMongoLock mongoLock = new SimpleMongoLock(supplier, this.mongoTemplate);
-  // retryLock = new RetriableLock(mongoLock, retryTemplate);
-  // token = retryLock.acquire(keys, storeId, timeout);
-  // }
-  // }
-  // LOGGER.debug("Token: " + token);
-  // if (StringUtils.isEmpty(token)) {
-  // /** TODO: What to do here. */
-  // throw new LockNotAvailableException(
-  // String.format("Lock not available for keys: %s in store %s", keys, storeId));
-  // }
-  // return token;
-  // }
-
-  // TODO - perform testing of the locks and if the above commented out code is needed
-  private String acquireLock(
-      List<String> keys, long timeout, long backOffPeriod, Integer maxAttempts) {
-    String storeId = mongoConfiguration.fullCollectionName(LOCKS_COLLECTION_NAME);
-    // String token = "";
-    if (keys != null) {
-      // SimpleMongoLock requires a supplier - don't want the value to change at a future assign
-      // time.
-      final String finalKey = keys.get(0);
-      Supplier<String> supplier = () -> finalKey;
-      // RetriableLock retryLock;
-      RetryTemplate retryTemplate = getRetryTemplate(backOffPeriod, maxAttempts);
-      if (mongoCosmosDBTTL) {
-        CosmosDBMongoLock mongoLock = new CosmosDBMongoLock(supplier, this.mongoTemplate);
-        // retryLock = new RetriableLock(mongoLock, retryTemplate);
-        // token = retryLock.acquire(keys, storeId, timeout / 1000);
-
-        return retryTemplate.execute(
-            ctx -> {
-              final boolean lockExists = mongoLock.exists(storeId, keys.get(0));
-              if (lockExists) {
-                throw new LockNotAvailableException(
-                    String.format(
-                        "Lock hasn't been released yet for: %s in store %s", keys, storeId));
-              }
-              return mongoLock.acquire(keys, storeId, timeout);
-            });
-      } else {
-        FlowMongoLock mongoLock = new FlowMongoLock(supplier, this.mongoTemplate);
-        // retryLock = new RetriableLock(mongoLock, retryTemplate);
-
-        // if (StringUtils.isEmpty(token)) {
-        // /** TODO: What to do here. */
-        // throw new LockNotAvailableException(
-        // String.format("Lock not available for keys: %s in store %s", keys, storeId));
-        // }
-        // return retryTemplate.execute(ctx -> {
-        // final String token = mongoLock.acquire(keys, storeId, timeout);
-        // if (StringUtils.isEmpty(token)) {
-        // throw new LockNotAvailableException(
-        // String.format("Lock not available for keys: %s in store %s", keys, storeId));
-        // }
-        // return token;
-        // });
-
-        return retryTemplate.execute(
-            ctx -> {
-              final boolean lockExists = mongoLock.exists(storeId, keys.get(0));
-              if (lockExists) {
-                throw new LockNotAvailableException(
-                    String.format(
-                        "Lock hasn't been released yet for: %s in store %s", keys, storeId));
-              }
-              return mongoLock.acquire(keys, storeId, timeout);
-            });
-      }
-    }
-    // LOGGER.debug("Token: " + token);
-    // if (StringUtils.isEmpty(token)) {
-    // /** TODO: What to do here. */
-    // throw new LockNotAvailableException(
-    // String.format("Lock not available for keys: %s in store %s", keys, storeId));
-    // }
-    return "";
-  }
-
-  private RetryTemplate getRetryTemplate(long backOffPeriod, Integer maxAttempts) {
-    RetryTemplate retryTemplate = new RetryTemplate();
-    FixedBackOffPolicy fixedBackOffPolicy = new FixedBackOffPolicy();
-    fixedBackOffPolicy.setBackOffPeriod(backOffPeriod);
-    retryTemplate.setBackOffPolicy(fixedBackOffPolicy);
-    SimpleRetryPolicy retryPolicy = new SimpleRetryPolicy();
-    retryPolicy.setMaxAttempts(maxAttempts);
-    retryTemplate.setRetryPolicy(retryPolicy);
-    return retryTemplate;
+  public void releaseLock(String key) {
+    leaseLockService.release(key, Optional.empty());
   }
 
   /*
-   * Releases the lock
-   *
-   * - Under the covers, the token is the same as the key due to the suplier
+   * Extend the lease of a held lock. Renewal stops once the lease has been lost, e.g. released
+   * regardless of owner or expired while MongoDB was unreachable.
    */
-  private void releaseLock(List<String> keys, String tokenId) {
-    String storeId = mongoConfiguration.fullCollectionName(LOCKS_COLLECTION_NAME);
-
-    if (keys != null) {
-      final String finalKey = keys.get(0);
-      Supplier<String> supplier = () -> finalKey;
-      if (mongoCosmosDBTTL) {
-        CosmosDBMongoLock mongoLock = new CosmosDBMongoLock(supplier, this.mongoTemplate);
-        mongoLock.release(keys, storeId, tokenId);
-      } else {
-        SimpleMongoLock mongoLock = new SimpleMongoLock(supplier, this.mongoTemplate);
-        mongoLock.release(keys, storeId, tokenId);
+  private void renew(String key, String owner, long holdUntil) {
+    if (System.currentTimeMillis() > holdUntil) {
+      LOGGER.warn("[{}] Lock has been held for the maximum, stopping renewal.", key);
+      stopRenewal(owner);
+      return;
+    }
+    try {
+      if (!leaseLockService.renew(key, owner, RUN_LOCK_LEASE)) {
+        LOGGER.warn("[{}] Lock is no longer held, stopping renewal.", key);
+        stopRenewal(owner);
       }
+    } catch (Exception e) {
+      // Retried on the next interval, before the lease expires
+      LOGGER.warn("[{}] Unable to renew lock. Error: {}", key, e.getMessage());
+    }
+  }
+
+  private void stopRenewal(String owner) {
+    ScheduledFuture<?> renewal = renewals.remove(owner);
+    if (renewal != null) {
+      renewal.cancel(false);
     }
   }
 }
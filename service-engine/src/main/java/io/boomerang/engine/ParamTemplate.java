@@ -0,0 +1,131 @@
+package io.boomerang.engine;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+/*
+ * A compiled parameter template. The string is tokenised once into literal segments and $(...)
+ * references so that it can be rendered many times without regex matching.
+ *
+ * Tokenising matches the previous dot notation regex, (?<=\$\().+?(?=\)), i.e. a reference is the
+ * shortest run of at least one character, not spanning a line, between $( and ).
+ */
+final class ParamTemplate {
+
+  private static final String OPEN = "$(";
+
+  private final String text;
+  private final List<Object> segments;
+  private final List<Reference> references;
+
+  /*
+   * A $(key) reference split on the dot notation
+   */
+  record Reference(String key, String[] parts) {
+
+    boolean isTaskResult() {
+      return parts.length >= 4 && "tasks".equals(parts[0]) && "results".equals(parts[2]);
+    }
+
+    String taskName() {
+      return parts[1];
+    }
+  }
+
+  private ParamTemplate(String text, List<Object> segments, List<Reference> references) {
+    this.text = text;
+    this.segments = segments;
+    this.references = references;
+  }
+
+  static ParamTemplate compile(String text) {
+    List<Object> segments = new ArrayList<>();
+    List<Reference> references = new ArrayList<>();
+    int literalStart = 0;
+    int pos = 0;
+    while (true) {
+      int open = text.indexOf(OPEN, pos);
+      if (open < 0) {
+        break;
+      }
+      int keyStart = open + OPEN.length();
+      int close = findClose(text, keyStart);
+      if (close < 0) {
+        pos = open + 1;
+        continue;
+      }
+      if (open > literalStart) {
+        segments.add(text.substring(literalStart, open));
+      }
+      String key = text.substring(keyStart, close);
+      Reference reference = new Reference(key, key.split("\\."));
+      segments.add(reference);
+      references.add(reference);
+      literalStart = close + 1;
+      pos = close + 1;
+    }
+    if (references.isEmpty()) {
+      return new ParamTemplate(text, List.of(), List.of());
+    }
+    if (literalStart < text.length()) {
+      segments.add(text.substring(literalStart));
+    }
+    return new ParamTemplate(
+        text, Collections.unmodifiableList(segments), Collections.unmodifiableList(references));
+  }
+
+  private static int findClose(String text, int keyStart) {
+    for (int i = keyStart; i < text.length(); i++) {
+      char c = text.charAt(i);
+      if (c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029') {
+        return -1;
+      }
+      if (c == ')' && i > keyStart) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  String getText() {
+    return text;
+  }
+
+  boolean hasReferences() {
+    return !references.isEmpty();
+  }
+
+  List<Reference> getReferences() {
+    return references;
+  }
+
+  /*
+   * Render the template. References that resolve to null are left as is.
+   */
+  String render(Function<Reference, Object> resolver) {
+    if (references.isEmpty()) {
+      return text;
+    }
+    StringBuilder sb = new StringBuilder(text.length() + 32);
+    for (Object segment : segments) {
+      if (segment instanceof Reference reference) {
+        Object value = resolver.apply(reference);
+        if (value == null) {
+          sb.append(OPEN).append(reference.key()).append(')');
+        } else {
+          sb.append(value);
+        }
+      } else {
+        sb.append((String) segment);
+      }
+    }
+    return sb.toString();
+  }
+
+  @Override
+  public String toString() {
+    return text;
+  }
+}
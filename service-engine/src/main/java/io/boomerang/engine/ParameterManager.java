@@ -1,6 +1,7 @@
 package io.boomerang.engine;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.jayway.jsonpath.Configuration;
 import com.jayway.jsonpath.DocumentContext;
 import com.jayway.jsonpath.JsonPath;
@@ -12,21 +13,25 @@ import io.boomerang.common.enums.ParamType;
 import io.boomerang.common.model.ParamLayers;
 import io.boomerang.common.model.RunParam;
 import io.boomerang.common.model.RunResult;
+import io.boomerang.engine.ParamTemplate.Reference;
 import io.boomerang.engine.repository.TaskRunRepository;
 import io.boomerang.engine.repository.WorkflowRunRepository;
 import io.boomerang.util.ParameterUtil;
+import jakarta.annotation.PostConstruct;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Set;
 import java.util.stream.Collectors;
-import org.apache.commons.text.StringSubstitutor;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 /*
@@ -43,13 +48,23 @@ import org.springframework.stereotype.Service;
 public class ParameterManager {
   private static final Logger LOGGER = LogManager.getLogger();
 
-  private static final String REGEX_DOT_NOTATION = "(?<=\\$\\().+?(?=\\))";
-  private final String[] reservedScope = {"global", "team", "workflow", "context"};
+  private static final Set<String> RESERVED_SCOPE =
+      Set.of("global", "team", "workflow", "context");
+  private static final int MAX_SUBSTITUTION_DEPTH = 10;
 
   private final WorkflowRunRepository workflowRunRepository;
   private final TaskRunRepository taskRunRepository;
   private final WorkflowClient workflowClient;
 
+  @Value("${flow.param.cache.max-size:5000}")
+  private long maxSize;
+
+  @Value("${flow.param.cache.expire:3600}")
+  private long expireAfter;
+
+  // Compiled templates of the param values, keyed by revision and param name
+  private Cache<String, ParamTemplate> templates;
+
   public ParameterManager(
       WorkflowRunRepository workflowRunRepository,
       TaskRunRepository taskRunRepository,
@@ -59,6 +74,15 @@ public class ParameterManager {
     this.workflowClient = workflowClient;
   }
 
+  @PostConstruct
+  public void init() {
+    templates =
+        Caffeine.newBuilder()
+            .maximumSize(maxSize)
+            .expireAfterAccess(Duration.ofSeconds(expireAfter))
+            .build();
+  }
+
   /*
    * Resolve all RunParams for either WorkflowRun or TaskRun
    */
@@ -71,6 +95,10 @@ public class ParameterManager {
     } else {
       runParams = wfRun.getParams();
     }
+    Map<String, Object> flatParamLayers = paramLayers.getFlatMap();
+    String revision = revisionKey(wfRun, optTaskRun);
+    Map<String, TaskRunEntity> taskRuns =
+        retrieveReferencedTaskRuns(runParams, wfRunId, revision);
     runParams.stream()
         .forEach(
             p -> {
@@ -85,20 +113,34 @@ public class ParameterManager {
                     resolveParam(
                         ParamType.string,
                         p.getValue() != null ? p.getValue().toString() : "",
-                        wfRunId,
-                        paramLayers));
+                        templateKey(revision, p.getName(), -1),
+                        flatParamLayers,
+                        taskRuns));
               } else if (ParamType.array.equals(p.getType()) && p.getValue() instanceof List) {
                 // Type safety. If you attempt to convert a string or object (JSON = HashMap) then
                 // this causes an exception
                 ArrayList<String> valueList = (ArrayList<String>) p.getValue();
-                p.setValue(
-                    valueList.stream()
-                        .map(v -> resolveParam(ParamType.string, v, wfRunId, paramLayers))
-                        .collect(Collectors.toList()));
+                List<Object> resolvedList = new ArrayList<>(valueList.size());
+                for (int i = 0; i < valueList.size(); i++) {
+                  resolvedList.add(
+                      resolveParam(
+                          ParamType.string,
+                          valueList.get(i),
+                          templateKey(revision, p.getName(), i),
+                          flatParamLayers,
+                          taskRuns));
+                }
+                p.setValue(resolvedList);
               } else if (ParamType.object.equals(p.getType())) {
                 // Replace Param with Object. Treated as JSON and allows for the extra JSONPath
                 // retrieval.
-                p.setValue(resolveParam(p.getType(), p.getValue(), wfRunId, paramLayers));
+                p.setValue(
+                    resolveParam(
+                        p.getType(),
+                        p.getValue(),
+                        templateKey(revision, p.getName(), -1),
+                        flatParamLayers,
+                        taskRuns));
               }
             });
     // Return WorkflowRun or TaskRun RunParams
@@ -109,6 +151,78 @@ public class ParameterManager {
     }
   }
 
+  /*
+   * Retrieve all TaskRuns referenced by Result in the RunParams with a single query, keyed by
+   * TaskRun name
+   */
+  private Map<String, TaskRunEntity> retrieveReferencedTaskRuns(
+      List<RunParam> runParams, String wfRunId, String revision) {
+    Set<String> taskNames = new HashSet<>();
+    for (RunParam p : runParams) {
+      if (Objects.isNull(p.getValue())) {
+        continue;
+      }
+      boolean isList = p.getValue() instanceof List<?>;
+      List<?> values = isList ? (List<?>) p.getValue() : List.of(p.getValue());
+      for (int i = 0; i < values.size(); i++) {
+        Object value = values.get(i);
+        if (value == null) {
+          continue;
+        }
+        String key = templateKey(revision, p.getName(), isList ? i : -1);
+        for (Reference reference : compile(key, value.toString()).getReferences()) {
+          if (reference.isTaskResult()) {
+            taskNames.add(reference.taskName());
+          }
+        }
+      }
+    }
+    if (taskNames.isEmpty()) {
+      return new HashMap<>();
+    }
+    return taskRunRepository.findByWorkflowRunRefAndNameIn(wfRunId, taskNames).stream()
+        .collect(Collectors.toMap(TaskRunEntity::getName, t -> t, (t1, t2) -> t1));
+  }
+
+  /*
+   * Retrieve the compiled template of a param value from the cache, compiling on a miss.
+   *
+   * Keyed by the revision and param name so that all runs of a revision share the compiled form.
+   * Values given at run time can differ between runs of a revision, so a cached template is only
+   * used if its text matches. Values without a key, e.g. substituted values, are not cached.
+   */
+  ParamTemplate compile(String key, String text) {
+    if (key == null) {
+      return ParamTemplate.compile(text);
+    }
+    ParamTemplate template = templates.getIfPresent(key);
+    if (template == null || !template.getText().equals(text)) {
+      template = ParamTemplate.compile(text);
+      templates.put(key, template);
+    }
+    return template;
+  }
+
+  /*
+   * The revision the RunParams come from. A TaskRun's params are those of its task in the
+   * WorkflowRevision.
+   */
+  private static String revisionKey(WorkflowRunEntity wfRun, Optional<TaskRunEntity> optTaskRun) {
+    if (wfRun.getWorkflowRevisionRef() == null) {
+      return null;
+    }
+    return optTaskRun.isPresent()
+        ? wfRun.getWorkflowRevisionRef() + "/tasks/" + optTaskRun.get().getName()
+        : wfRun.getWorkflowRevisionRef();
+  }
+
+  private static String templateKey(String revision, String paramName, int index) {
+    if (revision == null) {
+      return null;
+    }
+    return revision + "/params/" + paramName + (index < 0 ? "" : "/" + index);
+  }
+
   /*
    * Build all parameter layers as an object of Maps
    *
@@ -173,113 +287,149 @@ public class ParameterManager {
    * - Handles returning String or Object. (Array is looped in higher level method)
    * - Handles JSONPath tree searching using simple dot notation
    * - Handles resolving multiple param inheritance layers.
+   *
+   * Strings are substituted directly on the compiled template. Substituted values that contain
+   * references are resolved recursively. A Task Result that is found but cannot be reduced by its
+   * JSONPath leaves the original value.
    */
   private Object resolveParam(
-      ParamType type, Object originalValue, String wfRunId, ParamLayers paramLayers) {
-    Map<String, Object> flatParamLayers = paramLayers.getFlatMap();
-    Pattern pattern = Pattern.compile(REGEX_DOT_NOTATION);
+      ParamType type,
+      Object originalValue,
+      String templateKey,
+      Map<String, Object> flatParamLayers,
+      Map<String, TaskRunEntity> taskRuns) {
     if (Objects.isNull(originalValue)) {
       return originalValue;
     }
-    Matcher m = pattern.matcher(originalValue.toString());
-    Object resolvedValue = originalValue;
-    Map<String, Object> foundKeyValues = new HashMap<>();
-    while (m.find()) {
-      String foundKey = m.group(0);
-      Object foundValue = null;
-      int start = m.start() - 2;
-      int end = m.end() + 1;
-      String[] separatedKey = foundKey.split("\\.");
-      if ((separatedKey.length == 2) && "params".equals(separatedKey[0])) {
-        // Handle flattened - params.<name>
-        if (flatParamLayers.get(foundKey) != null) {
-          foundValue = flatParamLayers.get(foundKey);
-        }
-      } else if ((separatedKey.length > 2) && "params".equals(separatedKey[0])) {
-        // Handle flattened with query for individual child of an object param -
-        // params.<name>.<query>
-        int index = ordinalIndexOf(foundKey, ".", 2);
-        String searchKey = foundKey.substring(0, index);
-        String searchPath = foundKey.substring(index + 1);
-        if (flatParamLayers.get(searchKey) != null) {
-          foundValue = reduceObjectByJsonPath(searchPath, flatParamLayers.get(searchKey));
-        }
-      } else if ((separatedKey.length == 3)
-          && "params".equals(separatedKey[1])
-          && List.of(reservedScope).contains(separatedKey[0])) {
-        // Handle specific scoped param - <scope>.params.<name>
-        foundValue = flatParamLayers.get(foundKey);
-      } else if ((separatedKey.length > 3)
-          && "params".equals(separatedKey[1])
-          && List.of(reservedScope).contains(separatedKey[0])) {
-        // Hanlde specific scoped param with query for child of object -
-        // <scope>.params.<name>.<query>
-        int index = ordinalIndexOf(foundKey, ".", 3);
-        String searchKey = foundKey.substring(0, index);
-        String searchPath = foundKey.substring(index + 1);
-        if (flatParamLayers.get(searchKey) != null) {
-          foundValue = reduceObjectByJsonPath(searchPath, flatParamLayers.get(searchKey));
-        }
-      } else if ((separatedKey.length >= 4)
-          && "tasks".equals(separatedKey[0])
-          && "results".equals(separatedKey[2])) {
-        // Handle references to TaskRun Results
-        String taskName = separatedKey[1];
-        String resultName = separatedKey[3];
-        Optional<TaskRunEntity> taskRunEntity =
-            taskRunRepository.findFirstByNameAndWorkflowRunRef(taskName, wfRunId);
-        if (taskRunEntity.isPresent()) {
-          List<RunResult> taskRunResults = taskRunEntity.get().getResults();
-          if (!taskRunResults.isEmpty()) {
-            Optional<RunResult> result =
-                taskRunResults.stream().filter(p -> resultName.equals(p.getName())).findFirst();
-            if (result.isPresent()) {
-              if (separatedKey.length > 4) {
-                int index = ordinalIndexOf(foundKey, ".", 4);
-                String searchPath = foundKey.substring(index + 1);
-                Object reducedValue = reduceObjectByJsonPath(searchPath, result.get().getValue());
-                foundValue = reducedValue != null ? reducedValue : originalValue;
-              } else {
-                foundValue = result.get().getValue();
-              }
-            }
-          }
-        }
-      }
-      if (!Objects.isNull(foundValue)) {
-        if (ParamType.object.equals(type)) {
+    ParamTemplate template = compile(templateKey, originalValue.toString());
+    if (!template.hasReferences()) {
+      return originalValue;
+    }
+    if (ParamType.object.equals(type)) {
+      for (Reference reference : template.getReferences()) {
+        Object foundValue = resolveReference(reference, originalValue, flatParamLayers, taskRuns);
+        if (!Objects.isNull(foundValue)) {
           return foundValue;
-        } else {
-          LOGGER.debug("Pattern Matched: " + foundKey + " = " + foundValue.toString());
-          foundKeyValues.put(foundKey, foundValue);
         }
       }
+      return originalValue;
     }
-    if (!foundKeyValues.isEmpty()) {
-      flatParamLayers.putAll(foundKeyValues);
-      resolvedValue = replaceStringInObject(resolvedValue, flatParamLayers);
+    Map<Reference, Object> foundKeyValues = new IdentityHashMap<>();
+    for (Reference reference : template.getReferences()) {
+      Object foundValue = resolveReference(reference, originalValue, flatParamLayers, taskRuns);
+      if (foundValue == originalValue) {
+        return originalValue;
+      } else if (!Objects.isNull(foundValue)) {
+        foundKeyValues.put(reference, foundValue);
+      }
     }
+    if (foundKeyValues.isEmpty()) {
+      return originalValue;
+    }
+    Object resolvedValue =
+        template.render(
+            r ->
+                substitute(
+                    foundKeyValues.containsKey(r)
+                        ? foundKeyValues.get(r)
+                        : flatParamLayers.get(r.key()),
+                    flatParamLayers,
+                    taskRuns,
+                    0));
     LOGGER.debug("Resolved Value: " + resolvedValue);
     return resolvedValue;
   }
 
-  private Object replaceStringInObject(Object object, Map<String, Object> replacements) {
-    ObjectMapper mapper = new ObjectMapper();
-    try {
-      String objectString = mapper.writeValueAsString(object);
-      // objectString.replaceAll(replaceKey, replaceValueString);
-      final StringSubstitutor substitutor = new StringSubstitutor(replacements, "$(", ")");
-      substitutor.setEnableSubstitutionInVariables(true);
-      substitutor.setEnableUndefinedVariableException(false);
-      // return substitutor.replace(objectString);
-      String replacedObjectString = substitutor.replace(objectString);
-      LOGGER.debug("Substitutor: " + replacedObjectString);
-      return mapper.readValue(replacedObjectString, Object.class);
-    } catch (Exception e) {
-      // Log and drop exception. We want the workflow to continue execution.
-      LOGGER.error(e.toString());
+  /*
+   * Recursively resolve references in a substituted value
+   */
+  private Object substitute(
+      Object value,
+      Map<String, Object> flatParamLayers,
+      Map<String, TaskRunEntity> taskRuns,
+      int depth) {
+    if (value instanceof String str && depth < MAX_SUBSTITUTION_DEPTH) {
+      ParamTemplate nested = compile(null, str);
+      if (nested.hasReferences()) {
+        return nested.render(
+            r -> {
+              Object nestedValue = resolveReference(r, null, flatParamLayers, taskRuns);
+              return substitute(
+                  nestedValue != null ? nestedValue : flatParamLayers.get(r.key()),
+                  flatParamLayers,
+                  taskRuns,
+                  depth + 1);
+            });
+      }
     }
-    return null;
+    return value;
+  }
+
+  /*
+   * Resolve a single $(...) reference. Returns the original value if a Task Result's JSONPath
+   * query finds nothing.
+   */
+  private Object resolveReference(
+      Reference reference,
+      Object originalValue,
+      Map<String, Object> flatParamLayers,
+      Map<String, TaskRunEntity> taskRuns) {
+    String foundKey = reference.key();
+    String[] separatedKey = reference.parts();
+    Object foundValue = null;
+    if ((separatedKey.length == 2) && "params".equals(separatedKey[0])) {
+      // Handle flattened - params.<name>
+      foundValue = flatParamLayers.get(foundKey);
+    } else if ((separatedKey.length > 2) && "params".equals(separatedKey[0])) {
+      // Handle flattened with query for individual child of an object param -
+      // params.<name>.<query>
+      int index = ordinalIndexOf(foundKey, ".", 2);
+      String searchKey = foundKey.substring(0, index);
+      String searchPath = foundKey.substring(index + 1);
+      if (flatParamLayers.get(searchKey) != null) {
+        foundValue = reduceObjectByJsonPath(searchPath, flatParamLayers.get(searchKey));
+      }
+    } else if ((separatedKey.length == 3)
+        && "params".equals(separatedKey[1])
+        && RESERVED_SCOPE.contains(separatedKey[0])) {
+      // Handle specific scoped param - <scope>.params.<name>
+      foundValue = flatParamLayers.get(foundKey);
+    } else if ((separatedKey.length > 3)
+        && "params".equals(separatedKey[1])
+        && RESERVED_SCOPE.contains(separatedKey[0])) {
+      // Hanlde specific scoped param with query for child of object -
+      // <scope>.params.<name>.<query>
+      int index = ordinalIndexOf(foundKey, ".", 3);
+      String searchKey = foundKey.substring(0, index);
+      String searchPath = foundKey.substring(index + 1);
+      if (flatParamLayers.get(searchKey) != null) {
+        foundValue = reduceObjectByJsonPath(searchPath, flatParamLayers.get(searchKey));
+      }
+    } else if (reference.isTaskResult()) {
+      // Handle references to TaskRun Results
+      String resultName = separatedKey[3];
+      TaskRunEntity taskRunEntity = taskRuns.get(reference.taskName());
+      if (taskRunEntity != null && taskRunEntity.getResults() != null) {
+        Optional<RunResult> result =
+            taskRunEntity.getResults().stream()
+                .filter(p -> resultName.equals(p.getName()))
+                .findFirst();
+        if (result.isPresent()) {
+          if (separatedKey.length > 4) {
+            int index = ordinalIndexOf(foundKey, ".", 4);
+            String searchPath = foundKey.substring(index + 1);
+            Object reducedValue = reduceObjectByJsonPath(searchPath, result.get().getValue());
+            foundValue = reducedValue != null ? reducedValue : originalValue;
+          } else {
+            foundValue = result.get().getValue();
+          }
+        }
+      }
+    }
+    if (!Objects.isNull(foundValue)) {
+      LOGGER.debug("Pattern Matched: " + foundKey + " = " + foundValue);
+    }
+    return foundValue;
   }
 
   private Object reduceObjectByJsonPath(String path, Object object) {
@@ -0,0 +1,251 @@
+package io.boomerang.engine;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.FullDocument;
+import io.boomerang.common.util.ChangeStreamWatcher;
+import io.boomerang.common.entity.TaskRevisionEntity;
+import io.boomerang.common.entity.WorkflowRevisionEntity;
+import io.boomerang.config.MongoConfiguration;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+/*
+ * Read through cache of Task and Workflow revisions keyed by (ref, version)
+ *
+ * Revisions that have been superseded by a newer version are always cached. The latest revision of
+ * a ref can be replaced in place, so it is only cached while a change stream on the revision
+ * collections is active, which evicts the ref on any change by any replica. Where change streams
+ * are not available the latest revision is always read from the database, the cache is evicted
+ * locally when a revision is applied or deleted, and expires so that another replica's deletes are
+ * picked up. The raw documents are cached and mapped on every read, so each caller receives its own
+ * copy.
+ */
+@Component
+public class RevisionCache {
+
+  @Value("${flow.revision.cache.max-size:5000}")
+  private long maxSize;
+
+  @Value("${flow.revision.cache.expire:300}")
+  private long expireAfter;
+
+  @Value("${flow.revision.cache.latest.expire:30}")
+  private long latestExpireAfter;
+
+  @Value("${flow.revision.changestream.enabled:true}")
+  private boolean changeStreamEnabled;
+
+  // Cosmos DB change streams do not include deletes
+  @Value("${flow.mongo.cosmosdbttl:false}")
+  private boolean mongoCosmosDBTTL;
+
+  private final MongoTemplate mongoTemplate;
+  private final String taskCollection;
+  private final String workflowCollection;
+  // Incremented on every eviction so a read racing an apply does not cache the old revision
+  private final AtomicLong generation = new AtomicLong();
+  private Cache<String, Document> revisions;
+  // Latest version seen per ref. Versions only increase, so a stale entry never wrongly caches.
+  private Cache<String, Integer> latest;
+  // Latest revision per ref, only read while the change stream is active
+  private Cache<String, Document> current;
+  private ChangeStreamWatcher watcher;
+
+  public RevisionCache(MongoTemplate mongoTemplate, MongoConfiguration mongoConfiguration) {
+    this.mongoTemplate = mongoTemplate;
+    this.taskCollection = mongoConfiguration.fullCollectionName("task_revisions");
+    this.workflowCollection = mongoConfiguration.fullCollectionName("workflow_revisions");
+  }
+
+  @PostConstruct
+  public void init() {
+    revisions =
+        Caffeine.newBuilder()
+            .maximumSize(maxSize)
+            .expireAfterWrite(Duration.ofSeconds(expireAfter))
+            .build();
+    latest =
+        Caffeine.newBuilder()
+            .maximumSize(maxSize)
+            .expireAfterWrite(Duration.ofSeconds(latestExpireAfter))
+            .build();
+    current =
+        Caffeine.newBuilder()
+            .maximumSize(maxSize)
+            .expireAfterWrite(Duration.ofSeconds(expireAfter))
+            .build();
+    watcher =
+        new ChangeStreamWatcher(
+                "revision-cache-watcher",
+                () ->
+                    mongoTemplate
+                        .getDb()
+                        .watch(
+                            List.of(
+                                Aggregates.match(
+                                    Filters.in(
+                                        "ns.coll", taskCollection, workflowCollection))))
+                        .fullDocument(FullDocument.UPDATE_LOOKUP),
+                this::changed)
+            .onReconnect(this::evictAll);
+    watcher.start(changeStreamEnabled && !mongoCosmosDBTTL);
+  }
+
+  @PreDestroy
+  public void destroy() {
+    if (watcher != null) {
+      watcher.stop();
+    }
+  }
+
+  public boolean isChangeStreamActive() {
+    return watcher != null && watcher.isActive();
+  }
+
+  public Optional<TaskRevisionEntity> getTaskRevision(String parentRef, Optional<Integer> version) {
+    return get(TaskRevisionEntity.class, taskCollection, "parentRef", parentRef, version);
+  }
+
+  public Optional<WorkflowRevisionEntity> getWorkflowRevision(
+      String workflowRef, Optional<Integer> version) {
+    return get(
+        WorkflowRevisionEntity.class, workflowCollection, "workflowRef", workflowRef, version);
+  }
+
+  public void evictTask(String parentRef) {
+    evict(TaskRevisionEntity.class, parentRef);
+  }
+
+  public void evictWorkflow(String workflowRef) {
+    evict(WorkflowRevisionEntity.class, workflowRef);
+  }
+
+  private <E> Optional<E> get(
+      Class<E> type,
+      String collection,
+      String refField,
+      String ref,
+      Optional<Integer> version) {
+    if (ref == null) {
+      return Optional.empty();
+    }
+    final String prefix = prefix(type, ref);
+    final boolean watched = isChangeStreamActive();
+    if (version.isPresent()) {
+      Document cached = revisions.getIfPresent(prefix + version.get());
+      if (cached != null) {
+        return Optional.of(mongoTemplate.getConverter().read(type, cached));
+      }
+    }
+    if (watched) {
+      Document cached = current.getIfPresent(prefix);
+      if (cached != null
+          && (version.isEmpty() || version.get().equals(cached.getInteger("version")))) {
+        return Optional.of(mongoTemplate.getConverter().read(type, cached));
+      }
+    }
+
+    final long observed = generation.get();
+    Query query = query(where(refField).is(ref));
+    if (version.isPresent()) {
+      query.addCriteria(where("version").is(version.get()));
+    } else {
+      query.with(Sort.by(Sort.Direction.DESC, "version")).limit(1);
+    }
+    Document document = mongoTemplate.findOne(query, Document.class, collection);
+    if (document == null) {
+      return Optional.empty();
+    }
+    Integer found = document.getInteger("version");
+    if (found != null && generation.get() == observed) {
+      if (version.isEmpty()) {
+        latest.put(prefix, found);
+        if (watched) {
+          current.put(prefix, document);
+        }
+      } else if (isSuperseded(collection, refField, ref, prefix, found)) {
+        revisions.put(prefix + found, document);
+      } else if (watched) {
+        current.put(prefix, document);
+      }
+    }
+    return Optional.of(mongoTemplate.getConverter().read(type, document));
+  }
+
+  /*
+   * Whether a newer version of the ref exists. A version recently seen as the latest is not checked
+   * again until that entry expires.
+   */
+  private boolean isSuperseded(
+      String collection, String refField, String ref, String prefix, int version) {
+    Integer latestVersion = latest.getIfPresent(prefix);
+    if (latestVersion != null && latestVersion >= version) {
+      return latestVersion > version;
+    }
+    boolean superseded =
+        mongoTemplate.exists(
+            query(where(refField).is(ref).and("version").gt(version)), collection);
+    if (!superseded) {
+      latest.put(prefix, version);
+    }
+    return superseded;
+  }
+
+  /*
+   * Evict the ref of a changed revision. A delete does not carry the ref, so every revision of the
+   * type is evicted.
+   */
+  private void changed(ChangeStreamDocument<Document> event) {
+    final boolean task =
+        event.getNamespace() != null
+            && taskCollection.equals(event.getNamespace().getCollectionName());
+    final Class<?> type = task ? TaskRevisionEntity.class : WorkflowRevisionEntity.class;
+    final Document document = event.getFullDocument();
+    final String ref =
+        document != null ? document.getString(task ? "parentRef" : "workflowRef") : null;
+    if (ref != null) {
+      evict(type, ref);
+    } else {
+      evictPrefix(type.getSimpleName() + ":");
+    }
+  }
+
+  private void evict(Class<?> type, String ref) {
+    if (ref == null) {
+      return;
+    }
+    evictPrefix(prefix(type, ref));
+  }
+
+  private void evictAll() {
+    evictPrefix("");
+  }
+
+  private void evictPrefix(String prefix) {
+    generation.incrementAndGet();
+    latest.asMap().keySet().removeIf(key -> key.startsWith(prefix));
+    current.asMap().keySet().removeIf(key -> key.startsWith(prefix));
+    revisions.asMap().keySet().removeIf(key -> key.startsWith(prefix));
+  }
+
+  private String prefix(Class<?> type, String ref) {
+    return type.getSimpleName() + ":" + ref + ":";
+  }
+}
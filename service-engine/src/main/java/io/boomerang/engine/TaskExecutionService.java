@@ -8,6 +8,7 @@ import io.boomerang.common.entity.WorkflowRunEntity;
 import io.boomerang.common.enums.*;
 import io.boomerang.common.model.*;
 import io.boomerang.common.model.WorkflowSchedule;
+import io.boomerang.engine.enums.TaskTimerType;
 import io.boomerang.engine.repository.ActionRepository;
 import io.boomerang.engine.repository.TaskRunRepository;
 import io.boomerang.engine.repository.WorkflowRunRepository;
@@ -18,12 +19,13 @@ import java.util.Calendar;
 import java.util.Date;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.TimeZone;
-import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
-import java.util.function.Supplier;
+import java.util.stream.Collectors;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.math.NumberUtils;
 import org.apache.logging.log4j.LogManager;
@@ -31,9 +33,7 @@ import org.apache.logging.log4j.Logger;
 import org.jobrunr.scheduling.JobScheduler;
 import org.slf4j.helpers.MessageFormatter;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.annotation.Lazy;
-import org.springframework.core.task.TaskExecutor;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 
@@ -69,10 +69,9 @@ public class TaskExecutionService {
 
   @Autowired private JobScheduler jobScheduler;
 
-  @Autowired
-  @Lazy
-  @Qualifier("asyncTaskExecutor")
-  TaskExecutor asyncTaskExecutor;
+  @Autowired @Lazy private AgentDispatchService agentDispatchService;
+
+  @Autowired private TaskTimerWheel taskTimerWheel;
 
   @Async("asyncTaskExecutor")
   public void queue(TaskRunEntity taskExecution) {
@@ -115,8 +114,7 @@ public class TaskExecutionService {
     }
 
     // Ensure Task is valid as part of Graph
-    List<TaskRunEntity> tasks = dagUtility.retrieveTaskList(wfRunEntity.get().getId());
-    boolean canRunTask = dagUtility.canRunTask(tasks, taskExecution);
+    boolean canRunTask = dagUtility.canRunTask(wfRunEntity.get().getId(), taskExecution);
     LOGGER.debug("[{}] Can run task? {}", taskExecutionId, canRunTask);
 
     if (canRunTask) {
@@ -133,6 +131,8 @@ public class TaskExecutionService {
           && !TaskType.generic.equals(taskExecution.getType())) {
         LOGGER.debug("[{}] Moving task to Executing: {}", taskExecutionId, taskExecution.getName());
         taskExecutionClient.execute(this, taskExecution, wfRunEntity.get());
+      } else {
+        agentDispatchService.signal();
       }
     } else {
       LOGGER.debug("[{}] Skipping task: {}", taskExecutionId, taskExecution.getName());
@@ -288,28 +288,26 @@ public class TaskExecutionService {
         LOGGER.debug("[{}] TaskRun set to end? {}", taskExecution.getId(), endTask);
       }
       case sleep -> {
-        this.createSleepTask(taskExecution);
-        endTask = true;
+        // Task is parked and resumed by the timer wheel. No thread is held while sleeping.
+        endTask = this.createSleepTask(taskExecution);
       }
       case end, start -> throw new UnsupportedOperationException("Unimplemented case: " + taskType);
       default -> throw new BoomerangException(BoomerangError.TASKRUN_INVALID_TYPE, taskType);
     }
 
     // Check if task has a timeout set and task is not auto ending
-    // If set, create Timeout Delayed CompletableFuture
-    // TODO migrate to a scheduled task rather than using Future so that it works across horizontal
-    // scaling
+    // If set, schedule the timeout on the persistent timer wheel
     if (endTask) {
       taskExecutionClient.end(this, taskExecution);
     } else if (!Objects.isNull(taskExecution.getTimeout()) && taskExecution.getTimeout() != 0) {
       LOGGER.debug(
-          "[{}] TaskRun Timeout provided of {} minutes. Creating future timeout check.",
+          "[{}] TaskRun Timeout provided of {} minutes. Scheduling timeout.",
           taskExecution.getId(),
           taskExecution.getTimeout());
-      CompletableFuture.supplyAsync(
-          timeoutTaskAsync(taskExecution.getId()),
-          CompletableFuture.delayedExecutor(
-              taskExecution.getTimeout(), TimeUnit.MINUTES, asyncTaskExecutor));
+      taskTimerWheel.schedule(
+          taskExecution.getId(),
+          TaskTimerType.timeout,
+          TimeUnit.MINUTES.toMillis(taskExecution.getTimeout()));
     }
   }
 
@@ -330,6 +328,12 @@ public class TaskExecutionService {
       return;
     }
 
+    // The TaskRun is ending so any pending timers are no longer needed
+    if (TaskType.sleep.equals(taskExecution.getType())
+        || (!Objects.isNull(taskExecution.getTimeout()) && taskExecution.getTimeout() != 0)) {
+      taskTimerWheel.cancel(taskExecutionId);
+    }
+
     LOGGER.debug("[{}] Attempting to acquire TaskRun ({}) lock", taskExecutionId, taskExecutionId);
     String taskTokenId = lockManager.acquireLock(taskExecutionId);
     LOGGER.info("[{}] Obtained TaskRun ({}) lock", taskExecutionId, taskExecutionId);
@@ -378,6 +382,7 @@ public class TaskExecutionService {
       taskExecution.setDuration(duration);
       taskExecution.setPhase(RunPhase.completed);
       taskExecution = taskRunRepository.save(taskExecution);
+      dagUtility.updateDAGState(taskExecution);
 
       lockManager.releaseLock(taskExecutionId, taskTokenId);
       LOGGER.info("[{}] Released TaskRun ({}) lock", taskExecutionId, taskExecutionId);
@@ -428,28 +433,38 @@ public class TaskExecutionService {
   }
 
   /*
-   * An async method to execute Timeout checks with DelayedExecutor
-   *
-   * The CompletableFuture.orTimeout() method can't be used as the TaskRun Async thread will finish
-   * and hand over to the Handler and wait for callback.
+   * Timeout the TaskRun. Called by the TaskTimerWheel when the timeout is due.
    *
-   * TODO: save error block TODO: implement via quartz Note: Implements same locks as
-   * TaskExecutionService
+   * Note: Implements same locks as TaskExecutionService
    */
-  private Supplier<Boolean> timeoutTaskAsync(String taskRunId) {
-    return () -> {
-      final Optional<TaskRunEntity> optTaskExecution = this.taskRunRepository.findById(taskRunId);
-      if (optTaskExecution.isPresent()) {
-        TaskRunEntity taskExecution = optTaskExecution.get();
-        // Only need to check if Running - otherwise nothing to timeout
-        if (RunPhase.running.equals(taskExecution.getPhase())) {
-          LOGGER.info("[{}] Timeout Task Async...", taskRunId);
-          taskExecution.setStatus(RunStatus.timedout);
-          taskExecutionClient.end(this, taskExecution);
-        }
+  public void timeoutTask(String taskRunId) {
+    final Optional<TaskRunEntity> optTaskExecution = this.taskRunRepository.findById(taskRunId);
+    if (optTaskExecution.isPresent()) {
+      TaskRunEntity taskExecution = optTaskExecution.get();
+      // Only need to check if Running - otherwise nothing to timeout
+      if (RunPhase.running.equals(taskExecution.getPhase())) {
+        LOGGER.info("[{}] Timeout Task...", taskRunId);
+        taskExecution.setStatus(RunStatus.timedout);
+        taskExecutionClient.end(this, taskExecution);
       }
-      return true;
-    };
+    }
+  }
+
+  /*
+   * Resume a parked TaskRun. Called by the TaskTimerWheel when the continuation is due.
+   */
+  public void resumeTask(String taskRunId) {
+    final Optional<TaskRunEntity> optTaskExecution = this.taskRunRepository.findById(taskRunId);
+    if (optTaskExecution.isPresent()) {
+      TaskRunEntity taskExecution = optTaskExecution.get();
+      // Only need to resume if still parked - otherwise it has been ended or cancelled
+      if (RunPhase.running.equals(taskExecution.getPhase())
+          && RunStatus.waiting.equals(taskExecution.getStatus())) {
+        LOGGER.info("[{}] Resume Task...", taskRunId);
+        taskExecution.setStatus(RunStatus.succeeded);
+        taskExecutionClient.end(this, taskExecution);
+      }
+    }
   }
 
   /*
@@ -545,19 +560,21 @@ public class TaskExecutionService {
     }
   }
 
-  private void createSleepTask(TaskRunEntity taskExecution) {
+  /*
+   * Parks the TaskRun as waiting, the same as eventwait and approval, and schedules the
+   * continuation that ends it. Returns true if there is nothing to wait for.
+   */
+  private boolean createSleepTask(TaskRunEntity taskExecution) {
     String value = ParameterUtil.getValue(taskExecution.getParams(), "duration").toString();
     long duration = Long.parseLong(value);
-
-    //    jobScheduler.schedule(Instant.now().plus(duration, ChronoUnit.MILLIS), () ->
-    // timeoutWorkflowAsync(wfRunEntity.getId()));
-    try {
-      Thread.sleep(duration);
+    if (duration <= 0) {
       taskExecution.setStatus(RunStatus.succeeded);
-    } catch (InterruptedException e) {
-      taskExecution.setStatus(RunStatus.failed);
-      taskExecution.setStatusMessage(e.getMessage());
+      return true;
     }
+    taskExecution.setStatus(RunStatus.waiting);
+    taskRunRepository.save(taskExecution);
+    taskTimerWheel.schedule(taskExecution.getId(), TaskTimerType.resume, duration);
+    return false;
   }
 
   private void processDecision(TaskRunEntity taskExecution, String activityId) {
@@ -622,7 +639,7 @@ public class TaskExecutionService {
         throw new BoomerangException(BoomerangError.TASKRUN_INVALID_PARAMS);
       }
       LOGGER.debug("[{}] Releasing lock for key: {}", taskExecution.getId(), key);
-      lockManager.releaseLock(key, key);
+      lockManager.releaseLock(key);
     } catch (Exception ex) {
       taskExecution.setStatus(RunStatus.failed);
       taskExecution.setStatusMessage(ex.getMessage());
@@ -898,6 +915,7 @@ public class TaskExecutionService {
     wfRunEntity.setDuration(duration);
 
     this.workflowRunRepository.save(wfRunEntity);
+    dagUtility.evictDAGState(wfRunEntity.getId());
     LOGGER.info(
         "[{}] Completed Workflow with status: {}.", wfRunEntity.getId(), wfRunEntity.getStatus());
   }
@@ -914,6 +932,15 @@ public class TaskExecutionService {
         nextNodes.size(),
         nextNodes.toString());
 
+    // Retrieve the dependencies of all next tasks in a single query
+    Map<String, TaskRunEntity> dependencies =
+        dagUtility.retrieveTasksByName(
+            wfRunEntity.getId(),
+            nextNodes.stream()
+                .flatMap(n -> n.getDependencies().stream())
+                .map(WorkflowTaskDependency::getTaskRef)
+                .collect(Collectors.toSet()));
+
     for (TaskRunEntity next : nextNodes) {
       if (TaskType.end.equals(next.getType())) {
         if (finishedAll) {
@@ -924,7 +951,7 @@ public class TaskExecutionService {
         continue;
       }
 
-      boolean executeTask = canExecuteTask(wfRunEntity, next);
+      boolean executeTask = canExecuteTask(next, dependencies);
       if (executeTask) {
         LOGGER.debug("[{}] Execute next TaskRun: {}", wfRunEntity.getId(), next.getName());
         Optional<TaskRunEntity> taskRunEntity =
@@ -948,45 +975,26 @@ public class TaskExecutionService {
    */
   private boolean finishedAll(
       WorkflowRunEntity wfRunEntity, List<TaskRunEntity> tasks, TaskRunEntity currentTask) {
-    boolean finishedAll = true;
     List<TaskRunEntity> nextNodes = dagUtility.getTasksDependants(tasks, currentTask);
     LOGGER.debug("[{}] Task Dependencies: {}", currentTask.getId(), nextNodes.toString());
-    for (TaskRunEntity next : nextNodes) {
-      if (TaskType.end.equals(next.getType())) {
-        List<WorkflowTaskDependency> deps = next.getDependencies();
-        for (WorkflowTaskDependency dep : deps) {
-          Optional<TaskRunEntity> taskRunEntity =
-              this.taskRunRepository.findFirstByNameAndWorkflowRunRef(
-                  dep.getTaskRef(), wfRunEntity.getId());
-          if (!taskRunEntity.isPresent() && taskRunEntity != null) {
-            continue;
-          }
-
-          RunPhase phase = taskRunEntity.get().getPhase();
-          if (!RunPhase.completed.equals(phase)) {
-            finishedAll = false;
-            // Performance wise we don't need to finish the looping and can exit
-            return finishedAll;
-          }
-        }
-      }
-    }
-
-    return finishedAll;
+    Set<String> endDependencies =
+        nextNodes.stream()
+            .filter(n -> TaskType.end.equals(n.getType()))
+            .flatMap(n -> n.getDependencies().stream())
+            .map(WorkflowTaskDependency::getTaskRef)
+            .collect(Collectors.toSet());
+    // Performance wise we only need a single query for all dependencies of the End task
+    return dagUtility.retrieveTasksByName(wfRunEntity.getId(), endDependencies).values().stream()
+        .allMatch(t -> RunPhase.completed.equals(t.getPhase()));
   }
 
-  private boolean canExecuteTask(WorkflowRunEntity wfRunEntity, TaskRunEntity next) {
+  private boolean canExecuteTask(TaskRunEntity next, Map<String, TaskRunEntity> dependencies) {
     List<WorkflowTaskDependency> deps = next.getDependencies();
     LOGGER.debug("Found {} dependencies", deps.size());
     for (WorkflowTaskDependency dep : deps) {
-      Optional<TaskRunEntity> taskRunEntity =
-          this.taskRunRepository.findFirstByNameAndWorkflowRunRef(
-              dep.getTaskRef(), wfRunEntity.getId());
-      if (taskRunEntity.isPresent()) {
-        RunPhase phase = taskRunEntity.get().getPhase();
-        if (!RunPhase.completed.equals(phase)) {
-          return false;
-        }
+      TaskRunEntity taskRunEntity = dependencies.get(dep.getTaskRef());
+      if (taskRunEntity != null && !RunPhase.completed.equals(taskRunEntity.getPhase())) {
+        return false;
       }
     }
     return true;
@@ -8,13 +8,13 @@ import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import java.util.Date;
 import java.util.List;
 import java.util.Optional;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Sort.Direction;
-import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
@@ -22,9 +22,7 @@ import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
-import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.annotation.RestController;
-import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 @RestController
 @RequestMapping("/api/v1/taskrun")
@@ -169,15 +167,14 @@ public class TaskRunControllerV1 {
         @ApiResponse(responseCode = "200", description = "OK"),
         @ApiResponse(responseCode = "400", description = "Bad Request")
       })
-  @ResponseBody
-  public ResponseEntity<StreamingResponseBody> getTaskRunLog(
+  public void getTaskRunLog(
+      HttpServletRequest request,
       HttpServletResponse response,
       @Parameter(name = "taskRunId", description = "ID of Task Run to Start", required = true)
           @PathVariable(required = true)
           String taskRunId) {
     response.setContentType("text/plain");
     response.setCharacterEncoding("UTF-8");
-    return new ResponseEntity<StreamingResponseBody>(
-        taskRunService.streamLog(taskRunId), HttpStatus.OK);
+    taskRunService.streamLog(taskRunId, request, response);
   }
 }
@@ -2,24 +2,34 @@ package io.boomerang.engine;
 
 import io.boomerang.client.LogClient;
 import io.boomerang.common.entity.TaskRunEntity;
+import io.boomerang.common.entity.WorkflowRunEntity;
+import io.boomerang.common.enums.ConfigType;
 import io.boomerang.common.enums.RunPhase;
 import io.boomerang.common.enums.RunStatus;
+import io.boomerang.common.model.AbstractParam;
+import io.boomerang.common.model.RunParam;
 import io.boomerang.common.model.TaskRun;
 import io.boomerang.common.model.TaskRunEndRequest;
 import io.boomerang.common.model.TaskRunStartRequest;
 import io.boomerang.engine.repository.TaskRunRepository;
+import io.boomerang.engine.repository.WorkflowRevisionRepository;
+import io.boomerang.engine.repository.WorkflowRunRepository;
 import io.boomerang.error.BoomerangError;
 import io.boomerang.error.BoomerangException;
 import io.boomerang.util.ParameterUtil;
 import io.boomerang.util.ResultUtil;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import java.io.UnsupportedEncodingException;
 import java.net.URLDecoder;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import org.apache.commons.lang3.EnumUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -36,7 +46,6 @@ import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.data.support.PageableExecutionUtils;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
-import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 /*
  * Handles CRUD of TaskRuns
@@ -49,6 +58,9 @@ public class TaskRunService {
   private final TaskExecutionService taskExecutionService;
   private final LogClient logClient;
   private final TaskRunRepository taskRunRepository;
+  private final WorkflowRevisionRepository workflowRevisionRepository;
+  private final WorkflowRunRepository workflowRunRepository;
+  private final RevisionCache revisionCache;
   private final MongoTemplate mongoTemplate;
 
   public TaskRunService(
@@ -56,11 +68,17 @@ public class TaskRunService {
       @Lazy TaskExecutionService taskExecutionService,
       @Lazy LogClient logClient,
       TaskRunRepository taskRunRepository,
+      WorkflowRevisionRepository workflowRevisionRepository,
+      WorkflowRunRepository workflowRunRepository,
+      RevisionCache revisionCache,
       MongoTemplate mongoTemplate) {
     this.taskExecutionClient = taskExecutionClient;
     this.taskExecutionService = taskExecutionService;
     this.logClient = logClient;
     this.taskRunRepository = taskRunRepository;
+    this.workflowRevisionRepository = workflowRevisionRepository;
+    this.workflowRunRepository = workflowRunRepository;
+    this.revisionCache = revisionCache;
     this.mongoTemplate = mongoTemplate;
   }
 
@@ -238,21 +256,74 @@ public class TaskRunService {
     throw new BoomerangException(BoomerangError.TASKRUN_INVALID_REF);
   }
 
-  public StreamingResponseBody streamLog(String taskRunId) {
+  public void streamLog(
+      String taskRunId, HttpServletRequest request, HttpServletResponse response) {
     if (!Objects.isNull(taskRunId) && !taskRunId.isBlank()) {
       LOGGER.info("Getting TaskRun[{}] log...", taskRunId);
       Optional<TaskRunEntity> optTaskRunEntity = taskRunRepository.findById(taskRunId);
-
-      // TODO sanitise and remove secure parameters
-      //    List<String> removeList = buildRemovalList(taskId, taskExecution, activity);
-      //    LOGGER.debug("Removal List Count: {} ", removeList.size());
       if (optTaskRunEntity.isPresent()) {
-        return logClient.streamLog(
-            optTaskRunEntity.get().getWorkflowRef(),
-            optTaskRunEntity.get().getWorkflowRunRef(),
-            optTaskRunEntity.get().getId());
+        TaskRunEntity taskRunEntity = optTaskRunEntity.get();
+        Set<String> secrets = getSecrets(taskRunEntity);
+        LOGGER.debug("Masking {} secrets in TaskRun[{}] log", secrets.size(), taskRunId);
+        logClient.streamLog(
+            taskRunEntity.getWorkflowRef(),
+            taskRunEntity.getWorkflowRunRef(),
+            taskRunEntity.getId(),
+            secrets,
+            request,
+            response);
+        return;
       }
     }
     throw new BoomerangException(BoomerangError.TASKRUN_INVALID_REF);
   }
+
+  /*
+   * The values of the password params of the Task and of the Workflow, which may have been passed
+   * to the Task by reference
+   */
+  private Set<String> getSecrets(TaskRunEntity taskRunEntity) {
+    Set<String> secrets = new HashSet<>();
+    revisionCache
+        .getTaskRevision(
+            taskRunEntity.getTaskRef(), Optional.ofNullable(taskRunEntity.getTaskVersion()))
+        .ifPresent(
+            revision ->
+                addSecrets(revision.getSpec().getParams(), taskRunEntity.getParams(), secrets));
+    if (taskRunEntity.getWorkflowRevisionRef() != null) {
+      workflowRevisionRepository
+          .findById(taskRunEntity.getWorkflowRevisionRef())
+          .ifPresent(
+              revision -> {
+                List<RunParam> runParams =
+                    workflowRunRepository
+                        .findById(taskRunEntity.getWorkflowRunRef())
+                        .map(WorkflowRunEntity::getParams)
+                        .orElse(List.of());
+                addSecrets(revision.getParams(), runParams, secrets);
+              });
+    }
+    return secrets;
+  }
+
+  private void addSecrets(
+      List<AbstractParam> params, List<RunParam> runParams, Set<String> secrets) {
+    if (params == null) {
+      return;
+    }
+    for (AbstractParam param : params) {
+      if (!ConfigType.PASSWORD.getLabel().equals(param.getType())) {
+        continue;
+      }
+      if (param.getDefaultValue() != null) {
+        secrets.add(param.getDefaultValue().toString());
+      }
+      if (runParams != null) {
+        runParams.stream()
+            .filter(runParam -> param.getName().equals(runParam.getName()))
+            .filter(runParam -> runParam.getValue() != null)
+            .forEach(runParam -> secrets.add(runParam.getValue().toString()));
+      }
+    }
+  }
 }
@@ -58,29 +58,25 @@ public class TaskService {
   private final TaskRepository taskRepository;
   private final TaskRevisionRepository taskRevisionRepository;
   private final MongoTemplate mongoTemplate;
+  private final RevisionCache revisionCache;
 
   public TaskService(
       TaskRepository taskRepository,
       TaskRevisionRepository taskRevisionRepository,
-      MongoTemplate mongoTemplate) {
+      MongoTemplate mongoTemplate,
+      RevisionCache revisionCache) {
     this.taskRepository = taskRepository;
     this.taskRevisionRepository = taskRevisionRepository;
     this.mongoTemplate = mongoTemplate;
+    this.revisionCache = revisionCache;
   }
 
   public Task get(String ref, Optional<Integer> version) {
     Optional<TaskEntity> taskEntity =
         uniqueNamesEnabled ? taskRepository.findByName(ref) : taskRepository.findById(ref);
     if (taskEntity.isPresent()) {
-      Optional<TaskRevisionEntity> taskRevisionEntity;
-      if (version.isPresent()) {
-        taskRevisionEntity =
-            taskRevisionRepository.findByParentRefAndVersion(
-                taskEntity.get().getId(), version.get());
-      } else {
-        taskRevisionEntity =
-            taskRevisionRepository.findByParentRefAndLatestVersion(taskEntity.get().getId());
-      }
+      Optional<TaskRevisionEntity> taskRevisionEntity =
+          revisionCache.getTaskRevision(taskEntity.get().getId(), version);
       if (taskRevisionEntity.isPresent()) {
         return convertEntityToModel(taskEntity.get(), taskRevisionEntity.get());
       }
@@ -129,6 +125,7 @@ public class TaskService {
     taskRepository.save(taskTemplateEntity);
     taskTemplateRevisionEntity.setParentRef(taskTemplateEntity.getId());
     taskRevisionRepository.save(taskTemplateRevisionEntity);
+    revisionCache.evictTask(taskTemplateEntity.getId());
 
     return convertEntityToModel(taskTemplateEntity, taskTemplateRevisionEntity);
   }
@@ -210,6 +207,7 @@ public class TaskService {
     TaskEntity savedEntity = taskRepository.save(taskEntity);
     newTaskRevisionEntity.setParentRef(taskEntity.getId());
     TaskRevisionEntity savedRevision = taskRevisionRepository.save(newTaskRevisionEntity);
+    revisionCache.evictTask(taskEntity.getId());
     return convertEntityToModel(savedEntity, savedRevision);
   }
 
@@ -303,7 +301,7 @@ public class TaskService {
         e -> {
           LOGGER.debug(e.toString());
           Optional<TaskRevisionEntity> taskRevisionEntity =
-              taskRevisionRepository.findByParentRefAndLatestVersion(e.getId());
+              revisionCache.getTaskRevision(e.getId(), Optional.empty());
           if (taskRevisionEntity.isPresent()) {
             Task tt = convertEntityToModel(e, taskRevisionEntity.get());
             tasks.add(tt);
@@ -355,6 +353,7 @@ public class TaskService {
   public void delete(String name) {
     taskRevisionRepository.deleteByParentRef(name);
     taskRepository.deleteById(name);
+    revisionCache.evictTask(name);
   }
 
   private Task convertEntityToModel(TaskEntity entity, TaskRevisionEntity revision) {
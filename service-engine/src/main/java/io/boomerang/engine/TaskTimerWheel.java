@@ -0,0 +1,354 @@
+package io.boomerang.engine;
+
+import io.boomerang.config.MongoConfiguration;
+import io.boomerang.engine.entity.TaskTimerEntity;
+import io.boomerang.engine.enums.TaskTimerType;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+/*
+ * Persistent hashed timer wheel for the TaskRun timers, i.e. timeouts and the continuations of
+ * parked TaskRuns such as sleep.
+ *
+ * - Due dates are stored in the task_timers collection, indexed on dueDate, so that they survive a
+ * restart and can be fired by any engine replica.
+ * - Each replica periodically claims the timers due within its horizon with a range query and
+ * holds them in an in memory hashed wheel. Timers due within the horizon when scheduled are
+ * claimed directly.
+ * - Firing removes the claimed document first, so a timer fires once across the replicas and not
+ * at all if it was cancelled or rescheduled in the meantime.
+ * - Claims expire so that timers held by a replica that stopped are claimed by another.
+ *
+ * Insert, cancel and expiry in the wheel are constant time regardless of the pending timers.
+ */
+@Service
+public class TaskTimerWheel {
+
+  private static final Logger LOGGER = LogManager.getLogger(TaskTimerWheel.class);
+
+  private static final String COLLECTION_NAME = "task_timers";
+  private static final int WHEEL_SIZE = 512;
+  private static final int CLAIM_BATCH_SIZE = 1000;
+  private static final int MAX_TRANSFERS_PER_TICK = 100000;
+
+  @Value("${flow.task.timer.tick:100}")
+  private long tickMillis;
+
+  @Value("${flow.task.timer.horizon:60000}")
+  private long horizon;
+
+  @Value("${flow.task.timer.pull.interval:10000}")
+  private long pullInterval;
+
+  @Value("${flow.task.timer.claim.grace:60000}")
+  private long claimGrace;
+
+  @Autowired @Lazy private TaskExecutionService taskExecutionService;
+
+  private final MongoTemplate mongoTemplate;
+  private final MongoConfiguration mongoConfiguration;
+
+  // Buckets are only accessed by the ticker thread. Other threads hand over through additions.
+  private final List<LinkedList<Timer>> buckets = new ArrayList<>(WHEEL_SIZE);
+  private final Queue<Timer> additions = new ConcurrentLinkedQueue<>();
+  // Timers held by this wheel keyed by the timer id
+  private final Map<String, Timer> pending = new ConcurrentHashMap<>();
+
+  private volatile boolean running = true;
+  private long startTime;
+  private long tick;
+  private Thread ticker;
+  private ScheduledExecutorService scheduler;
+
+  public TaskTimerWheel(MongoTemplate mongoTemplate, MongoConfiguration mongoConfiguration) {
+    this.mongoTemplate = mongoTemplate;
+    this.mongoConfiguration = mongoConfiguration;
+    for (int i = 0; i < WHEEL_SIZE; i++) {
+      buckets.add(new LinkedList<>());
+    }
+  }
+
+  private static final class Timer {
+    private final String id;
+    private final String taskRunId;
+    private final TaskTimerType type;
+    private final String claimRef;
+    private final long deadline;
+    private long rounds;
+    private volatile boolean cancelled;
+
+    private Timer(
+        String id, String taskRunId, TaskTimerType type, String claimRef, long deadline) {
+      this.id = id;
+      this.taskRunId = taskRunId;
+      this.type = type;
+      this.claimRef = claimRef;
+      this.deadline = deadline;
+    }
+  }
+
+  @PostConstruct
+  public void init() {
+    try {
+      mongoTemplate
+          .indexOps(collection())
+          .ensureIndex(new Index().on("dueDate", Sort.Direction.ASC));
+    } catch (Exception e) {
+      LOGGER.warn("Unable to create index on {}: {}", collection(), e.getMessage());
+    }
+    startTime = System.currentTimeMillis();
+    ticker = new Thread(this::run, "task-timer-wheel");
+    ticker.setDaemon(true);
+    ticker.start();
+    AtomicInteger threadCount = new AtomicInteger();
+    scheduler =
+        Executors.newScheduledThreadPool(
+            2,
+            r -> {
+              Thread thread = new Thread(r, "task-timer-" + threadCount.incrementAndGet());
+              thread.setDaemon(true);
+              return thread;
+            });
+    scheduler.scheduleWithFixedDelay(this::pull, 0, pullInterval, TimeUnit.MILLISECONDS);
+  }
+
+  @PreDestroy
+  public void destroy() {
+    running = false;
+    if (ticker != null) {
+      ticker.interrupt();
+      scheduler.shutdownNow();
+    }
+  }
+
+  /*
+   * Schedule or reschedule the timer of the type for the TaskRun
+   */
+  public void schedule(String taskRunId, TaskTimerType type, long delayMillis) {
+    final String id = timerId(taskRunId, type);
+    final long dueTime = System.currentTimeMillis() + delayMillis;
+    final Update update =
+        new Update()
+            .set("taskRunRef", taskRunId)
+            .set("type", type)
+            .set("dueDate", new Date(dueTime));
+    String claimRef = null;
+    if (delayMillis <= horizon) {
+      claimRef = UUID.randomUUID().toString();
+      update.set("claimRef", claimRef).set("claimExpiryDate", new Date(dueTime + claimGrace));
+    } else {
+      update.unset("claimRef").unset("claimExpiryDate");
+    }
+    mongoTemplate.upsert(
+        Query.query(Criteria.where("_id").is(id)), update, TaskTimerEntity.class, collection());
+    if (claimRef != null) {
+      add(new Timer(id, taskRunId, type, claimRef, dueTime));
+    } else {
+      // A previous timer may be held by this wheel
+      cancelLocal(id);
+    }
+  }
+
+  /*
+   * Cancel all timers for the TaskRun, if any
+   */
+  public void cancel(String taskRunId) {
+    List<String> ids = new ArrayList<>();
+    for (TaskTimerType type : TaskTimerType.values()) {
+      ids.add(timerId(taskRunId, type));
+    }
+    ids.forEach(this::cancelLocal);
+    mongoTemplate.remove(
+        Query.query(Criteria.where("_id").in(ids)), TaskTimerEntity.class, collection());
+  }
+
+  int pendingCount() {
+    return pending.size();
+  }
+
+  private void cancelLocal(String id) {
+    Timer timer = pending.remove(id);
+    if (timer != null) {
+      timer.cancelled = true;
+    }
+  }
+
+  private void add(Timer timer) {
+    Timer previous = pending.put(timer.id, timer);
+    if (previous != null) {
+      previous.cancelled = true;
+    }
+    additions.add(timer);
+  }
+
+  private static String timerId(String taskRunId, TaskTimerType type) {
+    return taskRunId + ":" + type;
+  }
+
+  /*
+   * Claim the timers due within the horizon that are unclaimed or whose claim has expired
+   */
+  private void pull() {
+    try {
+      final Date now = new Date();
+      final Criteria claimable =
+          Criteria.where("dueDate")
+              .lte(new Date(now.getTime() + horizon))
+              .orOperator(
+                  Criteria.where("claimRef").exists(false),
+                  Criteria.where("claimExpiryDate").lt(now));
+      int claimed;
+      do {
+        Query query =
+            Query.query(claimable)
+                .with(Sort.by(Sort.Direction.ASC, "dueDate"))
+                .limit(CLAIM_BATCH_SIZE);
+        query.fields().include("_id");
+        List<String> ids =
+            mongoTemplate.find(query, TaskTimerEntity.class, collection()).stream()
+                .map(TaskTimerEntity::getId)
+                .toList();
+        if (ids.isEmpty()) {
+          break;
+        }
+        String claimRef = UUID.randomUUID().toString();
+        mongoTemplate.updateMulti(
+            Query.query(Criteria.where("_id").in(ids).andOperator(claimable)),
+            new Update()
+                .set("claimRef", claimRef)
+                .set("claimExpiryDate", new Date(now.getTime() + horizon + claimGrace)),
+            TaskTimerEntity.class,
+            collection());
+        mongoTemplate
+            .find(
+                Query.query(Criteria.where("claimRef").is(claimRef)),
+                TaskTimerEntity.class,
+                collection())
+            .forEach(
+                e ->
+                    add(
+                        new Timer(
+                            e.getId(),
+                            e.getTaskRunRef(),
+                            e.getType(),
+                            claimRef,
+                            e.getDueDate().getTime())));
+        claimed = ids.size();
+        LOGGER.debug("Claimed {} TaskRun timers.", claimed);
+      } while (running && claimed == CLAIM_BATCH_SIZE);
+    } catch (Exception e) {
+      LOGGER.error("Unable to claim TaskRun timers: {}", e.getMessage());
+    }
+  }
+
+  private void run() {
+    while (running) {
+      final long deadline = startTime + (tick + 1) * tickMillis;
+      final long sleep = deadline - System.currentTimeMillis();
+      if (sleep > 0) {
+        try {
+          Thread.sleep(sleep);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          return;
+        }
+      }
+      transferAdditions();
+      expire(buckets.get((int) (tick & (WHEEL_SIZE - 1))));
+      tick++;
+    }
+  }
+
+  /*
+   * Place the added timers in their bucket. Overdue timers are placed in the current bucket.
+   */
+  private void transferAdditions() {
+    for (int i = 0; i < MAX_TRANSFERS_PER_TICK; i++) {
+      Timer timer = additions.poll();
+      if (timer == null) {
+        return;
+      }
+      if (timer.cancelled) {
+        continue;
+      }
+      long calculated = Math.max(timer.deadline - startTime, 0) / tickMillis;
+      timer.rounds = (calculated - tick) / WHEEL_SIZE;
+      long ticks = Math.max(calculated, tick);
+      buckets.get((int) (ticks & (WHEEL_SIZE - 1))).add(timer);
+    }
+  }
+
+  private void expire(LinkedList<Timer> bucket) {
+    Iterator<Timer> iterator = bucket.iterator();
+    while (iterator.hasNext()) {
+      Timer timer = iterator.next();
+      if (timer.cancelled) {
+        iterator.remove();
+      } else if (timer.rounds <= 0) {
+        iterator.remove();
+        fire(timer);
+      } else {
+        timer.rounds--;
+      }
+    }
+  }
+
+  private void fire(Timer timer) {
+    pending.remove(timer.id, timer);
+    scheduler.execute(
+        () -> {
+          try {
+            TaskTimerEntity entity =
+                mongoTemplate.findAndRemove(
+                    Query.query(
+                        Criteria.where("_id").is(timer.id).and("claimRef").is(timer.claimRef)),
+                    TaskTimerEntity.class,
+                    collection());
+            if (entity == null) {
+              return;
+            }
+            LOGGER.debug("[{}] TaskRun {} timer fired.", timer.taskRunId, timer.type);
+            switch (timer.type) {
+              case timeout -> taskExecutionService.timeoutTask(timer.taskRunId);
+              case resume -> taskExecutionService.resumeTask(timer.taskRunId);
+            }
+          } catch (Exception e) {
+            LOGGER.error(
+                "[{}] Unable to fire TaskRun {} timer: {}",
+                timer.taskRunId,
+                timer.type,
+                e.getMessage());
+          }
+        });
+  }
+
+  private String collection() {
+    return mongoConfiguration.fullCollectionName(COLLECTION_NAME);
+  }
+}
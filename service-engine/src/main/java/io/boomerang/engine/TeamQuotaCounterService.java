@@ -0,0 +1,98 @@
+package io.boomerang.engine;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+import io.boomerang.common.entity.TeamQuotaCountersEntity;
+import io.boomerang.common.entity.WorkflowRunEntity;
+import io.boomerang.common.enums.RunPhase;
+import io.boomerang.common.enums.RunStatus;
+import io.boomerang.common.util.InsightRollupUtil;
+import io.boomerang.config.MongoConfiguration;
+import java.util.Date;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+/*
+ * Maintains the per Team, per month, quota counters as WorkflowRuns transition
+ *
+ * Only WorkflowRuns submitted for a Team (i.e. with the team-name annotation) are counted. The
+ * counters are updated atomically so that the Flow service can check quotas with a single read.
+ */
+@Service
+public class TeamQuotaCounterService {
+
+  private static final Logger LOGGER = LogManager.getLogger();
+
+  private static final String TEAM_ANNOTATION = "boomerang.io/team-name";
+
+  private final MongoTemplate mongoTemplate;
+  private final String collection;
+
+  public TeamQuotaCounterService(
+      MongoTemplate mongoTemplate, MongoConfiguration mongoConfiguration) {
+    this.mongoTemplate = mongoTemplate;
+    this.collection = mongoConfiguration.fullCollectionName("team_quota_counters");
+  }
+
+  /*
+   * Apply the saved WorkflowRun to its Team's counters
+   *
+   * - Created: the run is counted
+   * - Running: the run is added to the running set
+   * - Completed / Finalized: the run is removed from the running set and its duration added to the
+   * sum and sketch. This only applies if it was in the set, so repeated saves are not counted
+   * twice.
+   */
+  public void update(WorkflowRunEntity entity) {
+    if (entity.getId() == null
+        || entity.getAnnotations() == null
+        || entity.getAnnotations().get(TEAM_ANNOTATION) == null) {
+      return;
+    }
+    final String team = entity.getAnnotations().get(TEAM_ANNOTATION).toString();
+    final Date created = entity.getCreationDate() != null ? entity.getCreationDate() : new Date();
+    final String id = TeamQuotaCountersEntity.idOf(team, created);
+    try {
+      if (RunStatus.notstarted.equals(entity.getStatus())) {
+        mongoTemplate.upsert(
+            query(where("_id").is(id)),
+            onInsert(team, created).inc("runs", 1),
+            TeamQuotaCountersEntity.class,
+            collection);
+      } else if (RunPhase.running.equals(entity.getPhase())) {
+        mongoTemplate.upsert(
+            query(where("_id").is(id)),
+            onInsert(team, created).addToSet("running", entity.getId()),
+            TeamQuotaCountersEntity.class,
+            collection);
+      } else if (RunPhase.completed.equals(entity.getPhase())
+          || RunPhase.finalized.equals(entity.getPhase())) {
+        mongoTemplate.updateFirst(
+            query(where("_id").is(id).and("running").is(entity.getId())),
+            new Update()
+                .pull("running", entity.getId())
+                .inc("duration", entity.getDuration())
+                .inc("sketch." + InsightRollupUtil.index(entity.getDuration()), 1),
+            TeamQuotaCountersEntity.class,
+            collection);
+      }
+    } catch (Exception e) {
+      // The reconciliation in the Flow service corrects any missed update
+      LOGGER.error(
+          "[{}] Unable to update quota counters for team {}. Error: {}",
+          entity.getId(),
+          team,
+          e.getMessage());
+    }
+  }
+
+  private Update onInsert(String team, Date created) {
+    return new Update()
+        .setOnInsert("team", team.toLowerCase())
+        .setOnInsert("period", TeamQuotaCountersEntity.periodOf(created));
+  }
+}
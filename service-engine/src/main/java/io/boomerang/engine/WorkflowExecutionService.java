@@ -56,6 +56,8 @@ public class WorkflowExecutionService {
 
   @Autowired private JobScheduler jobScheduler;
 
+  @Autowired @Lazy private AgentDispatchService agentDispatchService;
+
   @Autowired
   @Lazy
   @Qualifier("asyncWorkflowExecutor")
@@ -74,8 +76,10 @@ public class WorkflowExecutionService {
       final List<TaskRunEntity> tasks = dagUtility.createTaskList(wfRevisionEntity, wfRunEntity);
       LOGGER.info("[{}] Found {} tasks: {}", wfRunEntity.getId(), tasks.size(), tasks.toString());
       if (dagUtility.validateWorkflow(wfRunEntity, tasks)) {
+        dagUtility.buildDAGState(wfRunEntity.getId(), tasks);
         updateStatusAndSaveWorkflow(
             wfRunEntity, RunStatus.ready, RunPhase.pending, Optional.empty());
+        agentDispatchService.signal();
         return;
       }
     }
@@ -126,6 +130,7 @@ public class WorkflowExecutionService {
     String statusMessage = "The WorkflowRun was requested to be cancelled.";
     updateStatusAndSaveWorkflow(
         workflowExecution, RunStatus.cancelled, RunPhase.completed, Optional.of(statusMessage));
+    dagUtility.evictDAGState(workflowExecution.getId());
 
     // Cancel Running & Pending Tasks
     cancelPendingAndRunningTasks(workflowExecution);
@@ -258,6 +263,7 @@ public class WorkflowExecutionService {
             wfRunEntity.getTimeout());
         lockManager.releaseLock(wfRunId, tokenId);
         LOGGER.debug("[{}] Released WorkflowRun lock", wfRunId);
+        dagUtility.evictDAGState(wfRunId);
 
         // Cancel Running & Pending Tasks
         cancelPendingAndRunningTasks(wfRunEntity);
@@ -1,7 +1,5 @@
 package io.boomerang.engine;
 
-import static java.util.stream.Collectors.groupingBy;
-
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import io.boomerang.common.entity.TaskRunEntity;
@@ -26,14 +24,18 @@ import java.net.URLDecoder;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import org.apache.commons.lang3.EnumUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.bson.Document;
+import org.springframework.dao.DataAccessException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -41,6 +43,9 @@ import org.springframework.data.domain.Sort;
 import org.springframework.data.domain.Sort.Direction;
 import org.springframework.data.domain.Sort.Order;
 import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOptions;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.data.support.PageableExecutionUtils;
@@ -51,6 +56,8 @@ public class WorkflowRunService {
 
   private static final Logger LOGGER = LogManager.getLogger();
 
+  private static final List<Double> DURATION_PERCENTILES = List.of(0.5, 0.9, 0.99);
+
   private final WorkflowRepository workflowRepository;
   private final WorkflowRevisionRepository workflowRevisionRepository;
   private final WorkflowRunRepository workflowRunRepository;
@@ -116,6 +123,165 @@ public class WorkflowRunService {
     if (queryLimit.isPresent()) {
       pageable = PageRequest.of(queryPage.get(), queryLimit.get(), sort);
     }
+    final Criteria criteria =
+        buildCriteria(
+            from,
+            to,
+            queryLabels,
+            queryStatus,
+            queryPhase,
+            queryWorkflowRuns,
+            queryWorkflows,
+            queryTriggers);
+
+    // Page on the server and join the Workflow name for the page only
+    List<AggregationOperation> operations = new ArrayList<>();
+    operations.add(Aggregation.match(criteria));
+    operations.add(Aggregation.sort(sort));
+    if (pageable.isPaged()) {
+      operations.add(Aggregation.skip(pageable.getOffset()));
+      operations.add(Aggregation.limit(pageable.getPageSize()));
+    }
+    operations.addAll(lookupWorkflowDetails());
+    Aggregation aggregation =
+        Aggregation.newAggregation(operations)
+            .withOptions(AggregationOptions.builder().allowDiskUse(true).build());
+
+    List<WorkflowRun> wfRuns = new LinkedList<>();
+    mongoTemplate
+        .aggregate(aggregation, WorkflowRunEntity.class, Document.class)
+        .forEach(
+            d -> {
+              WorkflowRunEntity e = mongoTemplate.getConverter().read(WorkflowRunEntity.class, d);
+              WorkflowRun wfRun = ConvertUtil.entityToModel(e, WorkflowRun.class);
+              wfRun.setWorkflowName(d.getString("workflowName"));
+              wfRun.setWorkflowDisplayName(d.getString("workflowDisplayName"));
+              removeInternalAnnotations(wfRun);
+              wfRuns.add(wfRun);
+            });
+
+    return PageableExecutionUtils.getPage(
+        wfRuns,
+        pageable,
+        () -> mongoTemplate.count(Query.query(criteria), WorkflowRunEntity.class));
+  }
+
+  /*
+   * Generates stats / insights for a given set of filters
+   *
+   * The stats are calculated by the server in a single $facet. $percentile requires MongoDB 7.0.
+   * On earlier versions the percentiles are retrieved by rank from the duration sorted runs.
+   */
+  public WorkflowRunInsight insights(
+      Optional<Date> from,
+      Optional<Date> to,
+      Optional<List<String>> labels,
+      Optional<List<String>> queryWorkflowRuns,
+      Optional<List<String>> queryWorkflows) {
+    // TODO when no Workflows are provided, find all Workflows based on team
+    final Criteria criteria =
+        buildCriteria(
+            from,
+            to,
+            labels,
+            Optional.empty(),
+            Optional.empty(),
+            queryWorkflowRuns,
+            queryWorkflows,
+            Optional.empty());
+
+    Document stats;
+    try {
+      stats = insightStats(criteria, true);
+    } catch (DataAccessException e) {
+      LOGGER.debug("Unable to aggregate duration percentiles: {}", e.getMessage());
+      stats = insightStats(criteria, false);
+    }
+    final long totalRuns = longValue(stats.get("totalRuns"));
+    List<Long> percentiles = new ArrayList<>();
+    if (stats.get("durations") instanceof List<?> durations) {
+      durations.forEach(d -> percentiles.add(longValue(d)));
+    } else {
+      percentiles.addAll(durationPercentilesByRank(criteria, totalRuns));
+    }
+
+    WorkflowRunInsight wfRunInsight = new WorkflowRunInsight();
+    wfRunInsight.setTotalRuns(totalRuns);
+    wfRunInsight.setConcurrentRuns(longValue(stats.get("concurrentRuns")));
+    wfRunInsight.setTotalDuration(longValue(stats.get("totalDuration")));
+    wfRunInsight.setMedianDuration(percentiles.get(0));
+    wfRunInsight.setP90Duration(percentiles.get(1));
+    wfRunInsight.setP99Duration(percentiles.get(2));
+
+    // Stream the run summaries with only the summary fields and the joined Workflow name
+    List<AggregationOperation> operations = new ArrayList<>();
+    operations.add(Aggregation.match(criteria));
+    operations.add(
+        Aggregation.project("creationDate", "duration", "status", "workflowRef").andExclude("_id"));
+    operations.addAll(lookupWorkflowDetails());
+    List<WorkflowRunSummary> runs = new LinkedList<>();
+    try (Stream<Document> stream =
+        mongoTemplate.aggregateStream(
+            Aggregation.newAggregation(operations), WorkflowRunEntity.class, Document.class)) {
+      stream.forEach(
+          d -> runs.add(mongoTemplate.getConverter().read(WorkflowRunSummary.class, d)));
+    }
+    wfRunInsight.setRuns(runs);
+    return wfRunInsight;
+  }
+
+  /*
+   * Generates stats for a given set of filters
+   */
+  public WorkflowRunCount count(
+      Optional<Date> from,
+      Optional<Date> to,
+      Optional<List<String>> labels,
+      Optional<List<String>> queryWorkflows) {
+    final Criteria criteria =
+        buildCriteria(
+            from,
+            to,
+            labels,
+            Optional.empty(),
+            Optional.empty(),
+            Optional.empty(),
+            queryWorkflows,
+            Optional.empty());
+    Aggregation aggregation =
+        Aggregation.newAggregation(
+            Aggregation.match(criteria), Aggregation.group("status").count().as("count"));
+
+    // Collate by Status run count
+    Map<String, Long> result = new HashMap<>();
+    long all = 0L;
+    for (Document d :
+        mongoTemplate.aggregate(aggregation, WorkflowRunEntity.class, Document.class)) {
+      long count = longValue(d.get("count"));
+      result.merge(d.get("_id") == null ? "no_status" : d.get("_id").toString(), count, Long::sum);
+      all += count;
+    }
+    result.put("all", all);
+
+    Arrays.stream(RunStatus.values()).forEach(v -> result.putIfAbsent(v.getStatus(), 0L));
+
+    WorkflowRunCount wfRunCount = new WorkflowRunCount();
+    wfRunCount.setStatus(result);
+    return wfRunCount;
+  }
+
+  /*
+   * Builds the WorkflowRun filters shared by query, count and insights
+   */
+  private Criteria buildCriteria(
+      Optional<Date> from,
+      Optional<Date> to,
+      Optional<List<String>> queryLabels,
+      Optional<List<String>> queryStatus,
+      Optional<List<String>> queryPhase,
+      Optional<List<String>> queryWorkflowRuns,
+      Optional<List<String>> queryWorkflows,
+      Optional<List<String>> queryTriggers) {
     List<Criteria> criteriaList = new ArrayList<>();
 
     if (from.isPresent() && !to.isPresent()) {
@@ -189,188 +355,115 @@ public class WorkflowRunService {
     if (criteriaArray.length > 0) {
       allCriteria.andOperator(criteriaArray);
     }
-    Query query = new Query(allCriteria);
-    if (queryLimit.isPresent()) {
-      query.with(pageable);
-    } else {
-      query.with(sort);
-    }
-
-    List<WorkflowRunEntity> wfRunEntities = mongoTemplate.find(query, WorkflowRunEntity.class);
-
-    // Convert to WorkflowRun and add Workflow Name
-    List<WorkflowRun> wfRuns = new LinkedList<>();
-    wfRunEntities.forEach(
-        e -> {
-          WorkflowRun wfRun = ConvertUtil.entityToModel(e, WorkflowRun.class);
-          updateWorkflowDetails(e, wfRun);
-          wfRuns.add(wfRun);
-        });
-
-    Page<WorkflowRun> pages = PageableExecutionUtils.getPage(wfRuns, pageable, () -> wfRuns.size());
-
-    return pages;
+    LOGGER.debug("Criteria: {}", allCriteria.getCriteriaObject());
+    return allCriteria;
   }
 
   /*
-   * Generates stats / insights for a given set of filters
+   * Joins the Workflow name and display name
+   *
+   * The workflowRef is converted to match the Workflow _id, which is stored as an ObjectId when
+   * the id is a valid ObjectId, so that the lookup uses the _id index.
    */
-  public WorkflowRunInsight insights(
-      Optional<Date> from,
-      Optional<Date> to,
-      Optional<List<String>> labels,
-      Optional<List<String>> queryWorkflowRuns,
-      Optional<List<String>> queryWorkflows) {
-    List<Criteria> criteriaList = new ArrayList<>();
-
-    if (from.isPresent() && !to.isPresent()) {
-      Criteria criteria = Criteria.where("creationDate").gte(from.get());
-      criteriaList.add(criteria);
-    } else if (!from.isPresent() && to.isPresent()) {
-      Criteria criteria = Criteria.where("creationDate").lt(to.get());
-      criteriaList.add(criteria);
-    } else if (from.isPresent() && to.isPresent()) {
-      Criteria criteria = Criteria.where("creationDate").gte(from.get()).lt(to.get());
-      criteriaList.add(criteria);
-    }
-
-    // TODO add the ability to OR labels not just AND
-    if (labels.isPresent()) {
-      labels.get().stream()
-          .forEach(
-              l -> {
-                String decodedLabel = "";
-                try {
-                  decodedLabel = URLDecoder.decode(l, "UTF-8");
-                } catch (UnsupportedEncodingException e) {
-                  throw new BoomerangException(e, BoomerangError.QUERY_INVALID_FILTERS, "labels");
-                }
-                LOGGER.debug(decodedLabel.toString());
-                String[] label = decodedLabel.split("[=]+");
-                Criteria labelsCriteria =
-                    Criteria.where("labels." + label[0].replace(".", "#")).is(label[1]);
-                criteriaList.add(labelsCriteria);
-              });
-    }
-
-    if (queryWorkflows.isPresent()) {
-      Criteria criteria = Criteria.where("workflowRef").in(queryWorkflows.get());
-      criteriaList.add(criteria);
-    } else {
-      // TODO find all Workflows based on team, then
-    }
-
-    Criteria[] criteriaArray = criteriaList.toArray(new Criteria[criteriaList.size()]);
-    Criteria allCriteria = new Criteria();
-    if (criteriaArray.length > 0) {
-      allCriteria.andOperator(criteriaArray);
-    }
-    Query query = new Query(allCriteria);
-    LOGGER.debug("Query: " + query.toString());
-    List<WorkflowRunEntity> entities = mongoTemplate.find(query, WorkflowRunEntity.class);
-
-    // Collect the Stats
-    Long totalDuration = 0L;
-    Long duration;
+  private List<AggregationOperation> lookupWorkflowDetails() {
+    final String workflowCollection = mongoTemplate.getCollectionName(WorkflowEntity.class);
+    return List.of(
+        context ->
+            new Document(
+                "$addFields",
+                new Document(
+                    "workflowOid",
+                    new Document(
+                        "$convert",
+                        new Document("input", "$workflowRef")
+                            .append("to", "objectId")
+                            .append("onError", "$workflowRef")))),
+        context ->
+            new Document(
+                "$lookup",
+                new Document("from", workflowCollection)
+                    .append("localField", "workflowOid")
+                    .append("foreignField", "_id")
+                    .append("as", "workflow")),
+        context ->
+            new Document(
+                "$addFields",
+                new Document("workflowName", firstOf("$workflow.name"))
+                    .append("workflowDisplayName", firstOf("$workflow.displayName"))),
+        context -> new Document("$project", new Document("workflow", 0).append("workflowOid", 0)));
+  }
 
-    for (WorkflowRunEntity entity : entities) {
-      duration = entity.getDuration();
-      if (duration != null) {
-        totalDuration += duration;
+  /*
+   * Total runs, running runs, total duration and optionally the duration percentiles in one $facet
+   */
+  private Document insightStats(Criteria criteria, boolean withPercentiles) {
+    Document group =
+        new Document("_id", null)
+            .append("totalRuns", new Document("$sum", 1))
+            .append("totalDuration", new Document("$sum", "$duration"));
+    if (withPercentiles) {
+      group.append(
+          "durations",
+          new Document(
+              "$percentile",
+              new Document("input", "$duration")
+                  .append("p", DURATION_PERCENTILES)
+                  .append("method", "approximate")));
+    }
+    Document facet =
+        new Document("stats", List.of(new Document("$group", group)))
+            .append(
+                "concurrent",
+                List.of(
+                    new Document("$match", new Document("phase", RunPhase.running.name())),
+                    new Document("$count", "count")));
+    Aggregation aggregation =
+        Aggregation.newAggregation(
+            Aggregation.match(criteria), context -> new Document("$facet", facet));
+    Document result =
+        mongoTemplate
+            .aggregate(aggregation, WorkflowRunEntity.class, Document.class)
+            .getUniqueMappedResult();
+    Document stats = new Document();
+    if (result != null) {
+      List<Document> statsFacet = result.getList("stats", Document.class);
+      if (statsFacet != null && !statsFacet.isEmpty()) {
+        stats.putAll(statsFacet.get(0));
+      }
+      List<Document> concurrentFacet = result.getList("concurrent", Document.class);
+      if (concurrentFacet != null && !concurrentFacet.isEmpty()) {
+        stats.put("concurrentRuns", concurrentFacet.get(0).get("count"));
       }
-      // addActivityDetail(executions, activity);
     }
-
-    WorkflowRunInsight wfRunInsight = new WorkflowRunInsight();
-    wfRunInsight.setTotalRuns(Long.valueOf(entities.size()));
-    wfRunInsight.setConcurrentRuns(
-        entities.stream().filter(run -> RunPhase.running.equals(run.getPhase())).count());
-    wfRunInsight.setTotalDuration(totalDuration);
-    wfRunInsight.setMedianDuration(entities.size() != 0 ? totalDuration / entities.size() : 0L);
-    List<WorkflowRunSummary> runs = new LinkedList<>();
-    entities.forEach(
-        e -> {
-          WorkflowRunSummary summary = ConvertUtil.entityToModel(e, WorkflowRunSummary.class);
-          final Optional<WorkflowEntity> optWorkflow =
-              workflowRepository.findById(e.getWorkflowRef());
-          if (optWorkflow.isPresent()) {
-            summary.setWorkflowName(optWorkflow.get().getName());
-          }
-          runs.add(summary);
-        });
-    wfRunInsight.setRuns(runs);
-    return wfRunInsight;
+    return stats;
   }
 
   /*
-   * Generates stats for a given set of filters
+   * Nearest rank duration percentiles retrieved from the duration sorted runs
    */
-  public WorkflowRunCount count(
-      Optional<Date> from,
-      Optional<Date> to,
-      Optional<List<String>> labels,
-      Optional<List<String>> queryWorkflows) {
-    List<Criteria> criteriaList = new ArrayList<>();
-
-    if (from.isPresent() && !to.isPresent()) {
-      Criteria criteria = Criteria.where("creationDate").gte(from.get());
-      criteriaList.add(criteria);
-    } else if (!from.isPresent() && to.isPresent()) {
-      Criteria criteria = Criteria.where("creationDate").lt(to.get());
-      criteriaList.add(criteria);
-    } else if (from.isPresent() && to.isPresent()) {
-      Criteria criteria = Criteria.where("creationDate").gte(from.get()).lt(to.get());
-      criteriaList.add(criteria);
-    }
-
-    // TODO add the ability to OR labels not just AND
-    if (labels.isPresent()) {
-      labels.get().stream()
-          .forEach(
-              l -> {
-                String decodedLabel = "";
-                try {
-                  decodedLabel = URLDecoder.decode(l, "UTF-8");
-                } catch (UnsupportedEncodingException e) {
-                  throw new BoomerangException(e, BoomerangError.QUERY_INVALID_FILTERS, "labels");
-                }
-                LOGGER.debug(decodedLabel.toString());
-                String[] label = decodedLabel.split("[=]+");
-                Criteria labelsCriteria =
-                    Criteria.where("labels." + label[0].replace(".", "#")).is(label[1]);
-                criteriaList.add(labelsCriteria);
-              });
-    }
-
-    if (queryWorkflows.isPresent()) {
-      Criteria criteria = Criteria.where("workflowRef").in(queryWorkflows.get());
-      criteriaList.add(criteria);
-    }
-
-    Criteria[] criteriaArray = criteriaList.toArray(new Criteria[criteriaList.size()]);
-    Criteria allCriteria = new Criteria();
-    if (criteriaArray.length > 0) {
-      allCriteria.andOperator(criteriaArray);
-    }
-    Query query = new Query(allCriteria);
-    LOGGER.debug("Query: " + query.toString());
-    List<WorkflowRunEntity> wfRunEntities = mongoTemplate.find(query, WorkflowRunEntity.class);
-
-    // Collate by Status run count
-    Map<String, Long> result =
-        wfRunEntities.stream()
-            .collect(groupingBy(v -> getStatusValue(v), Collectors.counting())); // NOSONAR
-    result.put("all", Long.valueOf(wfRunEntities.size()));
-
-    Arrays.stream(RunStatus.values()).forEach(v -> result.putIfAbsent(v.getStatus(), 0L));
+  private List<Long> durationPercentilesByRank(Criteria criteria, long totalRuns) {
+    List<Long> percentiles = new ArrayList<>();
+    for (double p : DURATION_PERCENTILES) {
+      if (totalRuns == 0) {
+        percentiles.add(0L);
+        continue;
+      }
+      long rank = Math.max((long) Math.ceil(p * totalRuns) - 1, 0);
+      Query query =
+          Query.query(criteria).with(Sort.by(Direction.ASC, "duration")).skip(rank).limit(1);
+      query.fields().include("duration");
+      WorkflowRunEntity entity = mongoTemplate.findOne(query, WorkflowRunEntity.class);
+      percentiles.add(entity != null ? entity.getDuration() : 0L);
+    }
+    return percentiles;
+  }
 
-    WorkflowRunCount wfRunCount = new WorkflowRunCount();
-    wfRunCount.setStatus(result);
-    return wfRunCount;
+  private static Document firstOf(String arrayField) {
+    return new Document("$arrayElemAt", List.of(arrayField, 0));
   }
 
-  private String getStatusValue(WorkflowRunEntity v) {
-    return v.getStatus() == null ? "no_status" : v.getStatus().getStatus();
+  private static long longValue(Object value) {
+    return value instanceof Number number ? Math.round(number.doubleValue()) : 0L;
   }
 
   /*
@@ -514,6 +607,10 @@ public class WorkflowRunService {
       wfRun.setWorkflowName(optWorkflow.get().getName());
       wfRun.setWorkflowDisplayName(optWorkflow.get().getDisplayName());
     }
+    removeInternalAnnotations(wfRun);
+  }
+
+  private void removeInternalAnnotations(WorkflowRun wfRun) {
     // Remove Annotations
     // TODO determine if this should be done elsewhere
     wfRun.getAnnotations().remove("boomerang.io/global-params");
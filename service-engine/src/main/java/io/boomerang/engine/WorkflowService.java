@@ -14,7 +14,6 @@ import io.boomerang.common.enums.WorkflowStatus;
 import io.boomerang.common.model.*;
 import io.boomerang.common.util.StringUtil;
 import io.boomerang.engine.repository.ActionRepository;
-import io.boomerang.engine.repository.TaskRevisionRepository;
 import io.boomerang.engine.repository.TaskRunRepository;
 import io.boomerang.engine.repository.WorkflowRepository;
 import io.boomerang.engine.repository.WorkflowRevisionRepository;
@@ -68,10 +67,10 @@ public class WorkflowService {
   private final WorkflowRunRepository workflowRunRepository;
   private final TaskRunRepository taskRunRepository;
   private final ActionRepository actionRepository;
-  private final TaskRevisionRepository taskRevisionRepository;
   private final MongoTemplate mongoTemplate;
   private final TaskService taskService;
   private final WorkflowRunService workflowRunService;
+  private final RevisionCache revisionCache;
 
   public WorkflowService(
       WorkflowRepository workflowRepository,
@@ -79,19 +78,19 @@ public class WorkflowService {
       WorkflowRunRepository workflowRunRepository,
       TaskRunRepository taskRunRepository,
       ActionRepository actionRepository,
-      TaskRevisionRepository taskRevisionRepository,
       MongoTemplate mongoTemplate,
       TaskService taskService,
-      WorkflowRunService workflowRunService) {
+      WorkflowRunService workflowRunService,
+      RevisionCache revisionCache) {
     this.workflowRepository = workflowRepository;
     this.workflowRevisionRepository = workflowRevisionRepository;
     this.workflowRunRepository = workflowRunRepository;
     this.taskRunRepository = taskRunRepository;
     this.actionRepository = actionRepository;
-    this.taskRevisionRepository = taskRevisionRepository;
     this.mongoTemplate = mongoTemplate;
     this.taskService = taskService;
     this.workflowRunService = workflowRunService;
+    this.revisionCache = revisionCache;
   }
 
   public ResponseEntity<Workflow> get(
@@ -100,16 +99,10 @@ public class WorkflowService {
       throw new BoomerangException(BoomerangError.WORKFLOW_INVALID_REF);
     }
     final Optional<WorkflowEntity> optWfEntity = workflowRepository.findById(workflowId);
-    Optional<WorkflowRevisionEntity> optWfRevisionEntity;
-    if (version.isPresent()) {
-      optWfRevisionEntity =
-          workflowRevisionRepository.findByWorkflowRefAndVersion(workflowId, version.get());
-      if (!optWfRevisionEntity.isPresent()) {
-        throw new BoomerangException(BoomerangError.WORKFLOW_REVISION_NOT_FOUND);
-      }
-    } else {
-      optWfRevisionEntity =
-          workflowRevisionRepository.findByWorkflowRefAndLatestVersion(workflowId);
+    Optional<WorkflowRevisionEntity> optWfRevisionEntity =
+        revisionCache.getWorkflowRevision(workflowId, version);
+    if (version.isPresent() && !optWfRevisionEntity.isPresent()) {
+      throw new BoomerangException(BoomerangError.WORKFLOW_REVISION_NOT_FOUND);
     }
     if (!optWfEntity.isPresent() || !optWfRevisionEntity.isPresent()) {
       throw new BoomerangException(BoomerangError.WORKFLOW_INVALID_REF);
@@ -193,7 +186,7 @@ public class WorkflowService {
         e -> {
           LOGGER.debug("Workflow: " + e.toString());
           Optional<WorkflowRevisionEntity> optWfRevisionEntity =
-              workflowRevisionRepository.findByWorkflowRefAndLatestVersion(e.getId());
+              revisionCache.getWorkflowRevision(e.getId(), Optional.empty());
           if (optWfRevisionEntity.isPresent()) {
             LOGGER.debug("Revision: " + optWfRevisionEntity.get().toString());
             Workflow w = ConvertUtil.wfEntityToModel(e, optWfRevisionEntity.get());
@@ -314,6 +307,7 @@ public class WorkflowService {
     request.setId(wfEntity.getId());
     wfRevisionEntity.setWorkflowRef(wfEntity.getId());
     workflowRevisionRepository.save(wfRevisionEntity);
+    revisionCache.evictWorkflow(wfEntity.getId());
     // TODO: figure out a better approach to rollback
 
     Workflow workflow = ConvertUtil.wfEntityToModel(wfEntity, wfRevisionEntity);
@@ -455,6 +449,7 @@ public class WorkflowService {
     newWorkflowRevisionEntity.setWorkflowRef(workflowRevisionEntity.getWorkflowRef());
 
     workflowRevisionRepository.save(newWorkflowRevisionEntity);
+    revisionCache.evictWorkflow(newWorkflowRevisionEntity.getWorkflowRef());
 
     Workflow appliedWorkflow =
         ConvertUtil.wfEntityToModel(workflowEntity, newWorkflowRevisionEntity);
@@ -485,15 +480,9 @@ public class WorkflowService {
       throw new BoomerangException(BoomerangError.WORKFLOW_NOT_ACTIVE);
     }
 
-    Optional<WorkflowRevisionEntity> optWorkflowRevisionEntity;
-    if (request.getWorkflowVersion() != null) {
-      optWorkflowRevisionEntity =
-          workflowRevisionRepository.findByWorkflowRefAndVersion(
-              workflowId, request.getWorkflowVersion());
-    } else {
-      optWorkflowRevisionEntity =
-          workflowRevisionRepository.findByWorkflowRefAndLatestVersion(workflowId);
-    }
+    Optional<WorkflowRevisionEntity> optWorkflowRevisionEntity =
+        revisionCache.getWorkflowRevision(
+            workflowId, Optional.ofNullable(request.getWorkflowVersion()));
 
     if (!optWorkflowRevisionEntity.isPresent()) {
       throw new BoomerangException(BoomerangError.WORKFLOW_REVISION_NOT_FOUND);
@@ -600,13 +589,14 @@ public class WorkflowService {
     workflowRunRepository.deleteByWorkflowRef(workflowId);
     workflowRevisionRepository.deleteByWorkflowRef(workflowId);
     workflowRepository.deleteById(workflowId);
+    revisionCache.evictWorkflow(workflowId);
   }
 
   // This will set both the Workflow and Tasks flags for upgrades available
   private void areTaskUpgradesAvailable(Workflow workflow) {
     for (WorkflowTask t : workflow.getTasks()) {
       Optional<TaskRevisionEntity> task =
-          taskRevisionRepository.findByParentRefAndLatestVersion(t.getTaskRef());
+          revisionCache.getTaskRevision(t.getTaskRef(), Optional.empty());
       if (task.isPresent()
           && t.getTaskVersion() != null
           && (t.getTaskVersion() < task.get().getVersion())) {
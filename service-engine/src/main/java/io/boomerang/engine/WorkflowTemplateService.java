@@ -6,7 +6,6 @@ import io.boomerang.common.enums.TaskType;
 import io.boomerang.common.model.ChangeLog;
 import io.boomerang.common.model.WorkflowTask;
 import io.boomerang.common.model.WorkflowTemplate;
-import io.boomerang.engine.repository.TaskRevisionRepository;
 import io.boomerang.engine.repository.WorkflowTemplateRepository;
 import io.boomerang.error.BoomerangError;
 import io.boomerang.error.BoomerangException;
@@ -47,17 +46,17 @@ public class WorkflowTemplateService {
   private final WorkflowTemplateRepository wfTemplateRepository;
   private final MongoTemplate mongoTemplate;
   private final TaskService taskService;
-  private final TaskRevisionRepository taskRevisionRepository;
+  private final RevisionCache revisionCache;
 
   public WorkflowTemplateService(
       WorkflowTemplateRepository wfTemplateRepository,
       MongoTemplate mongoTemplate,
       TaskService taskService,
-      TaskRevisionRepository taskRevisionRepository) {
+      RevisionCache revisionCache) {
     this.wfTemplateRepository = wfTemplateRepository;
     this.mongoTemplate = mongoTemplate;
     this.taskService = taskService;
-    this.taskRevisionRepository = taskRevisionRepository;
+    this.revisionCache = revisionCache;
   }
 
   /*
@@ -330,7 +329,7 @@ public class WorkflowTemplateService {
   private boolean areTaskUpgradesAvailable(WorkflowTemplateEntity entity) {
     for (WorkflowTask t : entity.getTasks()) {
       Optional<TaskRevisionEntity> task =
-          taskRevisionRepository.findByParentRefAndLatestVersion(t.getTaskRef());
+          revisionCache.getTaskRevision(t.getTaskRef(), Optional.empty());
       if (task.isPresent()) {
         if (t.getTaskVersion() != null && (t.getTaskVersion() < task.get().getVersion())) {
           return true;
@@ -1,35 +1,55 @@
 package io.boomerang.engine.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import io.boomerang.engine.enums.EventQueueStatus;
 import java.util.Date;
-
 import lombok.Data;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.Document;
-import org.springframework.http.HttpEntity;
-import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
-
 
 /*
- * Entity for Manual Action and Approval Action
- * 
- * Shared with the Workflow Service
+ * Entity for the CloudEvent outbox
+ *
+ * One entry per event per sink so that each sink is retried independently. The event is stored
+ * serialized in the CloudEvent JSON format. Entries are removed once delivered and are marked as
+ * deadletter once the maximum attempts is reached.
+ *
+ * The partition is a hash of the run the event is about, so that the events of a run are delivered
+ * in order.
  */
 @Data
 @JsonIgnoreProperties(ignoreUnknown = true)
 @Document(collection = "#{@mongoConfiguration.fullCollectionName('event_queue')}")
+@CompoundIndexes({
+  @CompoundIndex(
+      name = "sink_status_created_idx",
+      def = "{'sink': 1, 'status': 1, 'creationDate': 1}"),
+  @CompoundIndex(name = "status_deadletter_idx", def = "{'status': 1, 'deadLetterDate': 1}")
+})
 public class EventQueueEntity {
 
-  @Id
-  private String id;
-  private String url;
-  private HttpEntity<byte[]> request;
+  @Id private String id;
+  private String sink;
+  private String eventType;
+  private int partition;
+  private byte[] event;
+  private EventQueueStatus status = EventQueueStatus.pending;
+  private int attempts = 0;
+  private String claimRef;
+  private Date nextAttemptDate = new Date();
+  private Date claimExpiryDate;
+  private String lastError;
+  private Date deadLetterDate;
   private Date creationDate = new Date();
-  
-  public EventQueueEntity() {
-  }
-  
-  public EventQueueEntity(String url, HttpEntity<byte[]> request) {
-    this.url = url;
-    this.request = request;
+
+  public EventQueueEntity() {}
+
+  public EventQueueEntity(String sink, String eventType, int partition, byte[] event) {
+    this.sink = sink;
+    this.eventType = eventType;
+    this.partition = partition;
+    this.event = event;
   }
 }
@@ -0,0 +1,25 @@
+package io.boomerang.engine.entity;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import java.util.Date;
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+
+/*
+ * Entity for the lease based locks
+ *
+ * - owner is unset when the lease is released
+ * - fence is incremented on every acquisition and is used as the fencing token
+ * - ttl is only set for Azure CosmosDB API for MongoDB which requires a per document TTL
+ *
+ * The collection is set by the LeaseLockService
+ */
+@Data
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class LeaseLockEntity {
+  @Id private String id;
+  private String owner;
+  private long fence;
+  private Date expiresAt;
+  private Long ttl;
+}
@@ -0,0 +1,28 @@
+package io.boomerang.engine.entity;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import io.boomerang.engine.enums.TaskTimerType;
+import java.util.Date;
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+
+/*
+ * Entity for the persistent TaskRun timers
+ *
+ * - id is the TaskRun id and timer type so that a TaskRun has at most one pending timer per type
+ * - claimRef is set when an engine replica pulls the timer into its in memory wheel and is unset
+ * when the timer is rescheduled
+ * - claimExpiryDate allows another replica to claim the timer if the owner stops
+ *
+ * The collection is set by the TaskTimerWheel
+ */
+@Data
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class TaskTimerEntity {
+  @Id private String id;
+  private String taskRunRef;
+  private TaskTimerType type;
+  private Date dueDate;
+  private String claimRef;
+  private Date claimExpiryDate;
+}
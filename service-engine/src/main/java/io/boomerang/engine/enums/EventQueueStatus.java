@@ -0,0 +1,10 @@
+package io.boomerang.engine.enums;
+
+/*
+ * Status of a CloudEvent in the outbox. Delivered events are removed.
+ */
+public enum EventQueueStatus {
+  pending,
+  inflight,
+  deadletter
+}
@@ -0,0 +1,12 @@
+package io.boomerang.engine.enums;
+
+/*
+ * The continuation fired when a TaskRun timer is due
+ *
+ * - timeout: the TaskRun has exceeded its timeout
+ * - resume: a parked TaskRun, such as a sleep, is ready to end
+ */
+public enum TaskTimerType {
+  timeout,
+  resume
+}
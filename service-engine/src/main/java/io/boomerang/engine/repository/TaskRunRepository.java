@@ -4,11 +4,10 @@ import io.boomerang.common.entity.TaskRunEntity;
 import io.boomerang.common.enums.RunPhase;
 import io.boomerang.common.enums.RunStatus;
 import io.boomerang.common.enums.TaskType;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import org.springframework.data.mongodb.repository.MongoRepository;
-import org.springframework.data.mongodb.repository.Query;
-import org.springframework.data.mongodb.repository.Update;
 
 public interface TaskRunRepository extends MongoRepository<TaskRunEntity, String> {
 
@@ -16,6 +15,9 @@ public interface TaskRunRepository extends MongoRepository<TaskRunEntity, String
 
   Optional<TaskRunEntity> findFirstByNameAndWorkflowRunRef(String name, String workflowRunRef);
 
+  List<TaskRunEntity> findByWorkflowRunRefAndNameIn(
+      String workflowRunRef, Collection<String> names);
+
   void deleteByWorkflowRef(String workflowRef);
 
   void deleteByWorkflowRunRef(String workflowRunRef);
@@ -23,13 +25,6 @@ public interface TaskRunRepository extends MongoRepository<TaskRunEntity, String
   List<TaskRunEntity> findByPhaseInAndStatusInAndTypeIn(
       List<RunPhase> phase, List<RunStatus> statuses, List<TaskType> types);
 
-  @Query(
-      "{ 'phase': { $in: ?0 }, 'status': { $in: ?1 }, 'type': { $in: ?2 } '$or': [ { 'agentRef': '' }, { 'agentRef': { '$exists': false } } ]}")
-  @Update("{ '$set': { 'agentRef': ?3, 'phase': ?4} }")
-  void updatePhaseAndAgentRef(
-      List<RunPhase> phase,
-      List<RunStatus> statuses,
-      List<TaskType> types,
-      String agentRef,
-      RunPhase phaseToSet);
+  List<TaskRunEntity> findByPhaseAndStatusInAndAgentRef(
+      RunPhase phase, List<RunStatus> statuses, String agentRef);
 }
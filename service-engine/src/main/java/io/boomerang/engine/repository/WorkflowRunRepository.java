@@ -6,7 +6,6 @@ import io.boomerang.common.enums.RunStatus;
 import java.util.List;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.data.mongodb.repository.Query;
-import org.springframework.data.mongodb.repository.Update;
 
 public interface WorkflowRunRepository extends MongoRepository<WorkflowRunEntity, String> {
 
@@ -17,10 +16,4 @@ public interface WorkflowRunRepository extends MongoRepository<WorkflowRunEntity
       List<RunPhase> phase, List<RunStatus> statuses, List<RunPhase> phaseOr);
 
   //  List<WorkflowRunEntity> findByPhase(RunPhase phase);
-
-  @Query(
-      "{ 'phase': { $in: ?0 }, 'status': { $in: ?1 }, '$or': [ { 'agentRef': '' }, { 'agentRef': { '$exists': false } } ]}")
-  @Update("{ '$set': { 'agentRef': ?2, 'phase': ?3} }")
-  void updatePhaseAndAgentRef(
-      List<RunPhase> phase, List<RunStatus> statuses, String agentRef, RunPhase phaseToSet);
 }
@@ -0,0 +1,108 @@
+package io.boomerang;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import de.flapdoodle.embed.mongo.config.MongodArguments;
+import de.flapdoodle.embed.mongo.config.Storage;
+import de.flapdoodle.embed.mongo.distribution.Version;
+import de.flapdoodle.embed.mongo.transitions.Mongod;
+import de.flapdoodle.embed.mongo.transitions.RunningMongodProcess;
+import de.flapdoodle.reverse.TransitionWalker;
+import de.flapdoodle.reverse.transitions.Start;
+import io.boomerang.config.MongoConfiguration;
+import java.util.List;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/*
+ * Embedded MongoDB shared by the tests that need a database
+ *
+ * Each server is started on first use and stopped when the JVM exits. Tests use their own database
+ * so that they do not see each others documents. The single node replica set is for the tests that
+ * need change streams, which a standalone server does not have.
+ */
+public final class EmbeddedMongo {
+
+  private static final String REPLICA_SET = "rs0";
+
+  private static MongoClient standalone;
+  private static MongoClient replicaSet;
+
+  private EmbeddedMongo() {}
+
+  public static synchronized MongoTemplate mongoTemplate(String database) {
+    if (standalone == null) {
+      TransitionWalker.ReachedState<RunningMongodProcess> mongod =
+          Mongod.instance().start(Version.Main.PRODUCTION);
+      standalone = connect(mongod, "");
+    }
+    return new MongoTemplate(standalone, database);
+  }
+
+  public static synchronized MongoTemplate replicaSetMongoTemplate(String database) {
+    if (replicaSet == null) {
+      TransitionWalker.ReachedState<RunningMongodProcess> mongod =
+          Mongod.builder()
+              .mongodArguments(
+                  Start.to(MongodArguments.class)
+                      .initializedWith(
+                          MongodArguments.defaults()
+                              .withUseNoJournal(false)
+                              .withReplication(Storage.of(REPLICA_SET, 10))))
+              .build()
+              .start(Version.Main.PRODUCTION);
+      replicaSet = connect(mongod, "/?directConnection=true");
+      initiate(mongod.current().getServerAddress().toString());
+    }
+    return new MongoTemplate(replicaSet, database);
+  }
+
+  /*
+   * The MongoConfiguration of the engine with the test collection prefix
+   */
+  public static MongoConfiguration mongoConfiguration() {
+    MongoConfiguration mongoConfiguration = new MongoConfiguration();
+    ReflectionTestUtils.setField(mongoConfiguration, "collectionPrefix", "test");
+    return mongoConfiguration;
+  }
+
+  private static MongoClient connect(
+      TransitionWalker.ReachedState<RunningMongodProcess> mongod, String options) {
+    MongoClient client =
+        MongoClients.create("mongodb://" + mongod.current().getServerAddress() + options);
+    Runtime.getRuntime()
+        .addShutdownHook(
+            new Thread(
+                () -> {
+                  client.close();
+                  mongod.close();
+                }));
+    return client;
+  }
+
+  private static void initiate(String host) {
+    replicaSet
+        .getDatabase("admin")
+        .runCommand(
+            new Document(
+                "replSetInitiate",
+                new Document("_id", REPLICA_SET)
+                    .append("members", List.of(new Document("_id", 0).append("host", host)))));
+    long deadline = System.currentTimeMillis() + 30000;
+    while (!replicaSet
+        .getDatabase("admin")
+        .runCommand(new Document("hello", 1))
+        .getBoolean("isWritablePrimary", false)) {
+      if (System.currentTimeMillis() > deadline) {
+        throw new IllegalStateException("Replica set " + REPLICA_SET + " has no primary");
+      }
+      try {
+        Thread.sleep(100);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException(e);
+      }
+    }
+  }
+}
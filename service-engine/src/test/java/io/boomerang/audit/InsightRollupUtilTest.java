@@ -0,0 +1,103 @@
+package io.boomerang.audit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.mongodb.client.model.Filters;
+import io.boomerang.EmbeddedMongo;
+import io.boomerang.common.util.InsightRollupUtil;
+import java.time.Instant;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+class InsightRollupUtilTest {
+
+  private static final String COLLECTION = "test_audit_rollups";
+
+  private static MongoTemplate mongoTemplate;
+
+  @BeforeAll
+  static void setUp() {
+    mongoTemplate = EmbeddedMongo.mongoTemplate("insight_rollup_test");
+  }
+
+  @Test
+  void testTransitionsAreRolledUp() {
+    Date created = Date.from(Instant.parse("2024-03-05T10:15:00Z"));
+    Map<String, String> data = new HashMap<>();
+    data.put("status", "notstarted");
+    data.put("phase", "pending");
+    data.put("duration", "0");
+    InsightRollupUtil.apply(mongoTemplate, COLLECTION, "team-1", "wf-1", created, null, data);
+
+    Map<String, String> before = new HashMap<>(data);
+    data.put("status", "running");
+    data.put("phase", "running");
+    InsightRollupUtil.apply(mongoTemplate, COLLECTION, "team-1", "wf-1", created, before, data);
+
+    Document hour = rollup(InsightRollupUtil.SCOPE_TEAM, "team-1", InsightRollupUtil.HOUR, created);
+    assertEquals(1, hour.get("count", Number.class).intValue());
+    assertEquals(1, hour.get("running", Number.class).intValue());
+    Document statuses = hour.get("statuses", Document.class);
+    assertEquals(0, statuses.get("notstarted", Number.class).intValue());
+    assertEquals(1, statuses.get("running", Number.class).intValue());
+
+    before = new HashMap<>(data);
+    data.put("status", "succeeded");
+    data.put("phase", "completed");
+    data.put("duration", "5000");
+    InsightRollupUtil.apply(mongoTemplate, COLLECTION, "team-1", "wf-1", created, before, data);
+    // A repeated save with no change is not counted again
+    before = new HashMap<>(data);
+    InsightRollupUtil.apply(mongoTemplate, COLLECTION, "team-1", "wf-1", created, before, data);
+
+    for (String granularity : new String[] {InsightRollupUtil.HOUR, InsightRollupUtil.DAY}) {
+      Document rollup = rollup(InsightRollupUtil.SCOPE_WORKFLOW, "wf-1", granularity, created);
+      assertEquals(1, rollup.get("count", Number.class).intValue());
+      assertEquals(0, rollup.get("running", Number.class).intValue());
+      assertEquals(5000, rollup.get("duration", Number.class).longValue());
+      assertEquals(
+          1,
+          rollup
+              .get("sketch", Document.class)
+              .get(String.valueOf(InsightRollupUtil.index(5000)), Number.class)
+              .intValue());
+    }
+  }
+
+  @Test
+  void testQuantilesAreWithinFivePercent() {
+    Map<Integer, Long> sketch = new HashMap<>();
+    for (long duration = 1; duration <= 10000; duration++) {
+      sketch.merge(InsightRollupUtil.index(duration * 100), 1L, Long::sum);
+    }
+    assertWithin(500000, InsightRollupUtil.quantile(sketch, 0.5));
+    assertWithin(900000, InsightRollupUtil.quantile(sketch, 0.9));
+    assertWithin(990000, InsightRollupUtil.quantile(sketch, 0.99));
+    assertEquals(0, InsightRollupUtil.quantile(Map.of(), 0.5));
+  }
+
+  private void assertWithin(long expected, long actual) {
+    assertTrue(
+        Math.abs(expected - actual) <= expected * 0.05, "Expected ~" + expected + " was " + actual);
+  }
+
+  private Document rollup(String scope, String ref, String granularity, Date created) {
+    return mongoTemplate
+        .getCollection(COLLECTION)
+        .find(
+            Filters.eq(
+                "_id",
+                InsightRollupUtil.idOf(
+                    scope,
+                    ref,
+                    granularity,
+                    InsightRollupUtil.bucketOf(granularity, created.toInstant()))))
+        .first();
+  }
+}
@@ -0,0 +1,191 @@
+package io.boomerang.client;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.sun.net.httpserver.HttpServer;
+import io.boomerang.common.util.LogStreamProxy;
+import io.boomerang.common.util.SecretMasker;
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class LogStreamProxyTest {
+
+  private static final String SECRET = "s3cr3t-Pa55w0rd";
+  // A log line followed by a secret, repeated so that the secret falls across every buffer boundary
+  private static final byte[] UNIT =
+      ("x".repeat(999) + "\n" + SECRET).getBytes(StandardCharsets.UTF_8);
+  private static final byte[] MASKED_UNIT =
+      ("x".repeat(999) + "\n" + "******").getBytes(StandardCharsets.UTF_8);
+  private static final int UNITS_PER_BLOCK = 1024;
+  // Just over 2GB of log
+  private static final int BLOCKS = 2048;
+
+  private HttpServer server;
+  private ScheduledExecutorService container;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    byte[] block = new byte[UNIT.length * UNITS_PER_BLOCK];
+    for (int i = 0; i < UNITS_PER_BLOCK; i++) {
+      System.arraycopy(UNIT, 0, block, i * UNIT.length, UNIT.length);
+    }
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext(
+        "/log",
+        exchange -> {
+          exchange.sendResponseHeaders(200, 0);
+          try (OutputStream body = exchange.getResponseBody()) {
+            for (int i = 0; i < BLOCKS; i++) {
+              body.write(block);
+            }
+          }
+        });
+    server.start();
+    container = Executors.newSingleThreadScheduledExecutor();
+  }
+
+  @AfterEach
+  void tearDown() {
+    server.stop(0);
+    container.shutdownNow();
+  }
+
+  @Test
+  void testMultiGigabyteLogIsMaskedInConstantMemory() throws Exception {
+    CountDownLatch completed = new CountDownLatch(1);
+    VerifyingOutputStream out = new VerifyingOutputStream();
+    AsyncContext context = mock(AsyncContext.class);
+    doAnswer(
+            invocation -> {
+              completed.countDown();
+              return null;
+            })
+        .when(context)
+        .complete();
+    HttpServletRequest request = mock(HttpServletRequest.class);
+    when(request.startAsync()).thenReturn(context);
+    HttpServletResponse response = mock(HttpServletResponse.class);
+    when(response.getOutputStream()).thenReturn(out);
+
+    LogStreamProxy proxy = new LogStreamProxy(HttpClient.newHttpClient());
+    URI uri = URI.create("http://localhost:" + server.getAddress().getPort() + "/log");
+    proxy.proxy(uri, List.of(SECRET, "unused-secret"), request, response);
+
+    assertTrue(completed.await(10, TimeUnit.MINUTES));
+    assertEquals(-1, out.mismatch, "Output differs from the masked log at " + out.mismatch);
+    assertEquals((long) MASKED_UNIT.length * UNITS_PER_BLOCK * BLOCKS, out.position);
+    // The heap retained once past the first quarter of the log does not grow with the log
+    long growth = out.heapAtEnd - out.heapAtStart;
+    assertTrue(growth < 32L * 1024 * 1024, "Retained heap grew by " + growth + " bytes");
+  }
+
+  @Test
+  void testSecretsAreMaskedAcrossBuffers() {
+    SecretMasker masker = new SecretMasker(List.of("abc", "bcd", "secret", ""));
+    byte[] input = "xabcdx secret,secret ab secre".getBytes(StandardCharsets.UTF_8);
+    SecretMasker.Stream stream = masker.stream();
+    ByteBuffer out = ByteBuffer.allocate(256);
+    // One byte at a time so every secret spans a buffer boundary
+    for (byte b : input) {
+      stream.mask(ByteBuffer.wrap(new byte[] {b}), out);
+    }
+    stream.finish(out);
+    out.flip();
+    assertEquals(
+        "x******x ******,****** ab secre", StandardCharsets.UTF_8.decode(out).toString());
+  }
+
+  /*
+   * Compares the output to the masked log as it is written, rather than keeping it, and reports
+   * itself unready every few writes as a slow client socket would.
+   */
+  private final class VerifyingOutputStream extends ServletOutputStream {
+    private static final long LENGTH = (long) MASKED_UNIT.length * UNITS_PER_BLOCK * BLOCKS;
+
+    private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    private WriteListener listener;
+    private volatile boolean ready = true;
+    private int writes;
+    private int offset;
+    private long position;
+    private long mismatch = -1;
+    private long heapAtStart;
+    private long heapAtEnd;
+
+    @Override
+    public boolean isReady() {
+      return ready;
+    }
+
+    @Override
+    public void setWriteListener(WriteListener writeListener) {
+      listener = writeListener;
+      container.execute(this::resume);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      write(new byte[] {(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      for (int i = 0; i < len; i++) {
+        if (b[off + i] != MASKED_UNIT[offset] && mismatch < 0) {
+          mismatch = position + i;
+        }
+        if (++offset == MASKED_UNIT.length) {
+          offset = 0;
+        }
+      }
+      position += len;
+      if (heapAtStart == 0 && position > LENGTH / 4) {
+        heapAtStart = retainedHeap();
+      } else if (heapAtEnd == 0 && position > LENGTH - LENGTH / 8) {
+        heapAtEnd = retainedHeap();
+      }
+      if (++writes % 8 == 0) {
+        ready = false;
+        container.schedule(this::resume, 100, TimeUnit.MICROSECONDS);
+      }
+    }
+
+    private void resume() {
+      ready = true;
+      try {
+        listener.onWritePossible();
+      } catch (IOException ex) {
+        listener.onError(ex);
+      }
+    }
+
+    private long retainedHeap() {
+      System.gc();
+      return memory.getHeapMemoryUsage().getUsed();
+    }
+  }
+}
@@ -0,0 +1,105 @@
+package io.boomerang.engine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.boomerang.common.entity.TaskRunEntity;
+import io.boomerang.common.enums.ExecutionCondition;
+import io.boomerang.common.enums.RunPhase;
+import io.boomerang.common.enums.RunStatus;
+import io.boomerang.common.enums.TaskType;
+import io.boomerang.common.model.WorkflowTaskDependency;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Optional;
+import org.junit.jupiter.api.Test;
+
+class DAGStateTest {
+
+  @Test
+  void testConditionalPaths() {
+    TaskRunEntity start = task("start", TaskType.start);
+    TaskRunEntity build = task("build", TaskType.template, dep("start", null));
+    TaskRunEntity onSuccess =
+        task("onSuccess", TaskType.template, dep("build", ExecutionCondition.success));
+    TaskRunEntity onFailure =
+        task("onFailure", TaskType.template, dep("build", ExecutionCondition.failure));
+    TaskRunEntity end =
+        task("end", TaskType.end, dep("onSuccess", null), dep("onFailure", null));
+    DAGState state = DAGState.build("run", List.of(start, build, onSuccess, onFailure, end));
+
+    assertEquals(Optional.of(true), state.canRun(build.getId()));
+    // Build has not completed yet so the state can not answer
+    assertEquals(Optional.empty(), state.canRun(onSuccess.getId()));
+    // Once built from the database, the pending edge is retained as per the graph version
+    assertTrue(state.canRunFromBuilt(onSuccess.getId()));
+
+    complete(state, build, RunStatus.succeeded);
+    assertEquals(Optional.of(true), state.canRun(onSuccess.getId()));
+    assertEquals(Optional.of(false), state.canRun(onFailure.getId()));
+  }
+
+  @Test
+  void testAllDependenciesRequired() {
+    TaskRunEntity start = task("start", TaskType.start);
+    TaskRunEntity a = task("a", TaskType.template, dep("start", null));
+    TaskRunEntity b = task("b", TaskType.template, dep("start", null));
+    TaskRunEntity join =
+        task(
+            "join",
+            TaskType.template,
+            dep("a", ExecutionCondition.success),
+            dep("b", ExecutionCondition.success));
+    TaskRunEntity end = task("end", TaskType.end, dep("join", null));
+    DAGState state = DAGState.build("run", List.of(start, a, b, join, end));
+
+    complete(state, a, RunStatus.succeeded);
+    assertEquals(Optional.empty(), state.canRun(join.getId()));
+    complete(state, b, RunStatus.failed);
+    assertEquals(Optional.of(false), state.canRun(join.getId()));
+  }
+
+  @Test
+  void testDecisionAndRebuild() {
+    TaskRunEntity start = task("start", TaskType.start);
+    TaskRunEntity decision = task("decide", TaskType.decision, dep("start", null));
+    TaskRunEntity blue = task("blue", TaskType.template, dep("decide", null));
+    blue.getDependencies().get(0).setDecisionCondition("blue");
+    TaskRunEntity other = task("other", TaskType.template, dep("decide", null));
+    TaskRunEntity end = task("end", TaskType.end, dep("blue", null), dep("other", null));
+    decision.setDecisionValue("blue");
+    decision.setStatus(RunStatus.succeeded);
+    decision.setPhase(RunPhase.completed);
+
+    // Completed TaskRuns are resolved when the state is built
+    DAGState state = DAGState.build("run", List.of(start, decision, blue, other, end));
+    assertTrue(state.contains(blue.getId()));
+    assertEquals(Optional.of(true), state.canRun(blue.getId()));
+    assertEquals(Optional.of(false), state.canRun(other.getId()));
+  }
+
+  private void complete(DAGState state, TaskRunEntity task, RunStatus status) {
+    task.setStatus(status);
+    task.setPhase(RunPhase.completed);
+    state.complete(task);
+  }
+
+  private TaskRunEntity task(String name, TaskType type, WorkflowTaskDependency... deps) {
+    TaskRunEntity task = new TaskRunEntity();
+    task.setId(name + "-id");
+    task.setName(name);
+    task.setType(type);
+    task.setPhase(TaskType.start.equals(type) ? RunPhase.completed : RunPhase.pending);
+    task.setDependencies(new LinkedList<>(List.of(deps)));
+    return task;
+  }
+
+  private WorkflowTaskDependency dep(String taskRef, ExecutionCondition condition) {
+    WorkflowTaskDependency dep = new WorkflowTaskDependency();
+    dep.setTaskRef(taskRef);
+    if (condition != null) {
+      dep.setExecutionCondition(condition);
+    }
+    return dep;
+  }
+}
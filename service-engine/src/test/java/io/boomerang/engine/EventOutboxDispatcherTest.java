@@ -0,0 +1,359 @@
+package io.boomerang.engine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.sun.net.httpserver.HttpServer;
+import io.boomerang.EmbeddedMongo;
+import io.boomerang.config.MongoConfiguration;
+import io.boomerang.engine.entity.EventQueueEntity;
+import io.boomerang.engine.enums.EventQueueStatus;
+import io.cloudevents.CloudEvent;
+import io.cloudevents.core.builder.CloudEventBuilder;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.RestTemplate;
+
+class EventOutboxDispatcherTest {
+
+  private static final Pattern SUBJECT = Pattern.compile("\"subject\":\"([^\"]+)\"");
+
+  private static MongoTemplate mongoTemplate;
+  private static MongoConfiguration mongoConfiguration;
+  private static LeaseLockService leaseLockService;
+
+  @BeforeAll
+  static void setUp() {
+    mongoTemplate = EmbeddedMongo.mongoTemplate("event_outbox_test");
+    mongoConfiguration = EmbeddedMongo.mongoConfiguration();
+    leaseLockService = new LeaseLockService(mongoTemplate, mongoConfiguration);
+    ReflectionTestUtils.setField(leaseLockService, "mongoCosmosDBTTL", false);
+    ReflectionTestUtils.setField(leaseLockService, "changeStreamEnabled", false);
+    ReflectionTestUtils.setField(leaseLockService, "waitInterval", 1000L);
+    leaseLockService.init();
+  }
+
+  @AfterAll
+  static void tearDown() {
+    leaseLockService.destroy();
+  }
+
+  /*
+   * Delivers the events of several runs to a local stub sink. The stub is slow so that the per sink
+   * concurrency bound is exercised.
+   */
+  @Test
+  void testEachRunIsDeliveredInOrder() throws Exception {
+    final int runs = 20;
+    final int eventsPerRun = 25;
+    final int concurrency = 4;
+    final List<String> subjects = new CopyOnWriteArrayList<>();
+    final AtomicInteger inflight = new AtomicInteger();
+    final AtomicInteger maxInflight = new AtomicInteger();
+    final AtomicInteger requests = new AtomicInteger();
+    HttpServer server = stubSink(subjects, inflight, maxInflight, requests, 200);
+    String sink = "http://localhost:" + server.getAddress().getPort() + "/events";
+    EventOutboxDispatcher dispatcher = dispatcher(sink, concurrency, 10, 5);
+    try {
+      for (int i = 0; i < eventsPerRun; i++) {
+        for (int run = 0; run < runs; run++) {
+          dispatcher.append(event("/taskrun/run-" + run + "/status/" + i));
+        }
+      }
+      final int events = runs * eventsPerRun;
+      long deadline = System.currentTimeMillis() + 60000;
+      // Delivered events are removed once the sink has responded
+      while ((subjects.size() < events || countForSink(sink, null) > 0)
+          && System.currentTimeMillis() < deadline) {
+        Thread.sleep(20);
+      }
+
+      assertEquals(events, subjects.size());
+      assertTrue(maxInflight.get() <= concurrency);
+      assertTrue(requests.get() < events);
+      assertEquals(0, countForSink(sink, null));
+      Map<String, Integer> last = new HashMap<>();
+      for (String subject : subjects) {
+        String run = subject.substring(0, subject.indexOf("/status/"));
+        int index = Integer.parseInt(subject.substring(subject.lastIndexOf('/') + 1));
+        assertEquals(last.getOrDefault(run, -1) + 1, index, "Out of order: " + subject);
+        last.put(run, index);
+      }
+    } finally {
+      dispatcher.destroy();
+      server.stop(0);
+    }
+  }
+
+  @Test
+  void testDeadLetterAfterMaxAttempts() throws Exception {
+    final int maxAttempts = 3;
+    final AtomicInteger unused = new AtomicInteger();
+    HttpServer server =
+        stubSink(new CopyOnWriteArrayList<>(), unused, new AtomicInteger(), unused, 503);
+    String sink = "http://localhost:" + server.getAddress().getPort() + "/events";
+    EventOutboxDispatcher dispatcher = dispatcher(sink, 1, 10, maxAttempts);
+    try {
+      dispatcher.append(event("/taskrun/deadletter/status/failed"));
+      long deadline = System.currentTimeMillis() + 30000;
+      while (countForSink(sink, EventQueueStatus.deadletter) == 0
+          && System.currentTimeMillis() < deadline) {
+        Thread.sleep(20);
+      }
+      List<EventQueueEntity> entries =
+          mongoTemplate.find(
+              Query.query(Criteria.where("sink").is(sink)),
+              EventQueueEntity.class,
+              mongoConfiguration.fullCollectionName("event_queue"));
+      assertEquals(1, entries.size());
+      assertEquals(EventQueueStatus.deadletter, entries.get(0).getStatus());
+      assertEquals(maxAttempts, entries.get(0).getAttempts());
+      assertNotNull(entries.get(0).getDeadLetterDate());
+    } finally {
+      dispatcher.destroy();
+      server.stop(0);
+    }
+  }
+
+  /*
+   * The sink rejects one event. It is retried on its own until deadletter, while the events batched
+   * with it, and the later events of its run, are delivered.
+   */
+  @Test
+  void testRejectedEventDoesNotDeadLetterItsBatch() throws Exception {
+    final int maxAttempts = 3;
+    final List<String> subjects = new CopyOnWriteArrayList<>();
+    HttpServer server = rejectingSink(subjects, "rejected");
+    String sink = "http://localhost:" + server.getAddress().getPort() + "/events";
+    EventOutboxDispatcher dispatcher = dispatcher(sink, 1, 10, maxAttempts);
+    try {
+      dispatcher.append(event("/taskrun/poison/status/rejected"));
+      for (int run = 0; run < 5; run++) {
+        for (int i = 0; i < 3; i++) {
+          dispatcher.append(event("/taskrun/run-" + run + "/status/" + i));
+        }
+      }
+      dispatcher.append(event("/taskrun/poison/status/1"));
+      long deadline = System.currentTimeMillis() + 30000;
+      while ((subjects.size() < 16 || countForSink(sink, null) > 1)
+          && System.currentTimeMillis() < deadline) {
+        Thread.sleep(20);
+      }
+
+      assertEquals(16, subjects.size());
+      assertTrue(subjects.contains("/taskrun/poison/status/1"));
+      List<EventQueueEntity> entries =
+          mongoTemplate.find(
+              Query.query(Criteria.where("sink").is(sink)),
+              EventQueueEntity.class,
+              mongoConfiguration.fullCollectionName("event_queue"));
+      assertEquals(1, entries.size());
+      assertEquals(EventQueueStatus.deadletter, entries.get(0).getStatus());
+      assertEquals(maxAttempts, entries.get(0).getAttempts());
+    } finally {
+      dispatcher.destroy();
+      server.stop(0);
+    }
+  }
+
+  /*
+   * An event waiting on its backoff holds back the later events of its run only
+   */
+  @Test
+  void testBackoffBlocksOnlyItsPartition() throws Exception {
+    final List<String> subjects = new CopyOnWriteArrayList<>();
+    HttpServer server = rejectingSink(subjects, "rejected");
+    String sink = "http://localhost:" + server.getAddress().getPort() + "/events";
+    EventOutboxDispatcher dispatcher = dispatcher(sink, 1, 10, 5);
+    ReflectionTestUtils.setField(dispatcher, "initialBackoff", 60000L);
+    ReflectionTestUtils.setField(dispatcher, "maxBackoff", 60000L);
+    try {
+      dispatcher.append(event("/taskrun/blocked/status/rejected"));
+      dispatcher.append(event("/taskrun/blocked/status/1"));
+      for (int run = 0; run < 5; run++) {
+        for (int i = 0; i < 3; i++) {
+          dispatcher.append(event("/taskrun/run-" + run + "/status/" + i));
+        }
+      }
+      long deadline = System.currentTimeMillis() + 30000;
+      while (subjects.size() < 15 && System.currentTimeMillis() < deadline) {
+        Thread.sleep(20);
+      }
+      // Allow further passes, which must not deliver the blocked run
+      Thread.sleep(200);
+
+      assertEquals(15, subjects.size());
+      assertFalse(subjects.contains("/taskrun/blocked/status/1"));
+      assertEquals(2, countForSink(sink, EventQueueStatus.pending));
+    } finally {
+      dispatcher.destroy();
+      server.stop(0);
+    }
+  }
+
+  @Test
+  void testDeadLettersArePrunedAfterRetention() {
+    String sink = "http://localhost/prune";
+    EventOutboxDispatcher dispatcher = dispatcher(sink, 1, 10, 1);
+    try {
+      EventQueueEntity expired = deadLetter(sink, 8);
+      EventQueueEntity retained = deadLetter(sink, 6);
+      dispatcher.pruneDeadLetters();
+      List<String> remaining =
+          mongoTemplate
+              .find(
+                  Query.query(Criteria.where("sink").is(sink)),
+                  EventQueueEntity.class,
+                  mongoConfiguration.fullCollectionName("event_queue"))
+              .stream()
+              .map(EventQueueEntity::getId)
+              .toList();
+      assertFalse(remaining.contains(expired.getId()));
+      assertTrue(remaining.contains(retained.getId()));
+    } finally {
+      dispatcher.destroy();
+    }
+  }
+
+  @Test
+  void testRunEventsShareAPartition() {
+    assertEquals(
+        EventOutboxDispatcher.partition(event("/taskrun/1234/status/running")),
+        EventOutboxDispatcher.partition(event("/taskrun/1234/status/succeeded")));
+  }
+
+  private EventOutboxDispatcher dispatcher(
+      String sink, int concurrency, int batchSize, int maxAttempts) {
+    EventOutboxDispatcher dispatcher =
+        new EventOutboxDispatcher(
+            new RestTemplate(), mongoTemplate, mongoConfiguration, leaseLockService);
+    ReflectionTestUtils.setField(dispatcher, "sinkUrls", sink);
+    ReflectionTestUtils.setField(dispatcher, "sinkEnabled", true);
+    ReflectionTestUtils.setField(dispatcher, "concurrency", concurrency);
+    ReflectionTestUtils.setField(dispatcher, "batchSize", batchSize);
+    ReflectionTestUtils.setField(dispatcher, "maxAttempts", maxAttempts);
+    ReflectionTestUtils.setField(dispatcher, "initialBackoff", 10L);
+    ReflectionTestUtils.setField(dispatcher, "maxBackoff", 100L);
+    ReflectionTestUtils.setField(dispatcher, "pollInterval", 50L);
+    ReflectionTestUtils.setField(dispatcher, "claimTimeout", 60000L);
+    ReflectionTestUtils.setField(dispatcher, "deadLetterRetention", 7L);
+    dispatcher.init();
+    return dispatcher;
+  }
+
+  private EventQueueEntity deadLetter(String sink, int daysAgo) {
+    EventQueueEntity entry =
+        new EventQueueEntity(sink, "io.boomerang.event.status.taskrun", 0, new byte[0]);
+    entry.setStatus(EventQueueStatus.deadletter);
+    entry.setDeadLetterDate(new Date(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(daysAgo)));
+    return mongoTemplate.insert(entry, mongoConfiguration.fullCollectionName("event_queue"));
+  }
+
+  /*
+   * Records the subjects of the events received, in order
+   */
+  private HttpServer stubSink(
+      List<String> subjects,
+      AtomicInteger inflight,
+      AtomicInteger maxInflight,
+      AtomicInteger requests,
+      int status)
+      throws Exception {
+    HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.setExecutor(Executors.newFixedThreadPool(16));
+    server.createContext(
+        "/events",
+        exchange -> {
+          maxInflight.accumulateAndGet(inflight.incrementAndGet(), Math::max);
+          try {
+            String body =
+                new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+            Thread.sleep(10);
+            if (status == 200) {
+              requests.incrementAndGet();
+              Matcher matcher = SUBJECT.matcher(body);
+              while (matcher.find()) {
+                subjects.add(matcher.group(1));
+              }
+            }
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          } finally {
+            inflight.decrementAndGet();
+          }
+          exchange.sendResponseHeaders(status, -1);
+          exchange.close();
+        });
+    server.start();
+    return server;
+  }
+
+  /*
+   * Rejects any request containing the marker with a client error, otherwise records the subjects
+   */
+  private HttpServer rejectingSink(List<String> subjects, String marker) throws Exception {
+    HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.setExecutor(Executors.newFixedThreadPool(4));
+    server.createContext(
+        "/events",
+        exchange -> {
+          String body =
+              new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+          int status = 400;
+          if (!body.contains(marker)) {
+            status = 200;
+            Matcher matcher = SUBJECT.matcher(body);
+            while (matcher.find()) {
+              subjects.add(matcher.group(1));
+            }
+          }
+          exchange.sendResponseHeaders(status, -1);
+          exchange.close();
+        });
+    server.start();
+    return server;
+  }
+
+  private long countForSink(String sink, EventQueueStatus status) {
+    Criteria criteria = Criteria.where("sink").is(sink);
+    if (status != null) {
+      criteria.and("status").is(status);
+    }
+    return mongoTemplate.count(
+        Query.query(criteria),
+        EventQueueEntity.class,
+        mongoConfiguration.fullCollectionName("event_queue"));
+  }
+
+  private static CloudEvent event(String subject) {
+    return CloudEventBuilder.v1()
+        .withId(UUID.randomUUID().toString())
+        .withSource(URI.create("/test"))
+        .withSubject(subject)
+        .withType("io.boomerang.event.status.taskrun")
+        .withData(
+            "application/json", "{\"status\":\"succeeded\"}".getBytes(StandardCharsets.UTF_8))
+        .build();
+  }
+}
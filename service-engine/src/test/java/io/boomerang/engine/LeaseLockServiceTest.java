@@ -0,0 +1,246 @@
+package io.boomerang.engine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.github.alturkovic.lock.exception.LockNotAvailableException;
+import io.boomerang.EmbeddedMongo;
+import io.boomerang.engine.LeaseLockService.Lease;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class LeaseLockServiceTest {
+
+  // Longer than any wait in these tests, so a waiter that returns was woken by a release
+  private static final long NEVER = 600000L;
+
+  private static LeaseLockService leaseLockService;
+
+  private final List<LeaseLockService> services = new ArrayList<>();
+  private final ExecutorService executor = Executors.newCachedThreadPool();
+
+  @BeforeAll
+  static void setUp() {
+    leaseLockService = service(EmbeddedMongo.mongoTemplate("lease_lock_test"), 1000L);
+  }
+
+  @AfterAll
+  static void tearDown() {
+    leaseLockService.destroy();
+  }
+
+  @AfterEach
+  void stop() {
+    services.forEach(LeaseLockService::destroy);
+    services.clear();
+    executor.shutdownNow();
+  }
+
+  @Test
+  void testFencingTokenIncreases() {
+    Lease first = leaseLockService.acquire("fence", 60000, 0);
+    assertTrue(leaseLockService.tryAcquire("fence", 60000).isEmpty());
+    leaseLockService.release("fence", Optional.of(first.owner()));
+    Lease second = leaseLockService.acquire("fence", 60000, 0);
+    assertTrue(second.fencingToken() > first.fencingToken());
+    leaseLockService.release("fence", Optional.of(second.owner()));
+  }
+
+  @Test
+  void testReleaseRequiresOwner() {
+    Lease lease = leaseLockService.acquire("owner", 60000, 0);
+    leaseLockService.release("owner", Optional.of("not-the-owner"));
+    assertThrows(
+        LockNotAvailableException.class, () -> leaseLockService.acquire("owner", 60000, 0));
+    assertTrue(leaseLockService.renew("owner", lease.owner(), 60000));
+    leaseLockService.release("owner", Optional.empty());
+    assertFalse(leaseLockService.renew("owner", lease.owner(), 60000));
+  }
+
+  @Test
+  void testExpiredLeaseCanBeTaken() throws InterruptedException {
+    leaseLockService.acquire("expiry", 50, 0);
+    Thread.sleep(100);
+    assertTrue(leaseLockService.tryAcquire("expiry", 60000).isPresent());
+  }
+
+  @Test
+  void testContendedLeaseIsHeldByOneOwner() throws Exception {
+    final AtomicInteger holders = new AtomicInteger();
+    final AtomicInteger overlaps = new AtomicInteger();
+    List<Future<?>> futures = new ArrayList<>();
+    for (int t = 0; t < 4; t++) {
+      futures.add(
+          executor.submit(
+              () -> {
+                for (int i = 0; i < 10; i++) {
+                  Lease lease = leaseLockService.acquire("contended", 60000, 60000);
+                  if (holders.incrementAndGet() > 1) {
+                    overlaps.incrementAndGet();
+                  }
+                  holders.decrementAndGet();
+                  leaseLockService.release("contended", Optional.of(lease.owner()));
+                }
+                return null;
+              }));
+    }
+    for (Future<?> future : futures) {
+      future.get(2, TimeUnit.MINUTES);
+    }
+    assertEquals(0, overlaps.get());
+    assertTrue(waiters(leaseLockService).isEmpty());
+  }
+
+  @Test
+  void testWaiterIsWokenByLocalRelease() throws Exception {
+    LeaseLockService service = replica(EmbeddedMongo.mongoTemplate("lease_lock_test"), NEVER);
+    Lease held = service.acquire("local", 60000, 0);
+    Future<Lease> waiter = executor.submit(() -> service.acquire("local", 60000, NEVER));
+    waitFor(() -> waiters(service).containsKey("local"));
+
+    service.release("local", Optional.of(held.owner()));
+    assertTrue(waiter.get(30, TimeUnit.SECONDS).fencingToken() > held.fencingToken());
+  }
+
+  @Test
+  void testWaitersAreRemovedOnTimeout() {
+    Lease held = leaseLockService.acquire("timeout", 60000, 0);
+    assertThrows(
+        LockNotAvailableException.class, () -> leaseLockService.acquire("timeout", 60000, 100));
+    assertFalse(waiters(leaseLockService).containsKey("timeout"));
+    leaseLockService.release("timeout", Optional.of(held.owner()));
+  }
+
+  /*
+   * A release by another replica only reaches the waiter through the change stream
+   */
+  @Test
+  void testWaiterIsWokenByAnotherReplicasRelease() throws Exception {
+    MongoTemplate mongoTemplate = EmbeddedMongo.replicaSetMongoTemplate("lease_lock_test");
+    LeaseLockService holder = replica(mongoTemplate, NEVER);
+    LeaseLockService waiting = replica(mongoTemplate, NEVER);
+    waitFor(waiting::isChangeStreamActive);
+    assertTrue(waiting.isChangeStreamActive());
+
+    Lease held = holder.acquire("replica", 60000, 0);
+    Future<Lease> waiter = executor.submit(() -> waiting.acquire("replica", 60000, NEVER));
+    waitFor(() -> waiters(waiting).containsKey("replica"));
+
+    holder.release("replica", Optional.of(held.owner()));
+    assertTrue(waiter.get(30, TimeUnit.SECONDS).fencingToken() > held.fencingToken());
+  }
+
+  /*
+   * Time from a release to the waiter on another replica holding the lock. The previous lock polled
+   * with a fixed backoff of 2 seconds, so a handoff took up to that long.
+   */
+  @Test
+  void testHandoffLatency() throws Exception {
+    MongoTemplate mongoTemplate = EmbeddedMongo.replicaSetMongoTemplate("lease_lock_test");
+    LeaseLockService first = replica(mongoTemplate, NEVER);
+    LeaseLockService second = replica(mongoTemplate, NEVER);
+    waitFor(() -> first.isChangeStreamActive() && second.isChangeStreamActive());
+
+    List<Long> latencies = new ArrayList<>();
+    AtomicLong acquiredAt = new AtomicLong();
+    LeaseLockService holder = first;
+    Lease held = holder.acquire("handoff", 60000, 0);
+    for (int i = 0; i < 20; i++) {
+      final LeaseLockService next = holder == first ? second : first;
+      Future<Lease> waiter =
+          executor.submit(
+              () -> {
+                Lease lease = next.acquire("handoff", 60000, NEVER);
+                acquiredAt.set(System.nanoTime());
+                return lease;
+              });
+      waitFor(() -> waiters(next).containsKey("handoff"));
+
+      long releasedAt = System.nanoTime();
+      holder.release("handoff", Optional.of(held.owner()));
+      held = waiter.get(30, TimeUnit.SECONDS);
+      latencies.add(TimeUnit.NANOSECONDS.toMillis(acquiredAt.get() - releasedAt));
+      holder = next;
+    }
+    holder.release("handoff", Optional.of(held.owner()));
+
+    Collections.sort(latencies);
+    long median = latencies.get(latencies.size() / 2);
+    assertTrue(median < 500, "Handoff latencies (ms): " + latencies);
+  }
+
+  @Test
+  void testRunLockIsRenewedUntilReleased() {
+    LockManager lockManager = new LockManager(leaseLockService);
+    try {
+      String owner = lockManager.acquireLock("renewed");
+      assertTrue(renewals(lockManager).containsKey(owner));
+      ReflectionTestUtils.invokeMethod(lockManager, "renew", "renewed", owner, Long.MAX_VALUE);
+      assertTrue(renewals(lockManager).containsKey(owner));
+
+      lockManager.releaseLock("renewed", owner);
+      assertTrue(renewals(lockManager).isEmpty());
+      assertTrue(leaseLockService.tryAcquire("renewed", 60000).isPresent());
+      leaseLockService.release("renewed", Optional.empty());
+
+      // A lease lost to a release regardless of owner is no longer renewed
+      String lost = lockManager.acquireLock("renewed");
+      lockManager.releaseLock("renewed");
+      ReflectionTestUtils.invokeMethod(lockManager, "renew", "renewed", lost, Long.MAX_VALUE);
+      assertTrue(renewals(lockManager).isEmpty());
+    } finally {
+      lockManager.destroy();
+    }
+  }
+
+  private LeaseLockService replica(MongoTemplate mongoTemplate, long waitInterval) {
+    LeaseLockService service = service(mongoTemplate, waitInterval);
+    services.add(service);
+    return service;
+  }
+
+  private static LeaseLockService service(MongoTemplate mongoTemplate, long waitInterval) {
+    LeaseLockService service =
+        new LeaseLockService(mongoTemplate, EmbeddedMongo.mongoConfiguration());
+    ReflectionTestUtils.setField(service, "mongoCosmosDBTTL", false);
+    ReflectionTestUtils.setField(service, "changeStreamEnabled", true);
+    ReflectionTestUtils.setField(service, "waitInterval", waitInterval);
+    service.init();
+    return service;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Map<String, ?> waiters(LeaseLockService service) {
+    return (Map<String, ?>) ReflectionTestUtils.getField(service, "waiters");
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Map<String, ?> renewals(LockManager lockManager) {
+    return (Map<String, ?>) ReflectionTestUtils.getField(lockManager, "renewals");
+  }
+
+  private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 30000;
+    while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+  }
+}
@@ -0,0 +1,230 @@
+package io.boomerang.engine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.boomerang.common.entity.TaskRunEntity;
+import io.boomerang.common.entity.WorkflowRunEntity;
+import io.boomerang.common.enums.ParamType;
+import io.boomerang.common.model.ParamLayers;
+import io.boomerang.common.model.RunParam;
+import io.boomerang.common.model.RunResult;
+import io.boomerang.engine.repository.TaskRunRepository;
+import io.boomerang.util.ParameterUtil;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.apache.commons.text.StringSubstitutor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class ParameterManagerTest {
+
+  private TaskRunRepository taskRunRepository;
+  private ParameterManager parameterManager;
+
+  @BeforeEach
+  void setUp() {
+    taskRunRepository = mock(TaskRunRepository.class);
+    parameterManager = new ParameterManager(null, taskRunRepository, null);
+    ReflectionTestUtils.setField(parameterManager, "maxSize", 100L);
+    ReflectionTestUtils.setField(parameterManager, "expireAfter", 60L);
+    parameterManager.init();
+  }
+
+  @Test
+  void testTemplateTokenising() {
+    ParamTemplate template = ParamTemplate.compile("a $(params.one) b $(tasks.x.results.y) $(");
+    assertEquals(2, template.getReferences().size());
+    assertEquals("params.one", template.getReferences().get(0).key());
+    assertEquals("x", template.getReferences().get(1).taskName());
+    assertEquals("a 1 b 2 $(", template.render(r -> r.isTaskResult() ? "2" : "1"));
+    assertFalse(ParamTemplate.compile("no references $()").hasReferences());
+  }
+
+  @Test
+  void testLayeredAndRecursiveParams() {
+    WorkflowRunEntity wfRun = workflowRun();
+    wfRun.getParams().add(new RunParam("greeting", "hello"));
+    wfRun.getParams().add(new RunParam("message", "$(params.greeting) \"$(params.name)\""));
+    wfRun.getParams().add(new RunParam("name", "world"));
+    wfRun.getParams().add(new RunParam("nested", "$(params.message)!"));
+    wfRun.getParams().add(new RunParam("missing", "$(params.unknown)"));
+    wfRun.getParams().add(new RunParam("scoped", "$(workflow.params.name)"));
+
+    parameterManager.resolveParamLayers(wfRun, Optional.empty());
+
+    Map<String, Object> params = ParameterUtil.runParamListToMap(wfRun.getParams());
+    assertEquals("hello \"world\"", params.get("message"));
+    assertEquals("hello \"world\"!", params.get("nested"));
+    assertEquals("$(params.unknown)", params.get("missing"));
+    assertEquals("world", params.get("scoped"));
+  }
+
+  @Test
+  void testTaskResultsRetrievedInOneQuery() {
+    WorkflowRunEntity wfRun = workflowRun();
+    TaskRunEntity taskRun = new TaskRunEntity();
+    taskRun.setId("taskrun");
+    taskRun.setName("deploy");
+    taskRun.getParams().add(new RunParam("image", "$(tasks.build.results.image)"));
+    taskRun.getParams().add(new RunParam("url", "$(tasks.test.results.report.url)"));
+    taskRun
+        .getParams()
+        .add(
+            new RunParam(
+                "list", new ArrayList<>(List.of("$(tasks.build.results.image)")), ParamType.array));
+
+    when(taskRunRepository.findByWorkflowRunRefAndNameIn(eq("wfrun"), any()))
+        .thenReturn(
+            List.of(
+                result("build", new RunResult("image", "flow:1.0")),
+                result("test", new RunResult("report", Map.of("url", "http://report")))));
+
+    parameterManager.resolveParamLayers(wfRun, Optional.of(taskRun));
+
+    Map<String, Object> params = ParameterUtil.runParamListToMap(taskRun.getParams());
+    assertEquals("flow:1.0", params.get("image"));
+    assertEquals("http://report", params.get("url"));
+    assertEquals(List.of("flow:1.0"), params.get("list"));
+
+    ArgumentCaptor<Collection<String>> names = ArgumentCaptor.forClass(Collection.class);
+    verify(taskRunRepository, times(1)).findByWorkflowRunRefAndNameIn(eq("wfrun"), names.capture());
+    assertEquals(Set.of("build", "test"), Set.copyOf(names.getValue()));
+  }
+
+  @Test
+  void testObjectParam() {
+    WorkflowRunEntity wfRun = workflowRun();
+    wfRun.getParams().add(new RunParam("config", Map.of("replicas", 3), ParamType.object));
+    wfRun.getParams().add(new RunParam("copy", "$(params.config)", ParamType.object));
+    wfRun.getParams().add(new RunParam("replicas", "$(params.config.replicas)"));
+
+    parameterManager.resolveParamLayers(wfRun, Optional.empty());
+
+    Map<String, Object> params = ParameterUtil.runParamListToMap(wfRun.getParams());
+    assertEquals(Map.of("replicas", 3), params.get("copy"));
+    assertEquals("3", params.get("replicas"));
+  }
+
+  @Test
+  void testUnmatchedResultPathLeavesOriginalValue() {
+    WorkflowRunEntity wfRun = workflowRun();
+    TaskRunEntity taskRun = new TaskRunEntity();
+    taskRun.setId("taskrun");
+    taskRun.setName("deploy");
+    taskRun.getParams().add(new RunParam("url", "at $(tasks.test.results.report.missing)"));
+    taskRun
+        .getParams()
+        .add(new RunParam("copy", "$(tasks.test.results.report.missing)", ParamType.object));
+
+    when(taskRunRepository.findByWorkflowRunRefAndNameIn(eq("wfrun"), any()))
+        .thenReturn(List.of(result("test", new RunResult("report", Map.of("url", "x")))));
+
+    parameterManager.resolveParamLayers(wfRun, Optional.of(taskRun));
+
+    Map<String, Object> params = ParameterUtil.runParamListToMap(taskRun.getParams());
+    assertEquals("at $(tasks.test.results.report.missing)", params.get("url"));
+    assertEquals("$(tasks.test.results.report.missing)", params.get("copy"));
+  }
+
+  @Test
+  void testTemplatesAreCachedPerRevisionAndParam() {
+    ParamTemplate template = parameterManager.compile("rev/params/a", "$(params.one)");
+    assertSame(template, parameterManager.compile("rev/params/a", "$(params.one)"));
+    assertNotSame(template, parameterManager.compile("rev/params/b", "$(params.one)"));
+    // A value given at run time that differs from the cached text is recompiled
+    ParamTemplate changed = parameterManager.compile("rev/params/a", "$(params.two)");
+    assertEquals("params.two", changed.getReferences().get(0).key());
+    assertNotSame(template, parameterManager.compile(null, "$(params.one)"));
+  }
+
+  /*
+   * The compiled templates give the same values as the previous path which, per param, compiled
+   * the regex, built the flattened layers and round tripped the value through Jackson and the
+   * StringSubstitutor.
+   */
+  @Test
+  void testCompiledTemplatesMatchPreviousPath() {
+    List<RunParam> runParams = new LinkedList<>();
+    for (int i = 0; i < 50; i++) {
+      runParams.add(new RunParam("p" + i, "value-" + i));
+      runParams.add(
+          new RunParam("ref" + i, "prefix $(params.p" + i + ") and $(workflow.params.p0) suffix"));
+    }
+    ParamLayers layers = new ParamLayers();
+    layers.setWorkflowParams(ParameterUtil.runParamListToMap(runParams));
+
+    assertEquals(resolveWithPreviousPath(runParams, layers), resolveWithTemplates(runParams));
+  }
+
+  private List<Object> resolveWithTemplates(List<RunParam> runParams) {
+    WorkflowRunEntity wfRun = workflowRun();
+    runParams.forEach(p -> wfRun.getParams().add(new RunParam(p.getName(), p.getValue())));
+    parameterManager.resolveParamLayers(wfRun, Optional.empty());
+    return wfRun.getParams().stream().map(RunParam::getValue).toList();
+  }
+
+  private List<Object> resolveWithPreviousPath(List<RunParam> runParams, ParamLayers layers) {
+    return runParams.stream()
+        .map(
+            p -> {
+              Map<String, Object> flat = layers.getFlatMap();
+              Matcher m =
+                  Pattern.compile("(?<=\\$\\().+?(?=\\))").matcher(p.getValue().toString());
+              Map<String, Object> found = new HashMap<>();
+              while (m.find()) {
+                if (flat.get(m.group(0)) != null) {
+                  found.put(m.group(0), flat.get(m.group(0)));
+                }
+              }
+              if (found.isEmpty()) {
+                return p.getValue();
+              }
+              flat.putAll(found);
+              try {
+                ObjectMapper mapper = new ObjectMapper();
+                StringSubstitutor substitutor = new StringSubstitutor(flat, "$(", ")");
+                substitutor.setEnableSubstitutionInVariables(true);
+                substitutor.setEnableUndefinedVariableException(false);
+                return mapper.readValue(
+                    substitutor.replace(mapper.writeValueAsString(p.getValue())), Object.class);
+              } catch (Exception e) {
+                return null;
+              }
+            })
+        .toList();
+  }
+
+  private WorkflowRunEntity workflowRun() {
+    WorkflowRunEntity wfRun = new WorkflowRunEntity();
+    wfRun.setId("wfrun");
+    wfRun.setAnnotations(new HashMap<>());
+    return wfRun;
+  }
+
+  private TaskRunEntity result(String name, RunResult result) {
+    TaskRunEntity taskRun = new TaskRunEntity();
+    taskRun.setName(name);
+    taskRun.setResults(new LinkedList<>(List.of(result)));
+    return taskRun;
+  }
+}
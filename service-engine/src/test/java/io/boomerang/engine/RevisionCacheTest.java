@@ -0,0 +1,221 @@
+package io.boomerang.engine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Updates;
+import io.boomerang.EmbeddedMongo;
+import io.boomerang.common.entity.TaskRevisionEntity;
+import io.boomerang.config.MongoConfiguration;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class RevisionCacheTest {
+
+  private static MongoTemplate mongoTemplate;
+  private static MongoConfiguration mongoConfiguration;
+  private RevisionCache revisionCache;
+
+  @BeforeAll
+  static void setUp() {
+    mongoTemplate = EmbeddedMongo.mongoTemplate("revision_cache_test");
+    mongoConfiguration = EmbeddedMongo.mongoConfiguration();
+  }
+
+  @BeforeEach
+  void setUpCache() {
+    mongoTemplate.getCollection("test_task_revisions").drop();
+    mongoTemplate.getCollection("test_workflow_revisions").drop();
+    revisionCache = revisionCache(mongoTemplate, false);
+  }
+
+  @AfterEach
+  void tearDownCache() {
+    revisionCache.destroy();
+  }
+
+  @Test
+  void testSupersededRevisionsAreReadOnce() {
+    insertTask("task-1", 1, "First");
+    insertTask("task-1", 2, "Second");
+    assertEquals(
+        "First",
+        revisionCache.getTaskRevision("task-1", Optional.of(1)).get().getDisplayName());
+
+    // A second read is served from the cache
+    mongoTemplate
+        .getCollection("test_task_revisions")
+        .updateOne(
+            Filters.and(Filters.eq("parentRef", "task-1"), Filters.eq("version", 1)),
+            Updates.set("displayName", "Changed"));
+    TaskRevisionEntity revision = revisionCache.getTaskRevision("task-1", Optional.of(1)).get();
+    assertEquals("First", revision.getDisplayName());
+
+    // Each caller receives its own copy
+    revision.setDisplayName("Mutated");
+    assertEquals(
+        "First",
+        revisionCache.getTaskRevision("task-1", Optional.of(1)).get().getDisplayName());
+  }
+
+  /*
+   * The latest revision can be replaced in place by another replica, so without a change stream it
+   * is not cached
+   */
+  @Test
+  void testLatestRevisionIsNotCached() {
+    insertTask("task-3", 1, "First");
+    assertEquals(
+        "First",
+        revisionCache.getTaskRevision("task-3", Optional.of(1)).get().getDisplayName());
+    assertEquals(
+        "First",
+        revisionCache.getTaskRevision("task-3", Optional.empty()).get().getDisplayName());
+
+    mongoTemplate
+        .getCollection("test_task_revisions")
+        .updateOne(Filters.eq("parentRef", "task-3"), Updates.set("displayName", "Replaced"));
+    assertEquals(
+        "Replaced",
+        revisionCache.getTaskRevision("task-3", Optional.of(1)).get().getDisplayName());
+    assertEquals(
+        "Replaced",
+        revisionCache.getTaskRevision("task-3", Optional.empty()).get().getDisplayName());
+  }
+
+  @Test
+  void testNewVersionIsSeenWithoutEviction() {
+    insertWorkflow("wf-1", 1);
+    assertEquals(
+        1, revisionCache.getWorkflowRevision("wf-1", Optional.empty()).get().getVersion());
+
+    // Applied on another replica
+    insertWorkflow("wf-1", 2);
+    assertEquals(
+        2, revisionCache.getWorkflowRevision("wf-1", Optional.empty()).get().getVersion());
+    assertEquals(
+        1, revisionCache.getWorkflowRevision("wf-1", Optional.of(1)).get().getVersion());
+  }
+
+  /*
+   * While the change stream is active the latest revision is served from the cache, and a change
+   * made directly in the database, as by another replica, evicts it
+   */
+  @Test
+  void testLatestRevisionIsCachedWhileWatched() throws Exception {
+    final AtomicInteger reads = new AtomicInteger();
+    MongoTemplate replicaSet =
+        new MongoTemplate(
+            EmbeddedMongo.replicaSetMongoTemplate("revision_cache_test")
+                .getMongoDatabaseFactory()) {
+          @Override
+          public <T> T findOne(Query query, Class<T> entityClass, String collectionName) {
+            reads.incrementAndGet();
+            return super.findOne(query, entityClass, collectionName);
+          }
+        };
+    replicaSet.getCollection("test_task_revisions").drop();
+    replicaSet.getCollection("test_workflow_revisions").drop();
+    RevisionCache watched = revisionCache(replicaSet, true);
+    try {
+      waitFor(watched::isChangeStreamActive);
+      assertTrue(watched.isChangeStreamActive());
+
+      // Wait for the insert to be seen, as it evicts the ref
+      final long evictions = evictions(watched);
+      insertTask(replicaSet, "task-5", 1, "First");
+      waitFor(() -> evictions(watched) > evictions);
+      assertEquals(
+          "First", watched.getTaskRevision("task-5", Optional.empty()).get().getDisplayName());
+      assertEquals(
+          "First", watched.getTaskRevision("task-5", Optional.empty()).get().getDisplayName());
+      assertEquals(
+          "First", watched.getTaskRevision("task-5", Optional.of(1)).get().getDisplayName());
+      assertEquals(1, reads.get());
+
+      replicaSet
+          .getCollection("test_task_revisions")
+          .updateOne(Filters.eq("parentRef", "task-5"), Updates.set("displayName", "Replaced"));
+      waitFor(
+          () ->
+              "Replaced"
+                  .equals(
+                      watched
+                          .getTaskRevision("task-5", Optional.empty())
+                          .get()
+                          .getDisplayName()));
+      assertEquals(
+          "Replaced", watched.getTaskRevision("task-5", Optional.of(1)).get().getDisplayName());
+
+      insertTask(replicaSet, "task-5", 2, "Second");
+      waitFor(() -> watched.getTaskRevision("task-5", Optional.empty()).get().getVersion() == 2);
+      assertEquals(2, watched.getTaskRevision("task-5", Optional.empty()).get().getVersion());
+
+      replicaSet.getCollection("test_task_revisions").deleteMany(Filters.eq("parentRef", "task-5"));
+      waitFor(() -> watched.getTaskRevision("task-5", Optional.empty()).isEmpty());
+      assertTrue(watched.getTaskRevision("task-5", Optional.empty()).isEmpty());
+    } finally {
+      watched.destroy();
+    }
+  }
+
+  @Test
+  void testMissingRevisionsAreNotCached() {
+    assertTrue(revisionCache.getTaskRevision("task-2", Optional.empty()).isEmpty());
+    insertTask("task-2", 1, "Created");
+    assertEquals(
+        "Created",
+        revisionCache.getTaskRevision("task-2", Optional.empty()).get().getDisplayName());
+  }
+
+  private RevisionCache revisionCache(MongoTemplate template, boolean changeStreamEnabled) {
+    RevisionCache cache = new RevisionCache(template, mongoConfiguration);
+    ReflectionTestUtils.setField(cache, "maxSize", 100L);
+    ReflectionTestUtils.setField(cache, "expireAfter", 300L);
+    ReflectionTestUtils.setField(cache, "latestExpireAfter", 30L);
+    ReflectionTestUtils.setField(cache, "changeStreamEnabled", changeStreamEnabled);
+    cache.init();
+    return cache;
+  }
+
+  private static long evictions(RevisionCache cache) {
+    return ((AtomicLong) ReflectionTestUtils.getField(cache, "generation")).get();
+  }
+
+  private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 30000;
+    while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+  }
+
+  private void insertTask(String parentRef, int version, String displayName) {
+    insertTask(mongoTemplate, parentRef, version, displayName);
+  }
+
+  private void insertTask(MongoTemplate template, String parentRef, int version, String name) {
+    template
+        .getCollection("test_task_revisions")
+        .insertOne(
+            new Document("parentRef", parentRef)
+                .append("version", version)
+                .append("displayName", name));
+  }
+
+  private void insertWorkflow(String workflowRef, int version) {
+    mongoTemplate
+        .getCollection("test_workflow_revisions")
+        .insertOne(new Document("workflowRef", workflowRef).append("version", version));
+  }
+}
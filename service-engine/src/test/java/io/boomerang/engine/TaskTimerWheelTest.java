@@ -0,0 +1,204 @@
+package io.boomerang.engine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+import io.boomerang.EmbeddedMongo;
+import io.boomerang.config.MongoConfiguration;
+import io.boomerang.engine.entity.TaskTimerEntity;
+import io.boomerang.engine.enums.TaskTimerType;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BooleanSupplier;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class TaskTimerWheelTest {
+
+  private static MongoTemplate mongoTemplate;
+  private static MongoConfiguration mongoConfiguration;
+
+  // TaskRun ids and the time they were timed out or resumed
+  private final Map<String, Long> fired = new ConcurrentHashMap<>();
+  private final Map<String, Long> resumed = new ConcurrentHashMap<>();
+  private final List<TaskTimerWheel> wheels = new ArrayList<>();
+
+  @BeforeAll
+  static void setUp() {
+    mongoTemplate = EmbeddedMongo.mongoTemplate("task_timer_test");
+    mongoConfiguration = EmbeddedMongo.mongoConfiguration();
+  }
+
+  @BeforeEach
+  void clean() {
+    mongoTemplate.remove(new Query(), TaskTimerEntity.class, collection());
+  }
+
+  @AfterEach
+  void stop() {
+    wheels.forEach(TaskTimerWheel::destroy);
+    wheels.clear();
+  }
+
+  @Test
+  void testFiresOnceAndCancels() throws Exception {
+    TaskTimerWheel wheel = wheel(1000L);
+    wheel.schedule("fires", TaskTimerType.timeout, 100);
+    wheel.schedule("cancelled", TaskTimerType.timeout, 100);
+    wheel.schedule("rescheduled", TaskTimerType.timeout, 100);
+    wheel.cancel("cancelled");
+    wheel.schedule("rescheduled", TaskTimerType.timeout, 400);
+
+    waitFor(() -> fired.size() == 2, 5000);
+    Thread.sleep(300);
+    assertEquals(2, fired.size());
+    assertTrue(fired.containsKey("fires"));
+    assertTrue(fired.containsKey("rescheduled"));
+    assertFalse(fired.containsKey("cancelled"));
+    assertEquals(0, mongoTemplate.count(new Query(), TaskTimerEntity.class, collection()));
+  }
+
+  /*
+   * A sleep is resumed by its continuation and the pending timeout is cancelled when it ends
+   */
+  @Test
+  void testResumeContinuation() throws Exception {
+    TaskTimerWheel wheel = wheel(1000L);
+    long start = System.currentTimeMillis();
+    wheel.schedule("sleep", TaskTimerType.resume, 200);
+    wheel.schedule("sleep", TaskTimerType.timeout, 600);
+
+    waitFor(() -> resumed.containsKey("sleep"), 5000);
+    assertTrue(resumed.get("sleep") - start >= 200);
+    wheel.cancel("sleep");
+    Thread.sleep(800);
+    assertFalse(fired.containsKey("sleep"));
+    assertEquals(0, wheel.pendingCount());
+    assertEquals(0, mongoTemplate.count(new Query(), TaskTimerEntity.class, collection()));
+  }
+
+  /*
+   * Timeouts beyond the horizon are only persisted, and are claimed once by one of the replicas
+   */
+  @Test
+  void testBeyondHorizonClaimedByOneReplica() throws Exception {
+    TaskTimerWheel first = wheel(200L);
+    TaskTimerWheel second = wheel(200L);
+    for (int i = 0; i < 100; i++) {
+      first.schedule("task-" + i, TaskTimerType.timeout, 1500);
+    }
+    assertEquals(0, first.pendingCount());
+
+    waitFor(() -> fired.size() == 100, 5000);
+    Thread.sleep(300);
+    assertEquals(100, fired.size());
+    assertEquals(0, mongoTemplate.count(new Query(), TaskTimerEntity.class, collection()));
+    assertEquals(0, first.pendingCount() + second.pendingCount());
+  }
+
+  /*
+   * A replica that stopped without firing its claimed timeouts is taken over once the claims expire
+   */
+  @Test
+  void testExpiredClaimTakenOver() throws Exception {
+    TaskTimerEntity entity = new TaskTimerEntity();
+    entity.setId("orphaned:timeout");
+    entity.setTaskRunRef("orphaned");
+    entity.setType(TaskTimerType.timeout);
+    entity.setDueDate(new Date(System.currentTimeMillis() - 1000));
+    entity.setClaimRef(UUID.randomUUID().toString());
+    entity.setClaimExpiryDate(new Date(System.currentTimeMillis() - 1));
+    mongoTemplate.insert(entity, collection());
+
+    wheel(1000L);
+    waitFor(() -> fired.containsKey("orphaned"), 5000);
+    assertTrue(fired.containsKey("orphaned"));
+  }
+
+  /*
+   * Due timeouts fire while the timeouts persisted for the far future are left pending
+   */
+  @Test
+  void testDueTimeoutsFireAmongFarFuturePending() throws Exception {
+    final int pendingCount = 1000;
+    List<TaskTimerEntity> entities = new ArrayList<>(pendingCount);
+    Date farFuture = new Date(System.currentTimeMillis() + 3600000);
+    for (int i = 0; i < pendingCount; i++) {
+      TaskTimerEntity entity = new TaskTimerEntity();
+      entity.setId("pending-" + i + ":timeout");
+      entity.setTaskRunRef("pending-" + i);
+      entity.setType(TaskTimerType.timeout);
+      entity.setDueDate(farFuture);
+      entities.add(entity);
+    }
+    mongoTemplate.insert(entities, collection());
+
+    TaskTimerWheel wheel = wheel(1000L);
+    final int due = 100;
+    for (int i = 0; i < due; i++) {
+      wheel.schedule("due-" + i, TaskTimerType.timeout, 200);
+    }
+    waitFor(() -> fired.size() == due, 10000);
+
+    assertEquals(due, fired.size());
+    assertTrue(fired.keySet().stream().allMatch(id -> id.startsWith("due-")));
+    assertEquals(
+        pendingCount, mongoTemplate.count(new Query(), TaskTimerEntity.class, collection()));
+  }
+
+  private TaskTimerWheel wheel(long horizon) {
+    TaskExecutionService taskExecutionService = mock(TaskExecutionService.class);
+    doAnswer(
+            invocation -> {
+              Long previous =
+                  fired.putIfAbsent(invocation.getArgument(0), System.currentTimeMillis());
+              if (previous != null) {
+                throw new IllegalStateException("Fired twice: " + invocation.getArgument(0));
+              }
+              return null;
+            })
+        .when(taskExecutionService)
+        .timeoutTask(anyString());
+    doAnswer(
+            invocation -> {
+              resumed.put(invocation.getArgument(0), System.currentTimeMillis());
+              return null;
+            })
+        .when(taskExecutionService)
+        .resumeTask(anyString());
+    TaskTimerWheel wheel = new TaskTimerWheel(mongoTemplate, mongoConfiguration);
+    ReflectionTestUtils.setField(wheel, "taskExecutionService", taskExecutionService);
+    ReflectionTestUtils.setField(wheel, "tickMillis", 10L);
+    ReflectionTestUtils.setField(wheel, "horizon", horizon);
+    ReflectionTestUtils.setField(wheel, "pullInterval", 100L);
+    ReflectionTestUtils.setField(wheel, "claimGrace", 1000L);
+    wheel.init();
+    wheels.add(wheel);
+    return wheel;
+  }
+
+  private void waitFor(BooleanSupplier condition, long maxWaitMillis)
+      throws InterruptedException {
+    long deadline = System.currentTimeMillis() + maxWaitMillis;
+    while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+  }
+
+  private static String collection() {
+    return mongoConfiguration.fullCollectionName("task_timers");
+  }
+}
@@ -0,0 +1,102 @@
+package io.boomerang.engine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.mongodb.client.model.Filters;
+import io.boomerang.EmbeddedMongo;
+import io.boomerang.common.entity.TeamQuotaCountersEntity;
+import io.boomerang.common.entity.WorkflowRunEntity;
+import io.boomerang.common.enums.RunPhase;
+import io.boomerang.common.enums.RunStatus;
+import io.boomerang.common.util.InsightRollupUtil;
+import io.boomerang.config.MongoConfiguration;
+import java.util.Date;
+import java.util.List;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+class TeamQuotaCounterServiceTest {
+
+  private static MongoTemplate mongoTemplate;
+  private static TeamQuotaCounterService teamQuotaCounterService;
+
+  @BeforeAll
+  static void setUp() {
+    mongoTemplate = EmbeddedMongo.mongoTemplate("team_quota_test");
+    MongoConfiguration mongoConfiguration = EmbeddedMongo.mongoConfiguration();
+    teamQuotaCounterService = new TeamQuotaCounterService(mongoTemplate, mongoConfiguration);
+  }
+
+  @Test
+  void testTransitionsAreCountedOnce() {
+    Date created = new Date();
+    WorkflowRunEntity first = run("run-1", "Team-A", created);
+    WorkflowRunEntity second = run("run-2", "team-a", created);
+    teamQuotaCounterService.update(first);
+    teamQuotaCounterService.update(second);
+
+    first.setStatus(RunStatus.running);
+    first.setPhase(RunPhase.running);
+    second.setStatus(RunStatus.running);
+    second.setPhase(RunPhase.running);
+    // Repeated saves while running
+    teamQuotaCounterService.update(first);
+    teamQuotaCounterService.update(first);
+    teamQuotaCounterService.update(second);
+
+    Document counters = counters("team-a", created);
+    assertEquals(2, counters.get("runs", Number.class).intValue());
+    assertEquals(List.of("run-1", "run-2"), counters.getList("running", String.class));
+
+    first.setStatus(RunStatus.succeeded);
+    first.setPhase(RunPhase.completed);
+    first.setDuration(1000);
+    teamQuotaCounterService.update(first);
+    first.setPhase(RunPhase.finalized);
+    teamQuotaCounterService.update(first);
+
+    counters = counters("team-a", created);
+    assertEquals(2, counters.get("runs", Number.class).intValue());
+    assertEquals(List.of("run-2"), counters.getList("running", String.class));
+    assertEquals(1000, counters.get("duration", Number.class).longValue());
+    Document sketch = counters.get("sketch", Document.class);
+    assertEquals(
+        1, sketch.get(String.valueOf(InsightRollupUtil.index(1000)), Number.class).intValue());
+  }
+
+  @Test
+  void testRunsWithoutTeamAreNotCounted() {
+    Date created = new Date();
+    WorkflowRunEntity entity = run("run-3", "team-b", created);
+    entity.getAnnotations().clear();
+    teamQuotaCounterService.update(entity);
+    assertNull(counters("team-b", created));
+  }
+
+  @Test
+  void testRunsCountAgainstTheirCreationMonth() {
+    Date lastMonth = new Date(System.currentTimeMillis() - 40L * 24 * 60 * 60 * 1000);
+    teamQuotaCounterService.update(run("run-4", "team-c", lastMonth));
+    assertTrue(counters("team-c", lastMonth) != null);
+    assertNull(counters("team-c", new Date()));
+  }
+
+  private WorkflowRunEntity run(String id, String team, Date created) {
+    WorkflowRunEntity entity = new WorkflowRunEntity();
+    entity.setId(id);
+    entity.setCreationDate(created);
+    entity.getAnnotations().put("boomerang.io/team-name", team);
+    return entity;
+  }
+
+  private Document counters(String team, Date date) {
+    return mongoTemplate
+        .getCollection("test_team_quota_counters")
+        .find(Filters.eq("_id", TeamQuotaCountersEntity.idOf(team, date)))
+        .first();
+  }
+}
@@ -0,0 +1,320 @@
+package io.boomerang.client;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.boomerang.common.model.Task;
+import io.boomerang.common.model.TaskRun;
+import io.boomerang.common.model.Workflow;
+import io.boomerang.common.model.WorkflowRun;
+import io.boomerang.error.BoomerangException;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort.Direction;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestClientResponseException;
+import org.springframework.web.util.UriComponentsBuilder;
+
+/*
+ * Non blocking client for the Engine read endpoints
+ *
+ * Calls return a CompletableFuture so that a service can compose independent Engine calls in
+ * parallel rather than holding a request thread per call. In-flight requests are bounded per
+ * route (host:port), which in turn bounds the connections, and every call has an explicit
+ * timeout. Identical concurrent GETs share a single request. Each caller receives its own copy of
+ * the response as the services mutate the returned models.
+ */
+@Service
+public class AsyncEngineClient {
+
+  private static final Logger LOGGER = LogManager.getLogger(AsyncEngineClient.class);
+
+  @Value("${flow.engine.workflowrun.get.url}")
+  private String getWorkflowRunURL;
+
+  @Value("${flow.engine.workflow.get.url}")
+  private String getWorkflowURL;
+
+  @Value("${flow.engine.workflow.query.url}")
+  private String queryWorkflowURL;
+
+  @Value("${flow.engine.taskrun.get.url}")
+  private String getTaskRunURL;
+
+  @Value("${flow.engine.task.get.url}")
+  private String getTaskURL;
+
+  @Value("${flow.engine.client.connect.timeout:5000}")
+  private long connectTimeout;
+
+  @Value("${flow.engine.client.request.timeout:30000}")
+  private long requestTimeout;
+
+  @Value("${flow.engine.client.route.max:50}")
+  private int maxPerRoute;
+
+  private final ObjectMapper objectMapper;
+  private final Map<String, Route> routes = new ConcurrentHashMap<>();
+  private final Map<URI, CompletableFuture<byte[]>> inFlight = new ConcurrentHashMap<>();
+  private HttpClient httpClient;
+
+  public AsyncEngineClient(ObjectMapper objectMapper) {
+    this.objectMapper = objectMapper;
+  }
+
+  @PostConstruct
+  public void init() {
+    this.httpClient =
+        HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofMillis(connectTimeout))
+            .build();
+  }
+
+  @PreDestroy
+  public void destroy() {
+    httpClient.shutdownNow();
+  }
+
+  /*
+   * Wait for the result of an Engine call
+   *
+   * Failures are surfaced as the BoomerangException the EngineClient would have thrown.
+   */
+  public static <T> T join(CompletableFuture<T> future) {
+    try {
+      return future.join();
+    } catch (CompletionException | CancellationException ex) {
+      Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+      if (cause instanceof BoomerangException boomerangException) {
+        throw boomerangException;
+      }
+      throw error(cause);
+    }
+  }
+
+  /*
+   * ************************************** WorkflowRun endpoints
+   * **************************************
+   */
+  public CompletableFuture<WorkflowRun> getWorkflowRun(String workflowRunId, boolean withTasks) {
+    URI uri =
+        UriComponentsBuilder.fromUriString(getWorkflowRunURL)
+            .queryParam("withTasks", withTasks)
+            .buildAndExpand(Map.of("workflowRunId", workflowRunId))
+            .encode()
+            .toUri();
+    return get(uri, WorkflowRun.class);
+  }
+
+  /*
+   * ************************************** Workflow endpoints
+   * **************************************
+   */
+  public CompletableFuture<Workflow> getWorkflow(
+      String workflowId, Optional<Integer> version, boolean withTasks) {
+    UriComponentsBuilder urlBuilder = UriComponentsBuilder.fromUriString(getWorkflowURL);
+    if (version.isPresent()) {
+      urlBuilder.queryParam("version", version.get());
+    }
+    urlBuilder.queryParam("withTasks", withTasks);
+    URI uri = urlBuilder.buildAndExpand(Map.of("workflowId", workflowId)).encode().toUri();
+    return get(uri, Workflow.class);
+  }
+
+  public CompletableFuture<WorkflowResponsePage> queryWorkflows(
+      Optional<Integer> queryLimit,
+      Optional<Integer> queryPage,
+      Optional<Direction> querySort,
+      Optional<List<String>> queryLabels,
+      Optional<List<String>> queryStatus,
+      Optional<List<String>> queryWorkflows) {
+    UriComponentsBuilder urlBuilder = UriComponentsBuilder.fromUriString(queryWorkflowURL);
+    if (queryPage.isPresent()) {
+      urlBuilder.queryParam("page", Integer.toString(queryPage.get()));
+    }
+    if (queryLimit.isPresent()) {
+      urlBuilder.queryParam("limit", Integer.toString(queryLimit.get()));
+    }
+    if (querySort.isPresent()) {
+      urlBuilder.queryParam("sort", querySort.get());
+    }
+    if (queryLabels.isPresent()) {
+      urlBuilder.queryParam("labels", queryLabels.get());
+    }
+    if (queryStatus.isPresent()) {
+      urlBuilder.queryParam("status", queryStatus.get());
+    }
+    if (queryWorkflows.isPresent() && !queryWorkflows.get().isEmpty()) {
+      urlBuilder.queryParam("workflows", queryWorkflows.get());
+    }
+    return get(urlBuilder.build().encode().toUri(), WorkflowResponsePage.class);
+  }
+
+  /*
+   * ************************************** TaskRun endpoints **************************************
+   */
+  public CompletableFuture<TaskRun> getTaskRun(String taskRunId) {
+    URI uri =
+        UriComponentsBuilder.fromUriString(getTaskRunURL)
+            .buildAndExpand(Map.of("taskRunId", taskRunId))
+            .encode()
+            .toUri();
+    return get(uri, TaskRun.class);
+  }
+
+  /*
+   * ************************************** Task endpoints **************************************
+   */
+  public CompletableFuture<Task> getTask(String ref, Optional<Integer> version) {
+    UriComponentsBuilder urlBuilder = UriComponentsBuilder.fromUriString(getTaskURL);
+    if (version.isPresent()) {
+      urlBuilder.queryParam("version", version.get());
+    }
+    URI uri = urlBuilder.buildAndExpand(Map.of("ref", ref)).encode().toUri();
+    return get(uri, Task.class);
+  }
+
+  /*
+   * GET the URI, joining an identical request that is already in flight
+   */
+  private <T> CompletableFuture<T> get(URI uri, Class<T> type) {
+    CompletableFuture<byte[]> response =
+        inFlight.computeIfAbsent(
+            uri,
+            u ->
+                send(
+                    HttpRequest.newBuilder(u)
+                        .header(HttpHeaders.ACCEPT, MediaType.APPLICATION_JSON_VALUE)
+                        .timeout(Duration.ofMillis(requestTimeout))
+                        .GET()
+                        .build()));
+    response.whenComplete((body, ex) -> inFlight.remove(uri, response));
+    return response.thenApply(body -> read(uri, body, type));
+  }
+
+  private CompletableFuture<byte[]> send(HttpRequest request) {
+    LOGGER.debug("URL: {}", request.uri());
+    Route route =
+        routes.computeIfAbsent(request.uri().getAuthority(), authority -> new Route(maxPerRoute));
+    // Bounds the total time including any wait for the route
+    CompletableFuture<byte[]> result =
+        new CompletableFuture<byte[]>().orTimeout(requestTimeout, TimeUnit.MILLISECONDS);
+    route.submit(
+        () -> {
+          if (result.isDone()) {
+            route.release();
+            return;
+          }
+          CompletableFuture<HttpResponse<byte[]>> sent;
+          try {
+            sent = httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray());
+          } catch (RuntimeException ex) {
+            route.release();
+            result.completeExceptionally(ex);
+            return;
+          }
+          sent.whenComplete(
+              (response, ex) -> {
+                route.release();
+                if (ex != null) {
+                  result.completeExceptionally(ex);
+                } else if (response.statusCode() >= 300) {
+                  result.completeExceptionally(
+                      new RestClientResponseException(
+                          "Engine responded with " + response.statusCode(),
+                          response.statusCode(),
+                          "",
+                          null,
+                          response.body(),
+                          StandardCharsets.UTF_8));
+                } else {
+                  result.complete(response.body());
+                }
+              });
+        });
+    return result;
+  }
+
+  private <T> T read(URI uri, byte[] body, Class<T> type) {
+    try {
+      return objectMapper.readValue(body, type);
+    } catch (IOException ex) {
+      LOGGER.error("Unable to read the response from: {}", uri);
+      throw error(ex);
+    }
+  }
+
+  private static BoomerangException error(Throwable ex) {
+    LOGGER.error(ex.toString());
+    return new BoomerangException(
+        ex,
+        HttpStatus.INTERNAL_SERVER_ERROR.value(),
+        ex.getClass().getSimpleName(),
+        "Exception in communicating with internal services.",
+        HttpStatus.INTERNAL_SERVER_ERROR);
+  }
+
+  /*
+   * Admits at most max requests to a route at a time, queueing the rest in order
+   */
+  private static final class Route {
+    private final int max;
+    private final AtomicInteger active = new AtomicInteger();
+    private final Queue<Runnable> pending = new ConcurrentLinkedQueue<>();
+
+    Route(int max) {
+      this.max = max;
+    }
+
+    void submit(Runnable request) {
+      pending.add(request);
+      drain();
+    }
+
+    void release() {
+      active.decrementAndGet();
+      drain();
+    }
+
+    private void drain() {
+      while (!pending.isEmpty()) {
+        int current = active.get();
+        if (current >= max) {
+          return;
+        }
+        if (!active.compareAndSet(current, current + 1)) {
+          continue;
+        }
+        Runnable request = pending.poll();
+        if (request == null) {
+          active.decrementAndGet();
+          continue;
+        }
+        request.run();
+      }
+    }
+  }
+}
@@ -12,12 +12,14 @@ import io.boomerang.common.model.WorkflowRunInsight;
 import io.boomerang.common.model.WorkflowRunRequest;
 import io.boomerang.common.model.WorkflowSubmitRequest;
 import io.boomerang.common.model.WorkflowTemplate;
+import io.boomerang.common.util.LogStreamProxy;
 import io.boomerang.error.BoomerangException;
 import io.boomerang.workflow.model.WorkflowRunEventRequest;
-import java.io.InputStream;
-import java.io.OutputStream;
-import java.io.PrintWriter;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
 import java.net.URI;
+import java.net.http.HttpClient;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
@@ -38,11 +40,8 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RequestCallback;
-import org.springframework.web.client.ResponseExtractor;
 import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
-import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.util.UriComponentsBuilder;
 
 @Service
@@ -120,6 +119,9 @@ public class EngineClient {
   @Value("${flow.engine.taskrun.logstream.url}")
   private String logStreamTaskRunURL;
 
+  private final LogStreamProxy logStreamProxy =
+      new LogStreamProxy(HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build());
+
   @Value("${flow.engine.task.get.url}")
   public String getTaskURL;
 
@@ -857,45 +859,26 @@ public class EngineClient {
     }
   }
 
-  public StreamingResponseBody streamTaskRunLog(String taskRunId) {
+  /*
+   * Proxy the TaskRun log from the Engine, which has already masked the secrets. The response is
+   * completed asynchronously.
+   */
+  public void streamTaskRunLog(
+      String taskRunId, HttpServletRequest request, HttpServletResponse response) {
     String url = logStreamTaskRunURL.replace("{taskRunId}", taskRunId);
     LOGGER.info("URL: " + url);
-
-    return outputStream -> {
-      RequestCallback requestCallback =
-          request ->
-              request
-                  .getHeaders()
-                  .setAccept(Arrays.asList(MediaType.APPLICATION_OCTET_STREAM, MediaType.ALL));
-      PrintWriter printWriter = new PrintWriter(outputStream);
-      ResponseExtractor<Void> responseExtractor = getResponseExtractor(outputStream, printWriter);
-      LOGGER.info("Starting TaskRun[{}] log stream...", taskRunId);
-      try {
-        restTemplate.execute(url, HttpMethod.GET, requestCallback, responseExtractor);
-      } catch (Exception ex) {
-        LOGGER.error(ex.toString());
-        throw new BoomerangException(
-            ex,
-            HttpStatus.INTERNAL_SERVER_ERROR.value(),
-            ex.getClass().getSimpleName(),
-            "Exception in communicating with internal services.",
-            HttpStatus.INTERNAL_SERVER_ERROR);
-      }
-      LOGGER.info("Finished TaskRun[{}] log stream.", taskRunId);
-    };
-  }
-
-  private ResponseExtractor<Void> getResponseExtractor(
-      OutputStream outputStream, PrintWriter printWriter) {
-    return restTemplateResponse -> {
-      InputStream is = restTemplateResponse.getBody();
-      int nRead;
-      byte[] data = new byte[1024];
-      while ((nRead = is.read(data, 0, data.length)) != -1) {
-        outputStream.write(data, 0, nRead);
-      }
-      return null;
-    };
+    LOGGER.info("Starting TaskRun[{}] log stream...", taskRunId);
+    try {
+      logStreamProxy.proxy(URI.create(url), List.of(), request, response);
+    } catch (IOException | IllegalArgumentException ex) {
+      LOGGER.error(ex.toString());
+      throw new BoomerangException(
+          ex,
+          HttpStatus.INTERNAL_SERVER_ERROR.value(),
+          ex.getClass().getSimpleName(),
+          "Exception in communicating with internal services.",
+          HttpStatus.INTERNAL_SERVER_ERROR);
+    }
   }
 
   /*
@@ -2,20 +2,56 @@ package io.boomerang.core;
 
 import io.boomerang.core.entity.RelationshipEdgeEntity;
 import io.boomerang.core.entity.RelationshipNodeEntity;
+import io.boomerang.core.enums.RelationshipLabel;
+import io.boomerang.core.enums.RelationshipType;
 import io.boomerang.core.model.RelationshipGraphEdge;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.jgrapht.Graph;
 import org.jgrapht.graph.DefaultDirectedGraph;
 
+/*
+ * In memory graph of the Relationship nodes and edges
+ *
+ * - Node and edge deltas are applied incrementally under a write lock. Readers traverse the graph
+ * under a read lock, so a submission no longer rebuilds the graph and stalls permission checks.
+ * - Nodes are indexed by id, type and slug. Edges are indexed by id as change stream deletes only
+ * carry the id.
+ * - Applying a delta is idempotent, so the replica that made the change and the change stream can
+ * both apply it. Edges that arrive before their nodes are held until the nodes arrive.
+ * - Only long lived nodes are held in memory. Short lived nodes (COLD_TYPES), such as a
+ * WorkflowRun, and the edge from their owner stay in MongoDB. Otherwise the heap and build time
+ * would grow with every run.
+ */
 public class RelationshipGraph {
 
   private static final Logger LOGGER = LogManager.getLogger();
   private static RelationshipGraph instance;
+
+  // Node types that are not held in memory, mapped to the label of the edge from their owner
+  public static final Map<String, String> COLD_TYPES =
+      Map.of(RelationshipType.WORKFLOWRUN.getLabel(), RelationshipLabel.HAS_WORKFLOWRUN.getLabel());
+
+  private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
   private Graph<RelationshipNodeEntity, RelationshipGraphEdge> graph;
+  private final Map<String, RelationshipNodeEntity> nodesById = new HashMap<>();
+  private final Map<String, Set<RelationshipNodeEntity>> nodesByType = new HashMap<>();
+  private final Map<String, Set<RelationshipNodeEntity>> nodesBySlug = new HashMap<>();
+  private final Map<String, RelationshipGraphEdge> edgesById = new HashMap<>();
+  private final Map<String, RelationshipEdgeEntity> pendingEdges = new LinkedHashMap<>();
 
   private RelationshipGraph() {
     graph = new DefaultDirectedGraph<>(RelationshipGraphEdge.class);
@@ -28,36 +64,357 @@ public class RelationshipGraph {
     return instance;
   }
 
-  public synchronized Graph<RelationshipNodeEntity, RelationshipGraphEdge> getGraph() {
-    return graph;
+  /*
+   * Run the reader against a consistent view of the graph
+   */
+  public <T> T read(Supplier<T> reader) {
+    lock.readLock().lock();
+    try {
+      return reader.get();
+    } finally {
+      lock.readLock().unlock();
+    }
   }
 
-  public synchronized void buildGraph(
-      List<RelationshipNodeEntity> nodes, List<RelationshipEdgeEntity> edges) {
+  public void buildGraph(List<RelationshipNodeEntity> nodes, List<RelationshipEdgeEntity> edges) {
     LOGGER.debug("Building graph with {} nodes and {} edges", nodes.size(), edges.size());
-    graph = new DefaultDirectedGraph<>(RelationshipGraphEdge.class);
+    lock.writeLock().lock();
+    try {
+      clear();
+      nodes.forEach(this::addNode);
+      edges.forEach(this::addEdge);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
 
-    // Add nodes to the graph
-    Map<String, RelationshipNodeEntity> nodeMap =
-        nodes.stream().collect(Collectors.toMap(RelationshipNodeEntity::getId, node -> node));
-    nodeMap.values().forEach(graph::addVertex);
-
-    // Add edges to the graph
-    for (RelationshipEdgeEntity edge : edges) {
-      RelationshipNodeEntity fromNode = nodeMap.get(edge.getFrom());
-      RelationshipNodeEntity toNode = nodeMap.get(edge.getTo());
-      if (fromNode != null && toNode != null) {
-        graph.addEdge(
-            fromNode,
-            toNode,
-            new RelationshipGraphEdge(edge.getLabel(), edge.getData().get("role")));
+  public void invalidateCache() {
+    lock.writeLock().lock();
+    try {
+      clear();
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /*
+   * Add the node, or update the slug and data if it is already in the graph
+   */
+  public void putNode(RelationshipNodeEntity node) {
+    lock.writeLock().lock();
+    try {
+      RelationshipNodeEntity existing = nodesById.get(node.getId());
+      if (existing == null) {
+        addNode(node);
+        attachPendingEdges(node.getId());
       } else {
-        LOGGER.warn("Edge not added: {} -> {}", edge.getFrom(), edge.getTo());
+        unindexSlug(existing);
+        existing.setSlug(node.getSlug());
+        existing.setData(node.getData());
+        indexSlug(existing);
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /*
+   * Update the slug of the nodes of the type matching the ref or slug
+   */
+  public void updateSlug(String type, String refOrSlug, String slug) {
+    lock.writeLock().lock();
+    try {
+      for (RelationshipNodeEntity node : matchingNodes(type, refOrSlug)) {
+        unindexSlug(node);
+        node.setSlug(slug);
+        indexSlug(node);
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /*
+   * Remove the node and the edges linked to it
+   */
+  public void removeNode(String id) {
+    lock.writeLock().lock();
+    try {
+      RelationshipNodeEntity node = nodesById.remove(id);
+      pendingEdges.values().removeIf(e -> id.equals(e.getFrom()) || id.equals(e.getTo()));
+      if (node == null) {
+        return;
+      }
+      graph.edgesOf(node).forEach(e -> edgesById.remove(e.getId()));
+      graph.removeVertex(node);
+      Set<RelationshipNodeEntity> ofType = nodesByType.get(node.getType());
+      if (ofType != null) {
+        ofType.remove(node);
+      }
+      unindexSlug(node);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /*
+   * Add the edge, or replace it if the data has changed
+   */
+  public void putEdge(RelationshipEdgeEntity edge) {
+    lock.writeLock().lock();
+    try {
+      removeEdgeById(edge.getId());
+      addEdge(edge);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  public void removeEdge(String id) {
+    lock.writeLock().lock();
+    try {
+      removeEdgeById(id);
+      pendingEdges.remove(id);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /*
+   * Remove the edge between the two nodes
+   */
+  public void removeEdges(String fromId, String toId) {
+    lock.writeLock().lock();
+    try {
+      RelationshipNodeEntity from = nodesById.get(fromId);
+      RelationshipNodeEntity to = nodesById.get(toId);
+      if (from != null && to != null) {
+        RelationshipGraphEdge edge = graph.removeEdge(from, to);
+        if (edge != null && edge.getId() != null) {
+          edgesById.remove(edge.getId());
+        }
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /*
+   * Update the role on the edge between the two nodes
+   */
+  public void updateEdgeData(String fromId, String toId, Map<String, String> data) {
+    lock.writeLock().lock();
+    try {
+      RelationshipNodeEntity from = nodesById.get(fromId);
+      RelationshipNodeEntity to = nodesById.get(toId);
+      if (from == null || to == null) {
+        return;
+      }
+      RelationshipGraphEdge edge = graph.removeEdge(from, to);
+      if (edge != null) {
+        RelationshipGraphEdge updated =
+            new RelationshipGraphEdge(edge.getId(), edge.getLabel(), data.get("role"));
+        graph.addEdge(from, to, updated);
+        if (edge.getId() != null) {
+          edgesById.put(edge.getId(), updated);
+        }
       }
+    } finally {
+      lock.writeLock().unlock();
     }
   }
 
-  public synchronized void invalidateCache() {
+  /*
+   * Find the node of the type by ref, falling back to slug
+   */
+  public Optional<RelationshipNodeEntity> findNode(String type, String refOrSlug) {
+    return read(
+        () -> {
+          RelationshipNodeEntity node = nodesById.get(type + ":" + refOrSlug);
+          if (node != null && type.equals(node.getType())) {
+            return Optional.of(node);
+          }
+          return nodesBySlug.getOrDefault(type + ":" + refOrSlug, Set.of()).stream().findFirst();
+        });
+  }
+
+  /*
+   * All the nodes of the type with the ref or slug
+   */
+  public List<RelationshipNodeEntity> findNodes(String type, String refOrSlug) {
+    return read(() -> matchingNodes(type, refOrSlug));
+  }
+
+  public Collection<RelationshipNodeEntity> nodesOfType(String type) {
+    return read(() -> new ArrayList<>(nodesByType.getOrDefault(type, Set.of())));
+  }
+
+  /*
+   * Breadth first search from the root node. Returns each reachable node mapped to its
+   * predecessor on the shortest path, the root being mapped to itself.
+   */
+  public Map<RelationshipNodeEntity, RelationshipNodeEntity> reachableFrom(
+      RelationshipNodeEntity root) {
+    return read(() -> breadthFirst(root, false));
+  }
+
+  /*
+   * The nodes that can reach the target node, mapped to their successor on the shortest path
+   */
+  public Map<RelationshipNodeEntity, RelationshipNodeEntity> reachableTo(
+      RelationshipNodeEntity target) {
+    return read(() -> breadthFirst(target, true));
+  }
+
+  public Set<RelationshipGraphEdge> incomingEdgesOf(RelationshipNodeEntity node) {
+    return read(
+        () ->
+            graph.containsVertex(node)
+                ? new LinkedHashSet<>(graph.incomingEdgesOf(node))
+                : Set.of());
+  }
+
+  public RelationshipNodeEntity getEdgeSource(RelationshipGraphEdge edge) {
+    return read(() -> graph.getEdgeSource(edge));
+  }
+
+  public int nodeCount() {
+    return read(() -> graph.vertexSet().size());
+  }
+
+  public int edgeCount() {
+    return read(() -> graph.edgeSet().size());
+  }
+
+  public static boolean isInMemory(String type) {
+    return !COLD_TYPES.containsKey(type);
+  }
+
+  /*
+   * Node ids are in the form type:ref
+   */
+  private static boolean isInMemoryId(String id) {
+    int separator = id.indexOf(':');
+    return separator < 0 || isInMemory(id.substring(0, separator));
+  }
+
+  private Map<RelationshipNodeEntity, RelationshipNodeEntity> breadthFirst(
+      RelationshipNodeEntity start, boolean reversed) {
+    Map<RelationshipNodeEntity, RelationshipNodeEntity> visited = new LinkedHashMap<>();
+    if (!graph.containsVertex(start)) {
+      return visited;
+    }
+    Deque<RelationshipNodeEntity> queue = new ArrayDeque<>();
+    visited.put(start, start);
+    queue.add(start);
+    while (!queue.isEmpty()) {
+      RelationshipNodeEntity node = queue.poll();
+      Set<RelationshipGraphEdge> edges =
+          reversed ? graph.incomingEdgesOf(node) : graph.outgoingEdgesOf(node);
+      for (RelationshipGraphEdge edge : edges) {
+        RelationshipNodeEntity next =
+            reversed ? graph.getEdgeSource(edge) : graph.getEdgeTarget(edge);
+        if (visited.putIfAbsent(next, node) == null) {
+          queue.add(next);
+        }
+      }
+    }
+    return visited;
+  }
+
+  private void clear() {
     graph = new DefaultDirectedGraph<>(RelationshipGraphEdge.class);
+    nodesById.clear();
+    nodesByType.clear();
+    nodesBySlug.clear();
+    edgesById.clear();
+    pendingEdges.clear();
+  }
+
+  private void addNode(RelationshipNodeEntity node) {
+    if (!isInMemory(node.getType())) {
+      return;
+    }
+    nodesById.put(node.getId(), node);
+    graph.addVertex(node);
+    nodesByType.computeIfAbsent(node.getType(), k -> new LinkedHashSet<>()).add(node);
+    indexSlug(node);
+  }
+
+  private void addEdge(RelationshipEdgeEntity edge) {
+    if (COLD_TYPES.containsValue(edge.getLabel())
+        || !isInMemoryId(edge.getFrom())
+        || !isInMemoryId(edge.getTo())) {
+      return;
+    }
+    RelationshipNodeEntity fromNode = nodesById.get(edge.getFrom());
+    RelationshipNodeEntity toNode = nodesById.get(edge.getTo());
+    if (fromNode == null || toNode == null) {
+      LOGGER.debug("Edge pending nodes: {} -> {}", edge.getFrom(), edge.getTo());
+      if (edge.getId() != null) {
+        pendingEdges.put(edge.getId(), edge);
+      }
+      return;
+    }
+    RelationshipGraphEdge graphEdge =
+        new RelationshipGraphEdge(edge.getId(), edge.getLabel(), edge.getData().get("role"));
+    if (graph.addEdge(fromNode, toNode, graphEdge) && edge.getId() != null) {
+      edgesById.put(edge.getId(), graphEdge);
+    }
+  }
+
+  private void attachPendingEdges(String nodeId) {
+    if (pendingEdges.isEmpty()) {
+      return;
+    }
+    List<RelationshipEdgeEntity> ready =
+        pendingEdges.values().stream()
+            .filter(e -> nodeId.equals(e.getFrom()) || nodeId.equals(e.getTo()))
+            .filter(e -> nodesById.containsKey(e.getFrom()) && nodesById.containsKey(e.getTo()))
+            .toList();
+    for (RelationshipEdgeEntity edge : ready) {
+      pendingEdges.remove(edge.getId());
+      addEdge(edge);
+    }
+  }
+
+  private void removeEdgeById(String id) {
+    if (id == null) {
+      return;
+    }
+    RelationshipGraphEdge edge = edgesById.remove(id);
+    if (edge != null) {
+      graph.removeEdge(edge);
+    }
+  }
+
+  private List<RelationshipNodeEntity> matchingNodes(String type, String refOrSlug) {
+    Set<RelationshipNodeEntity> nodes = new LinkedHashSet<>();
+    RelationshipNodeEntity node = nodesById.get(type + ":" + refOrSlug);
+    if (node != null) {
+      nodes.add(node);
+    }
+    nodes.addAll(nodesBySlug.getOrDefault(type + ":" + refOrSlug, Set.of()));
+    return new ArrayList<>(nodes);
+  }
+
+  private void indexSlug(RelationshipNodeEntity node) {
+    if (node.getSlug() != null) {
+      nodesBySlug
+          .computeIfAbsent(node.getType() + ":" + node.getSlug(), k -> new LinkedHashSet<>())
+          .add(node);
+    }
+  }
+
+  private void unindexSlug(RelationshipNodeEntity node) {
+    if (node.getSlug() != null) {
+      Set<RelationshipNodeEntity> nodes = nodesBySlug.get(node.getType() + ":" + node.getSlug());
+      if (nodes != null) {
+        nodes.remove(node);
+        if (nodes.isEmpty()) {
+          nodesBySlug.remove(node.getType() + ":" + node.getSlug());
+        }
+      }
+    }
   }
 }
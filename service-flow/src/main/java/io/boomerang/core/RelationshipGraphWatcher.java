@@ -0,0 +1,162 @@
+package io.boomerang.core;
+
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.FullDocument;
+import io.boomerang.common.util.ChangeStreamWatcher;
+import io.boomerang.core.entity.RelationshipEdgeEntity;
+import io.boomerang.core.entity.RelationshipNodeEntity;
+import io.boomerang.core.repository.RelationshipEdgeRepository;
+import io.boomerang.core.repository.RelationshipNodeRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.util.List;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+/*
+ * Keeps the in memory RelationshipGraph in sync across flow replicas
+ *
+ * - The graph is loaded on start up. Each replica applies its own changes directly to the graph.
+ * - The rel_nodes and rel_edges change streams act as the bus for changes made by other replicas.
+ * Each event is applied as a delta, the graph is only fully reloaded when the stream (re)connects
+ * to cover any changes missed while it was disconnected.
+ * - Where change streams are not available, e.g. a standalone MongoDB, the graph is periodically
+ * reloaded instead.
+ */
+@Component
+public class RelationshipGraphWatcher {
+
+  @Value("${flow.relationship.changestream.enabled:true}")
+  private boolean changeStreamEnabled;
+
+  @Value("${flow.relationship.reload.interval:60000}")
+  private long reloadInterval;
+
+  private final RelationshipGraph graphCache = RelationshipGraph.getInstance();
+  private final MongoTemplate mongoTemplate;
+  private final RelationshipNodeRepository nodeRepository;
+  private final RelationshipEdgeRepository edgeRepository;
+
+  private ChangeStreamWatcher watcher;
+
+  public RelationshipGraphWatcher(
+      MongoTemplate mongoTemplate,
+      RelationshipNodeRepository nodeRepository,
+      RelationshipEdgeRepository edgeRepository) {
+    this.mongoTemplate = mongoTemplate;
+    this.nodeRepository = nodeRepository;
+    this.edgeRepository = edgeRepository;
+  }
+
+  @PostConstruct
+  public void init() {
+    reload();
+    final String nodesCollection = mongoTemplate.getCollectionName(RelationshipNodeEntity.class);
+    final String edgesCollection = mongoTemplate.getCollectionName(RelationshipEdgeEntity.class);
+    watcher =
+        new ChangeStreamWatcher(
+                "relationship-graph-watcher",
+                () ->
+                    mongoTemplate
+                        .getDb()
+                        .watch(
+                            List.of(
+                                Aggregates.match(
+                                    Filters.and(
+                                        Filters.in("ns.coll", nodesCollection, edgesCollection),
+                                        // Short lived nodes and their edges are not held in memory
+                                        Filters.nin(
+                                            "fullDocument.type",
+                                            RelationshipGraph.COLD_TYPES.keySet()),
+                                        Filters.nin(
+                                            "fullDocument.label",
+                                            RelationshipGraph.COLD_TYPES.values())))))
+                        .fullDocument(FullDocument.UPDATE_LOOKUP),
+                event -> {
+                  if (event.getNamespace() != null) {
+                    apply(event, nodesCollection.equals(event.getNamespace().getCollectionName()));
+                  }
+                })
+            .onReconnect(this::reload)
+            .fallback(this::reload, reloadInterval);
+    watcher.start(changeStreamEnabled);
+  }
+
+  @PreDestroy
+  public void destroy() {
+    if (watcher != null) {
+      watcher.stop();
+    }
+  }
+
+  public boolean isChangeStreamActive() {
+    return watcher != null && watcher.isActive();
+  }
+
+  /*
+   * Load the long lived nodes and their edges. Short lived nodes, i.e. WorkflowRuns, stay in
+   * MongoDB so the load does not grow with the run history.
+   */
+  public void reload() {
+    graphCache.buildGraph(
+        nodeRepository.findByTypeNotIn(RelationshipGraph.COLD_TYPES.keySet()),
+        edgeRepository.findByLabelNotIn(RelationshipGraph.COLD_TYPES.values()));
+  }
+
+  /*
+   * Apply a node or edge change made by any replica
+   */
+  private void apply(ChangeStreamDocument<Document> event, boolean isNode) {
+    switch (event.getOperationType()) {
+      case INSERT, REPLACE, UPDATE -> {
+        Document document = event.getFullDocument();
+        if (document == null) {
+          // Removed before the lookup. The delete event follows.
+          return;
+        }
+        if (isNode) {
+          graphCache.putNode(
+              mongoTemplate.getConverter().read(RelationshipNodeEntity.class, document));
+        } else {
+          graphCache.putEdge(
+              mongoTemplate.getConverter().read(RelationshipEdgeEntity.class, document));
+        }
+      }
+      case DELETE -> {
+        String id = idOf(event);
+        if (id == null) {
+          return;
+        }
+        if (isNode) {
+          graphCache.removeNode(id);
+        } else {
+          graphCache.removeEdge(id);
+        }
+      }
+      case DROP, RENAME, DROP_DATABASE, INVALIDATE -> reload();
+      default -> {
+        // Not relevant to the graph
+      }
+    }
+  }
+
+  private String idOf(ChangeStreamDocument<Document> event) {
+    if (event.getDocumentKey() == null) {
+      return null;
+    }
+    BsonValue id = event.getDocumentKey().get("_id");
+    if (id == null) {
+      return null;
+    } else if (id.isObjectId()) {
+      return id.asObjectId().getValue().toHexString();
+    } else if (id.isString()) {
+      return id.asString().getValue();
+    }
+    return null;
+  }
+}
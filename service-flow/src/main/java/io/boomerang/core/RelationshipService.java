@@ -4,7 +4,6 @@ import io.boomerang.core.entity.RelationshipEdgeEntity;
 import io.boomerang.core.entity.RelationshipNodeEntity;
 import io.boomerang.core.enums.RelationshipLabel;
 import io.boomerang.core.enums.RelationshipType;
-import io.boomerang.core.model.RelationshipGraphEdge;
 import io.boomerang.core.model.ResolvedPermissions;
 import io.boomerang.core.model.Token;
 import io.boomerang.core.repository.RelationshipEdgeRepository;
@@ -13,10 +12,9 @@ import io.boomerang.security.IdentityService;
 import io.boomerang.security.enums.AuthScope;
 import java.util.*;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.jgrapht.Graph;
-import org.jgrapht.alg.shortestpath.BFSShortestPath;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -30,8 +28,7 @@ public class RelationshipService {
   private final RelationshipEdgeRepository edgeRepository;
   private final IdentityService identityService;
 
-  // TODO make sure the graph should be initialised here or better on start of service.
-  // How many times does this service get created?
+  // The graph is loaded, and kept in sync across replicas, by the RelationshipGraphWatcher
   public RelationshipService(
       RelationshipNodeRepository nodeRepository,
       RelationshipEdgeRepository edgeRepository,
@@ -39,7 +36,6 @@ public class RelationshipService {
     this.nodeRepository = nodeRepository;
     this.edgeRepository = edgeRepository;
     this.identityService = identityService;
-    this.graphCache.buildGraph(nodeRepository.findAll(), edgeRepository.findAll());
   }
 
   /*
@@ -47,7 +43,10 @@ public class RelationshipService {
    */
   public RelationshipNodeEntity createNode(
       RelationshipType type, String ref, String slug, Optional<Map<String, String>> data) {
-    return nodeRepository.save(new RelationshipNodeEntity(type.getLabel(), ref, slug, data));
+    RelationshipNodeEntity node =
+        nodeRepository.save(new RelationshipNodeEntity(type.getLabel(), ref, slug, data));
+    this.graphCache.putNode(node);
+    return node;
   }
 
   /*
@@ -61,15 +60,15 @@ public class RelationshipService {
       RelationshipType toType,
       String to,
       Optional<Map<String, String>> data) {
-    RelationshipNodeEntity fromResult =
-        this.getNodeFromGraph(fromType, from, graphCache.getGraph());
-    RelationshipNodeEntity toResult = this.getNodeFromGraph(toType, to, graphCache.getGraph());
+    RelationshipNodeEntity fromResult = this.getNodeFromGraph(fromType, from);
+    RelationshipNodeEntity toResult = this.getNodeFromGraph(toType, to);
     if (Objects.isNull(fromResult) || Objects.isNull(toResult)) {
       throw new IllegalArgumentException("Node does not exist");
     }
-    edgeRepository.save(
-        new RelationshipEdgeEntity(fromResult.getId(), label, toResult.getId(), data));
-    this.graphCache.buildGraph(nodeRepository.findAll(), edgeRepository.findAll());
+    RelationshipEdgeEntity edge =
+        edgeRepository.save(
+            new RelationshipEdgeEntity(fromResult.getId(), label, toResult.getId(), data));
+    this.graphCache.putEdge(edge);
   }
 
   /*
@@ -101,15 +100,15 @@ public class RelationshipService {
       String toSlug,
       Optional<Map<String, String>> nodeData,
       Optional<Map<String, String>> edgeData) {
-    RelationshipNodeEntity fromResult =
-        this.getNodeFromGraph(fromType, from, graphCache.getGraph());
+    RelationshipNodeEntity fromResult = this.getNodeFromGraph(fromType, from);
     if (Objects.isNull(fromResult)) {
       throw new IllegalArgumentException("From node does not exist");
     }
     RelationshipNodeEntity toNode = this.createNode(toType, toRef, toSlug, nodeData);
-    edgeRepository.save(
-        new RelationshipEdgeEntity(fromResult.getId(), label, toNode.getId(), edgeData));
-    this.graphCache.buildGraph(nodeRepository.findAll(), edgeRepository.findAll());
+    RelationshipEdgeEntity edge =
+        edgeRepository.save(
+            new RelationshipEdgeEntity(fromResult.getId(), label, toNode.getId(), edgeData));
+    this.graphCache.putEdge(edge);
   }
 
   /*
@@ -123,13 +122,13 @@ public class RelationshipService {
       String to,
       Map<String, String> data)
       throws IllegalArgumentException {
-    RelationshipNodeEntity fromNode = this.getNodeFromGraph(fromType, from, graphCache.getGraph());
-    RelationshipNodeEntity toNode = this.getNodeFromGraph(toType, to, graphCache.getGraph());
+    RelationshipNodeEntity fromNode = this.getNodeFromGraph(fromType, from);
+    RelationshipNodeEntity toNode = this.getNodeFromGraph(toType, to);
     edgeRepository.updateDataByFromAndTo(
         fromNode.getType() + ":" + fromNode.getRef(),
         toNode.getType() + ":" + toNode.getRef(),
         data);
-    this.graphCache.buildGraph(nodeRepository.findAll(), edgeRepository.findAll());
+    this.graphCache.updateEdgeData(fromNode.getId(), toNode.getId(), data);
   }
 
   /*
@@ -152,11 +151,11 @@ public class RelationshipService {
   @Transactional
   public void removeEdge(RelationshipType fromType, String from, RelationshipType toType, String to)
       throws IllegalArgumentException {
-    RelationshipNodeEntity fromNode = this.getNodeFromGraph(fromType, from, graphCache.getGraph());
-    RelationshipNodeEntity toNode = this.getNodeFromGraph(toType, to, graphCache.getGraph());
+    RelationshipNodeEntity fromNode = this.getNodeFromGraph(fromType, from);
+    RelationshipNodeEntity toNode = this.getNodeFromGraph(toType, to);
     edgeRepository.deleteByFromAndTo(
         fromNode.getType() + ":" + fromNode.getRef(), toNode.getType() + ":" + toNode.getRef());
-    this.graphCache.buildGraph(nodeRepository.findAll(), edgeRepository.findAll());
+    this.graphCache.removeEdges(fromNode.getId(), toNode.getId());
   }
 
   /*
@@ -179,7 +178,7 @@ public class RelationshipService {
   public void removeNodeAndEdgeByRefOrSlug(RelationshipType type, String refOrSlug) {
     RelationshipNodeEntity node = nodeRepository.deleteByRefOrSlug(type.getLabel(), refOrSlug);
     edgeRepository.deleteByFromOrTo(node.getId());
-    this.graphCache.buildGraph(nodeRepository.findAll(), edgeRepository.findAll());
+    this.graphCache.removeNode(node.getId());
   }
 
   /*
@@ -189,7 +188,7 @@ public class RelationshipService {
   public void removeNodeAndEdgeByRef(RelationshipType type, String ref) {
     RelationshipNodeEntity node = nodeRepository.deleteByTypeAndRef(type.getLabel(), ref);
     edgeRepository.deleteByFromOrTo(node.getId());
-    this.graphCache.buildGraph(nodeRepository.findAll(), edgeRepository.findAll());
+    this.graphCache.removeNode(node.getId());
   }
 
   /*
@@ -198,7 +197,7 @@ public class RelationshipService {
   @Transactional
   public void updateNodeByRefOrSlug(RelationshipType type, String refOrSlug, String newSlug) {
     nodeRepository.updateSlugByTypeAndRefOrSlug(type.getLabel(), refOrSlug, newSlug);
-    this.graphCache.buildGraph(nodeRepository.findAll(), edgeRepository.findAll());
+    this.graphCache.updateSlug(type.getLabel(), refOrSlug, newSlug);
   }
 
   /*
@@ -207,7 +206,7 @@ public class RelationshipService {
   public boolean doesSlugOrRefExistForType(RelationshipType type, String refOrSlug) {
     LOGGER.debug("Checking {}:{} for existence", type.getLabel(), refOrSlug);
     try {
-      this.getNodeFromGraph(type, refOrSlug, graphCache.getGraph());
+      this.getNodeFromGraph(type, refOrSlug);
       return true;
     } catch (IllegalArgumentException e) {
       return false;
@@ -223,7 +222,7 @@ public class RelationshipService {
    */
   public String getSlugByRefForType(RelationshipType type, String refOrSlug) {
     LOGGER.debug("Retrieving ref for {}:{}", type.getLabel(), refOrSlug);
-    RelationshipNodeEntity node = this.getNodeFromGraph(type, refOrSlug, graphCache.getGraph());
+    RelationshipNodeEntity node = this.getNodeFromGraph(type, refOrSlug);
     if (Objects.isNull(node)) {
       throw new IllegalArgumentException("Node does not exist");
     }
@@ -429,18 +428,18 @@ public class RelationshipService {
    * Retrieve the Members and Roles for a Workspace
    */
   public Map<String, String> membersAndRoles(String space) {
-    Graph<RelationshipNodeEntity, RelationshipGraphEdge> graph = graphCache.getGraph();
-    RelationshipNodeEntity rootNode = getNodeFromGraph(RelationshipType.TEAM, space, graph);
-    // Find the user edges connected to the rootNode and return the role
-    BFSShortestPath<RelationshipNodeEntity, RelationshipGraphEdge> bfs =
-        new BFSShortestPath<>(graph);
-    return graph.edgeSet().stream()
-        .filter(edge -> bfs.getPath(graph.getEdgeTarget(edge), rootNode) != null)
-        .filter(edge -> graph.getEdgeSource(edge).getType().equals("user"))
-        .collect(
-            Collectors.toMap(
-                e -> graph.getEdgeSource(e).getRef(),
-                e -> e.getRole().isEmpty() ? "viewer" : e.getRole()));
+    return graphCache.read(
+        () -> {
+          RelationshipNodeEntity rootNode = getNodeFromGraph(RelationshipType.TEAM, space);
+          // Find the user edges into the nodes that are connected to the rootNode
+          return graphCache.reachableTo(rootNode).keySet().stream()
+              .flatMap(node -> graphCache.incomingEdgesOf(node).stream())
+              .filter(edge -> graphCache.getEdgeSource(edge).getType().equals("user"))
+              .collect(
+                  Collectors.toMap(
+                      e -> graphCache.getEdgeSource(e).getRef(),
+                      e -> e.getRole().isEmpty() ? "viewer" : e.getRole()));
+        });
   }
 
   /*
@@ -464,37 +463,25 @@ public class RelationshipService {
       Optional<List<String>> toList,
       Optional<RelationshipType> intermediateType,
       Optional<List<String>> intermediateList) {
-    Graph<RelationshipNodeEntity, RelationshipGraphEdge> graph = graphCache.getGraph();
-    BFSShortestPath<RelationshipNodeEntity, RelationshipGraphEdge> bfs =
-        new BFSShortestPath<>(graph);
     try {
-      RelationshipNodeEntity rootNode = getNodeFromGraph(fromType, from, graph);
-      LOGGER.debug("Root Node: {}", rootNode.toString());
       if (intermediateType.isPresent() && intermediateList.isPresent()) {
         LOGGER.debug(
             "Intermediate Type: {}, List: {}", intermediateType.get(), intermediateList.get());
       }
-      // Find the nodes connected to the rootNode
-      List<RelationshipNodeEntity> nodes =
-          graph.vertexSet().stream()
-              .filter(node -> node.getType().equals(toType.getLabel()))
-              .filter(node -> bfs.getPath(rootNode, node) != null)
-              .filter(
-                  node ->
-                      toList.isEmpty()
-                          || toList.get().contains(node.getRef())
-                          || toList.get().contains(node.getSlug()))
-              .filter(
-                  node ->
-                      intermediateType.isEmpty()
-                          || intermediateList.isEmpty()
-                          || bfs.getPath(rootNode, node).getVertexList().stream()
-                              .filter(n -> n.getType().equals(intermediateType.get().getLabel()))
-                              .anyMatch(
-                                  n ->
-                                      intermediateList.get().contains(n.getRef())
-                                          || intermediateList.get().contains(n.getSlug())))
-              .collect(Collectors.toList());
+      List<RelationshipNodeEntity> nodes;
+      if (RelationshipGraph.isInMemory(toType.getLabel())) {
+        nodes =
+            graphCache.read(
+                () ->
+                    connectedNodes(
+                            fromType, from, toType, toList, intermediateType, intermediateList)
+                        .collect(Collectors.toList()));
+      } else {
+        List<String> ids =
+            connectedColdNodeIds(
+                fromType, from, toType, toList, intermediateType, intermediateList);
+        nodes = ids.isEmpty() ? new ArrayList<>() : nodeRepository.findAllById(ids);
+      }
       LOGGER.debug("Found Node(s)[{}]: {}", nodes.size(), nodes.toString());
       return nodes;
     } catch (IllegalArgumentException e) {
@@ -510,33 +497,18 @@ public class RelationshipService {
       Optional<List<String>> toList,
       Optional<RelationshipType> intermediateType,
       Optional<List<String>> intermediateList) {
-    Graph<RelationshipNodeEntity, RelationshipGraphEdge> graph = graphCache.getGraph();
     try {
-      RelationshipNodeEntity rootNode = getNodeFromGraph(fromType, from, graph);
-      // Find the nodes connected to the rootNode
-      BFSShortestPath<RelationshipNodeEntity, RelationshipGraphEdge> bfs =
-          new BFSShortestPath<>(graph);
       boolean has =
-          graph.vertexSet().stream()
-              .filter(node -> node.getType().equals(toType.getLabel()))
-              .filter(node -> bfs.getPath(rootNode, node) != null)
-              .filter(
-                  node ->
-                      toList.isEmpty()
-                          || toList.get().contains(node.getRef())
-                          || toList.get().contains(node.getSlug()))
-              .filter(
-                  node ->
-                      intermediateType.isEmpty()
-                          || intermediateList.isEmpty()
-                          || bfs.getPath(rootNode, node).getVertexList().stream()
-                              .filter(n -> n.getType().equals(intermediateType.get().getLabel()))
-                              .anyMatch(
-                                  n ->
-                                      intermediateList.get().contains(n.getRef())
-                                          || intermediateList.get().contains(n.getSlug())))
-              .findAny()
-              .isPresent();
+          RelationshipGraph.isInMemory(toType.getLabel())
+              ? graphCache.read(
+                  () ->
+                      connectedNodes(
+                              fromType, from, toType, toList, intermediateType, intermediateList)
+                          .findAny()
+                          .isPresent())
+              : !connectedColdNodeIds(
+                      fromType, from, toType, toList, intermediateType, intermediateList)
+                  .isEmpty();
       LOGGER.debug("Has Node(s): {}", has);
       return has;
     } catch (IllegalArgumentException e) {
@@ -545,16 +517,105 @@ public class RelationshipService {
     }
   }
 
-  private RelationshipNodeEntity getNodeFromGraph(
-      RelationshipType type,
-      String refOrSlug,
-      Graph<RelationshipNodeEntity, RelationshipGraphEdge> graph) {
-    return graph.vertexSet().stream()
+  /*
+   * Find the nodes connected to the root node using a single breadth first search. The shortest
+   * path to each node is walked back through the predecessors for the intermediate filter.
+   *
+   * Must be called within graphCache.read() so that the traversal sees a consistent graph.
+   */
+  private Stream<RelationshipNodeEntity> connectedNodes(
+      RelationshipType fromType,
+      String from,
+      RelationshipType toType,
+      Optional<List<String>> toList,
+      Optional<RelationshipType> intermediateType,
+      Optional<List<String>> intermediateList) {
+    RelationshipNodeEntity rootNode = getNodeFromGraph(fromType, from);
+    LOGGER.debug("Root Node: {}", rootNode.toString());
+    Map<RelationshipNodeEntity, RelationshipNodeEntity> reachable =
+        graphCache.reachableFrom(rootNode);
+    Stream<RelationshipNodeEntity> candidates =
+        toList.isPresent()
+            ? toList.get().stream()
+                .flatMap(r -> graphCache.findNodes(toType.getLabel(), r).stream())
+                .distinct()
+            : graphCache.nodesOfType(toType.getLabel()).stream();
+    return candidates
+        .filter(reachable::containsKey)
+        .filter(node -> isThrough(reachable, node, intermediateType, intermediateList));
+  }
+
+  /*
+   * Short lived nodes are not in the graph. The edges from their owners are looked up using the
+   * rel_edges indexes and the owners are checked against the graph instead.
+   *
+   * The search runs under the read lock but the lookup does not, so a slow query does not hold up
+   * writers.
+   */
+  private List<String> connectedColdNodeIds(
+      RelationshipType fromType,
+      String from,
+      RelationshipType toType,
+      Optional<List<String>> toList,
+      Optional<RelationshipType> intermediateType,
+      Optional<List<String>> intermediateList) {
+    Map<RelationshipNodeEntity, RelationshipNodeEntity> reachable =
+        graphCache.read(() -> graphCache.reachableFrom(getNodeFromGraph(fromType, from)));
+    Map<String, RelationshipNodeEntity> reachableById =
+        reachable.keySet().stream()
+            .collect(Collectors.toMap(RelationshipNodeEntity::getId, n -> n, (a, b) -> a));
+    String ownerLabel = RelationshipGraph.COLD_TYPES.get(toType.getLabel());
+    List<RelationshipEdgeEntity> edges =
+        toList.isPresent()
+            ? edgeRepository.findByToIn(
+                toList.get().stream().map(r -> toType.getLabel() + ":" + r).toList())
+            : edgeRepository.findByFromInAndLabel(reachableById.keySet(), ownerLabel);
+    return edges.stream()
+        .filter(e -> ownerLabel.equals(e.getLabel()))
+        .filter(e -> reachableById.containsKey(e.getFrom()))
         .filter(
-            node ->
-                node.getType().equals(type.getLabel()) && (node.getRef().equals(refOrSlug))
-                    || node.getSlug().equals(refOrSlug))
-        .findFirst()
+            e ->
+                isThrough(
+                    reachable, reachableById.get(e.getFrom()), intermediateType, intermediateList))
+        .map(RelationshipEdgeEntity::getTo)
+        .distinct()
+        .toList();
+  }
+
+  /*
+   * Whether the shortest path to the node passes through one of the intermediate nodes
+   */
+  private static boolean isThrough(
+      Map<RelationshipNodeEntity, RelationshipNodeEntity> reachable,
+      RelationshipNodeEntity node,
+      Optional<RelationshipType> intermediateType,
+      Optional<List<String>> intermediateList) {
+    return intermediateType.isEmpty()
+        || intermediateList.isEmpty()
+        || pathTo(reachable, node).stream()
+            .filter(n -> n.getType().equals(intermediateType.get().getLabel()))
+            .anyMatch(
+                n ->
+                    intermediateList.get().contains(n.getRef())
+                        || intermediateList.get().contains(n.getSlug()));
+  }
+
+  private static List<RelationshipNodeEntity> pathTo(
+      Map<RelationshipNodeEntity, RelationshipNodeEntity> predecessors,
+      RelationshipNodeEntity node) {
+    List<RelationshipNodeEntity> path = new ArrayList<>();
+    RelationshipNodeEntity current = node;
+    path.add(current);
+    while (predecessors.get(current) != current) {
+      current = predecessors.get(current);
+      path.add(current);
+    }
+    return path;
+  }
+
+  private RelationshipNodeEntity getNodeFromGraph(RelationshipType type, String refOrSlug) {
+    return graphCache
+        .findNode(type.getLabel(), refOrSlug)
         .orElseThrow(() -> new IllegalArgumentException("Node not found"));
   }
 }
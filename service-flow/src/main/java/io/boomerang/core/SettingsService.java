@@ -9,9 +9,13 @@ import io.boomerang.core.repository.SettingsRepository;
 import io.boomerang.workflow.model.AESAlgorithm;
 import io.boomerang.workflow.model.SettingConfig;
 import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
@@ -33,6 +37,13 @@ public class SettingsService {
   private final SettingsRepository settingsRepository;
   private final EncryptionConfig encryptConfig;
 
+  /*
+   * Settings by key and then config key. Loaded on first use and refreshed by the SettingsWatcher
+   * so that reading configuration does not need a database read.
+   */
+  private final Object snapshotLock = new Object();
+  private volatile Map<String, Map<String, CachedConfig>> snapshot;
+
   public SettingsService(SettingsRepository settingsRepository, EncryptionConfig encryptConfig) {
     this.settingsRepository = settingsRepository;
     this.encryptConfig = encryptConfig;
@@ -93,17 +104,60 @@ public class SettingsService {
   }
 
   public SettingConfig getSettingConfig(String key, String name) {
-    final SettingEntity settings = this.settingsRepository.findOneByKey(key);
-    final List<SettingConfig> configList = settings.getConfig();
-    final Optional<SettingConfig> result =
-        configList.stream().parallel().filter(x -> name.equals(x.getKey())).findFirst();
+    while (true) {
+      final Map<String, CachedConfig> configs = snapshot().get(key);
+      final CachedConfig cached = configs != null ? configs.get(name) : null;
+      if (cached == null) {
+        throw new IllegalArgumentException("Unable to find configuration object: " + name);
+      }
+      final SettingConfig config = cached.copy();
+      if (config != null) {
+        return config;
+      }
+      // Replaced by a refresh while being read
+    }
+  }
 
-    if (result.isPresent() && SECURED_TYPE.equalsIgnoreCase(result.get().getType())) {
-      result.get().setValue(decrypt(result.get().getValue()));
+  /*
+   * Reload the snapshot. Secured values are decrypted once here and the previous snapshot's
+   * values are zeroed.
+   */
+  public void refresh() {
+    final Map<String, Map<String, CachedConfig>> loaded = new HashMap<>();
+    for (final SettingEntity entity : settingsRepository.findAll()) {
+      final Map<String, CachedConfig> configs = new HashMap<>();
+      if (entity.getConfig() != null) {
+        for (final SettingConfig config : entity.getConfig()) {
+          final String value =
+              SECURED_TYPE.equalsIgnoreCase(config.getType()) && config.getValue() != null
+                  ? decrypt(config.getValue())
+                  : config.getValue();
+          configs.putIfAbsent(config.getKey(), new CachedConfig(config, value));
+        }
+      }
+      loaded.putIfAbsent(entity.getKey(), configs);
     }
+    final Map<String, Map<String, CachedConfig>> previous;
+    synchronized (snapshotLock) {
+      previous = snapshot;
+      snapshot = loaded;
+    }
+    if (previous != null) {
+      previous.values().forEach(configs -> configs.values().forEach(CachedConfig::clear));
+    }
+  }
 
-    return result.orElseThrow(
-        () -> new IllegalArgumentException("Unable to find configuration object: " + name));
+  private Map<String, Map<String, CachedConfig>> snapshot() {
+    Map<String, Map<String, CachedConfig>> current = snapshot;
+    if (current == null) {
+      synchronized (snapshotLock) {
+        if (snapshot == null) {
+          refresh();
+        }
+        current = snapshot;
+      }
+    }
+    return current;
   }
 
   public SettingEntity getSettingById(String id) {
@@ -130,6 +184,7 @@ public class SettingsService {
     setEncryptedValues(configuration);
 
     this.settingsRepository.save(configuration);
+    refresh();
   }
 
   private void setEncryptedValues(SettingEntity configuration) {
@@ -167,4 +222,44 @@ public class SettingsService {
     return AESAlgorithm.decrypt(
         replacedValue, encryptConfig.getSecretKey(), encryptConfig.getSalt());
   }
+
+  /*
+   * A setting config with its value held as characters so that it can be zeroed once replaced.
+   * Callers are given a copy so the snapshot cannot be changed through them.
+   */
+  private static final class CachedConfig {
+    private final SettingConfig config = new SettingConfig();
+    private char[] value;
+    private boolean cleared = false;
+
+    CachedConfig(SettingConfig source, String value) {
+      BeanUtils.copyProperties(source, config);
+      config.setValue(null);
+      if (source.getOptions() != null) {
+        config.setOptions(new LinkedList<>(source.getOptions()));
+      }
+      this.value = value != null ? value.toCharArray() : null;
+    }
+
+    synchronized SettingConfig copy() {
+      if (cleared) {
+        return null;
+      }
+      final SettingConfig response = new SettingConfig();
+      BeanUtils.copyProperties(config, response);
+      if (config.getOptions() != null) {
+        response.setOptions(new LinkedList<>(config.getOptions()));
+      }
+      response.setValue(value != null ? new String(value) : null);
+      return response;
+    }
+
+    synchronized void clear() {
+      cleared = true;
+      if (value != null) {
+        Arrays.fill(value, '\0');
+      }
+      value = null;
+    }
+  }
 }
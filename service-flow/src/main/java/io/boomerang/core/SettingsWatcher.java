@@ -0,0 +1,56 @@
+package io.boomerang.core;
+
+import io.boomerang.common.util.ChangeStreamWatcher;
+import io.boomerang.core.entity.SettingEntity;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+/*
+ * Refreshes the SettingsService snapshot when the settings are changed, including by another
+ * replica or the loader.
+ *
+ * Where change streams are not available the snapshot is periodically refreshed instead.
+ */
+@Component
+public class SettingsWatcher {
+
+  @Value("${flow.settings.changestream.enabled:true}")
+  private boolean changeStreamEnabled;
+
+  @Value("${flow.settings.reload.interval:60000}")
+  private long reloadInterval;
+
+  private final MongoTemplate mongoTemplate;
+  private final SettingsService settingsService;
+
+  private ChangeStreamWatcher watcher;
+
+  public SettingsWatcher(MongoTemplate mongoTemplate, SettingsService settingsService) {
+    this.mongoTemplate = mongoTemplate;
+    this.settingsService = settingsService;
+  }
+
+  @PostConstruct
+  public void init() {
+    final String collection = mongoTemplate.getCollectionName(SettingEntity.class);
+    watcher =
+        new ChangeStreamWatcher(
+                "settings-watcher",
+                () -> mongoTemplate.getCollection(collection).watch(),
+                // Settings are few and small so any change reloads them all
+                event -> settingsService.refresh())
+            .onReconnect(settingsService::refresh)
+            .fallback(settingsService::refresh, reloadInterval);
+    watcher.start(changeStreamEnabled);
+  }
+
+  @PreDestroy
+  public void destroy() {
+    if (watcher != null) {
+      watcher.stop();
+    }
+  }
+}
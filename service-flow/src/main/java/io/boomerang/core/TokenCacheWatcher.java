@@ -0,0 +1,69 @@
+package io.boomerang.core;
+
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import io.boomerang.common.util.ChangeStreamWatcher;
+import io.boomerang.core.entity.TokenEntity;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.util.List;
+import org.bson.BsonValue;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+/*
+ * Evicts tokens from the TokenService cache when they are changed or deleted by another replica
+ *
+ * Where change streams are not available the cached tokens are only evicted when the cache entry
+ * expires (flow.token.cache.expire-after).
+ */
+@Component
+public class TokenCacheWatcher {
+
+  @Value("${flow.token.changestream.enabled:true}")
+  private boolean changeStreamEnabled;
+
+  private final MongoTemplate mongoTemplate;
+  private final TokenService tokenService;
+
+  private ChangeStreamWatcher watcher;
+
+  public TokenCacheWatcher(MongoTemplate mongoTemplate, TokenService tokenService) {
+    this.mongoTemplate = mongoTemplate;
+    this.tokenService = tokenService;
+  }
+
+  @PostConstruct
+  public void init() {
+    final String collection = mongoTemplate.getCollectionName(TokenEntity.class);
+    watcher =
+        new ChangeStreamWatcher(
+                "token-cache-watcher",
+                () ->
+                    mongoTemplate
+                        .getCollection(collection)
+                        .watch(
+                            List.of(
+                                Aggregates.match(
+                                    Filters.in("operationType", "delete", "update", "replace")))),
+                event -> {
+                  BsonValue id =
+                      event.getDocumentKey() != null ? event.getDocumentKey().get("_id") : null;
+                  if (id != null && id.isObjectId()) {
+                    tokenService.evict(id.asObjectId().getValue().toHexString());
+                  } else if (id != null && id.isString()) {
+                    tokenService.evict(id.asString().getValue());
+                  }
+                })
+            .onReconnect(tokenService::evictAll);
+    watcher.start(changeStreamEnabled);
+  }
+
+  @PreDestroy
+  public void destroy() {
+    if (watcher != null) {
+      watcher.stop();
+    }
+  }
+}
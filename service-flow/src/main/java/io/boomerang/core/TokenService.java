@@ -1,5 +1,8 @@
 package io.boomerang.core;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.boomerang.common.entity.ActionEntity;
 import io.boomerang.core.entity.TokenEntity;
 import io.boomerang.core.entity.UserEntity;
@@ -13,20 +16,25 @@ import io.boomerang.core.repository.RoleRepository;
 import io.boomerang.core.repository.TokenRepository;
 import io.boomerang.error.BoomerangError;
 import io.boomerang.error.BoomerangException;
+import io.boomerang.security.PermissionMatcher;
 import io.boomerang.security.enums.AuthScope;
 import io.boomerang.security.enums.PermissionResource;
+import jakarta.annotation.PostConstruct;
 import java.io.UnsupportedEncodingException;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.function.Function;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -39,6 +47,8 @@ import org.springframework.data.domain.Sort;
 import org.springframework.data.domain.Sort.Direction;
 import org.springframework.data.domain.Sort.Order;
 import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.PartialIndexFilter;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.data.support.PageableExecutionUtils;
@@ -57,6 +67,31 @@ public class TokenService {
   @Value("${flow.token.max-user-session-duration}")
   private Integer MAX_SESSION_TOKEN_DURATION;
 
+  @Value("${flow.token.cache.max-size:10000}")
+  private long cacheMaxSize;
+
+  @Value("${flow.token.cache.expire-after:300}")
+  private long cacheExpireAfter;
+
+  /*
+   * Resolved tokens keyed by the token hash. Entries expire after the cache duration or when the
+   * token expires, whichever is first. Misses are not cached so unknown tokens cannot evict valid
+   * ones.
+   */
+  private Cache<String, Token> tokenCache;
+
+  @Value("${flow.token.session.reuse.idle:300}")
+  private long sessionReuseIdle;
+
+  /*
+   * Basic auth session tokens reused per user email, so that a session token is not minted on every
+   * request. A session is only reused while the user exists with the same type, and is ended when
+   * the user's team memberships or roles change.
+   */
+  private Cache<String, Session> sessionTokens;
+
+  private record Session(Token token, UserType userType) {}
+
   private final TokenRepository tokenRepository;
   private final UserService userService;
   private final RoleRepository roleRepository;
@@ -76,6 +111,68 @@ public class TokenService {
     this.mongoTemplate = mongoTemplate;
   }
 
+  @PostConstruct
+  public void init() {
+    tokenCache =
+        Caffeine.newBuilder()
+            .maximumSize(cacheMaxSize)
+            .expireAfter(tokenExpiry(Duration.ofSeconds(cacheExpireAfter), false, t -> t))
+            .build();
+    sessionTokens =
+        Caffeine.newBuilder()
+            .maximumSize(cacheMaxSize)
+            .expireAfter(
+                tokenExpiry(Duration.ofSeconds(sessionReuseIdle), true, Session::token))
+            .build();
+    try {
+      // Expired session tokens are removed in bulk by the TTL monitor
+      mongoTemplate
+          .indexOps(TokenEntity.class)
+          .ensureIndex(
+              new Index()
+                  .on("expirationDate", Sort.Direction.ASC)
+                  .named("session_expiry_ttl_idx")
+                  .expire(0)
+                  .partial(
+                      PartialIndexFilter.of(
+                          Criteria.where("type").is(AuthScope.session.name()))));
+    } catch (Exception e) {
+      LOGGER.warn("Unable to create session token TTL index: {}", e.getMessage());
+    }
+  }
+
+  /*
+   * Entries expire after the duration or when the token expires, whichever is first. Sliding
+   * entries restart the duration each time they are read.
+   */
+  private static <V> Expiry<String, V> tokenExpiry(
+      Duration duration, boolean sliding, Function<V, Token> tokenOf) {
+    final long maxNanos = duration.toNanos();
+    return new Expiry<String, V>() {
+      @Override
+      public long expireAfterCreate(String key, V value, long currentTime) {
+        Token token = tokenOf.apply(value);
+        if (token.getExpirationDate() == null) {
+          return maxNanos;
+        }
+        long untilExpiry =
+            Duration.ofMillis(token.getExpirationDate().getTime() - System.currentTimeMillis())
+                .toNanos();
+        return Math.max(0, Math.min(maxNanos, untilExpiry));
+      }
+
+      @Override
+      public long expireAfterUpdate(String key, V value, long currentTime, long currentDuration) {
+        return expireAfterCreate(key, value, currentTime);
+      }
+
+      @Override
+      public long expireAfterRead(String key, V value, long currentTime, long currentDuration) {
+        return sliding ? expireAfterCreate(key, value, currentTime) : currentDuration;
+      }
+    };
+  }
+
   /*
    * Creates an Access Token
    *
@@ -198,16 +295,10 @@ public class TokenService {
   }
 
   public boolean validate(String token) {
-    LOGGER.debug("Token Validation - token: " + token);
-    String hash = hashString(token);
-    LOGGER.debug("Token Validation - hash: " + hash);
-    Optional<TokenEntity> tokenEntityOptional = this.tokenRepository.findByToken(hash);
-    if (tokenEntityOptional.isPresent()) {
-      TokenEntity tokenEntity = tokenEntityOptional.get();
-      if (isValid(tokenEntity.getExpirationDate())) {
-        LOGGER.debug("Token Validation - valid");
-        return true;
-      }
+    Token resolved = this.get(token);
+    if (resolved != null && resolved.isValid()) {
+      LOGGER.debug("Token Validation - valid");
+      return true;
     }
     LOGGER.debug("Token Validation - not valid");
     return false;
@@ -218,6 +309,7 @@ public class TokenService {
     if (tokenEntityOptional.isPresent()) {
       TokenEntity tokenEntity = tokenEntityOptional.get();
       this.tokenRepository.delete(tokenEntity);
+      tokenCache.invalidate(tokenEntity.getToken());
       return true;
     }
     return false;
@@ -225,6 +317,34 @@ public class TokenService {
 
   public void deleteAllForPrincipal(String principal) {
     this.tokenRepository.deleteAllByPrincipal(principal);
+    tokenCache.asMap().values().removeIf(t -> principal.equals(t.getPrincipal()));
+    sessionTokens.asMap().values().removeIf(s -> principal.equals(s.token().getPrincipal()));
+  }
+
+  /*
+   * End the user's sessions so that their permissions are resolved again on the next request. The
+   * session tokens are deleted so that the other replicas evict them too.
+   */
+  public void endSessions(String principal) {
+    this.tokenRepository.deleteAllByPrincipalAndType(principal, AuthScope.session);
+    tokenCache
+        .asMap()
+        .values()
+        .removeIf(t -> principal.equals(t.getPrincipal()) && AuthScope.session.equals(t.getType()));
+    sessionTokens.asMap().values().removeIf(s -> principal.equals(s.token().getPrincipal()));
+  }
+
+  /*
+   * Evict the token from the cache. Used when a token is changed or deleted on another replica.
+   */
+  public void evict(String id) {
+    tokenCache.asMap().values().removeIf(t -> id.equals(t.getId()));
+    sessionTokens.asMap().values().removeIf(s -> id.equals(s.token().getId()));
+  }
+
+  public void evictAll() {
+    tokenCache.invalidateAll();
+    sessionTokens.invalidateAll();
   }
 
   public Page<Token> query(
@@ -292,17 +412,38 @@ public class TokenService {
     return pages;
   }
 
+  /*
+   * Retrieve the Token. Validity is derived from the expiration date on each call.
+   */
   public Token get(String token) {
     String hash = hashString(token);
-    Optional<TokenEntity> tokenEntityOptional = this.tokenRepository.findByToken(hash);
-    if (tokenEntityOptional.isPresent()) {
-      TokenEntity tokenEntity = tokenEntityOptional.get();
-      Token response = new Token();
-      response.setValid(isValid(tokenEntity.getExpirationDate()));
-      BeanUtils.copyProperties(tokenEntity, response);
-      return response;
+    Token cached =
+        tokenCache.get(
+            hash,
+            h -> {
+              Optional<TokenEntity> tokenEntityOptional = this.tokenRepository.findByToken(h);
+              if (tokenEntityOptional.isPresent()) {
+                Token resolved = new Token();
+                BeanUtils.copyProperties(tokenEntityOptional.get(), resolved);
+                return resolved;
+              }
+              return null;
+            });
+    return cached != null ? copyOf(cached) : null;
+  }
+
+  /*
+   * The cached Token is shared across requests
+   */
+  private Token copyOf(Token cached) {
+    if (cached.getPermissionMatcher() == null) {
+      cached.setPermissionMatcher(PermissionMatcher.compile(cached.getPermissions()));
     }
-    return null;
+    Token response = new Token();
+    BeanUtils.copyProperties(cached, response);
+    response.setPermissions(new LinkedList<>(cached.getPermissions()));
+    response.setValid(isValid(cached.getExpirationDate()));
+    return response;
   }
 
   /*
@@ -317,6 +458,44 @@ public class TokenService {
     return false;
   }
 
+  /*
+   * Reuses the still valid session token for the user, otherwise creates one. Used by the
+   * AuthenticationFilter so that Basic authenticated requests do not write a token per request.
+   *
+   * The user is looked up on reuse, so a deleted user, or one whose type has changed, is not given
+   * the cached session.
+   */
+  public Token getOrCreateSessionToken(
+      String email,
+      String firstName,
+      String lastName,
+      boolean allowActivation,
+      boolean allowUserCreation) {
+    if (email == null || email.isBlank()) {
+      return createSessionToken(email, firstName, lastName, allowActivation, allowUserCreation);
+    }
+    Session session =
+        sessionTokens
+            .asMap()
+            .compute(
+                email,
+                (e, current) -> {
+                  if (current != null && isCurrent(current)) {
+                    return current;
+                  }
+                  UserEntity user =
+                      registerSessionUser(
+                          e, firstName, lastName, allowActivation, allowUserCreation);
+                  return new Session(createSessionToken(user), user.getType());
+                });
+    return copyOf(session.token());
+  }
+
+  private boolean isCurrent(Session session) {
+    Optional<User> user = userService.getUserByID(session.token().getPrincipal());
+    return user.isPresent() && Objects.equals(session.userType(), user.get().getType());
+  }
+
   /*
    * Creates a token expiring in MAX SESSION TIME. Used by the AuthenticationFilter when accessed by
    * non Access Token
@@ -332,6 +511,19 @@ public class TokenService {
       String lastName,
       boolean allowActivation,
       boolean allowUserCreation) {
+    return createSessionToken(
+        registerSessionUser(email, firstName, lastName, allowActivation, allowUserCreation));
+  }
+
+  /*
+   * Retrieves, or registers, the user the session is for
+   */
+  private UserEntity registerSessionUser(
+      String email,
+      String firstName,
+      String lastName,
+      boolean allowActivation,
+      boolean allowUserCreation) {
     Optional<UserEntity> user = Optional.empty();
     String name = String.format("%s %s", sanitise(firstName), sanitise(lastName));
     if (allowActivation && !userService.isActivated()) {
@@ -365,6 +557,10 @@ public class TokenService {
     if (!user.isPresent()) {
       throw new HttpClientErrorException(HttpStatus.FORBIDDEN);
     }
+    return user.get();
+  }
+
+  private Token createSessionToken(UserEntity user) {
     Date expiryDate = getExpirationDate();
 
     TokenEntity tokenEntity = new TokenEntity();
@@ -372,10 +568,9 @@ public class TokenService {
     tokenEntity.setDescription("Generated User Session Token");
     tokenEntity.setType(AuthScope.session);
     tokenEntity.setExpirationDate(expiryDate);
-    tokenEntity.setPrincipal(user.get().getId());
+    tokenEntity.setPrincipal(user.getId());
     List<String> permissions = new LinkedList<>();
-    if (UserType.admin.equals(user.get().getType())
-        || UserType.operator.equals(user.get().getType())) {
+    if (UserType.admin.equals(user.getType()) || UserType.operator.equals(user.getType())) {
       tokenEntity
           .getPermissions()
           .add(
@@ -383,11 +578,11 @@ public class TokenService {
                   AuthScope.global,
                   "**",
                   roleRepository
-                      .findByTypeAndName("global", user.get().getType().toString())
+                      .findByTypeAndName("global", user.getType().toString())
                       .getPermissions()));
     } else {
       // Collect all team permissions the user has
-      Map<String, String> teamsAndRoles = relationshipService.roles(user.get().getId());
+      Map<String, String> teamsAndRoles = relationshipService.roles(user.getId());
       for (Map.Entry<String, String> entry : teamsAndRoles.entrySet()) {
         tokenEntity
             .getPermissions()
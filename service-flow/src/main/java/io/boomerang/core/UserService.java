@@ -29,6 +29,7 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -61,6 +62,7 @@ public class UserService {
   private final RoleRepository roleRepository;
   private final RelationshipService relationshipService;
   private final MongoTemplate mongoTemplate;
+  private final TokenService tokenService;
 
   UserService(
       MongoTemplate mongoTemplate,
@@ -69,7 +71,8 @@ public class UserService {
       TeamRepository teamRepository,
       RoleRepository roleRepository,
       RelationshipService relationshipService,
-      UserRepository userRepository) {
+      UserRepository userRepository,
+      @Lazy TokenService tokenService) {
     this.userRepository = userRepository;
     this.identityService = identityService;
     this.extUserService = extUserService;
@@ -77,6 +80,7 @@ public class UserService {
     this.roleRepository = roleRepository;
     this.relationshipService = relationshipService;
     this.mongoTemplate = mongoTemplate;
+    this.tokenService = tokenService;
   }
 
   /*
@@ -446,6 +450,7 @@ public class UserService {
     if (user.isPresent()) {
       userRepository.deleteById(userId);
       relationshipService.removeNodeAndEdgeByRefOrSlug(RelationshipType.USER, userId);
+      tokenService.deleteAllForPrincipal(userId);
     }
   }
 
@@ -33,6 +33,7 @@ public class AuditEntity {
   private Date creationDate = new Date();
   private List<AuditEvent> events = new LinkedList<>();
   private Map<String, String> data = new HashMap<>();
+  private Boolean rollup; // Included in the insight rollups
 
   public AuditEntity() {
     // TODO Auto-generated constructor stub
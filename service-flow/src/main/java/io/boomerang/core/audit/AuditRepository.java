@@ -1,5 +1,6 @@
 package io.boomerang.core.audit;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -16,5 +17,7 @@ public interface AuditRepository extends MongoRepository<AuditEntity, String> {
   Optional<AuditEntity> findFirstByWorkflowDuplicateOf(String duplicateOf);
   
   List<AuditEntity> findByScopeAndParent(AuditScope scope, String parent);
+
+  List<AuditEntity> findByScopeAndSelfRefIn(AuditScope scope, Collection<String> selfRefs);
 }
 
@@ -0,0 +1,28 @@
+package io.boomerang.core.audit;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/*
+ * Hourly or daily rollup of the WorkflowRun Audits for a Team or Workflow
+ *
+ * Written by the Engine as it audits WorkflowRuns. Refer to InsightRollupUtil.
+ */
+@Data
+@Document(collection = "#{@mongoConfiguration.fullCollectionName('audit_rollups')}")
+public class AuditRollupEntity {
+  @Id private String id;
+  private String scope;
+  private String ref;
+  private String granularity;
+  private Date bucket;
+  private long count = 0;
+  private long running = 0;
+  private long duration = 0;
+  private Map<String, Long> statuses = new HashMap<>();
+  private Map<String, Long> sketch = new HashMap<>();
+}
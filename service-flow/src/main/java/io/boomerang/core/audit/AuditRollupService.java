@@ -0,0 +1,157 @@
+package io.boomerang.core.audit;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+import io.boomerang.common.util.InsightRollupUtil;
+import io.boomerang.config.MongoConfiguration;
+import jakarta.annotation.PostConstruct;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Stream;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jobrunr.jobs.annotations.Job;
+import org.jobrunr.scheduling.JobScheduler;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+/*
+ * Reads the hourly and daily WorkflowRun insight rollups maintained by the Engine
+ *
+ * WorkflowRun Audits from before the rollups existed are included once by the backfill job. Each
+ * Audit is claimed with the rollup flag so it is never counted twice.
+ */
+@Service
+public class AuditRollupService {
+
+  private static final Logger LOGGER = LogManager.getLogger();
+
+  private final MongoTemplate mongoTemplate;
+  private final MongoConfiguration mongoConfiguration;
+  private final JobScheduler jobScheduler;
+
+  public AuditRollupService(
+      MongoTemplate mongoTemplate,
+      MongoConfiguration mongoConfiguration,
+      JobScheduler jobScheduler) {
+    this.mongoTemplate = mongoTemplate;
+    this.mongoConfiguration = mongoConfiguration;
+    this.jobScheduler = jobScheduler;
+  }
+
+  @PostConstruct
+  public void init() {
+    try {
+      mongoTemplate
+          .indexOps(AuditRollupEntity.class)
+          .ensureIndex(
+              new Index()
+                  .on("scope", Sort.Direction.ASC)
+                  .on("ref", Sort.Direction.ASC)
+                  .on("granularity", Sort.Direction.ASC)
+                  .on("bucket", Sort.Direction.ASC)
+                  .named("rollup_range_idx"));
+      if (mongoTemplate.exists(pending(), AuditEntity.class)) {
+        jobScheduler.enqueue(() -> this.backfill());
+      }
+    } catch (Exception e) {
+      LOGGER.error("Unable to initialise the insight rollups. Error: {}", e.getMessage());
+    }
+  }
+
+  /*
+   * Retrieve the rollups covering [from, to) for the refs in the scope
+   *
+   * Whole days are read from the daily rollups and the partial days at either end from the hourly
+   * rollups, so the number of rollups read is bounded regardless of the length of the range. The
+   * range is widened to whole hours.
+   */
+  public List<AuditRollupEntity> find(String scope, List<String> refs, Date from, Date to) {
+    Instant start = InsightRollupUtil.bucketOf(InsightRollupUtil.HOUR, from.toInstant());
+    Instant end = InsightRollupUtil.bucketOf(InsightRollupUtil.HOUR, to.toInstant());
+    if (end.isBefore(to.toInstant())) {
+      end = end.plus(1, ChronoUnit.HOURS);
+    }
+    if (!start.isBefore(end) || refs.isEmpty()) {
+      return List.of();
+    }
+    Instant startDay = InsightRollupUtil.bucketOf(InsightRollupUtil.DAY, start);
+    if (startDay.isBefore(start)) {
+      startDay = startDay.plus(1, ChronoUnit.DAYS);
+    }
+    Instant endDay = InsightRollupUtil.bucketOf(InsightRollupUtil.DAY, end);
+
+    List<Criteria> ranges = new ArrayList<>();
+    if (startDay.isBefore(endDay)) {
+      ranges.add(range(InsightRollupUtil.DAY, startDay, endDay));
+      ranges.add(range(InsightRollupUtil.HOUR, start, startDay));
+      ranges.add(range(InsightRollupUtil.HOUR, endDay, end));
+    } else {
+      ranges.add(range(InsightRollupUtil.HOUR, start, end));
+    }
+    Criteria criteria =
+        where("scope")
+            .is(scope)
+            .and("ref")
+            .in(refs)
+            .orOperator(ranges.toArray(new Criteria[ranges.size()]));
+    return mongoTemplate.find(query(criteria), AuditRollupEntity.class);
+  }
+
+  /*
+   * Include the WorkflowRun Audits that predate the rollups
+   */
+  @Job(name = "Insight Rollup Backfill")
+  public void backfill() {
+    final String collection = mongoConfiguration.fullCollectionName(InsightRollupUtil.COLLECTION);
+    long included = 0;
+    try (Stream<AuditEntity> audits = mongoTemplate.stream(pending(), AuditEntity.class)) {
+      for (AuditEntity audit : (Iterable<AuditEntity>) audits::iterator) {
+        // Claimed atomically against the Engine's updates. The data as claimed is included here and
+        // any later update is applied by the Engine.
+        AuditEntity claimed =
+            mongoTemplate.findAndModify(
+                query(where("_id").is(audit.getId()).and(InsightRollupUtil.ROLLUP_KEY).ne(true)),
+                new Update().set(InsightRollupUtil.ROLLUP_KEY, true),
+                FindAndModifyOptions.options().returnNew(true),
+                AuditEntity.class);
+        if (claimed == null) {
+          continue;
+        }
+        InsightRollupUtil.apply(
+            mongoTemplate,
+            collection,
+            claimed.getParent(),
+            claimed.getData().get("workflowRef"),
+            claimed.getCreationDate(),
+            null,
+            claimed.getData());
+        included++;
+      }
+    }
+    LOGGER.info("Included {} WorkflowRun audits in the insight rollups.", included);
+  }
+
+  private Query pending() {
+    return query(
+        where("scope").is(AuditScope.WORKFLOWRUN).and(InsightRollupUtil.ROLLUP_KEY).ne(true));
+  }
+
+  private Criteria range(String granularity, Instant from, Instant to) {
+    return where("granularity")
+        .is(granularity)
+        .and("bucket")
+        .gte(Date.from(from))
+        .lt(Date.from(to));
+  }
+}
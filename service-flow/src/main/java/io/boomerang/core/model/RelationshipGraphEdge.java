@@ -8,6 +8,7 @@ import org.jgrapht.graph.DefaultEdge;
  * <p>DO NOT use the Lombok Data annotation
  */
 public class RelationshipGraphEdge extends DefaultEdge {
+  private String id;
   private String label;
   private String role;
 
@@ -17,6 +18,15 @@ public class RelationshipGraphEdge extends DefaultEdge {
     this.role = role;
   }
 
+  public RelationshipGraphEdge(String id, String label, String role) {
+    this(label, role);
+    this.id = id;
+  }
+
+  public String getId() {
+    return id;
+  }
+
   public String getLabel() {
     return label;
   }
@@ -29,7 +39,10 @@ public class RelationshipGraphEdge extends DefaultEdge {
   public String toString() {
     return super.toString()
         + "GraphEdge{"
-        + "label='"
+        + "id='"
+        + id
+        + '\''
+        + ", label='"
         + label
         + '\''
         + ", role='"
@@ -1,6 +1,8 @@
 package io.boomerang.core.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import io.boomerang.core.entity.TokenEntity;
+import io.boomerang.security.PermissionMatcher;
 import io.boomerang.security.enums.AuthScope;
 import java.util.Date;
 import java.util.LinkedList;
@@ -21,6 +23,8 @@ public class Token {
   private boolean valid;
   private String principal;
   private List<ResolvedPermissions> permissions = new LinkedList<>();
+  // Compiled once per resolved token and shared by its copies
+  @JsonIgnore private PermissionMatcher permissionMatcher;
 
   public Token() {}
 
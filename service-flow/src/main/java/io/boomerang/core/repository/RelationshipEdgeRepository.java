@@ -1,5 +1,6 @@
 package io.boomerang.core.repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
@@ -15,6 +16,12 @@ public interface RelationshipEdgeRepository
 
   List<RelationshipEdgeEntity> findByToAndLabel(String to, String label);
 
+  List<RelationshipEdgeEntity> findByToIn(Collection<String> to);
+
+  List<RelationshipEdgeEntity> findByFromInAndLabel(Collection<String> from, String label);
+
+  List<RelationshipEdgeEntity> findByLabelNotIn(Collection<String> labels);
+
   @Query(value = "{'$or': [{'from': ?0},{to: ?0}]}", delete = true)
   void deleteByFromOrTo(String fromOrTo);
 
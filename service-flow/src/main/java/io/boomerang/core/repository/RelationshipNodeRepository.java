@@ -1,6 +1,8 @@
 package io.boomerang.core.repository;
 
 import io.boomerang.core.entity.RelationshipNodeEntity;
+import java.util.Collection;
+import java.util.List;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.data.mongodb.repository.Query;
 import org.springframework.data.mongodb.repository.Update;
@@ -15,6 +17,8 @@ public interface RelationshipNodeRepository
 
   boolean existsById(String id);
 
+  List<RelationshipNodeEntity> findByTypeNotIn(Collection<String> types);
+
   @Query("{'type': ?0, '$or': [{'slug': ?1},{'ref': ?1}]}")
   @Update("{ '$set' : { 'slug' : ?2 } }")
   long updateSlugByTypeAndRefOrSlug(String type, String refOrSlug, String newSlug);
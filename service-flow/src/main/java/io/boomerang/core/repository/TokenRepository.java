@@ -12,4 +12,6 @@ public interface TokenRepository extends MongoRepository<TokenEntity, String> {
   Optional<List<TokenEntity>> findByPrincipalAndType(String principal, AuthScope type);
 
   void deleteAllByPrincipal(String principal);
+
+  void deleteAllByPrincipalAndType(String principal, AuthScope type);
 }
@@ -200,7 +200,8 @@ public class AuthenticationFilter extends OncePerRequestFilter {
 
       if (email != null && !email.isBlank()) {
         final Token sessionToken =
-            tokenService.createSessionToken(email, null, null, allowActivation, allowUserCreation);
+            tokenService.getOrCreateSessionToken(
+                email, null, null, allowActivation, allowUserCreation);
         final List<GrantedAuthority> authorities = new ArrayList<>();
         final UsernamePasswordAuthenticationToken authToken =
             new UsernamePasswordAuthenticationToken(email, password, authorities);
@@ -221,15 +222,14 @@ public class AuthenticationFilter extends OncePerRequestFilter {
     if (accessToken.startsWith("Bearer ")) {
       accessToken = accessToken.replace("Bearer ", "");
     }
-    if (tokenService.validate(accessToken)) {
-      Token token = tokenService.get(accessToken);
-      if (token != null) {
-        final List<GrantedAuthority> authorities = new ArrayList<>();
-        final UsernamePasswordAuthenticationToken authToken =
-            new UsernamePasswordAuthenticationToken(token.getPrincipal(), null, authorities);
-        authToken.setDetails(token);
-        return authToken;
-      }
+    // A single (cached) lookup resolves and validates the token
+    Token token = tokenService.get(accessToken);
+    if (token != null && token.isValid()) {
+      final List<GrantedAuthority> authorities = new ArrayList<>();
+      final UsernamePasswordAuthenticationToken authToken =
+          new UsernamePasswordAuthenticationToken(token.getPrincipal(), null, authorities);
+      authToken.setDetails(token);
+      return authToken;
     }
     return null;
   }
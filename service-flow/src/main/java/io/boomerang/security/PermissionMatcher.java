@@ -0,0 +1,81 @@
+package io.boomerang.security;
+
+import io.boomerang.core.model.ResolvedPermissions;
+import io.boomerang.security.enums.PermissionAction;
+import io.boomerang.security.enums.PermissionResource;
+import java.util.List;
+
+/*
+ * Precompiled form of a Token's permissions
+ *
+ * Each permission action is of the form resource/action where either side can be the ** wildcard.
+ * The actions are expanded once into a resource x action grid so that a permission check is a
+ * single lookup rather than a regex match per action. Actions that do not parse are ignored as they
+ * could never have matched.
+ */
+public final class PermissionMatcher {
+
+  private static final String WILDCARD = "**";
+
+  private static final PermissionResource[] RESOURCES = PermissionResource.values();
+  private static final PermissionAction[] ACTIONS = PermissionAction.values();
+
+  private final boolean[][] granted = new boolean[RESOURCES.length][ACTIONS.length];
+
+  private PermissionMatcher() {}
+
+  public static PermissionMatcher compile(List<ResolvedPermissions> permissions) {
+    PermissionMatcher matcher = new PermissionMatcher();
+    if (permissions == null) {
+      return matcher;
+    }
+    for (ResolvedPermissions permission : permissions) {
+      if (permission == null || permission.getActions() == null) {
+        continue;
+      }
+      for (String action : permission.getActions()) {
+        matcher.grant(action);
+      }
+    }
+    return matcher;
+  }
+
+  public boolean matches(PermissionResource resource, PermissionAction action) {
+    return granted[resource.ordinal()][action.ordinal()];
+  }
+
+  private void grant(String permission) {
+    if (permission == null) {
+      return;
+    }
+    String[] spread = permission.split("/", -1);
+    if (spread.length != 2) {
+      return;
+    }
+    PermissionResource resource =
+        WILDCARD.equals(spread[0]) ? null : PermissionResource.valueOfLabel(spread[0]);
+    PermissionAction action = WILDCARD.equals(spread[1]) ? null : actionOfLabel(spread[1]);
+    if ((resource == null && !WILDCARD.equals(spread[0]))
+        || (action == null && !WILDCARD.equals(spread[1]))) {
+      return;
+    }
+    for (PermissionResource r : RESOURCES) {
+      if (resource != null && r != resource) {
+        continue;
+      }
+      for (PermissionAction a : ACTIONS) {
+        if (action == null || a == action) {
+          granted[r.ordinal()][a.ordinal()] = true;
+        }
+      }
+    }
+  }
+
+  /*
+   * PermissionAction.valueOfLabel is case insensitive whereas permissions are matched exactly
+   */
+  private static PermissionAction actionOfLabel(String label) {
+    PermissionAction action = PermissionAction.valueOfLabel(label);
+    return action != null && action.getLabel().equals(label) ? action : null;
+  }
+}
@@ -69,14 +69,16 @@ public class SecurityInterceptor implements HandlerInterceptor {
       // TOOD check the assignedScope
       PermissionResource requiredScope = authCriteria.resource();
       PermissionAction requiredAccess = authCriteria.action();
-      String requiredRegex =
-          "(\\*{2}|" + requiredScope.getLabel() + ")\\/(\\*{2}|" + requiredAccess.getLabel() + ")";
-      LOGGER.info(
+      LOGGER.debug(
           "SecurityInterceptor - Permission needed: {}, Provided: {}",
           requiredScope.getLabel() + "/" + requiredAccess.getLabel(),
-          accessToken.getPermissions().toString());
-      if (!accessToken.getPermissions().stream()
-          .anyMatch(p -> (p.getActions().stream().anyMatch(a -> (a.matches(requiredRegex)))))) {
+          accessToken.getPermissions());
+      PermissionMatcher matcher = accessToken.getPermissionMatcher();
+      if (matcher == null) {
+        // Token was not resolved through the TokenService cache
+        matcher = PermissionMatcher.compile(accessToken.getPermissions());
+      }
+      if (!matcher.matches(requiredScope, requiredAccess)) {
         LOGGER.error("SecurityInterceptor - Unauthorized Permission.");
         // TODO set this to return false
         //      response.getWriter().write("");
@@ -1,5 +1,6 @@
 package io.boomerang.workflow;
 
+import io.boomerang.client.AsyncEngineClient;
 import io.boomerang.client.EngineClient;
 import io.boomerang.common.entity.ActionEntity;
 import io.boomerang.common.enums.ActionStatus;
@@ -27,6 +28,7 @@ import java.util.Date;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.springframework.data.domain.Page;
@@ -45,6 +47,7 @@ public class ActionService {
   private final ActionRepository actionRepository;
   private final ApproverGroupRepository approverGroupRepository;
   private final EngineClient engineClient;
+  private final AsyncEngineClient asyncEngineClient;
   private final RelationshipService relationshipService;
   private final UserService userService;
   private final MongoTemplate mongoTemplate;
@@ -53,12 +56,14 @@ public class ActionService {
       ActionRepository actionRepository,
       ApproverGroupRepository approverGroupRepository,
       EngineClient engineClient,
+      AsyncEngineClient asyncEngineClient,
       RelationshipService relationshipService,
       UserService userService,
       MongoTemplate mongoTemplate) {
     this.actionRepository = actionRepository;
     this.approverGroupRepository = approverGroupRepository;
     this.engineClient = engineClient;
+    this.asyncEngineClient = asyncEngineClient;
     this.relationshipService = relationshipService;
     this.userService = userService;
     this.mongoTemplate = mongoTemplate;
@@ -154,6 +159,20 @@ public class ActionService {
   }
 
   private Action convertToAction(ActionEntity actionEntity) {
+    return convertToAction(
+        actionEntity,
+        asyncEngineClient.getWorkflow(actionEntity.getWorkflowRef(), Optional.empty(), false),
+        asyncEngineClient.getTaskRun(actionEntity.getTaskRunRef()));
+  }
+
+  /*
+   * The Workflow and TaskRun are requested from the Engine by the caller so that they can be
+   * retrieved in parallel
+   */
+  private Action convertToAction(
+      ActionEntity actionEntity,
+      CompletableFuture<Workflow> workflowFuture,
+      CompletableFuture<TaskRun> taskRunFuture) {
     Action action = new Action(actionEntity);
 
     action.setApprovalsRequired(actionEntity.getNumberOfApprovers());
@@ -172,11 +191,10 @@ public class ActionService {
       action.setActioners(actionEntity.getActioners());
     }
 
-    Workflow workflow =
-        engineClient.getWorkflow(actionEntity.getWorkflowRef(), Optional.empty(), false);
+    Workflow workflow = AsyncEngineClient.join(workflowFuture);
     action.setWorkflowName(workflow.getName());
     try {
-      TaskRun taskRun = engineClient.getTaskRun(actionEntity.getTaskRunRef());
+      TaskRun taskRun = AsyncEngineClient.join(taskRunFuture);
       action.setTaskName(taskRun.getName());
     } catch (BoomerangException e) {
       LOGGER.error(
@@ -222,12 +240,21 @@ public class ActionService {
     List<ActionEntity> actionEntities =
         mongoTemplate.find(query.with(pageable), ActionEntity.class);
 
-    List<Action> actions = new LinkedList<>();
+    // Request the Workflows and TaskRuns for the whole page before waiting on any of them
+    List<CompletableFuture<Workflow>> workflows = new ArrayList<>();
+    List<CompletableFuture<TaskRun>> taskRuns = new ArrayList<>();
     actionEntities.forEach(
         a -> {
-          actions.add(this.convertToAction(a));
+          workflows.add(
+              asyncEngineClient.getWorkflow(a.getWorkflowRef(), Optional.empty(), false));
+          taskRuns.add(asyncEngineClient.getTaskRun(a.getTaskRunRef()));
         });
 
+    List<Action> actions = new LinkedList<>();
+    for (int i = 0; i < actionEntities.size(); i++) {
+      actions.add(this.convertToAction(actionEntities.get(i), workflows.get(i), taskRuns.get(i)));
+    }
+
     Page<Action> pages =
         PageableExecutionUtils.getPage(
             actions, pageable, () -> mongoTemplate.count(query, ActionEntity.class));
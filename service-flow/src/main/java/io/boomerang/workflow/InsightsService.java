@@ -1,18 +1,22 @@
 package io.boomerang.workflow;
 
-import io.boomerang.common.enums.RunPhase;
 import io.boomerang.common.enums.RunStatus;
 import io.boomerang.common.model.WorkflowRunInsight;
 import io.boomerang.common.model.WorkflowRunSummary;
+import io.boomerang.common.util.InsightRollupUtil;
 import io.boomerang.core.RelationshipService;
 import io.boomerang.core.audit.AuditEntity;
 import io.boomerang.core.audit.AuditRepository;
+import io.boomerang.core.audit.AuditRollupEntity;
+import io.boomerang.core.audit.AuditRollupService;
 import io.boomerang.core.audit.AuditScope;
 import io.boomerang.core.enums.RelationshipType;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -29,29 +33,105 @@ public class InsightsService {
   private final RelationshipService relationshipService;
   private final AuditRepository auditRepository;
   private final MongoTemplate mongoTemplate;
+  private final AuditRollupService auditRollupService;
 
   public InsightsService(
       RelationshipService relationshipService,
       AuditRepository auditRepository,
-      MongoTemplate mongoTemplate) {
+      MongoTemplate mongoTemplate,
+      AuditRollupService auditRollupService) {
     this.relationshipService = relationshipService;
     this.auditRepository = auditRepository;
     this.mongoTemplate = mongoTemplate;
+    this.auditRollupService = auditRollupService;
   }
 
   /*
    * Retrieves information on WorkflowRuns via the Audit Service
    *
-   * This ensures it includes deleted Objects, and Insights could be expanded to Workflows
+   * This ensures it includes deleted Objects, and Insights could be expanded to Workflows. The
+   * totals are summed from the hourly and daily rollups so the number of reads is bounded by the
+   * number of days in the range. The individual runs are only retrieved if requested.
    */
   public WorkflowRunInsight get(
       String team,
       Date from,
       Date to,
       Optional<List<String>> workflowRefs,
-      Optional<List<String>> statuses) {
+      Optional<List<String>> statuses,
+      boolean includeRuns) {
     WorkflowRunInsight insight = new WorkflowRunInsight();
 
+    List<String> wfRefs = List.of();
+    List<AuditRollupEntity> rollups = List.of();
+    if (workflowRefs.isEmpty()) {
+      Optional<AuditEntity> teamAE =
+          auditRepository.findFirstByScopeAndSelfName(AuditScope.TEAM, team);
+      if (teamAE.isPresent()) {
+        rollups =
+            auditRollupService.find(
+                InsightRollupUtil.SCOPE_TEAM, List.of(teamAE.get().getId()), from, to);
+        if (includeRuns) {
+          wfRefs = getWorkflowRefs(team, workflowRefs);
+        }
+      }
+    } else {
+      wfRefs = getWorkflowRefs(team, workflowRefs);
+      rollups = auditRollupService.find(InsightRollupUtil.SCOPE_WORKFLOW, wfRefs, from, to);
+    }
+    LOGGER.debug("Workflow Refs: {}, Rollups: {}", wfRefs, rollups.size());
+
+    // Collect the Stats
+    long totalRuns = 0L;
+    long concurrentRuns = 0L;
+    long totalDuration = 0L;
+    Map<Integer, Long> sketch = new HashMap<>();
+    for (AuditRollupEntity rollup : rollups) {
+      totalRuns += rollup.getCount();
+      concurrentRuns += rollup.getRunning();
+      totalDuration += rollup.getDuration();
+      rollup.getSketch().forEach((k, v) -> sketch.merge(Integer.valueOf(k), v, Long::sum));
+    }
+    insight.setTotalRuns(totalRuns);
+    insight.setConcurrentRuns(concurrentRuns);
+    insight.setTotalDuration(totalDuration);
+    insight.setMedianDuration(InsightRollupUtil.quantile(sketch, 0.5));
+    insight.setP90Duration(InsightRollupUtil.quantile(sketch, 0.9));
+    insight.setP99Duration(InsightRollupUtil.quantile(sketch, 0.99));
+
+    if (includeRuns && !wfRefs.isEmpty()) {
+      List<AuditEntity> entities = getWorkflowRunAudits(wfRefs, from, to);
+
+      // Retrieve the Workflow names in one query
+      Map<String, String> workflowNames = new HashMap<>();
+      auditRepository
+          .findByScopeAndSelfRefIn(
+              AuditScope.WORKFLOW,
+              entities.stream().map(e -> e.getData().get("workflowRef")).distinct().toList())
+          .forEach(
+              wfAE -> workflowNames.putIfAbsent(wfAE.getSelfRef(), wfAE.getData().get("name")));
+
+      List<WorkflowRunSummary> summaries = new LinkedList<>();
+      entities.forEach(
+          e -> {
+            WorkflowRunSummary summary = new WorkflowRunSummary();
+            summary.setCreationDate(e.getCreationDate());
+            summary.setDuration(Long.valueOf(e.getData().get("duration")));
+            summary.setStatus(RunStatus.getRunStatus(e.getData().get("status")));
+            summary.setWorkflowRef(e.getData().get("workflowRef"));
+            summary.setWorkflowName(workflowNames.get(e.getData().get("workflowRef")));
+            summaries.add(summary);
+          });
+      insight.setRuns(summaries);
+    }
+    return insight;
+  }
+
+  /*
+   * Retrieves the refs of the Team's Workflows, including deleted Workflows via the Audit when
+   * no WorkflowRefs are provided
+   */
+  public List<String> getWorkflowRefs(String team, Optional<List<String>> workflowRefs) {
     // Check the queryWorkflows
     List<String> wfRefs = new ArrayList<>();
 
@@ -75,67 +155,32 @@ public class InsightsService {
               Optional.of(List.of(team)),
               false);
     }
-    LOGGER.debug("Workflow Refs: {}", wfRefs.toString());
-    if (!wfRefs.isEmpty()) {
-      List<Criteria> criteriaList = new ArrayList<>();
-      Criteria scopeCriteria = Criteria.where("scope").is("WORKFLOWRUN");
-      criteriaList.add(scopeCriteria);
-
-      Criteria dateCriteria = Criteria.where("creationDate").gte(from).lt(to);
-      criteriaList.add(dateCriteria);
-
-      Criteria wfCriteria = Criteria.where("data.workflowRef").in(wfRefs);
-      criteriaList.add(wfCriteria);
-
-      Criteria[] criteriaArray = criteriaList.toArray(new Criteria[criteriaList.size()]);
-      Criteria allCriteria = new Criteria();
-      if (criteriaArray.length > 0) {
-        allCriteria.andOperator(criteriaArray);
-      }
-      Query query = new Query(allCriteria);
-      LOGGER.debug("Query: " + query.toString());
-      List<AuditEntity> entities = mongoTemplate.find(query, AuditEntity.class);
-      LOGGER.debug("Entities: {}", entities.toString());
-
-      // The following logic mirrors the Engine WorkflowRun Insight logic but is based on
-      // AuditEntities for WorkfowRun Scope.
-      // This ensures we include deleted Workflows and WorkflowRuns in our insights.
-
-      // Collect the Stats
-      Long totalDuration = 0L;
-      Long duration;
-      for (AuditEntity entity : entities) {
-        duration = Long.valueOf(entity.getData().get("duration"));
-        if (duration != null) {
-          totalDuration += duration;
-        }
-      }
-      insight.setTotalRuns(Long.valueOf(entities.size()));
-      insight.setConcurrentRuns(
-          entities.stream()
-              .filter(ae -> RunPhase.running.getPhase().equals(ae.getData().get("phase")))
-              .count());
-      insight.setTotalDuration(totalDuration);
-      insight.setMedianDuration(entities.size() != 0 ? totalDuration / entities.size() : 0L);
+    return wfRefs;
+  }
 
-      List<WorkflowRunSummary> summaries = new LinkedList<>();
-      entities.forEach(
-          e -> {
-            WorkflowRunSummary summary = new WorkflowRunSummary();
-            summary.setCreationDate(e.getCreationDate());
-            summary.setDuration(Long.valueOf(e.getData().get("duration")));
-            summary.setStatus(RunStatus.getRunStatus(e.getData().get("status")));
-            summary.setWorkflowRef(e.getData().get("workflowRef"));
-            Optional<AuditEntity> wfAE =
-                auditRepository.findFirstByScopeAndSelfRef(
-                    AuditScope.WORKFLOW, e.getData().get("workflowRef"));
-            if (wfAE.isPresent()) {
-              summary.setWorkflowName(wfAE.get().getData().get("name"));
-            }
-            summaries.add(summary);
-          });
-      insight.setRuns(summaries);
+  /*
+   * Retrieves the Audits of the Workflows' WorkflowRuns created in the period
+   */
+  public List<AuditEntity> getWorkflowRunAudits(List<String> wfRefs, Date from, Date to) {
+    List<Criteria> criteriaList = new ArrayList<>();
+    Criteria scopeCriteria = Criteria.where("scope").is("WORKFLOWRUN");
+    criteriaList.add(scopeCriteria);
+
+    Criteria dateCriteria = Criteria.where("creationDate").gte(from).lt(to);
+    criteriaList.add(dateCriteria);
+
+    Criteria wfCriteria = Criteria.where("data.workflowRef").in(wfRefs);
+    criteriaList.add(wfCriteria);
+
+    Criteria[] criteriaArray = criteriaList.toArray(new Criteria[criteriaList.size()]);
+    Criteria allCriteria = new Criteria();
+    if (criteriaArray.length > 0) {
+      allCriteria.andOperator(criteriaArray);
     }
-    return insight;
+    Query query = new Query(allCriteria);
+    LOGGER.debug("Query: " + query.toString());
+    List<AuditEntity> entities = mongoTemplate.find(query, AuditEntity.class);
+    LOGGER.debug("Entities: {}", entities.toString());
+    return entities;
   }
 }
@@ -9,15 +9,12 @@ import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
-import org.springframework.http.HttpStatus;
-import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
-import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.annotation.RestController;
-import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 @RestController
 @RequestMapping("/api/v2/taskrun")
@@ -47,14 +44,13 @@ public class TaskRunControllerV2 {
         @ApiResponse(responseCode = "200", description = "OK"),
         @ApiResponse(responseCode = "400", description = "Bad Request")
       })
-  @ResponseBody
-  public ResponseEntity<StreamingResponseBody> streamTaskRunLog(
+  public void streamTaskRunLog(
       @Parameter(name = "taskRunId", description = "Id of TaskRun", required = true) @PathVariable
           String taskRunId,
+      HttpServletRequest request,
       HttpServletResponse response) {
     response.setContentType("text/plain");
     response.setCharacterEncoding("UTF-8");
-    return new ResponseEntity<StreamingResponseBody>(
-        taskRunService.streamLog(taskRunId), HttpStatus.OK);
+    taskRunService.streamLog(taskRunId, request, response);
   }
 }
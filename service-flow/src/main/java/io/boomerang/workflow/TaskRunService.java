@@ -3,6 +3,8 @@ package io.boomerang.workflow;
 import io.boomerang.client.EngineClient;
 import io.boomerang.error.BoomerangError;
 import io.boomerang.error.BoomerangException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import java.util.Objects;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -10,7 +12,6 @@ import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
-import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 @Service
 public class TaskRunService {
@@ -33,7 +34,8 @@ public class TaskRunService {
     this.parameterManager = parameterManager;
   }
 
-  public StreamingResponseBody streamLog(String taskRunId) {
+  public void streamLog(
+      String taskRunId, HttpServletRequest request, HttpServletResponse response) {
     if (!Objects.isNull(taskRunId) && !taskRunId.isBlank()) {
       // TODO: check parent has valid relationship
       //      Optional<RelationshipEntity> rel =
@@ -41,7 +43,8 @@ public class TaskRunService {
       // RelationshipType.BELONGSTO);
       //      if (!rel.isEmpty()) {
       LOGGER.info("Getting TaskRun[{}] log...", taskRunId);
-      return engineClient.streamTaskRunLog(taskRunId);
+      engineClient.streamTaskRunLog(taskRunId, request, response);
+      return;
     }
     throw new BoomerangException(BoomerangError.TASKRUN_INVALID_REF);
   }
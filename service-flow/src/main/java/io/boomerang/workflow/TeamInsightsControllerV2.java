@@ -55,7 +55,13 @@ public class TeamInsightsControllerV2 {
       @RequestParam Optional<Long> fromDate,
       @RequestParam Optional<Long> toDate,
       @RequestParam Optional<List<String>> workflows,
-      @RequestParam Optional<List<String>> statuses) {
+      @RequestParam Optional<List<String>> statuses,
+      @Parameter(
+              name = "includeRuns",
+              description = "Include the individual WorkflowRuns in the insights.",
+              example = "false")
+          @RequestParam(defaultValue = "false")
+          boolean includeRuns) {
 
     // Todays date
     Date to = new Date();
@@ -71,6 +77,6 @@ public class TeamInsightsControllerV2 {
       to = new Date(toDate.get());
     }
 
-    return insightsService.get(team, from, to, workflows, statuses);
+    return insightsService.get(team, from, to, workflows, statuses, includeRuns);
   }
 }
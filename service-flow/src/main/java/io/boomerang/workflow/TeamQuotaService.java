@@ -0,0 +1,182 @@
+package io.boomerang.workflow;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+import com.mongodb.client.result.UpdateResult;
+import io.boomerang.common.entity.TeamQuotaCountersEntity;
+import io.boomerang.common.enums.RunPhase;
+import io.boomerang.common.model.WorkflowRunInsight;
+import io.boomerang.common.util.InsightRollupUtil;
+import io.boomerang.core.audit.AuditEntity;
+import io.boomerang.workflow.entity.TeamEntity;
+import io.boomerang.workflow.repository.TeamRepository;
+import jakarta.annotation.PostConstruct;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jobrunr.jobs.annotations.Job;
+import org.jobrunr.scheduling.JobScheduler;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+/*
+ * Reads the per Team, per month, quota counters maintained by the Engine
+ *
+ * The counters are reconciled on start up and periodically to correct any drift, e.g. an update
+ * missed by the Engine or WorkflowRuns from before the counters existed.
+ */
+@Service
+public class TeamQuotaService {
+
+  private static final Logger LOGGER = LogManager.getLogger();
+
+  private static final String RECONCILE_JOB_ID = "team-quota-reconcile";
+
+  @Value("${flow.quotas.reconcile.cron:*/30 * * * *}")
+  private String reconcileCron;
+
+  private final MongoTemplate mongoTemplate;
+  private final TeamRepository teamRepository;
+  private final InsightsService insightsService;
+  private final JobScheduler jobScheduler;
+
+  public TeamQuotaService(
+      MongoTemplate mongoTemplate,
+      TeamRepository teamRepository,
+      InsightsService insightsService,
+      JobScheduler jobScheduler) {
+    this.mongoTemplate = mongoTemplate;
+    this.teamRepository = teamRepository;
+    this.insightsService = insightsService;
+    this.jobScheduler = jobScheduler;
+  }
+
+  @PostConstruct
+  public void init() {
+    try {
+      jobScheduler.scheduleRecurrently(RECONCILE_JOB_ID, reconcileCron, () -> this.reconcile());
+      jobScheduler.enqueue(() -> this.reconcile());
+    } catch (Exception e) {
+      LOGGER.error("Unable to schedule the Team quota reconciliation. Error: {}", e.getMessage());
+    }
+  }
+
+  /*
+   * Retrieve the Team's counters for the current month with a single read
+   */
+  public TeamQuotaCountersEntity get(String team) {
+    final Date now = new Date();
+    final TeamQuotaCountersEntity counters = find(team, now);
+    return counters != null ? counters : new TeamQuotaCountersEntity(team, now);
+  }
+
+  /*
+   * Reconcile the current month's counters for all Teams
+   *
+   * The counters are compared with the Team's insight rollups, which are read without scanning the
+   * Audit. Only the Teams that are out of sync are rebuilt from their WorkflowRun Audits.
+   */
+  @Job(name = "Team Quota Reconciliation")
+  public void reconcile() {
+    final Date now = new Date();
+    final YearMonth month = YearMonth.now(ZoneOffset.UTC);
+    final Date from = Date.from(month.atDay(1).atStartOfDay(ZoneOffset.UTC).toInstant());
+    final Date to =
+        Date.from(month.plusMonths(1).atDay(1).atStartOfDay(ZoneOffset.UTC).toInstant());
+    int reconciled = 0;
+    for (TeamEntity team : teamRepository.findAll()) {
+      try {
+        TeamQuotaCountersEntity counters = find(team.getName(), now);
+        WorkflowRunInsight insight =
+            insightsService.get(
+                team.getName(), from, to, Optional.empty(), Optional.empty(), false);
+        if (counters != null
+            && counters.getRuns() == insight.getTotalRuns()
+            && counters.getDuration() == insight.getTotalDuration()
+            && counters.getRunning().size() == insight.getConcurrentRuns()) {
+          continue;
+        }
+        if (rebuild(team.getName(), counters, from, to, now)) {
+          reconciled++;
+        }
+      } catch (Exception e) {
+        LOGGER.error(
+            "Unable to reconcile quota counters for team {}. Error: {}",
+            team.getName(),
+            e.getMessage());
+      }
+    }
+    LOGGER.info("Reconciled quota counters for {} teams.", reconciled);
+  }
+
+  /*
+   * Rebuild the Team's counters from its WorkflowRun Audits
+   *
+   * The rebuilt counters are only written if the Engine has not updated the counters since they
+   * were read, so that no increment is lost. Otherwise the next reconciliation retries.
+   */
+  private boolean rebuild(
+      String team, TeamQuotaCountersEntity current, Date from, Date to, Date now) {
+    List<String> wfRefs = insightsService.getWorkflowRefs(team, Optional.empty());
+    List<AuditEntity> audits =
+        wfRefs.isEmpty() ? List.of() : insightsService.getWorkflowRunAudits(wfRefs, from, to);
+    TeamQuotaCountersEntity counters = new TeamQuotaCountersEntity(team, now);
+    for (AuditEntity audit : audits) {
+      String phase = audit.getData().get("phase");
+      String value = audit.getData().get("duration");
+      long duration = value != null ? Long.parseLong(value) : 0L;
+      counters.setDuration(counters.getDuration() + duration);
+      if (RunPhase.running.getPhase().equals(phase)) {
+        counters.getRunning().add(audit.getSelfRef());
+      } else if (RunPhase.completed.getPhase().equals(phase)
+          || RunPhase.finalized.getPhase().equals(phase)) {
+        counters
+            .getSketch()
+            .merge(String.valueOf(InsightRollupUtil.index(duration)), 1L, Long::sum);
+      }
+    }
+    counters.setRuns(audits.size());
+    counters.setLastReconciled(now);
+
+    if (current == null) {
+      try {
+        mongoTemplate.insert(counters);
+        return true;
+      } catch (DuplicateKeyException e) {
+        return false;
+      }
+    }
+    UpdateResult result =
+        mongoTemplate.updateFirst(
+            query(
+                where("_id")
+                    .is(current.getId())
+                    .and("runs")
+                    .is(current.getRuns())
+                    .and("duration")
+                    .is(current.getDuration())
+                    .and("running")
+                    .is(current.getRunning())),
+            new Update()
+                .set("runs", counters.getRuns())
+                .set("duration", counters.getDuration())
+                .set("running", counters.getRunning())
+                .set("sketch", counters.getSketch())
+                .set("lastReconciled", now),
+            TeamQuotaCountersEntity.class);
+    return result.getModifiedCount() > 0;
+  }
+
+  private TeamQuotaCountersEntity find(String team, Date date) {
+    return mongoTemplate.findById(
+        TeamQuotaCountersEntity.idOf(team, date), TeamQuotaCountersEntity.class);
+  }
+}
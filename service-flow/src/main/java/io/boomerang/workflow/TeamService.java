@@ -2,10 +2,11 @@ package io.boomerang.workflow;
 
 import static io.boomerang.common.util.DataAdapterUtil.filterValueByFieldType;
 
+import io.boomerang.common.entity.TeamQuotaCountersEntity;
 import io.boomerang.common.model.AbstractParam;
 import io.boomerang.common.model.WorkflowCount;
-import io.boomerang.common.model.WorkflowRunInsight;
 import io.boomerang.common.util.DataAdapterUtil.FieldType;
+import io.boomerang.common.util.InsightRollupUtil;
 import io.boomerang.common.util.StringUtil;
 import io.boomerang.core.RelationshipService;
 import io.boomerang.core.SettingsService;
@@ -36,11 +37,13 @@ import java.io.UnsupportedEncodingException;
 import java.net.URLDecoder;
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.TimeZone;
 import java.util.stream.Collectors;
 import org.apache.commons.lang3.EnumUtils;
@@ -83,7 +86,7 @@ public class TeamService {
   private final SettingsService settingsService;
   private final RelationshipService relationshipService;
   private final MongoTemplate mongoTemplate;
-  private final InsightsService insightsService;
+  private final TeamQuotaService teamQuotaService;
   private final WorkflowService workflowService;
   private final TokenService tokenService;
   private final TaskService taskTemplateService;
@@ -97,7 +100,7 @@ public class TeamService {
       SettingsService settingsService,
       RelationshipService relationshipService,
       MongoTemplate mongoTemplate,
-      InsightsService insightsService,
+      TeamQuotaService teamQuotaService,
       WorkflowService workflowService,
       TokenService tokenService,
       TaskService taskTemplateService) {
@@ -109,7 +112,7 @@ public class TeamService {
     this.settingsService = settingsService;
     this.relationshipService = relationshipService;
     this.mongoTemplate = mongoTemplate;
-    this.insightsService = insightsService;
+    this.teamQuotaService = teamQuotaService;
     this.workflowService = workflowService;
     this.tokenService = tokenService;
     this.taskTemplateService = taskTemplateService;
@@ -324,8 +327,10 @@ public class TeamService {
     // Delete Team
     teamRepository.deleteByName(team);
 
-    // Delete Team relationship node
+    // Delete Team relationship node and end the members sessions that included the team
+    Set<String> memberRefs = Set.copyOf(relationshipService.membersAndRoles(team).keySet());
     relationshipService.removeNodeAndEdgeByRefOrSlug(RelationshipType.TEAM, team);
+    memberRefs.forEach(tokenService::endSessions);
   }
 
   /*
@@ -452,9 +457,11 @@ public class TeamService {
       }
       if (!userRefs.isEmpty()) {
         userRefs.forEach(
-            userRef ->
-                relationshipService.removeEdge(
-                    RelationshipType.USER, userRef, RelationshipType.TEAM, team));
+            userRef -> {
+              relationshipService.removeEdge(
+                  RelationshipType.USER, userRef, RelationshipType.TEAM, team);
+              tokenService.endSessions(userRef);
+            });
       }
     }
   }
@@ -477,6 +484,7 @@ public class TeamService {
       throw new BoomerangException(BoomerangError.TEAM_INVALID_REF);
     }
     relationshipService.removeEdge(RelationshipType.TEAM, team);
+    tokenService.endSessions(identityService.getCurrentPrincipal());
   }
 
   /*
@@ -674,15 +682,26 @@ public class TeamService {
   }
 
   /*
-   * Used by WorkflowRun Service to ensure Workflow can run
+   * Used by Workflow Service to ensure a Workflow can be created
    */
   public CurrentQuotas getCurrentQuotas(String team) {
+    return getCurrentQuotas(team, true);
+  }
+
+  /*
+   * Used by Workflow Service to ensure a Workflow can run. Only needs the run counters.
+   */
+  public CurrentQuotas getCurrentRunQuotas(String team) {
+    return getCurrentQuotas(team, false);
+  }
+
+  private CurrentQuotas getCurrentQuotas(String team, boolean includeWorkflowCount) {
     Optional<TeamEntity> optTeamEntity = teamRepository.findByNameIgnoreCase(team);
     if (optTeamEntity.isPresent()) {
       Quotas quotas = setDefaultQuotas();
       setCustomQuotas(quotas, optTeamEntity.get().getQuotas());
       CurrentQuotas currentQuotas = new CurrentQuotas(quotas);
-      setCurrentQuotas(currentQuotas, team);
+      setCurrentQuotas(currentQuotas, team, includeWorkflowCount);
       return currentQuotas;
     }
     return null;
@@ -752,7 +771,7 @@ public class TeamService {
     Quotas quotas = setDefaultQuotas();
     setCustomQuotas(quotas, teamEntity.getQuotas());
     CurrentQuotas currentQuotas = new CurrentQuotas(quotas);
-    setCurrentQuotas(currentQuotas, teamEntity.getName());
+    setCurrentQuotas(currentQuotas, teamEntity.getName(), true);
     team.setQuotas(currentQuotas);
 
     // Get Approver Groups
@@ -861,7 +880,8 @@ public class TeamService {
     return d;
   }
 
-  private CurrentQuotas setCurrentQuotas(CurrentQuotas currentQuotas, String team) {
+  private CurrentQuotas setCurrentQuotas(
+      CurrentQuotas currentQuotas, String team, boolean includeWorkflowCount) {
     // Set Quota Reset Date
     Calendar nextMonth = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
     nextMonth.add(Calendar.MONTH, 1);
@@ -872,35 +892,19 @@ public class TeamService {
     nextMonth.set(Calendar.MILLISECOND, 0);
     currentQuotas.setMonthlyResetDate(nextMonth.getTime());
 
-    Calendar currentMonthStart = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
-    currentMonthStart.set(Calendar.DAY_OF_MONTH, 1);
-    currentMonthStart.set(Calendar.HOUR_OF_DAY, 0);
-    currentMonthStart.set(Calendar.MINUTE, 0);
-    currentMonthStart.set(Calendar.SECOND, 0);
-    currentMonthStart.set(Calendar.MILLISECOND, 0);
-
-    Calendar currentMonthEnd = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
-    currentMonthEnd.set(Calendar.DAY_OF_MONTH, 1);
-    currentMonthEnd.set(Calendar.HOUR_OF_DAY, 0);
-    currentMonthEnd.set(Calendar.MINUTE, 0);
-    currentMonthEnd.set(Calendar.SECOND, 0);
-    currentMonthEnd.set(Calendar.MILLISECOND, 0);
-    currentMonthEnd.add(Calendar.MONTH, 1);
-    currentMonthEnd.add(Calendar.DAY_OF_MONTH, -1);
-
-    WorkflowRunInsight insight =
-        insightsService.get(
-            team,
-            currentMonthStart.getTime(),
-            currentMonthEnd.getTime(),
-            Optional.empty(),
-            Optional.empty());
-    LOGGER.debug("Insights: {}", insight.toString());
-    currentQuotas.setCurrentConcurrentRuns(insight.getConcurrentRuns().intValue());
-    currentQuotas.setCurrentRunTotalDuration(insight.getTotalDuration().intValue());
-    currentQuotas.setCurrentRunMedianDuration(insight.getMedianDuration().intValue());
-    currentQuotas.setCurrentRuns(insight.getTotalRuns().intValue());
-
+    // Counters for the current month are maintained by the Engine as WorkflowRuns transition
+    TeamQuotaCountersEntity counters = teamQuotaService.get(team);
+    LOGGER.debug("Quota Counters: {}", counters.toString());
+    currentQuotas.setCurrentConcurrentRuns(counters.getRunning().size());
+    currentQuotas.setCurrentRunTotalDuration((int) counters.getDuration());
+    Map<Integer, Long> sketch = new HashMap<>();
+    counters.getSketch().forEach((k, v) -> sketch.put(Integer.valueOf(k), v));
+    currentQuotas.setCurrentRunMedianDuration((int) InsightRollupUtil.quantile(sketch, 0.5));
+    currentQuotas.setCurrentRuns((int) counters.getRuns());
+
+    if (!includeWorkflowCount) {
+      return currentQuotas;
+    }
     WorkflowCount count =
         workflowService.count(
             team, Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty());
@@ -993,6 +997,7 @@ public class TeamService {
               RelationshipType.TEAM,
               team,
               Optional.of(Map.of("role", userSummary.getRole())));
+          tokenService.endSessions(userEntity.get().getId());
         } else {
           throw new BoomerangException(BoomerangError.TEAM_INVALID_USER_ROLE);
         }
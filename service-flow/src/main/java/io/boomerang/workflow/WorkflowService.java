@@ -8,6 +8,7 @@ import com.jayway.jsonpath.JsonPath;
 import com.jayway.jsonpath.Option;
 import com.jayway.jsonpath.spi.json.JacksonJsonNodeJsonProvider;
 import com.jayway.jsonpath.spi.mapper.JacksonMappingProvider;
+import io.boomerang.client.AsyncEngineClient;
 import io.boomerang.client.EngineClient;
 import io.boomerang.client.WorkflowResponsePage;
 import io.boomerang.common.enums.TaskType;
@@ -89,6 +90,7 @@ public class WorkflowService {
   public static final String TASK_SETTINGS_KEY = "task";
 
   private final EngineClient engineClient;
+  private final AsyncEngineClient asyncEngineClient;
   private final RelationshipService relationshipService;
   private final ScheduleService scheduleService;
   private final ParameterManager parameterManager;
@@ -99,6 +101,7 @@ public class WorkflowService {
 
   public WorkflowService(
       EngineClient engineClient,
+      AsyncEngineClient asyncEngineClient,
       RelationshipService relationshipService,
       @Lazy ScheduleService scheduleService,
       ParameterManager parameterManager,
@@ -107,6 +110,7 @@ public class WorkflowService {
       TokenService tokenService,
       @Lazy TeamService teamService) {
     this.engineClient = engineClient;
+    this.asyncEngineClient = asyncEngineClient;
     this.relationshipService = relationshipService;
     this.scheduleService = scheduleService;
     this.parameterManager = parameterManager;
@@ -148,7 +152,8 @@ public class WorkflowService {
             Optional.of(List.of(team)),
             false);
     if (!refs.isEmpty()) {
-      Workflow workflow = engineClient.getWorkflow(refs.get(0), version, withTasks);
+      Workflow workflow =
+          AsyncEngineClient.join(asyncEngineClient.getWorkflow(refs.get(0), version, withTasks));
 
       // Convert Workflow TaskRefs to Slugs
       convertTaskRefsToSlugs(team, workflow);
@@ -183,8 +188,9 @@ public class WorkflowService {
     }
 
     WorkflowResponsePage response =
-        engineClient.queryWorkflows(
-            queryLimit, queryPage, querySort, queryLabels, queryStatus, Optional.of(refs));
+        AsyncEngineClient.join(
+            asyncEngineClient.queryWorkflows(
+                queryLimit, queryPage, querySort, queryLabels, queryStatus, Optional.of(refs)));
 
     LOGGER.debug("Workflow Response: {}", response.toString());
     if (!response.getContent().isEmpty()) {
@@ -767,7 +773,7 @@ public class WorkflowService {
     if (settingsService
         .getSettingConfig(FEATURES_SETTINGS_KEY, FEATURES_TEAM_QUOTA)
         .getBooleanValue()) {
-      CurrentQuotas quotas = teamService.getCurrentQuotas(team);
+      CurrentQuotas quotas = teamService.getCurrentRunQuotas(team);
       LOGGER.debug("Quotas: {}", quotas.toString());
       if (quotas.getCurrentConcurrentRuns() > quotas.getMaxConcurrentRuns()) {
         throw new BoomerangException(
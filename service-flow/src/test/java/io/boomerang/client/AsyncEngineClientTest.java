@@ -0,0 +1,117 @@
+package io.boomerang.client;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import io.boomerang.common.model.Workflow;
+import io.boomerang.error.BoomerangException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class AsyncEngineClientTest {
+
+  private HttpServer server;
+  private AsyncEngineClient client;
+  private final AtomicInteger requests = new AtomicInteger();
+  private final CountDownLatch release = new CountDownLatch(1);
+
+  @BeforeEach
+  void setUp() throws IOException {
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.setExecutor(Executors.newCachedThreadPool());
+    server.createContext(
+        "/api/v1/workflow/",
+        exchange -> {
+          requests.incrementAndGet();
+          try {
+            release.await(5, TimeUnit.SECONDS);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+          String name = exchange.getRequestURI().getPath().replace("/api/v1/workflow/", "");
+          int status = "missing".equals(name) ? 404 : 200;
+          byte[] body = ("{\"name\":\"" + name + "\"}").getBytes(StandardCharsets.UTF_8);
+          exchange.sendResponseHeaders(status, body.length);
+          try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+          }
+        });
+    server.start();
+
+    client = new AsyncEngineClient(new ObjectMapper());
+    ReflectionTestUtils.setField(
+        client,
+        "getWorkflowURL",
+        "http://localhost:" + server.getAddress().getPort() + "/api/v1/workflow/{workflowId}");
+    ReflectionTestUtils.setField(client, "connectTimeout", 1000L);
+    ReflectionTestUtils.setField(client, "requestTimeout", 2000L);
+    ReflectionTestUtils.setField(client, "maxPerRoute", 1);
+    client.init();
+  }
+
+  @AfterEach
+  void tearDown() {
+    release.countDown();
+    client.destroy();
+    server.stop(0);
+  }
+
+  @Test
+  void testConcurrentIdenticalGetsAreCoalesced() {
+    CompletableFuture<Workflow> first = client.getWorkflow("wf-1", Optional.empty(), false);
+    CompletableFuture<Workflow> second = client.getWorkflow("wf-1", Optional.empty(), false);
+    release.countDown();
+
+    Workflow a = AsyncEngineClient.join(first);
+    Workflow b = AsyncEngineClient.join(second);
+    assertEquals("wf-1", a.getName());
+    assertEquals("wf-1", b.getName());
+    // Each caller can safely mutate its own copy
+    assertNotSame(a, b);
+    assertEquals(1, requests.get());
+  }
+
+  @Test
+  void testRequestsAreBoundedPerRoute() throws InterruptedException {
+    CompletableFuture<Workflow> first = client.getWorkflow("wf-1", Optional.empty(), false);
+    CompletableFuture<Workflow> second = client.getWorkflow("wf-2", Optional.empty(), false);
+    Thread.sleep(300);
+    assertEquals(1, requests.get());
+
+    release.countDown();
+    assertEquals("wf-1", AsyncEngineClient.join(first).getName());
+    assertEquals("wf-2", AsyncEngineClient.join(second).getName());
+    assertEquals(2, requests.get());
+  }
+
+  @Test
+  void testSlowEngineTimesOut() {
+    long start = System.currentTimeMillis();
+    CompletableFuture<Workflow> workflow = client.getWorkflow("wf-1", Optional.empty(), false);
+    assertThrows(BoomerangException.class, () -> AsyncEngineClient.join(workflow));
+    assertTrue(System.currentTimeMillis() - start < 4000);
+  }
+
+  @Test
+  void testErrorResponseIsSurfaced() {
+    release.countDown();
+    CompletableFuture<Workflow> workflow = client.getWorkflow("missing", Optional.empty(), false);
+    assertThrows(BoomerangException.class, () -> AsyncEngineClient.join(workflow));
+  }
+}
@@ -0,0 +1,310 @@
+package io.boomerang.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+import io.boomerang.core.entity.RelationshipEdgeEntity;
+import io.boomerang.core.entity.RelationshipNodeEntity;
+import io.boomerang.core.enums.RelationshipLabel;
+import io.boomerang.core.enums.RelationshipType;
+import io.boomerang.core.model.Token;
+import io.boomerang.core.repository.RelationshipEdgeRepository;
+import io.boomerang.core.repository.RelationshipNodeRepository;
+import io.boomerang.security.IdentityService;
+import io.boomerang.security.enums.AuthScope;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.StreamSupport;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class RelationshipServiceTest {
+
+  private static final int TEAMS = 20;
+  private static final int MEMBER_TEAMS = 10;
+  private static final int WORKFLOWS_PER_TEAM = 50;
+
+  private RelationshipNodeRepository nodeRepository;
+  private RelationshipEdgeRepository edgeRepository;
+  private RelationshipService relationshipService;
+
+  // Stand in for the collections, keyed by type and label as the queries use them
+  private final Map<String, Map<String, RelationshipNodeEntity>> nodes = new ConcurrentHashMap<>();
+  private final Map<String, Map<String, RelationshipEdgeEntity>> edges = new ConcurrentHashMap<>();
+
+  @BeforeEach
+  void setUp() {
+    RelationshipGraph.getInstance().invalidateCache();
+    nodeRepository = mock(RelationshipNodeRepository.class, withSettings().stubOnly());
+    edgeRepository = mock(RelationshipEdgeRepository.class, withSettings().stubOnly());
+    IdentityService identityService = mock(IdentityService.class, withSettings().stubOnly());
+    when(nodeRepository.save(any()))
+        .thenAnswer(
+            i -> {
+              RelationshipNodeEntity node = i.getArgument(0);
+              nodes
+                  .computeIfAbsent(node.getType(), k -> new ConcurrentHashMap<>())
+                  .put(node.getId(), node);
+              return node;
+            });
+    when(nodeRepository.findByTypeNotIn(any()))
+        .thenAnswer(
+            i ->
+                nodes.entrySet().stream()
+                    .filter(e -> !i.<Collection<String>>getArgument(0).contains(e.getKey()))
+                    .flatMap(e -> e.getValue().values().stream())
+                    .toList());
+    when(nodeRepository.findAllById(any()))
+        .thenAnswer(
+            i ->
+                StreamSupport.stream(i.<Iterable<String>>getArgument(0).spliterator(), false)
+                    .map(id -> nodes.get(id.split(":")[0]).get(id))
+                    .toList());
+    when(edgeRepository.save(any()))
+        .thenAnswer(
+            i -> {
+              RelationshipEdgeEntity edge = i.getArgument(0);
+              edge.setId(new ObjectId().toHexString());
+              edges
+                  .computeIfAbsent(edge.getLabel(), k -> new ConcurrentHashMap<>())
+                  .put(edge.getId(), edge);
+              return edge;
+            });
+    when(edgeRepository.findByLabelNotIn(any()))
+        .thenAnswer(
+            i ->
+                edges.entrySet().stream()
+                    .filter(e -> !i.<Collection<String>>getArgument(0).contains(e.getKey()))
+                    .flatMap(e -> e.getValue().values().stream())
+                    .toList());
+    when(edgeRepository.findByToIn(any()))
+        .thenAnswer(
+            i ->
+                edges.values().stream()
+                    .flatMap(e -> e.values().stream())
+                    .filter(e -> i.<Collection<String>>getArgument(0).contains(e.getTo()))
+                    .toList());
+    when(edgeRepository.findByFromInAndLabel(any(), any()))
+        .thenAnswer(
+            i ->
+                edges.getOrDefault(i.getArgument(1), Map.of()).values().stream()
+                    .filter(e -> i.<Collection<String>>getArgument(0).contains(e.getFrom()))
+                    .toList());
+    Token token = new Token(AuthScope.user);
+    token.setPrincipal("user1");
+    when(identityService.getCurrentIdentity()).thenReturn(token);
+    relationshipService = new RelationshipService(nodeRepository, edgeRepository, identityService);
+
+    relationshipService.createNode(RelationshipType.ROOT, "root", "root", Optional.empty());
+    relationshipService.createNodeAndEdge(
+        RelationshipType.ROOT,
+        "root",
+        RelationshipLabel.CONTAINS,
+        RelationshipType.USER,
+        "user1",
+        "user1",
+        Optional.empty(),
+        Optional.empty());
+    for (int t = 0; t < TEAMS; t++) {
+      relationshipService.createNodeAndEdge(
+          RelationshipType.ROOT,
+          "root",
+          RelationshipLabel.CONTAINS,
+          RelationshipType.TEAM,
+          "team" + t,
+          "team-slug-" + t,
+          Optional.empty(),
+          Optional.empty());
+      if (t < MEMBER_TEAMS) {
+        relationshipService.createEdge(
+            RelationshipType.USER,
+            "user1",
+            RelationshipLabel.MEMBER_OF,
+            RelationshipType.TEAM,
+            "team" + t,
+            Optional.of(Map.of("role", "editor")));
+      }
+      for (int w = 0; w < WORKFLOWS_PER_TEAM; w++) {
+        relationshipService.createNodeAndEdge(
+            RelationshipType.TEAM,
+            "team" + t,
+            RelationshipLabel.HAS_WORKFLOW,
+            RelationshipType.WORKFLOW,
+            "wf" + t + "-" + w,
+            "workflow-" + w,
+            Optional.empty(),
+            Optional.empty());
+      }
+    }
+  }
+
+  @Test
+  void testIncrementalDeltas() {
+    assertEquals(
+        MEMBER_TEAMS * WORKFLOWS_PER_TEAM,
+        relationshipService.filter(RelationshipType.WORKFLOW, Optional.empty()).size());
+    assertTrue(
+        relationshipService.check(
+            RelationshipType.WORKFLOW, "wf0-0", Optional.empty(), Optional.empty()));
+    assertFalse(
+        relationshipService.check(
+            RelationshipType.WORKFLOW,
+            "wf" + (TEAMS - 1) + "-0",
+            Optional.empty(),
+            Optional.empty()));
+    // Slugs are shared across teams, the intermediate team narrows it down
+    assertEquals(
+        List.of("wf1-3"),
+        relationshipService.filter(
+            RelationshipType.WORKFLOW,
+            Optional.of(List.of("workflow-3")),
+            Optional.of(RelationshipType.TEAM),
+            Optional.of(List.of("team-slug-1")),
+            false));
+    assertEquals(Map.of("user1", "editor"), relationshipService.membersAndRoles("team-slug-0"));
+
+    relationshipService.updateNodeByRefOrSlug(RelationshipType.TEAM, "team0", "renamed");
+    assertEquals(
+        "renamed", relationshipService.getSlugByRefForType(RelationshipType.TEAM, "team0"));
+    assertTrue(relationshipService.doesSlugOrRefExistForType(RelationshipType.TEAM, "renamed"));
+    assertFalse(
+        relationshipService.doesSlugOrRefExistForType(RelationshipType.TEAM, "team-slug-0"));
+
+    relationshipService.removeEdge(
+        RelationshipType.USER, "user1", RelationshipType.TEAM, "team0");
+    assertFalse(
+        relationshipService.check(
+            RelationshipType.WORKFLOW, "wf0-0", Optional.empty(), Optional.empty()));
+
+    when(nodeRepository.deleteByTypeAndRef("workflow", "wf1-0"))
+        .thenReturn(
+            new RelationshipNodeEntity("workflow", "wf1-0", "workflow-0", Optional.empty()));
+    relationshipService.removeNodeAndEdgeByRef(RelationshipType.WORKFLOW, "wf1-0");
+    assertEquals(
+        (MEMBER_TEAMS - 1) * WORKFLOWS_PER_TEAM - 1,
+        relationshipService.filter(RelationshipType.WORKFLOW, Optional.empty()).size());
+  }
+
+  /*
+   * Filter and check stay consistent while runs are submitted concurrently. Each submission adds a
+   * node and an edge to the graph, which previously rebuilt the whole graph.
+   */
+  @Test
+  void testFilterAndCheckUnderConcurrentSubmissions() throws Exception {
+    final int submitters = 4;
+    final int submissionsPerSubmitter = 250;
+    ExecutorService executor = Executors.newFixedThreadPool(submitters);
+    CountDownLatch done = new CountDownLatch(submitters);
+    AtomicBoolean failed = new AtomicBoolean(false);
+    for (int s = 0; s < submitters; s++) {
+      final int submitter = s;
+      executor.execute(
+          () -> {
+            try {
+              for (int i = 0; i < submissionsPerSubmitter; i++) {
+                String run = "run-" + submitter + "-" + i;
+                relationshipService.createNodeAndEdge(
+                    RelationshipType.TEAM,
+                    "team" + (i % TEAMS),
+                    RelationshipLabel.HAS_WORKFLOWRUN,
+                    RelationshipType.WORKFLOWRUN,
+                    run,
+                    run,
+                    Optional.empty(),
+                    Optional.empty());
+              }
+            } catch (Exception e) {
+              failed.set(true);
+            } finally {
+              done.countDown();
+            }
+          });
+    }
+
+    while (done.getCount() > 0) {
+      assertEquals(
+          MEMBER_TEAMS * WORKFLOWS_PER_TEAM,
+          relationshipService.filter(RelationshipType.WORKFLOW, Optional.empty()).size());
+      assertTrue(
+          relationshipService.check(
+              RelationshipType.WORKFLOW,
+              "workflow-1",
+              Optional.of(RelationshipType.TEAM),
+              Optional.of(List.of("team-slug-2"))));
+    }
+    assertTrue(done.await(60, TimeUnit.SECONDS));
+    executor.shutdown();
+
+    assertFalse(failed.get());
+    assertEquals(
+        submitters * submissionsPerSubmitter * MEMBER_TEAMS / TEAMS,
+        relationshipService.filter(RelationshipType.WORKFLOWRUN, Optional.empty()).size());
+  }
+
+  /*
+   * WorkflowRun nodes are kept out of the in memory graph, so its size does not depend on the
+   * number of runs, including when rebuilt from the repositories. Run ownership is resolved from
+   * the edges.
+   */
+  @Test
+  void testGraphSizeConstantAsRunsGrow() {
+    RelationshipGraph graph = RelationshipGraph.getInstance();
+    RelationshipGraphWatcher watcher =
+        new RelationshipGraphWatcher(null, nodeRepository, edgeRepository);
+    final int nodeCount = graph.nodeCount();
+    final int edgeCount = graph.edgeCount();
+    int submitted = 0;
+    for (int runs : new int[] {0, 1000, 2000}) {
+      for (; submitted < runs; submitted++) {
+        relationshipService.createNodeAndEdge(
+            RelationshipType.TEAM,
+            "team" + (submitted % TEAMS),
+            RelationshipLabel.HAS_WORKFLOWRUN,
+            RelationshipType.WORKFLOWRUN,
+            "run-" + submitted,
+            "run-" + submitted,
+            Optional.empty(),
+            Optional.empty());
+      }
+      assertEquals(nodeCount, graph.nodeCount());
+      assertEquals(edgeCount, graph.edgeCount());
+
+      watcher.reload();
+      assertEquals(nodeCount, graph.nodeCount());
+      assertEquals(edgeCount, graph.edgeCount());
+    }
+
+    assertTrue(
+        relationshipService.check(
+            RelationshipType.WORKFLOWRUN,
+            "run-0",
+            Optional.of(RelationshipType.TEAM),
+            Optional.of(List.of("team-slug-0"))));
+    assertFalse(
+        relationshipService.check(
+            RelationshipType.WORKFLOWRUN,
+            "run-1",
+            Optional.of(RelationshipType.TEAM),
+            Optional.of(List.of("team-slug-0"))));
+    assertFalse(
+        relationshipService.check(
+            RelationshipType.WORKFLOWRUN,
+            "run-" + (TEAMS - 1),
+            Optional.empty(),
+            Optional.empty()));
+  }
+}
@@ -0,0 +1,87 @@
+package io.boomerang.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.boomerang.core.entity.SettingEntity;
+import io.boomerang.core.model.EncryptionConfig;
+import io.boomerang.core.repository.SettingsRepository;
+import io.boomerang.workflow.model.SettingConfig;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class SettingsServiceTest {
+
+  private SettingsRepository settingsRepository;
+  private SettingsService settingsService;
+
+  @BeforeEach
+  void setUp() {
+    settingsRepository = mock(SettingsRepository.class);
+    settingsService = new SettingsService(settingsRepository, new EncryptionConfig());
+  }
+
+  @Test
+  void testSettingsReadFromSnapshot() {
+    when(settingsRepository.findAll())
+        .thenReturn(
+            List.of(
+                setting("task", config("debug", "boolean", "false")),
+                setting("integration", config("slack.token", "secured", "abc123"))));
+
+    for (int i = 0; i < 100; i++) {
+      assertEquals("false", settingsService.getSettingConfig("task", "debug").getValue());
+      assertEquals(
+          "abc123", settingsService.getSettingConfig("integration", "slack.token").getValue());
+    }
+    verify(settingsRepository, times(1)).findAll();
+    verify(settingsRepository, never()).findOneByKey(anyString());
+
+    // Callers are given a copy
+    settingsService.getSettingConfig("task", "debug").setValue("true");
+    assertEquals("false", settingsService.getSettingConfig("task", "debug").getValue());
+
+    assertThrows(
+        IllegalArgumentException.class, () -> settingsService.getSettingConfig("task", "missing"));
+    assertThrows(
+        IllegalArgumentException.class, () -> settingsService.getSettingConfig("missing", "debug"));
+  }
+
+  @Test
+  void testRefreshReplacesSnapshot() {
+    when(settingsRepository.findAll())
+        .thenReturn(List.of(setting("task", config("default.image", "text", "ubuntu"))));
+    assertEquals("ubuntu", settingsService.getSettingConfig("task", "default.image").getValue());
+
+    SettingEntity updated = setting("task", config("default.image", "text", "alpine"));
+    when(settingsRepository.findAll()).thenReturn(List.of(updated));
+    settingsService.updateSetting(updated);
+    verify(settingsRepository).save(any());
+    assertEquals("alpine", settingsService.getSettingConfig("task", "default.image").getValue());
+    verify(settingsRepository, times(2)).findAll();
+  }
+
+  private SettingEntity setting(String key, SettingConfig... configs) {
+    SettingEntity entity = new SettingEntity();
+    entity.setId(key);
+    entity.setKey(key);
+    entity.setConfig(List.of(configs));
+    return entity;
+  }
+
+  private SettingConfig config(String key, String type, String value) {
+    SettingConfig config = new SettingConfig();
+    config.setKey(key);
+    config.setType(type);
+    config.setValue(value);
+    return config;
+  }
+}
@@ -0,0 +1,171 @@
+package io.boomerang.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.boomerang.core.entity.TokenEntity;
+import io.boomerang.core.entity.UserEntity;
+import io.boomerang.core.enums.UserType;
+import io.boomerang.core.model.Token;
+import io.boomerang.core.model.User;
+import io.boomerang.core.repository.TokenRepository;
+import io.boomerang.security.enums.AuthScope;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class TokenServiceTest {
+
+  private TokenRepository tokenRepository;
+  private UserService userService;
+  private TokenService tokenService;
+
+  @BeforeEach
+  void setUp() {
+    tokenRepository = mock(TokenRepository.class);
+    userService = mock(UserService.class);
+    RelationshipService relationshipService = mock(RelationshipService.class);
+    when(tokenRepository.findByToken(anyString())).thenReturn(Optional.empty());
+    tokenService =
+        new TokenService(tokenRepository, userService, null, relationshipService, null);
+    ReflectionTestUtils.setField(tokenService, "MAX_SESSION_TOKEN_DURATION", 24);
+    ReflectionTestUtils.setField(tokenService, "cacheMaxSize", 100L);
+    ReflectionTestUtils.setField(tokenService, "cacheExpireAfter", 300L);
+    ReflectionTestUtils.setField(tokenService, "sessionReuseIdle", 300L);
+    tokenService.init();
+  }
+
+  @Test
+  void testValidateAndGetShareOneLookup() {
+    TokenEntity entity = token("1", "team-a", null);
+    for (int i = 0; i < 10; i++) {
+      assertTrue(tokenService.validate("bearer-1"));
+      Token token = tokenService.get("bearer-1");
+      assertEquals("team-a", token.getPrincipal());
+      assertTrue(token.isValid());
+      assertNotNull(token.getPermissionMatcher());
+    }
+    verify(tokenRepository, times(1)).findByToken(entity.getToken());
+
+    // Unknown tokens are not cached
+    assertFalse(tokenService.validate("unknown"));
+    assertNull(tokenService.get("unknown"));
+    verify(tokenRepository, times(2)).findByToken(tokenService.hashString("unknown"));
+  }
+
+  @Test
+  void testExpiredTokenIsNotValid() {
+    TokenEntity entity = token("1", "team-a", new Date(System.currentTimeMillis() - 1000));
+    assertFalse(tokenService.validate("bearer-1"));
+    assertNotNull(tokenService.get("bearer-1"));
+    assertFalse(tokenService.get("bearer-1").isValid());
+    // Entries do not outlive the token so it is looked up again
+    verify(tokenRepository, times(3)).findByToken(entity.getToken());
+  }
+
+  @Test
+  void testRevocationEvictsCachedToken() {
+    TokenEntity first = token("1", "team-a", null);
+    TokenEntity second = token("2", "team-b", null);
+    TokenEntity third = token("3", "team-c", null);
+    tokenService.get("bearer-1");
+    tokenService.get("bearer-2");
+    tokenService.get("bearer-3");
+
+    when(tokenRepository.findById("1")).thenReturn(Optional.of(first));
+    assertTrue(tokenService.delete("1"));
+    when(tokenRepository.findByToken(first.getToken())).thenReturn(Optional.empty());
+    assertFalse(tokenService.validate("bearer-1"));
+
+    tokenService.deleteAllForPrincipal("team-b");
+    when(tokenRepository.findByToken(second.getToken())).thenReturn(Optional.empty());
+    assertFalse(tokenService.validate("bearer-2"));
+
+    // Deleted by another replica
+    when(tokenRepository.findByToken(third.getToken())).thenReturn(Optional.empty());
+    assertTrue(tokenService.validate("bearer-3"));
+    tokenService.evict("3");
+    assertFalse(tokenService.validate("bearer-3"));
+  }
+
+  @Test
+  void testSessionTokenReusedPerUser() {
+    UserEntity user = new UserEntity();
+    user.setId("user-1");
+    user.setEmail("user@boomerang.io");
+    user.setType(UserType.user);
+    when(userService.isActivated()).thenReturn(true);
+    when(userService.getUserByID("user-1")).thenAnswer(i -> Optional.of(new User(user)));
+    when(userService.getAndRegisterUser(
+            eq("user@boomerang.io"), any(), any(), any(), anyBoolean()))
+        .thenReturn(Optional.of(user));
+    AtomicInteger ids = new AtomicInteger();
+    when(tokenRepository.save(any()))
+        .thenAnswer(
+            i -> {
+              TokenEntity entity = i.getArgument(0);
+              entity.setId(String.valueOf(ids.incrementAndGet()));
+              return entity;
+            });
+
+    Set<String> sessions = new HashSet<>();
+    for (int i = 0; i < 100; i++) {
+      Token session =
+          tokenService.getOrCreateSessionToken("user@boomerang.io", null, null, false, false);
+      assertEquals("user-1", session.getPrincipal());
+      assertTrue(session.isValid());
+      sessions.add(session.getId());
+    }
+    assertEquals(1, sessions.size());
+    verify(tokenRepository, times(1)).save(any());
+
+    // Revoking the user's tokens stops the reuse
+    tokenService.deleteAllForPrincipal("user-1");
+    tokenService.getOrCreateSessionToken("user@boomerang.io", null, null, false, false);
+    verify(tokenRepository, times(2)).save(any());
+
+    // A change of user type is picked up on the next request
+    user.setType(UserType.auditor);
+    tokenService.getOrCreateSessionToken("user@boomerang.io", null, null, false, false);
+    tokenService.getOrCreateSessionToken("user@boomerang.io", null, null, false, false);
+    verify(tokenRepository, times(3)).save(any());
+
+    // Team membership and role changes end the session
+    tokenService.endSessions("user-1");
+    verify(tokenRepository).deleteAllByPrincipalAndType("user-1", AuthScope.session);
+    tokenService.getOrCreateSessionToken("user@boomerang.io", null, null, false, false);
+    verify(tokenRepository, times(4)).save(any());
+
+    // A deleted user is not given the cached session
+    when(userService.getUserByID("user-1")).thenReturn(Optional.empty());
+    tokenService.getOrCreateSessionToken("user@boomerang.io", null, null, false, false);
+    verify(tokenRepository, times(5)).save(any());
+  }
+
+  private TokenEntity token(String id, String principal, Date expirationDate) {
+    TokenEntity entity = new TokenEntity();
+    entity.setId(id);
+    entity.setType(AuthScope.team);
+    entity.setPrincipal(principal);
+    entity.setExpirationDate(expirationDate);
+    entity.setToken(tokenService.hashString("bearer-" + id));
+    when(tokenRepository.findByToken(entity.getToken())).thenReturn(Optional.of(entity));
+    return entity;
+  }
+}
@@ -0,0 +1,108 @@
+package io.boomerang.security;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.boomerang.core.model.ResolvedPermissions;
+import io.boomerang.security.enums.AuthScope;
+import io.boomerang.security.enums.PermissionAction;
+import io.boomerang.security.enums.PermissionResource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+import org.junit.jupiter.api.Test;
+
+class PermissionMatcherTest {
+
+  @Test
+  void testWildcards() {
+    PermissionMatcher matcher =
+        PermissionMatcher.compile(
+            List.of(
+                permissions("team-a", "workflow/read", "workflowrun/**"),
+                permissions("team-b", "**/delete")));
+    assertTrue(matcher.matches(PermissionResource.WORKFLOW, PermissionAction.READ));
+    assertFalse(matcher.matches(PermissionResource.WORKFLOW, PermissionAction.WRITE));
+    assertTrue(matcher.matches(PermissionResource.WORKFLOWRUN, PermissionAction.ACTION));
+    assertTrue(matcher.matches(PermissionResource.TEAM, PermissionAction.DELETE));
+    assertTrue(matcher.matches(PermissionResource.ANY, PermissionAction.DELETE));
+    assertFalse(matcher.matches(PermissionResource.ANY, PermissionAction.READ));
+
+    PermissionMatcher any = PermissionMatcher.compile(List.of(permissions("user", "**/**")));
+    for (PermissionResource resource : PermissionResource.values()) {
+      for (PermissionAction action : PermissionAction.values()) {
+        assertTrue(any.matches(resource, action));
+      }
+    }
+    PermissionMatcher none = PermissionMatcher.compile(null);
+    assertFalse(none.matches(PermissionResource.WORKFLOW, PermissionAction.READ));
+  }
+
+  @Test
+  void testMatchesRegexForAllCombinations() {
+    List<ResolvedPermissions> permissions =
+        List.of(
+            permissions(
+                "team-a",
+                "workflow/read",
+                "workflow/Write",
+                "task/**",
+                "**/action",
+                "workflow/read/extra",
+                "workflowrun",
+                "unknown/read",
+                "*/read",
+                "/"));
+    PermissionMatcher matcher = PermissionMatcher.compile(permissions);
+    for (PermissionResource resource : PermissionResource.values()) {
+      for (PermissionAction action : PermissionAction.values()) {
+        assertEquals(
+            regexMatches(permissions, resource, action),
+            matcher.matches(resource, action),
+            resource.getLabel() + "/" + action.getLabel());
+      }
+    }
+  }
+
+  @Test
+  void testMatchesRegexWithHundredsOfPermissions() {
+    PermissionResource[] resources = PermissionResource.values();
+    List<ResolvedPermissions> permissions = new ArrayList<>();
+    for (int i = 0; i < 500; i++) {
+      // Only ever grants read so the required write is checked against every action
+      permissions.add(
+          permissions("team-" + i, resources[i % (resources.length - 1)].getLabel() + "/read"));
+    }
+    PermissionMatcher matcher = PermissionMatcher.compile(permissions);
+    for (PermissionResource resource : resources) {
+      assertFalse(matcher.matches(resource, PermissionAction.WRITE), resource.getLabel());
+      assertEquals(
+          regexMatches(permissions, resource, PermissionAction.READ),
+          matcher.matches(resource, PermissionAction.READ),
+          resource.getLabel());
+    }
+  }
+
+  /*
+   * The per request check the SecurityInterceptor previously made. The labels are quoted so that
+   * the ** label of ANY is not read as a regex.
+   */
+  private boolean regexMatches(
+      List<ResolvedPermissions> permissions,
+      PermissionResource resource,
+      PermissionAction action) {
+    String requiredRegex =
+        "(\\*{2}|"
+            + Pattern.quote(resource.getLabel())
+            + ")\\/(\\*{2}|"
+            + Pattern.quote(action.getLabel())
+            + ")";
+    return permissions.stream()
+        .anyMatch(p -> (p.getActions().stream().anyMatch(a -> (a.matches(requiredRegex)))));
+  }
+
+  private ResolvedPermissions permissions(String principal, String... actions) {
+    return new ResolvedPermissions(AuthScope.team, principal, List.of(actions));
+  }
+}